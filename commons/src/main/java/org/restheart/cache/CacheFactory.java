@@ -32,6 +32,11 @@ import org.restheart.cache.impl.HashMapLoadingCache;
  * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
  */
 public class CacheFactory {
+    /**
+     * the name of the metric registry where caches created with a name record their stats
+     */
+    public static final String METRIC_REGISTRY_NAME = "CACHES";
+
     /**
      *
      * @param <K>          the type of the cache keys
@@ -47,6 +52,26 @@ public class CacheFactory {
         return new CaffeineLoadingCache<>(size, expirePolicy, ttl, loader);
     }
 
+    /**
+     *
+     * @param <K>          the type of the cache keys
+     * @param <V>          the type of the cached values
+     * @param name         the name of the cache stats (hits, misses, load time
+     *                     and evictions) in the CACHES metric registry; null to not record them
+     * @param size         the size of the cache
+     * @param expirePolicy specifies how and when each entry should be automatically
+     *                     removed from the cache
+     * @param ttl          Time To Live in milliseconds
+     * @param refresh      entries older than refresh milliseconds are reloaded in
+     *                     background on the next access while the current value is
+     *                     still returned; <= 0 to disable
+     * @param loader       the cache loader used to obtain new values
+     * @return the cache
+     */
+    public static <K, V> LoadingCache<K, V> createLocalLoadingCache(String name, long size, Cache.EXPIRE_POLICY expirePolicy, long ttl, long refresh, Function<K, V> loader) {
+        return new CaffeineLoadingCache<>(name, size, expirePolicy, ttl, refresh, loader);
+    }
+
     /**
      * @param <K>    the type of the cache keys
      * @param <V>    the type of the cached values
@@ -69,6 +94,20 @@ public class CacheFactory {
     public static <K,V> Cache<K,V> createLocalCache(long size, Cache.EXPIRE_POLICY expirePolicy, long ttl) {
         return new CaffeineCache<>(size, expirePolicy, ttl);
     }
+    /**
+     *
+     * @param <K> the type of the cache keys
+     * @param <V> the type of the cached values
+     * @param name the name of the cache stats (hits, misses and evictions) in the CACHES metric registry
+     * @param size the size of the cache
+     * @param expirePolicy specifies how and when each entry should be automatically removed from the cache
+     * @param ttl Time To Live in milliseconds
+     * @return the cache.
+    */
+    public static <K,V> Cache<K,V> createLocalCache(String name, long size, Cache.EXPIRE_POLICY expirePolicy, long ttl) {
+        return new CaffeineCache<>(name, size, expirePolicy, ttl);
+    }
+
     /**
      *
      * @param <K> the type of the cache keys.
@@ -19,7 +19,10 @@
  */
 package org.restheart.cache;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  *
@@ -29,4 +32,50 @@ import java.util.Optional;
  */
 public interface LoadingCache<K,V> extends Cache<K,V> {
     public Optional<V> getLoading(K key);
+
+    /**
+     * The default implementation loads the value synchronously
+     *
+     * @param key
+     * @return the cached value or a future completed when the value has been loaded
+     */
+    public default CompletableFuture<Optional<V>> getLoadingAsync(K key) {
+        try {
+            return CompletableFuture.completedFuture(getLoading(key));
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+    }
+
+    /**
+     * The default implementation loads the values synchronously, one by one
+     *
+     * @param keys
+     * @return a future completed when the values of all the keys are available,
+     * the missing ones being loaded with a single bulk load
+     */
+    public default CompletableFuture<Map<K, Optional<V>>> getAllLoadingAsync(Iterable<? extends K> keys) {
+        try {
+            var ret = new LinkedHashMap<K, Optional<V>>();
+            keys.forEach(key -> ret.put(key, getLoading(key)));
+            return CompletableFuture.completedFuture(ret);
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+    }
+
+    /**
+     * Reloads the value in background; the current value, if any, is
+     * returned until the new one is loaded
+     *
+     * The default implementation invalidates the value and loads it
+     * synchronously
+     *
+     * @param key
+     * @return a future completed when the new value has been loaded
+     */
+    public default CompletableFuture<Optional<V>> refresh(K key) {
+        invalidate(key);
+        return getLoadingAsync(key);
+    }
 }
@@ -25,6 +25,7 @@ import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import com.codahale.metrics.SharedMetricRegistries;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.RemovalCause;
@@ -32,6 +33,7 @@ import com.github.benmanes.caffeine.cache.RemovalListener;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.restheart.cache.CacheFactory;
 
 /**
  *
@@ -56,6 +58,29 @@ public class CaffeineCache<K, V> implements org.restheart.cache.Cache<K, V> {
         wrapped = builder.build();
     }
 
+    /**
+     * @param name the name of the cache stats in the CACHES metric registry
+     * @param size
+     * @param expirePolicy
+     * @param ttl
+     */
+    public CaffeineCache(String name, long size, EXPIRE_POLICY expirePolicy, long ttl) {
+        var builder = Caffeine.newBuilder();
+
+        builder.maximumSize(size);
+
+        if (ttl > 0 && expirePolicy == EXPIRE_POLICY.AFTER_WRITE) {
+            builder.expireAfterWrite(ttl, TimeUnit.MILLISECONDS);
+        } else if (ttl > 0 && expirePolicy == EXPIRE_POLICY.AFTER_READ) {
+            builder.expireAfterAccess(ttl, TimeUnit.MILLISECONDS);
+        }
+
+        var stats = new MetricsStatsCounter(SharedMetricRegistries.getOrCreate(CacheFactory.METRIC_REGISTRY_NAME), name);
+        builder.recordStats(() -> stats);
+
+        wrapped = builder.build();
+    }
+
     public CaffeineCache(long size, EXPIRE_POLICY expirePolicy, long ttl, Consumer<Map.Entry<K, Optional<V>>> remover) {
         var builder = Caffeine.newBuilder();
 
@@ -83,10 +108,8 @@ public class CaffeineCache<K, V> implements org.restheart.cache.Cache<K, V> {
     }
 
     @Override
-    public synchronized Optional<V> remove(K key) {
-        var ret = wrapped.getIfPresent(key);
-        wrapped.invalidate(key);
-        return ret;
+    public Optional<V> remove(K key) {
+        return wrapped.asMap().remove(key);
     }
 
     @Override
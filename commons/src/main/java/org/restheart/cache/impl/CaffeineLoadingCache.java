@@ -23,23 +23,66 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
+import com.codahale.metrics.SharedMetricRegistries;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import org.restheart.cache.CacheFactory;
 
 /**
+ *
+ * Loads and refreshes the values on a dedicated thread pool, since loaders
+ * usually block on MongoClient calls and must not run on the ForkJoin common pool.
  *
  * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
  * @param <K> the class of the keys.
  * @param <V> the class of the values (is Optional-ized).
  */
 public class CaffeineLoadingCache<K, V> implements org.restheart.cache.LoadingCache<K, V> {
+    private static final int LOADER_THREADS = 2 * Runtime.getRuntime().availableProcessors();
+    private static final int LOADER_QUEUE_SIZE = 1_000;
+
+    private static final Executor LOADERS;
+
+    static {
+        var loaders = new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(LOADER_QUEUE_SIZE), new LoaderThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        loaders.allowCoreThreadTimeOut(true);
+        LOADERS = loaders;
+    }
+
     private final LoadingCache<K, Optional<V>> wrapped;
+    private final Executor executor;
 
     public CaffeineLoadingCache(long size, EXPIRE_POLICY expirePolicy, long ttl, Function<K, V> loader) {
+        this(null, size, expirePolicy, ttl, 0, loader);
+    }
+
+    /**
+     *
+     * @param name the name of the cache metrics in the CACHES registry, null to not record stats
+     * @param size the size of the cache
+     * @param expirePolicy specifies how and when each entry should be automatically removed from the cache
+     * @param ttl Time To Live in milliseconds
+     * @param refresh entries older than refresh milliseconds are reloaded in background
+     * on the next access, serving the current value until the new one is loaded; <= 0 to disable
+     * @param loader the cache loader used to obtain new values
+     */
+    public CaffeineLoadingCache(String name, long size, EXPIRE_POLICY expirePolicy, long ttl, long refresh, Function<K, V> loader) {
+        this(name, size, expirePolicy, ttl, refresh, loader, Ticker.systemTicker(), LOADERS);
+    }
+
+    CaffeineLoadingCache(String name, long size, EXPIRE_POLICY expirePolicy, long ttl, long refresh, Function<K, V> loader, Ticker ticker, Executor executor) {
         var builder = Caffeine.newBuilder();
 
         builder.maximumSize(size);
@@ -50,7 +93,18 @@ public class CaffeineLoadingCache<K, V> implements org.restheart.cache.LoadingCa
             builder.expireAfterAccess(ttl, TimeUnit.MILLISECONDS);
         }
 
-        wrapped = builder.build(new CacheLoader<K, Optional<V>>() {
+        if (refresh > 0) {
+            builder.refreshAfterWrite(refresh, TimeUnit.MILLISECONDS);
+        }
+
+        if (name != null) {
+            var stats = new MetricsStatsCounter(SharedMetricRegistries.getOrCreate(CacheFactory.METRIC_REGISTRY_NAME), name);
+            builder.recordStats(() -> stats);
+        }
+
+        this.executor = executor;
+
+        wrapped = builder.ticker(ticker).executor(executor).build(new CacheLoader<K, Optional<V>>() {
             @Override
             public Optional<V> load(K key) throws Exception {
                 return Optional.ofNullable(loader.apply(key));
@@ -82,6 +136,25 @@ public class CaffeineLoadingCache<K, V> implements org.restheart.cache.LoadingCa
         return wrapped.get(key);
     }
 
+    @Override
+    public CompletableFuture<Optional<V>> getLoadingAsync(K key) {
+        var cached = wrapped.getIfPresent(key);
+
+        return cached != null
+            ? CompletableFuture.completedFuture(cached)
+            : CompletableFuture.supplyAsync(() -> wrapped.get(key), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<K, Optional<V>>> getAllLoadingAsync(Iterable<? extends K> keys) {
+        return CompletableFuture.supplyAsync(() -> wrapped.getAll(keys), executor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<V>> refresh(K key) {
+        return wrapped.refresh(key);
+    }
+
     @Override
     public void put(K key, V value) {
         wrapped.put(key, Optional.ofNullable(value));
@@ -106,4 +179,15 @@ public class CaffeineLoadingCache<K, V> implements org.restheart.cache.LoadingCa
     public void cleanUp() {
         wrapped.cleanUp();
     }
+
+    private static class LoaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            var thread = new Thread(r, "cache-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
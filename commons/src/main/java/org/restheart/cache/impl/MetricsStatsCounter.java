@@ -0,0 +1,104 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.cache.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+
+/**
+ * Caffeine StatsCounter that records the cache statistics in a metric registry:
+ * {@code <name>.hits}, {@code <name>.misses}, {@code <name>.hit-rate},
+ * {@code <name>.loads} (timer of successful loads), {@code <name>.load-failures}
+ * and {@code <name>.evictions}
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+class MetricsStatsCounter implements StatsCounter {
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer loads;
+    private final Counter loadFailures;
+    private final Counter evictions;
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictionWeight = new LongAdder();
+
+    MetricsStatsCounter(MetricRegistry registry, String name) {
+        this.hits = registry.counter(MetricRegistry.name(name, "hits"));
+        this.misses = registry.counter(MetricRegistry.name(name, "misses"));
+        this.loads = registry.timer(MetricRegistry.name(name, "loads"));
+        this.loadFailures = registry.counter(MetricRegistry.name(name, "load-failures"));
+        this.evictions = registry.counter(MetricRegistry.name(name, "evictions"));
+
+        registry.gauge(MetricRegistry.name(name, "hit-rate"), () -> new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hits.getCount(), hits.getCount() + misses.getCount());
+            }
+        });
+    }
+
+    @Override
+    public void recordHits(int count) {
+        hits.inc(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        misses.inc(count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        loads.update(loadTime, TimeUnit.NANOSECONDS);
+        totalLoadTime.add(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        loadFailures.inc();
+        totalLoadTime.add(loadTime);
+    }
+
+    @Override
+    public void recordEviction(int weight, RemovalCause cause) {
+        evictions.inc();
+        evictionWeight.add(weight);
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return CacheStats.of(
+            hits.getCount(),
+            misses.getCount(),
+            loads.getCount(),
+            loadFailures.getCount(),
+            totalLoadTime.sum(),
+            evictions.getCount(),
+            evictionWeight.sum());
+    }
+}
@@ -21,6 +21,7 @@ package org.restheart.exchange;
 
 import io.undertow.server.HttpServerExchange;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import org.bson.BsonValue;
 import org.restheart.utils.ChannelReader;
 import org.restheart.utils.BsonUtils;
@@ -52,6 +53,14 @@ public class BsonRequest extends ServiceRequest<BsonValue> {
     }
 
     public void injectContent() throws IOException {
-        setContent(BsonUtils.parse(ChannelReader.readString(wrapped)));
+        if (isContentTypeBson(wrapped)) {
+            var bytes = ChannelReader.readBytes(wrapped);
+            setContent(bytes == null ? null : BsonUtils.parseBson(ByteBuffer.wrap(bytes)));
+            return;
+        }
+
+        try (var reader = ChannelReader.reader(wrapped)) {
+            setContent(BsonUtils.parse(reader));
+        }
     }
 }
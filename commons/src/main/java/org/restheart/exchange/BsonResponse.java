@@ -20,12 +20,18 @@
 package org.restheart.exchange;
 
 import io.undertow.server.HttpServerExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import org.bson.BsonString;
 import org.bson.BsonValue;
+import org.bson.json.JsonMode;
 import static org.restheart.utils.BsonUtils.ArrayBuilder;
 import static org.restheart.utils.BsonUtils.DocumentBuilder;
 import static org.restheart.utils.BsonUtils.document;
 import static org.restheart.utils.BsonUtils.toJson;
+import static org.restheart.utils.BsonUtils.writeBson;
 
 /**
  * ServiceResponse implementation backed by BsonValue
@@ -48,13 +54,61 @@ public class BsonResponse extends ServiceResponse<BsonValue> {
 
     @Override
     public String readContent() {
-        if (content != null) {
-            return toJson(content);
+        var tosend = contentToSend();
+
+        if (tosend != null) {
+            return toJson(tosend, jsonMode());
         } else {
             return null;
         }
     }
 
+    /**
+     * Writes the content to the output stream, as json or as binary BSON if
+     * isBinary() returns true, without rendering it to a String first
+     *
+     * @param os the output stream
+     * @return false if there is no content to send
+     * @throws IOException
+     */
+    public boolean writeContent(OutputStream os) throws IOException {
+        var tosend = contentToSend();
+
+        if (tosend == null) {
+            return false;
+        } else if (isBinary()) {
+            setContentType(Exchange.BSON_MEDIA_TYPE);
+            writeBson(tosend, os);
+            return true;
+        } else {
+            var writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+            toJson(tosend, jsonMode(), writer);
+            writer.flush();
+            return true;
+        }
+    }
+
+    /**
+     * @return the content to send to the client
+     */
+    protected BsonValue contentToSend() {
+        return content;
+    }
+
+    /**
+     * @return the JsonMode used to send the content, null for the default one
+     */
+    protected JsonMode jsonMode() {
+        return null;
+    }
+
+    /**
+     * @return true if writeContent() sends the content as binary BSON
+     */
+    protected boolean isBinary() {
+        return false;
+    }
+
     public void setContent(ArrayBuilder builder) {
         setContent(builder.get());
     }
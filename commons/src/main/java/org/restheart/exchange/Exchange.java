@@ -47,6 +47,16 @@ public abstract class Exchange<T> {
      */
     public static final String JSON_MEDIA_TYPE = "application/json";
 
+    /**
+     * Supported content type BSON
+     */
+    public static final String BSON_MEDIA_TYPE = "application/bson";
+
+    /**
+     * Supported content type NDJSON, i.e. newline delimited JSON
+     */
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     /**
      *
      */
@@ -182,6 +192,28 @@ public abstract class Exchange<T> {
         return "application/json".equals(ct) || (ct != null && ct.startsWith("application/json;"));
     }
 
+    /**
+     * helper method to check if the request content is binary BSON
+     *
+     * @param exchange
+     * @return true if Content-Type request header is application/bson
+     */
+    public static boolean isContentTypeBson(HttpServerExchange exchange) {
+        var ct = exchange.getRequestHeaders().getFirst(Headers.CONTENT_TYPE);
+        return BSON_MEDIA_TYPE.equals(ct) || (ct != null && ct.startsWith(BSON_MEDIA_TYPE + ";"));
+    }
+
+    /**
+     * helper method to check if the client accepts newline delimited JSON
+     *
+     * @param exchange
+     * @return true if Accept request header includes application/x-ndjson
+     */
+    public static boolean acceptsNdjson(HttpServerExchange exchange) {
+        var accept = exchange.getRequestHeaders().get(Headers.ACCEPT);
+        return accept != null && accept.stream().anyMatch(a -> a.contains(NDJSON_MEDIA_TYPE));
+    }
+
     public static boolean isContentTypeFormOrMultipart(HttpServerExchange exchange) {
         var ct = exchange.getRequestHeaders().getFirst(Headers.CONTENT_TYPE);
         return ct != null && (ct.startsWith(FORM_URLENCODED)|| ct.startsWith(MULTIPART));
@@ -151,6 +151,11 @@ public interface ExchangeKeys {
      */
     public static final String READ_PREFERENCE_QPARAM_KEY = "readPreference";
 
+    /**
+     * the resume token of a change stream event to replay events from
+     */
+    public static final String RESUME_TOKEN_QPARAM_KEY = "resumeToken";
+
     // matadata
 
     /**
@@ -664,6 +669,11 @@ public interface ExchangeKeys {
          *
          */
         PJ, // Aliases for SHAL
+
+        /**
+         *
+         */
+        BSON, // binary BSON, documents as in STANDARD sent as application/bson
     }
 
     /**
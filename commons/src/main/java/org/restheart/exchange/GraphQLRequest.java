@@ -21,6 +21,7 @@ package org.restheart.exchange;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import io.undertow.server.HttpServerExchange;
 import org.restheart.utils.ChannelReader;
@@ -32,6 +33,7 @@ public class GraphQLRequest extends ServiceRequest<JsonElement> {
     private static final String QUERY_FIELD = "query";
     private static final String OPERATION_NAME_FIELD = "operationName";
     private static final String VARIABLES_FIELD = "variables";
+    private static final String EXTENSIONS_FIELD = "extensions";
 
     private final String appUri;
 
@@ -45,7 +47,9 @@ public class GraphQLRequest extends ServiceRequest<JsonElement> {
         var ret = new GraphQLRequest(exchange, appUri);
 
         try {
-            if (isContentTypeGraphQL(exchange)){
+            if (exchange.getRequestMethod().equalToString("GET")) {
+                ret.injectContentQueryParameters();
+            } else if (isContentTypeGraphQL(exchange)){
                 ret.injectContentGraphQL();
             } else if (isContentTypeJson(exchange)){
                 ret.injectContentJson();
@@ -70,6 +74,37 @@ public class GraphQLRequest extends ServiceRequest<JsonElement> {
         setContent(json);
     }
 
+    /**
+     * GET requests pass query, operationName, variables and extensions as query parameters,
+     * variables and extensions being JSON encoded
+     */
+    public void injectContentQueryParameters() {
+        var jsonObject = new JsonObject();
+        var qparams = wrapped.getQueryParameters();
+
+        try {
+            if (qparams.containsKey(QUERY_FIELD)) {
+                jsonObject.addProperty(QUERY_FIELD, qparams.get(QUERY_FIELD).getFirst());
+            }
+
+            if (qparams.containsKey(OPERATION_NAME_FIELD)) {
+                jsonObject.addProperty(OPERATION_NAME_FIELD, qparams.get(OPERATION_NAME_FIELD).getFirst());
+            }
+
+            if (qparams.containsKey(VARIABLES_FIELD)) {
+                jsonObject.add(VARIABLES_FIELD, JsonParser.parseString(qparams.get(VARIABLES_FIELD).getFirst()));
+            }
+
+            if (qparams.containsKey(EXTENSIONS_FIELD)) {
+                jsonObject.add(EXTENSIONS_FIELD, JsonParser.parseString(qparams.get(EXTENSIONS_FIELD).getFirst()));
+            }
+        } catch (JsonParseException jpe) {
+            setInError(true);
+        }
+
+        setContent(jsonObject);
+    }
+
     public void injectContentGraphQL() throws IOException {
         var body = ChannelReader.readString(wrapped);
         var jsonObject = new JsonObject();
@@ -79,7 +114,7 @@ public class GraphQLRequest extends ServiceRequest<JsonElement> {
     }
 
     public String getQuery(){
-        if (this.getContent().isJsonObject() && this.getContent().getAsJsonObject().has(QUERY_FIELD)){
+        if (this.getContent().isJsonObject() && this.getContent().getAsJsonObject().has(QUERY_FIELD) && !this.getContent().getAsJsonObject().get(QUERY_FIELD).isJsonNull()){
             return this.getContent().getAsJsonObject().get(QUERY_FIELD).getAsString();
         } else {
             return null;
@@ -102,6 +137,27 @@ public class GraphQLRequest extends ServiceRequest<JsonElement> {
         }
     }
 
+    public JsonObject getExtensions(){
+        if (hasExtensions()) {
+            return this.getContent().getAsJsonObject().get(EXTENSIONS_FIELD).getAsJsonObject();
+        } else {
+            return null;
+        }
+    }
+
+    public boolean hasExtensions(){
+        return this.getContent().isJsonObject()
+            && this.getContent().getAsJsonObject().has(EXTENSIONS_FIELD)
+            && this.getContent().getAsJsonObject().get(EXTENSIONS_FIELD).isJsonObject();
+    }
+
+    /**
+     * @return true if the request has the automatic persisted query extension
+     */
+    public boolean hasPersistedQuery(){
+        return hasExtensions() && getExtensions().has("persistedQuery");
+    }
+
     public String getGraphQLAppURI() {
        return this.appUri;
     }
@@ -22,6 +22,7 @@ package org.restheart.exchange;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
 import io.undertow.util.PathTemplateMatch;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
@@ -72,6 +73,7 @@ public class MongoRequest extends BsonRequest {
     private BsonDocument collectionProps;
 
     private Path filePath;
+    private InputStream fileInputStream;
 
     private int page = 1;
     private int pagesize = 100;
@@ -1085,6 +1087,29 @@ public class MongoRequest extends BsonRequest {
         this.filePath = filePath;
     }
 
+    /**
+     * @return the stream of the uploaded file content, read on demand from the
+     * request body, or null if the request does not upload a file
+     */
+    public InputStream getFileInputStream() {
+        return fileInputStream;
+    }
+
+    /**
+     * @param fileInputStream the stream of the uploaded file content
+     */
+    public void setFileInputStream(InputStream fileInputStream) {
+        this.fileInputStream = fileInputStream;
+    }
+
+    /**
+     * @return true if the request uploads a file, either as a temporary file
+     * or as a stream
+     */
+    public boolean hasFileData() {
+        return this.fileInputStream != null || this.filePath != null;
+    }
+
     /**
      * @return keys
      */
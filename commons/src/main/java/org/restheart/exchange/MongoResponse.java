@@ -22,20 +22,27 @@ package org.restheart.exchange;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.ClientSession;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.model.ReplaceOptions;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
 import org.bson.conversions.Bson;
+import org.bson.json.JsonMode;
 import org.bson.json.JsonParseException;
 import org.restheart.utils.HttpStatus;
 import org.restheart.mongodb.db.OperationResult;
-import org.restheart.utils.BsonUtils;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import org.bson.BsonArray;
@@ -46,6 +53,8 @@ import org.bson.BsonValue;
 
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static org.restheart.utils.BsonUtils.toJson;
+import static org.restheart.utils.BsonUtils.writeBson;
 
 /**
  *
@@ -67,6 +76,8 @@ public class MongoResponse extends BsonResponse {
 
     private long count = -1;
 
+    private MongoCursor<BsonDocument> contentCursor = null;
+
     protected MongoResponse(HttpServerExchange exchange) {
         super(exchange);
     }
@@ -79,28 +90,165 @@ public class MongoResponse extends BsonResponse {
         return of(exchange, MongoResponse.class);
     }
 
+    /**
+     * Sets the content to the array of the documents yielded by the cursor,
+     * without reading them: the documents are written to the client as the
+     * cursor yields them, unless the content is read before, e.g. by a
+     * response interceptor, in which case they are collected in a BsonArray.
+     *
+     * The cursor is closed when consumed or when the exchange completes.
+     *
+     * @param cursor the opened cursor
+     */
+    public void setContentCursor(MongoCursor<BsonDocument> cursor) {
+        closeContentCursor();
+        this.content = null;
+        this.contentCursor = cursor;
+
+        if (cursor != null) {
+            wrapped.addExchangeCompleteListener((exchange, nextListener) -> {
+                closeContentCursor();
+                nextListener.proceed();
+            });
+        }
+    }
+
+    /**
+     * @return true if the content is set via setContentCursor() and has not been read yet
+     */
+    public boolean isContentStreamed() {
+        return contentCursor != null;
+    }
+
+    /**
+     * if the content is set via setContentCursor(), collects the documents
+     * yielded by the cursor in a BsonArray
+     */
     @Override
-    public String readContent() {
+    public BsonValue getContent() {
+        if (contentCursor != null) {
+            var cursor = contentCursor;
+            var docs = new BsonArray();
+            this.contentCursor = null;
+
+            try (cursor) {
+                cursor.forEachRemaining(docs::add);
+            }
+
+            this.content = docs;
+        }
+
+        return super.getContent();
+    }
+
+    @Override
+    public void setContent(BsonValue content) {
+        closeContentCursor();
+        super.setContent(content);
+    }
+
+    private void closeContentCursor() {
+        if (contentCursor != null) {
+            contentCursor.close();
+            contentCursor = null;
+        }
+    }
+
+    @Override
+    protected BsonValue contentToSend() {
         var request = Request.of(wrapped);
-        BsonValue tosend;
+        var content = getContent();
 
         if (!request.isGet() && (content == null || content.isDocument())) {
-            tosend = addWarnings(content == null ? null : content.asDocument());
+            return addWarnings(content == null ? null : content.asDocument());
         } else {
-            tosend = content;
+            return content;
         }
+    }
 
-        if (tosend != null) {
-            if (request instanceof MongoRequest) {
-                return BsonUtils.toJson(tosend, ((MongoRequest) request).getJsonMode());
-            } else {
-                return BsonUtils.toJson(tosend);
+    /**
+     * Writes the content to the output stream; the documents of a content set
+     * via setContentCursor() are written as the cursor yields them.
+     *
+     * Arrays are sent as newline delimited JSON if the client accepts
+     * application/x-ndjson
+     */
+    @Override
+    public boolean writeContent(OutputStream os) throws IOException {
+        var ndjson = !isInError() && Request.of(wrapped).isGet() && Exchange.acceptsNdjson(wrapped);
+
+        if (contentCursor != null) {
+            var cursor = contentCursor;
+            this.contentCursor = null;
+
+            try (cursor) {
+                writeDocuments(cursor, ndjson, os);
             }
+
+            return true;
+        } else if (ndjson && !isBinary() && content != null && content.isArray()) {
+            writeDocuments(content.asArray().iterator(), ndjson, os);
+            return true;
         } else {
-            return null;
+            return super.writeContent(os);
         }
     }
 
+    private void writeDocuments(Iterator<? extends BsonValue> docs, boolean ndjson, OutputStream os) throws IOException {
+        if (isBinary()) {
+            setContentType(Exchange.BSON_MEDIA_TYPE);
+
+            while (docs.hasNext()) {
+                writeBson(docs.next(), os);
+            }
+
+            return;
+        }
+
+        Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+
+        if (ndjson) {
+            setContentType(Exchange.NDJSON_MEDIA_TYPE);
+
+            while (docs.hasNext()) {
+                toJson(docs.next(), jsonMode(), writer);
+                writer.write('\n');
+            }
+        } else {
+            writer.write('[');
+
+            var first = true;
+            while (docs.hasNext()) {
+                if (!first) {
+                    writer.write(',');
+                }
+
+                toJson(docs.next(), jsonMode(), writer);
+                first = false;
+            }
+
+            writer.write(']');
+        }
+
+        writer.flush();
+    }
+
+    @Override
+    protected JsonMode jsonMode() {
+        var request = Request.of(wrapped);
+
+        return request instanceof MongoRequest mrequest ? mrequest.getJsonMode() : null;
+    }
+
+    @Override
+    protected boolean isBinary() {
+        var request = Request.of(wrapped);
+
+        return !isInError()
+            && request instanceof MongoRequest mrequest
+            && mrequest.getRepresentationFormat() == ExchangeKeys.REPRESENTATION_FORMAT.BSON;
+    }
+
     private BsonDocument addWarnings(BsonDocument content) {
         if (content != null) {
             if (warnings != null && !warnings.isEmpty() && content.isDocument()) {
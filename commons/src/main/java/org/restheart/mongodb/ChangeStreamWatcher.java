@@ -0,0 +1,211 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.restheart.mongodb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+
+import org.bson.BsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a change stream on a daemon thread and passes each event to a
+ * consumer; used to invalidate local caches when the cached data is modified
+ * by any node of the cluster.
+ *
+ * The stream is reopened, with an exponential backoff, after errors and when
+ * the server closes it, resuming after the last received event; after an
+ * invalidate event, i.e. when the watched collection is dropped or renamed,
+ * the new stream starts after it. Since events might have been missed, onGap
+ * is invoked before reopening the stream. Change streams require a replica
+ * set: on a standalone MongoDB the watcher logs a warning and stops.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChangeStreamWatcher implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeStreamWatcher.class);
+
+    private static final long MIN_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    // The $changeStream stage is only supported on replica sets
+    private static final int NOT_A_REPLICA_SET_ERROR_CODE = 40573;
+    // ChangeStreamFatalError and ChangeStreamHistoryLost
+    private static final int CHANGE_STREAM_FATAL_ERROR_CODE = 280;
+    private static final int CHANGE_STREAM_HISTORY_LOST_ERROR_CODE = 286;
+
+    private final String name;
+    private final Supplier<ChangeStreamIterable<BsonDocument>> stream;
+    private final Consumer<ChangeStreamDocument<BsonDocument>> onChange;
+    private final Runnable onGap;
+    private final Thread thread;
+
+    private volatile boolean closed = false;
+
+    private ChangeStreamWatcher(String name, Supplier<ChangeStreamIterable<BsonDocument>> stream, Consumer<ChangeStreamDocument<BsonDocument>> onChange, Runnable onGap) {
+        this.name = name;
+        this.stream = stream;
+        this.onChange = onChange;
+        this.onGap = onGap;
+        this.thread = new Thread(this::run, "change-stream-watcher-" + name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     *
+     * @param name the name of the watcher, used for its thread and in log messages
+     * @param stream supplies the change stream to watch
+     * @param onChange invoked for each change event
+     * @param onGap invoked when events might have been missed
+     * @return the started watcher
+     */
+    public static ChangeStreamWatcher start(String name, Supplier<ChangeStreamIterable<BsonDocument>> stream, Consumer<ChangeStreamDocument<BsonDocument>> onChange, Runnable onGap) {
+        var watcher = new ChangeStreamWatcher(name, stream, onChange, onGap);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    private void run() {
+        BsonDocument resumeToken = null;
+        // true to start the stream after an invalidate event
+        var startAfter = false;
+        var backoff = MIN_BACKOFF_MS;
+
+        while (!closed) {
+            String reopenReason = null;
+
+            try (var cursor = cursor(resumeToken, startAfter)) {
+                LOGGER.debug("Change stream watcher {} started", name);
+
+                while (!closed) {
+                    var event = cursor.tryNext();
+
+                    if (event != null) {
+                        resumeToken = event.getResumeToken();
+
+                        if (event.getOperationType() == OperationType.INVALIDATE) {
+                            // the watched collection has been dropped or renamed and the server closed the stream
+                            startAfter = true;
+                            reopenReason = "the stream has been invalidated";
+                            break;
+                        }
+
+                        startAfter = false;
+                        backoff = MIN_BACKOFF_MS;
+
+                        try {
+                            onChange.accept(event);
+                        } catch (Throwable t) {
+                            LOGGER.error("Error handling change event in watcher {}", name, t);
+                            onGap.run();
+                        }
+                    } else if (cursor.getServerCursor() == null) {
+                        // tryNext() keeps returning null once the server has closed the cursor
+                        reopenReason = "the cursor has been closed by the server";
+                        break;
+                    }
+                }
+            } catch (MongoCommandException mce) {
+                if (mce.getErrorCode() == NOT_A_REPLICA_SET_ERROR_CODE) {
+                    LOGGER.warn("Change stream watcher {} stopped: change streams require MongoDB running as a replica set", name);
+                    return;
+                } else if (startAfter || mce.getErrorCode() == CHANGE_STREAM_FATAL_ERROR_CODE || mce.getErrorCode() == CHANGE_STREAM_HISTORY_LOST_ERROR_CODE) {
+                    // cannot resume, open a new stream
+                    resumeToken = null;
+                    startAfter = false;
+                }
+
+                reopenReason = mce.getMessage();
+            } catch (MongoException me) {
+                reopenReason = me.getMessage();
+            } catch (RuntimeException re) {
+                if (!closed) {
+                    LOGGER.error("Unexpected error in change stream watcher {}", name, re);
+                }
+
+                reopenReason = re.getMessage();
+            }
+
+            if (reopenReason != null) {
+                backoff = recover(reopenReason, backoff);
+            }
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<BsonDocument>> cursor(BsonDocument resumeToken, boolean startAfter) {
+        var iterable = stream.get().maxAwaitTime(1, TimeUnit.SECONDS);
+
+        if (resumeToken != null && startAfter) {
+            iterable = iterable.startAfter(resumeToken);
+        } else if (resumeToken != null) {
+            iterable = iterable.resumeAfter(resumeToken);
+        }
+
+        return iterable.cursor();
+    }
+
+    /**
+     * Invokes onGap and waits before reopening the stream
+     *
+     * @param reason
+     * @param backoff the time to wait in milliseconds
+     * @return the time to wait before the next attempt, if this one fails too
+     */
+    private long recover(String reason, long backoff) {
+        if (closed) {
+            return backoff;
+        }
+
+        LOGGER.warn("Change stream watcher {} error, reopening it in {} ms: {}", name, backoff, reason);
+
+        onGap.run();
+
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+
+        return Math.min(backoff * 2, MAX_BACKOFF_MS);
+    }
+
+    /**
+     * @return true if the watcher thread is running
+     */
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+}
@@ -19,16 +19,43 @@
  */
 package org.restheart.polyglot;
 
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * The queues shared with the Node workers that execute the node plugins.
+ *
+ * Each Node worker consumes its own queue; invocations are dispatched to the
+ * worker with the fewest in-flight invocations. The number of in-flight
+ * invocations of each worker is exposed as the gauge
+ * {@code node.worker-<n>.queue-depth} in the POLYGLOT metric registry.
+ */
 public class NodeQueue {
-    // a concurrent queue shared with Node
-    private final Queue<Object> queue;
-    private boolean runningOnNode = false;
+    /**
+     * the name of the metric registry of the workers queue depth
+     */
+    public static final String METRIC_REGISTRY_NAME = "POLYGLOT";
+
+    // the concurrent queues shared with Node, one per worker
+    private volatile List<BlockingQueue<Object>> queues;
+    private volatile AtomicInteger[] inFlight;
+    private volatile boolean runningOnNode = false;
+
+    private final AtomicInteger next = new AtomicInteger(0);
 
-    private NodeQueue() {
-      this.queue = new LinkedBlockingDeque<>();
+    NodeQueue() {
+        this.queues = List.of(new LinkedBlockingDeque<>());
+        this.inFlight = new AtomicInteger[] { new AtomicInteger(0) };
     }
 
     private static NodeQueue instance;
@@ -41,8 +68,26 @@ public class NodeQueue {
         return instance;
     }
 
+    /**
+     * @return the queue of the first worker
+     */
     public Queue<Object> queue() {
-        return queue;
+        return queue(0);
+    }
+
+    /**
+     * @param worker the worker index
+     * @return the queue of the worker
+     */
+    public BlockingQueue<Object> queue(int worker) {
+        return queues.get(worker);
+    }
+
+    /**
+     * @return the number of Node workers
+     */
+    public int workers() {
+        return queues.size();
     }
 
     public boolean isRunningOnNode() {
@@ -50,6 +95,95 @@ public class NodeQueue {
     }
 
     public void setAsRunningOnNode() {
+        setAsRunningOnNode(1);
+    }
+
+    /**
+     * @param workers the number of Node workers, each consuming its own queue
+     */
+    public synchronized void setAsRunningOnNode(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("the number of node workers must be > 0, got " + workers);
+        }
+
+        var _inFlight = IntStream.range(0, workers).mapToObj(i -> new AtomicInteger(0)).toArray(AtomicInteger[]::new);
+
+        var registry = SharedMetricRegistries.getOrCreate(METRIC_REGISTRY_NAME);
+        registry.removeMatching((name, metric) -> name.startsWith("node.worker-"));
+
+        for (var i = 0; i < workers; i++) {
+            final var worker = _inFlight[i];
+            registry.register(MetricRegistry.name("node", "worker-" + i, "queue-depth"), (Gauge<Integer>) worker::get);
+        }
+
+        this.inFlight = _inFlight;
+        this.queues = IntStream.range(0, workers).mapToObj(i -> (BlockingQueue<Object>) new LinkedBlockingDeque<Object>()).toList();
         this.runningOnNode = true;
     }
-  }
+
+    /**
+     * Dispatches the message to the worker with the fewest in-flight
+     * invocations; done(worker) must be called when the invocation completes
+     *
+     * @param message
+     * @return the index of the worker
+     */
+    public int dispatch(Object message) {
+        var _queues = this.queues;
+        var _inFlight = this.inFlight;
+        var size = _queues.size();
+
+        // start from a rotating index to spread invocations among idle workers
+        var start = Math.floorMod(next.getAndIncrement(), size);
+        var worker = start;
+
+        for (var i = 1; i < size; i++) {
+            var candidate = (start + i) % size;
+            if (_inFlight[candidate].get() < _inFlight[worker].get()) {
+                worker = candidate;
+            }
+        }
+
+        _inFlight[worker].incrementAndGet();
+        _queues.get(worker).offer(message);
+
+        return worker;
+    }
+
+    /**
+     * @param worker the index of the worker that completed an invocation
+     */
+    public void done(int worker) {
+        var _inFlight = this.inFlight;
+
+        if (worker < _inFlight.length) {
+            _inFlight[worker].decrementAndGet();
+        }
+    }
+
+    /**
+     * Dispatches the message and waits for its result
+     *
+     * @param message the message
+     * @param out the queue where the worker puts the result
+     * @param timeout the timeout in milliseconds
+     * @return the result
+     * @throws InterruptedException
+     * @throws TimeoutException if the result is not available within the timeout
+     */
+    public Object invoke(Object message, BlockingQueue<Object> out, long timeout) throws InterruptedException, TimeoutException {
+        var worker = dispatch(message);
+
+        try {
+            var result = out.poll(timeout, TimeUnit.MILLISECONDS);
+
+            if (result == null) {
+                throw new TimeoutException("node invocation timed out after " + timeout + " ms");
+            }
+
+            return result;
+        } finally {
+            done(worker);
+        }
+    }
+}
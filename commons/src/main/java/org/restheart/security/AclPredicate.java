@@ -0,0 +1,237 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.restheart.cache.LoadingCache;
+import org.restheart.configuration.ConfigurationException;
+import org.restheart.exchange.Request;
+
+import io.undertow.predicate.Predicate;
+import io.undertow.predicate.PredicateParser;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * A permission predicate compiled once when the ACL is loaded.
+ *
+ * The predicate string is split in literal segments and '@user.x' variables;
+ * at resolve time the variables are bound to the properties of the
+ * authenticated account and the resulting predicate is parsed only the first
+ * time a given binding is seen. Predicates without '@user.' variables are
+ * parsed just once.
+ *
+ * The binding follows AclVarsInterpolator.interpolatePredicate(): primitive
+ * values are quoted, arrays become {"a","b"}, variables without a primitive
+ * or array value are replaced by a random token that never matches.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class AclPredicate {
+    private static final String PREFIX = "@user.";
+
+    /**
+     * max number of bindings whose parsed predicate is cached; the predicates
+     * that reference '@user.' variables are parsed once per distinct binding
+     */
+    private static final int MAX_BINDINGS = 1_000;
+
+    private final String predicate;
+    private final Predicate unbound;
+    private final List<Object> segments;
+    private final String unboundToken;
+    private final LoadingCache<String, Predicate> bindings;
+
+    private AclPredicate(String predicate, ClassLoader classLoader) {
+        this.predicate = predicate;
+        this.unbound = PredicateParser.parse(predicate, classLoader);
+        this.segments = compile(predicate);
+
+        if (segments.size() == 1 && segments.get(0) instanceof String) {
+            // no variables
+            this.unboundToken = null;
+            this.bindings = null;
+        } else {
+            this.unboundToken = new BigInteger(256, new SecureRandom()).toString(Character.MAX_RADIX);
+            this.bindings = CacheFactory.createLocalLoadingCache(MAX_BINDINGS, Cache.EXPIRE_POLICY.NEVER, -1, bound -> PredicateParser.parse(bound, classLoader));
+        }
+    }
+
+    /**
+     *
+     * @param predicate   the permission predicate, can contain '@user.x' variables
+     * @param classLoader the classloader to resolve the predicates, see java.util.ServiceLoader
+     * @return the compiled predicate
+     * @throws ConfigurationException if the predicate is invalid
+     */
+    public static AclPredicate compile(String predicate, ClassLoader classLoader) throws ConfigurationException {
+        try {
+            return new AclPredicate(predicate, classLoader);
+        } catch(Throwable t) {
+            throw new ConfigurationException("Wrong permission: invalid predicate " + predicate, t);
+        }
+    }
+
+    /**
+     *
+     * @param request
+     * @return true if the predicate, with '@user.' variables bound to the properties
+     * of the authenticated account, resolves for the request
+     */
+    public boolean resolve(Request<?> request) {
+        return resolve(request.getExchange(), AclVarsInterpolator.getAccountDocument(request));
+    }
+
+    /**
+     *
+     * @param exchange
+     * @param variables the values of the '@user.' variables, usually the account document
+     * @return true if the predicate, with '@user.' variables bound to variables, resolves for the exchange
+     */
+    public boolean resolve(HttpServerExchange exchange, BsonDocument variables) {
+        return bind(variables).resolve(exchange);
+    }
+
+    /**
+     *
+     * @param variables the values of the '@user.' variables, usually the account document
+     * @return the Undertow predicate with the '@user.' variables bound to variables
+     */
+    public Predicate bind(BsonDocument variables) {
+        if (bindings == null || variables == null || variables.isEmpty()) {
+            return unbound;
+        }
+
+        try {
+            return bindings.getLoading(interpolate(variables)).get();
+        } catch(Throwable t) {
+            throw new ConfigurationException("Wrong permission: invalid predicate " + predicate, t);
+        }
+    }
+
+    /**
+     *
+     * @return the raw predicate
+     */
+    public String getPredicate() {
+        return predicate;
+    }
+
+    String interpolate(BsonDocument variables) {
+        var sb = new StringBuilder(predicate.length() + 64);
+
+        for (var segment: segments) {
+            if (segment instanceof String literal) {
+                sb.append(literal);
+            } else {
+                var value = lookup(variables, (String[]) segment);
+
+                if (value == null) {
+                    sb.append(unboundToken);
+                } else if (value.isArray()) {
+                    sb.append(AclVarsInterpolator.jsonArrayValue(value.asArray()));
+                } else {
+                    sb.append(AclVarsInterpolator.quote(AclVarsInterpolator.jsonPrimitiveValue(value)));
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return the value at path, null if missing or neither a primitive nor an array
+     */
+    private static BsonValue lookup(BsonDocument variables, String[] path) {
+        BsonValue current = variables;
+
+        for (var key: path) {
+            if (current instanceof BsonDocument doc && doc.containsKey(key)) {
+                current = doc.get(key);
+            } else {
+                return null;
+            }
+        }
+
+        return current instanceof BsonArray || AclVarsInterpolator.isJsonPrimitive(current) ? current : null;
+    }
+
+    /**
+     * splits the predicate in literal segments (String) and variables (String[]
+     * with the path of the property), ignoring the variables inside quotes. A
+     * variable extends until ',' or ')', as in AclVarsInterpolator.removeUnboundVariables()
+     */
+    static List<Object> compile(String predicate) {
+        var segments = new ArrayList<Object>();
+        var literal = new StringBuilder();
+        var length = predicate.length();
+        var i = 0;
+
+        while (i < length) {
+            var c = predicate.charAt(i);
+
+            if (c == '\\' && i + 1 < length) {
+                literal.append(c).append(predicate.charAt(i + 1));
+                i += 2;
+            } else if (c == '"' || c == '\'') {
+                // quoted string, copied verbatim
+                var end = i + 1;
+                while (end < length && predicate.charAt(end) != c) {
+                    end += predicate.charAt(end) == '\\' ? 2 : 1;
+                }
+                end = Math.min(end + 1, length);
+                literal.append(predicate, i, end);
+                i = end;
+            } else if (predicate.startsWith(PREFIX, i)) {
+                var end = i + PREFIX.length();
+                while (end < length && predicate.charAt(end) != ',' && predicate.charAt(end) != ')') {
+                    end++;
+                }
+
+                if (literal.length() > 0) {
+                    segments.add(literal.toString());
+                    literal.setLength(0);
+                }
+
+                var path = predicate.substring(i + PREFIX.length(), end).strip();
+                segments.add(path.isEmpty() ? new String[0] : path.split("\\."));
+                i = end;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+
+        if (literal.length() > 0 || segments.isEmpty()) {
+            segments.add(literal.toString());
+        }
+
+        return segments.stream().collect(Collectors.toUnmodifiableList());
+    }
+}
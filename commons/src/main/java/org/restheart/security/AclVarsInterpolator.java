@@ -50,6 +50,7 @@ import org.slf4j.LoggerFactory;
 import io.undertow.attribute.ExchangeAttributes;
 import io.undertow.predicate.Predicate;
 import io.undertow.predicate.PredicateParser;
+import io.undertow.util.AttachmentKey;
 
 /**
  * Helper class that allows to interpolate variables (@user, @request, @now) in
@@ -276,7 +277,33 @@ public class AclVarsInterpolator {
         }
     }
 
-    private static BsonDocument getAccountDocument(Request<?> request) {
+    private static final AttachmentKey<BsonDocument> ACCOUNT_DOCUMENT_KEY = AttachmentKey.create(BsonDocument.class);
+
+    /**
+     * the account document is computed once per request and attached to the
+     * exchange, since all the permissions of the account's roles use it
+     *
+     * @param request
+     * @return the document of the authenticated account, null if not available
+     */
+    static BsonDocument getAccountDocument(Request<?> request) {
+        var exchange = request.getExchange();
+        var cached = exchange.getAttachment(ACCOUNT_DOCUMENT_KEY);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        var accountDocument = accountDocument(request);
+
+        if (accountDocument != null) {
+            exchange.putAttachment(ACCOUNT_DOCUMENT_KEY, accountDocument);
+        }
+
+        return accountDocument;
+    }
+
+    private static BsonDocument accountDocument(Request<?> request) {
         if (request.getAuthenticatedAccount() instanceof MongoRealmAccount maccount) {
             return maccount.getAccountDocument();
         } else if (request.getAuthenticatedAccount() instanceof FileRealmAccount faccount) {
@@ -330,7 +357,7 @@ public class AclVarsInterpolator {
         return ret[0];
     }
 
-    private static boolean isJsonPrimitive(BsonValue value) {
+    static boolean isJsonPrimitive(BsonValue value) {
         return value.isNull() || value.isBoolean() || value.isNumber() || value.isString() || value.isObjectId()
                 || value.isTimestamp() || value.isDateTime();
     }
@@ -339,7 +366,7 @@ public class AclVarsInterpolator {
         return value.isArray();
     }
 
-    private static String jsonPrimitiveValue(BsonValue value) {
+    static String jsonPrimitiveValue(BsonValue value) {
         switch (value.getBsonType()) {
             case NULL:
                 return "null";
@@ -364,7 +391,7 @@ public class AclVarsInterpolator {
         }
     }
 
-    private static String jsonArrayValue(BsonArray array) {
+    static String jsonArrayValue(BsonArray array) {
         var sb = new StringBuilder();
         sb.append("{");
         sb.append(array.stream().filter(e -> isJsonPrimitive(e)).map(e -> quote(jsonPrimitiveValue(e))).collect(Collectors.joining(",")));
@@ -373,7 +400,7 @@ public class AclVarsInterpolator {
         return sb.toString();
     }
 
-    private static String quote(String s) {
+    static String quote(String s) {
         return "\"".concat(s).concat("\"");
     }
 
@@ -22,11 +22,20 @@ package org.restheart.utils;
 
 import com.google.common.collect.Sets;
 import com.mongodb.MongoClientSettings;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -36,7 +45,10 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.apache.commons.jxpath.JXPathContext;
+import org.bson.BSONException;
 import org.bson.BsonArray;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
 import org.bson.BsonBoolean;
 import org.bson.BsonDateTime;
 import org.bson.BsonDecimal128;
@@ -51,19 +63,27 @@ import org.bson.BsonMaxKey;
 import org.bson.BsonMinKey;
 import org.bson.BsonNull;
 import org.bson.BsonObjectId;
+import org.bson.BsonSerializationException;
 import org.bson.BsonString;
+import org.bson.BsonType;
 import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.codecs.BsonArrayCodec;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.BsonValueCodec;
 import org.bson.codecs.BsonValueCodecProvider;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
 import org.bson.json.Converter;
 import org.bson.json.JsonMode;
 import org.bson.json.JsonParseException;
 import org.bson.json.JsonReader;
+import org.bson.json.JsonWriter;
 import org.bson.json.JsonWriterSettings;
 import org.bson.json.StrictJsonWriter;
 import org.bson.types.Decimal128;
@@ -80,6 +100,36 @@ public class BsonUtils {
     static final Logger LOGGER = LoggerFactory.getLogger(BsonUtils.class);
 
     private static final BsonArrayCodec BSON_ARRAY_CODEC = new BsonArrayCodec(CodecRegistries.fromProviders(new BsonValueCodecProvider()));
+    private static final BsonDocumentCodec BSON_DOCUMENT_CODEC = new BsonDocumentCodec();
+    private static final BsonValueCodec BSON_VALUE_CODEC = new BsonValueCodec();
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    /**
+     * the JsonWriterSettings used when no JsonMode is specified,
+     * with dates rendered as {"$date": <millis> }
+     */
+    private static final JsonWriterSettings DEFAULT_JSON_WRITER_SETTINGS = JsonWriterSettings.builder()
+        .indent(false)
+        .dateTimeConverter(new Converter<Long>() {
+            @Override
+            public void convert(Long t, StrictJsonWriter writer) {
+                writer.writeRaw("{\"$date\": " + t + " }");
+            }
+        }).build();
+
+    private static final Map<JsonMode, JsonWriterSettings> JSON_WRITER_SETTINGS = new EnumMap<>(JsonMode.class);
+
+    static {
+        for (var mode: JsonMode.values()) {
+            JSON_WRITER_SETTINGS.put(mode, JsonWriterSettings.builder().outputMode(mode).indent(false).build());
+        }
+    }
+
+    /**
+     * the length of the minified prefix {"x": used to wrap values that are not documents
+     */
+    private static final int WRAPPING_PREFIX_LENGTH = "{\"x\":".length();
 
     private static final String ESCAPED_DOLLAR = "_$";
     private static final String ESCAPED_DOT = "::";
@@ -629,7 +679,7 @@ public class BsonUtils {
             }
             case '[' -> {
                 try (var jr = new JsonReader(json)) {
-                    yield BSON_ARRAY_CODEC.decode(jr, DecoderContext.builder().build());
+                    yield BSON_ARRAY_CODEC.decode(jr, DECODER_CONTEXT);
                 }
             }
             default -> getBsonValue(json);
@@ -641,16 +691,137 @@ public class BsonUtils {
      * if the string is empty or contains only whitespaces
      */
     static char firstNonWhitespace(String s){
-        if (s == null || s.isBlank()) {
+        if (s == null) {
             return Character.MIN_VALUE;
         }
 
-        var f = s.chars()
-            .filter(c -> !Character.isWhitespace(c))
-            .mapToObj(c -> (char) c)
-            .findFirst();
+        for (int i = 0; i < s.length(); i++) {
+            var c = s.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+
+        return Character.MIN_VALUE;
+    }
+
+    /**
+     * parses the json read from the reader without buffering it into a String;
+     * the characters are decoded into the BsonValue as they are read
+     *
+     * @param json the reader of the json, it is not closed by this method
+     * @return the BsonValue or null if the reader is null or contains only whitespaces
+     * @throws JsonParseException
+     */
+    public static BsonValue parse(Reader json) throws JsonParseException {
+        if (json == null) {
+            return null;
+        }
+
+        try (var jr = new JsonReader(json)) {
+            var type = jr.readBsonType();
+
+            if (type == BsonType.END_OF_DOCUMENT) {
+                return null;
+            }
+
+            return BSON_VALUE_CODEC.decode(jr, DECODER_CONTEXT);
+        } catch (BsonInvalidOperationException | BsonSerializationException ex) {
+            throw new JsonParseException(ex);
+        }
+    }
+
+    /**
+     * writes the bson value as binary BSON. A document is written as is, the
+     * elements of an array as a sequence of concatenated documents (the format
+     * read by parseBson()); values that are not documents are wrapped as
+     * {"value": <value>}. RawBsonDocuments are written without re-encoding.
+     *
+     * @param bson the value to write
+     * @param os the output stream
+     * @throws IOException
+     */
+    public static void writeBson(BsonValue bson, OutputStream os) throws IOException {
+        if (bson == null) {
+            return;
+        }
+
+        var buffer = new BasicOutputBuffer();
+
+        if (bson.isArray()) {
+            for (var element: bson.asArray()) {
+                writeBsonDocument(element, buffer, os);
+            }
+        } else {
+            writeBsonDocument(bson, buffer, os);
+        }
+    }
+
+    private static void writeBsonDocument(BsonValue bson, BasicOutputBuffer buffer, OutputStream os) throws IOException {
+        if (bson instanceof RawBsonDocument raw) {
+            var bytes = raw.getByteBuffer();
+            var nio = bytes.asNIO();
+
+            if (nio.hasArray()) {
+                os.write(nio.array(), nio.arrayOffset() + nio.position(), nio.remaining());
+            } else {
+                var copy = new byte[nio.remaining()];
+                nio.get(copy);
+                os.write(copy);
+            }
+
+            return;
+        }
+
+        var doc = bson.isDocument() ? bson.asDocument() : new BsonDocument("value", bson);
 
-        return f.isPresent() ? f.get() : Character.MIN_VALUE;
+        buffer.truncateToPosition(0);
+
+        try (var writer = new BsonBinaryWriter(buffer)) {
+            BSON_DOCUMENT_CODEC.encode(writer, doc, ENCODER_CONTEXT);
+        }
+
+        buffer.pipe(os);
+    }
+
+    /**
+     * decodes binary BSON; the buffer can contain one or more concatenated
+     * documents, as in application/bson request bodies or mongodump files
+     *
+     * @param bson the buffer, read from its position to its limit
+     * @return null if the buffer is empty, the document if the buffer contains
+     * a single document, otherwise the array of the documents
+     * @throws BsonSerializationException if the buffer does not contain valid BSON
+     */
+    public static BsonValue parseBson(ByteBuffer bson) throws BsonSerializationException {
+        if (bson == null || !bson.hasRemaining()) {
+            return null;
+        }
+
+        var buffer = bson.slice().order(ByteOrder.LITTLE_ENDIAN);
+        var docs = new ArrayList<BsonValue>();
+
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < 5) {
+                throw new BsonSerializationException("truncated BSON document at byte " + buffer.position());
+            }
+
+            var size = buffer.getInt(buffer.position());
+
+            if (size < 5 || size > buffer.remaining()) {
+                throw new BsonSerializationException("invalid BSON document size " + size + " at byte " + buffer.position());
+            }
+
+            var doc = buffer.slice().limit(size);
+
+            try (var reader = new BsonBinaryReader(doc)) {
+                docs.add(BSON_DOCUMENT_CODEC.decode(reader, DECODER_CONTEXT));
+            }
+
+            buffer.position(buffer.position() + size);
+        }
+
+        return docs.size() == 1 ? docs.get(0) : new BsonArray(docs);
     }
 
     private static BsonValue getBsonValue(String json) {
@@ -679,46 +850,56 @@ public class BsonUtils {
             return null;
         }
 
-        var settings = mode != null
-            ? JsonWriterSettings.builder()
-                .outputMode(mode)
-                .indent(false)
-                .build()
-            : JsonWriterSettings.builder()
-                .indent(false)
-                .dateTimeConverter(new Converter<Long>() {
-                    @Override
-                    public void convert(Long t, StrictJsonWriter writer) {
-                        writer.writeRaw("{\"$date\": " + t + " }");
-                    }
-                }).build();
+        var sw = new StringWriter();
 
-        if (bson.isDocument()) {
-            return minify(bson.asDocument().toJson(settings));
-        } else if (bson.isArray()) {
-            var _array = bson.asArray();
-            var wrappedArray = new BsonDocument("wrapped", _array);
-            var json = wrappedArray.toJson(settings);
+        try {
+            toJson(bson, mode, sw);
+        } catch(IOException ioe) {
+            // never happens with StringWriter
+            throw new UncheckedIOException(ioe);
+        }
 
-            json = json.substring(0, json.length() - 1); // removes closing }
-            json = json.replaceFirst("\\{", "");
-            json = json.replaceFirst("\"wrapped\"", "");
-            json = json.replaceFirst(":", "");
+        return sw.toString();
+    }
 
-            return minify(json);
-        } else {
-            var doc = new BsonDocument("x", bson);
+    /**
+     * Writes the minified json representation of the bson value to the writer,
+     * streaming it without rendering the whole json to a String. The writer is
+     * not flushed.
+     *
+     * @param bson the bson value
+     * @param mode the JsonMode, null to render dates as {"$date": <millis>}
+     * @param out the writer
+     * @throws IOException
+     */
+    public static void toJson(BsonValue bson, JsonMode mode, Writer out) throws IOException {
+        if (bson == null) {
+            return;
+        }
 
-            String ret = doc.toJson(settings);
+        var settings = mode != null ? JSON_WRITER_SETTINGS.get(mode) : DEFAULT_JSON_WRITER_SETTINGS;
 
-            ret = ret.replaceFirst("\\{", "");
-            ret = ret.replaceFirst("\"x\"", "");
-            ret = ret.replaceFirst(":", "");
-            int index = ret.lastIndexOf('}');
-            ret = ret.substring(0, index);
+        // JsonWriter can only write documents at top level
+        // other values are wrapped as {"x": value} and unwrapped by MinifyingWriter
+        var mw = bson.isDocument()
+            ? new MinifyingWriter(out)
+            : new MinifyingWriter(out, WRAPPING_PREFIX_LENGTH, true);
 
-            return minify(ret);
+        var doc = bson.isDocument() ? bson.asDocument() : new BsonDocument("x", bson);
+
+        try {
+            BSON_DOCUMENT_CODEC.encode(new JsonWriter(mw, settings), doc, ENCODER_CONTEXT);
+        } catch(BSONException be) {
+            // JsonWriter wraps IOExceptions
+            if (be.getCause() instanceof IOException ioe) {
+                throw ioe;
+            } else {
+                throw be;
+            }
         }
+
+        // the caller flushes out, e.g. once after writing a sequence of values
+        mw.flushBuffer();
     }
 
     /**
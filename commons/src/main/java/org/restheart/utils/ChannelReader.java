@@ -22,10 +22,18 @@ package org.restheart.utils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import org.xnio.channels.Channels;
+import org.xnio.channels.StreamSourceChannel;
 
+import io.undertow.connector.PooledByteBuffer;
 import io.undertow.server.HttpServerExchange;
 
 /**
@@ -36,6 +44,8 @@ public class ChannelReader {
 
     final static Charset CHARSET = StandardCharsets.UTF_8;
     final static int CAPACITY = 1024;
+    final static int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    final static int MAX_INITIAL_CAPACITY = 64 * 1024;
 
     /**
      *
@@ -60,17 +70,152 @@ public class ChannelReader {
             return null;
         }
 
-        try (var os = new ByteArrayOutputStream(CAPACITY)) {
-            var pooledByteBuffer = exchange.getConnection().getByteBufferPool().getArrayBackedPool().allocate();
+        var contentLength = exchange.getRequestContentLength();
+
+        if (contentLength >= 0 && contentLength <= MAX_ARRAY_SIZE) {
+            // known length: read straight into the returned array, growing it as data arrives
+            // since the Content-Length header cannot be trusted to allocate the whole array upfront
+            var length = (int) contentLength;
+            var bytes = new byte[Math.min(length, MAX_INITIAL_CAPACITY)];
+            var buffer = ByteBuffer.wrap(bytes);
+
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    if (bytes.length == length) {
+                        break;
+                    }
+
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(2L * bytes.length, length));
+                    buffer = ByteBuffer.wrap(bytes).position(buffer.position());
+                }
+
+                if (Channels.readBlocking(channel, buffer) == -1) {
+                    break;
+                }
+            }
+
+            return buffer.position() == bytes.length ? bytes : Arrays.copyOf(bytes, buffer.position());
+        }
+
+        try (var os = new ByteArrayOutputStream(CAPACITY); var pooledByteBuffer = exchange.getConnection().getByteBufferPool().getArrayBackedPool().allocate()) {
             var buffer = pooledByteBuffer.getBuffer();
 
             while (Channels.readBlocking(channel, buffer) != -1) {
                 buffer.flip();
-                os.write(buffer.array(), 0, buffer.remaining());
+                os.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
                 buffer.clear();
             }
 
             return os.toByteArray();
         }
     }
+
+    /**
+     * Returns a Reader that decodes the UTF-8 request content directly from
+     * a buffer of the connection's pool, without copying it into a byte array
+     * or a String. The pooled buffer is released when the reader is closed.
+     *
+     * @param exchange
+     * @return the reader or null if the request channel is not available
+     */
+    public static Reader reader(HttpServerExchange exchange) {
+        var channel = exchange.getRequestChannel();
+
+        if (channel == null) {
+            return null;
+        }
+
+        return new PooledBufferReader(channel, exchange.getConnection().getByteBufferPool().getArrayBackedPool().allocate());
+    }
+
+    /**
+     * Unsynchronized Reader over the request channel; JsonReader reads one
+     * char at a time, so avoiding the per-call locking of InputStreamReader
+     * matters for large bodies.
+     */
+    private static class PooledBufferReader extends Reader {
+        private final StreamSourceChannel channel;
+        private final CharsetDecoder decoder = CHARSET.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer out = CharBuffer.allocate(CAPACITY * 8);
+        private PooledByteBuffer pooled;
+        private ByteBuffer in;
+        private boolean eof = false;
+        private boolean finished = false;
+
+        PooledBufferReader(StreamSourceChannel channel, PooledByteBuffer pooled) {
+            this.channel = channel;
+            this.pooled = pooled;
+            this.in = pooled.getBuffer();
+            this.in.clear().flip();
+            this.out.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!out.hasRemaining() && !fill()) {
+                return -1;
+            }
+
+            return out.get();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!out.hasRemaining() && !fill()) {
+                return -1;
+            }
+
+            var n = Math.min(len, out.remaining());
+            out.get(cbuf, off, n);
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            if (finished || pooled == null) {
+                return false;
+            }
+
+            out.clear();
+
+            while (true) {
+                var result = decoder.decode(in, out, eof);
+
+                if (result.isOverflow()) {
+                    break;
+                } else if (eof) {
+                    decoder.flush(out);
+                    finished = true;
+                    break;
+                } else if (out.position() > 0) {
+                    break;
+                }
+
+                in.compact();
+
+                try {
+                    eof = Channels.readBlocking(channel, in) == -1;
+                } finally {
+                    in.flip();
+                }
+            }
+
+            out.flip();
+            return out.hasRemaining();
+        }
+
+        @Override
+        public void close() {
+            if (pooled != null) {
+                pooled.close();
+                pooled = null;
+                in = null;
+            }
+        }
+    }
 }
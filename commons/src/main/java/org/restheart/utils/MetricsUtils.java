@@ -19,7 +19,9 @@
  */
 package org.restheart.utils;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.net.HttpHeaders;
 
 import org.restheart.plugins.security.Authenticator;
@@ -41,24 +43,70 @@ public class MetricsUtils {
     private static FAILED_AUTH_KEY collectFailedAuthBy = FAILED_AUTH_KEY.REMOTE_IP;
     private static int xffReverseIndex = 0;
 
-     /**
+    /**
+     * the size in seconds of the sliding window used to count failed auth requests
+     */
+    public static final int FAILED_AUTH_WINDOW_SECONDS = 10;
+
+    /**
+     * the default max number of keys (ips or X-Forwarded-For values) whose failed auth requests are tracked
+     */
+    public static final long DEFAULT_FAILED_AUTH_MAX_TRACKED_KEYS = 10_000;
+
+    private static volatile SlidingWindowCounters<String> failedAuthCounters = new SlidingWindowCounters<>(FAILED_AUTH_WINDOW_SECONDS, DEFAULT_FAILED_AUTH_MAX_TRACKED_KEYS);
+
+    static {
+        var registry = SharedMetricRegistries.getOrCreate("AUTH");
+        registry.gauge(MetricRegistry.name(Authenticator.class, "failed-auth-tracked-keys"), () -> (Gauge<Long>) () -> failedAuthCounters.size());
+        registry.gauge(MetricRegistry.name(Authenticator.class, "failed-auth-evictions"), () -> (Gauge<Long>) () -> failedAuthCounters.evictions());
+    }
+
+    /**
      *
      * @param exchange
-     * @param useXForwardedFor true to use the X-Forwarded-For header, false to use the remote ip
-     * @return the name of the histogram that stores the percentage of failed auth requests in the last 10 seconds
+     * @return the key used to count failed auth requests, i.e. the remote ip or the tracked value of the X-Forwarded-For header
      */
-    public static String failedAuthHistogramName(HttpServerExchange exchange) {
+    public static String failedAuthKey(HttpServerExchange exchange) {
         return switch(collectFailedAuthBy) {
-            case REMOTE_IP -> MetricRegistry.name(Authenticator.class, "failed-auth-remote-ip", ExchangeAttributes.remoteIp().readAttribute(exchange));
+            case REMOTE_IP -> ExchangeAttributes.remoteIp().readAttribute(exchange);
             case X_FORWARDED_FOR -> {
                 var xff = ExchangeAttributes.requestHeader(_X_FORWARDED_FOR).readAttribute(exchange);
-                yield xff == null
-                    ? MetricRegistry.name(Authenticator.class, "failed-auth-x-forwarded-for", "not-set")
-                    : MetricRegistry.name(Authenticator.class, "failed-auth-x-forwarded-for", xffValue(xff, xffReverseIndex));
+                yield xff == null ? "not-set" : xffValue(xff, xffReverseIndex);
             }
         };
     }
 
+    /**
+     * Counts a failed auth request
+     *
+     * @param exchange
+     * @return the number of failed auth requests with the same key in the sliding window
+     */
+    public static long countFailedAuth(HttpServerExchange exchange) {
+        return failedAuthCounters.increment(failedAuthKey(exchange));
+    }
+
+    /**
+     *
+     * @param exchange
+     * @return the number of failed auth requests with the same key of the exchange in the sliding window
+     */
+    public static long failedAuthCount(HttpServerExchange exchange) {
+        return failedAuthCounters.count(failedAuthKey(exchange));
+    }
+
+    /**
+     * Sets the max number of keys whose failed auth requests are tracked;
+     * when exceeded the least recently used keys are evicted.
+     *
+     * Note: this resets the counters.
+     *
+     * @param maxTrackedKeys
+     */
+    public static void failedAuthMaxTrackedKeys(long maxTrackedKeys) {
+        failedAuthCounters = new SlidingWindowCounters<>(FAILED_AUTH_WINDOW_SECONDS, maxTrackedKeys);
+    }
+
     /**
      *
      * handles the case where the X_Forwarded_For header
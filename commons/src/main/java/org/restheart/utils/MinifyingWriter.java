@@ -0,0 +1,203 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A Writer that removes the insignificant whitespaces from the json written to
+ * it while streaming it to the wrapped Writer.
+ *
+ * It is the streaming equivalent of {@link Minify} for the json generated by
+ * org.bson.json.JsonWriter: strings and regular expression literals are left
+ * untouched and a space is only kept between two alphanumeric chars, e.g.
+ * in {@code new Date(1)} generated with JsonMode.SHELL
+ *
+ * Optionally, it can skip a number of chars at the beginning and drop the last
+ * char of the minified output; this allows to unwrap a value rendered as
+ * {@code {"x":value}}
+ *
+ * Not thread safe.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+class MinifyingWriter extends Writer {
+    private enum STATE { NORMAL, STRING, STRING_ESCAPE, REGEX, REGEX_ESCAPE }
+
+    private final Writer out;
+    private final char[] buf = new char[8192];
+    private int pos = 0;
+
+    private STATE state = STATE.NORMAL;
+    private char last = 0;
+    private boolean pendingSpace = false;
+
+    private int skip;
+    private final boolean dropLast;
+    private int held = -1;
+
+    /**
+     *
+     * @param out the writer to stream the minified json to
+     */
+    MinifyingWriter(Writer out) {
+        this(out, 0, false);
+    }
+
+    /**
+     *
+     * @param out the writer to stream the minified json to
+     * @param skip the number of chars to skip at the beginning of the minified output
+     * @param dropLast true to drop the last char of the minified output
+     */
+    MinifyingWriter(Writer out, int skip, boolean dropLast) {
+        this.out = out;
+        this.skip = skip;
+        this.dropLast = dropLast;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        process((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (var i = off; i < off + len; i++) {
+            process(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (var i = off; i < off + len; i++) {
+            process(str.charAt(i));
+        }
+    }
+
+    private void process(char c) throws IOException {
+        switch (state) {
+            case NORMAL -> {
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    pendingSpace = last != 0;
+                    return;
+                }
+
+                if (pendingSpace && isAlphanum(last) && isAlphanum(c)) {
+                    emit(' ');
+                }
+
+                pendingSpace = false;
+
+                if (c == '"') {
+                    state = STATE.STRING;
+                } else if (c == '/' && isRegexPrefix(last)) {
+                    state = STATE.REGEX;
+                }
+            }
+            case STRING -> {
+                if (c == '\\') {
+                    state = STATE.STRING_ESCAPE;
+                } else if (c == '"') {
+                    state = STATE.NORMAL;
+                }
+            }
+            case STRING_ESCAPE -> state = STATE.STRING;
+            case REGEX -> {
+                if (c == '\\') {
+                    state = STATE.REGEX_ESCAPE;
+                } else if (c == '/') {
+                    state = STATE.NORMAL;
+                }
+            }
+            case REGEX_ESCAPE -> state = STATE.REGEX;
+        }
+
+        last = c;
+        emit(c);
+    }
+
+    private void emit(char c) throws IOException {
+        if (skip > 0) {
+            skip--;
+            return;
+        }
+
+        if (dropLast) {
+            if (held >= 0) {
+                put((char) held);
+            }
+
+            held = c;
+        } else {
+            put(c);
+        }
+    }
+
+    private void put(char c) throws IOException {
+        if (pos == buf.length) {
+            flushBuffer();
+        }
+
+        buf[pos++] = c;
+    }
+
+    /**
+     * Writes the buffered chars to the wrapped writer without flushing it
+     */
+    void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    /**
+     * same definition of alphanumeric used by {@link Minify}
+     */
+    private static boolean isAlphanum(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$' || c == '\\' || c > 126;
+    }
+
+    private static boolean isRegexPrefix(char c) {
+        return switch (c) {
+            case '(', ',', '=', ':', '[', '!', '&', '|', '?', '{', '}', ';' -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Writes the buffered chars to the wrapped writer and flushes it
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flushes the buffered chars but does not close the wrapped writer
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,178 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+/**
+ * A bounded map of per-key sliding time window counters.
+ *
+ * Each key is associated to a ring buffer of primitive longs, one slot per
+ * second of the window; incrementing and reading a counter are O(1) with
+ * respect to the number of events and of tracked keys.
+ *
+ * Keys not updated or read for longer than the window expire, and when the
+ * number of tracked keys exceeds the maximum size, the least recently used
+ * ones are evicted. This avoids unbounded memory growth when counting, for
+ * instance, failed authentications from rotating ips.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ * @param <K> the class of the keys
+ */
+public class SlidingWindowCounters<K> {
+    private final int windowSeconds;
+    private final Cache<K, Counter> counters;
+    private final LongAdder evictions = new LongAdder();
+    private final LongSupplier clock;
+
+    /**
+     *
+     * @param windowSeconds the size of the sliding window in seconds
+     * @param maxKeys the maximum number of tracked keys
+     */
+    public SlidingWindowCounters(int windowSeconds, long maxKeys) {
+        this(windowSeconds, maxKeys, System::currentTimeMillis);
+    }
+
+    SlidingWindowCounters(int windowSeconds, long maxKeys, LongSupplier clock) {
+        if (windowSeconds < 1) {
+            throw new IllegalArgumentException("windowSeconds must be greater than 0");
+        }
+
+        this.windowSeconds = windowSeconds;
+        this.clock = clock;
+        this.counters = Caffeine.newBuilder()
+            .maximumSize(maxKeys)
+            .expireAfterAccess(windowSeconds, TimeUnit.SECONDS)
+            .evictionListener((K k, Counter c, RemovalCause cause) -> {
+                if (cause == RemovalCause.SIZE) {
+                    evictions.increment();
+                }
+            })
+            .build();
+    }
+
+    /**
+     * Increments the counter of the key
+     *
+     * @param key
+     * @return the number of events of the key in the sliding window, including this one
+     */
+    public long increment(K key) {
+        var now = now();
+        return counters.get(key, k -> new Counter(windowSeconds)).increment(now);
+    }
+
+    /**
+     *
+     * @param key
+     * @return the number of events of the key in the sliding window
+     */
+    public long count(K key) {
+        var counter = counters.getIfPresent(key);
+        return counter == null ? 0 : counter.count(now());
+    }
+
+    /**
+     * Forgets the key
+     *
+     * @param key
+     */
+    public void reset(K key) {
+        counters.invalidate(key);
+    }
+
+    /**
+     *
+     * @return the approximate number of tracked keys
+     */
+    public long size() {
+        return counters.estimatedSize();
+    }
+
+    /**
+     *
+     * @return the number of keys evicted because the maximum size was exceeded
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Performs any pending maintenance operations, i.e. removes expired keys
+     * and applies pending evictions.
+     */
+    public void cleanUp() {
+        counters.cleanUp();
+    }
+
+    private long now() {
+        return TimeUnit.MILLISECONDS.toSeconds(clock.getAsLong());
+    }
+
+    /**
+     * A ring buffer of per-second counts; epochs holds the second
+     * each slot refers to, so that stale slots are lazily zeroed
+     */
+    private static class Counter {
+        private final long[] counts;
+        private final long[] epochs;
+
+        Counter(int slots) {
+            this.counts = new long[slots];
+            this.epochs = new long[slots];
+        }
+
+        synchronized long increment(long now) {
+            var slot = (int) (now % counts.length);
+
+            if (epochs[slot] != now) {
+                epochs[slot] = now;
+                counts[slot] = 0;
+            }
+
+            counts[slot]++;
+
+            return _count(now);
+        }
+
+        synchronized long count(long now) {
+            return _count(now);
+        }
+
+        private long _count(long now) {
+            long ret = 0;
+
+            for (var slot = 0; slot < counts.length; slot++) {
+                if (now - epochs[slot] < counts.length) {
+                    ret += counts[slot];
+                }
+            }
+
+            return ret;
+        }
+    }
+}
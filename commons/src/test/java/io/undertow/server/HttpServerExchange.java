@@ -48,11 +48,17 @@ public class HttpServerExchange extends AbstractAttachable {
     private String relativePath;
     private HttpString requestMethod;
     private Map<String, Deque<String>> queryParameters;
+    private final HeaderMap requestHeaders = new HeaderMap();
+    private final HeaderMap responseHeaders = new HeaderMap();
+    private StreamSourceChannel requestChannel = null;
+    private long requestContentLength = 0;
 
     public HttpServerExchange() {
+        requestHeaders.put(HttpString.tryFromString("header"), "value");
     }
 
     public HttpServerExchange(ServerConnection conn) {
+        this();
     }
 
     public HttpServerExchange endExchange() {
@@ -83,7 +89,8 @@ public class HttpServerExchange extends AbstractAttachable {
         return this;
     }
 
-    void addExchangeCompleteListener(ExchangeCompletionListener listener) {
+    public HttpServerExchange addExchangeCompleteListener(ExchangeCompletionListener listener) {
+        return this;
     }
 
     /**
@@ -155,9 +162,11 @@ public class HttpServerExchange extends AbstractAttachable {
     }
 
     public HeaderMap getRequestHeaders() {
-        var ret = new HeaderMap();
-        ret.put(HttpString.tryFromString("header"), "value");
-        return ret;
+        return requestHeaders;
+    }
+
+    public HeaderMap getResponseHeaders() {
+        return responseHeaders;
     }
 
     public SecurityContext getSecurityContext() {
@@ -179,10 +188,18 @@ public class HttpServerExchange extends AbstractAttachable {
     }
 
     public StreamSourceChannel getRequestChannel() {
-        return null;
+        return requestChannel;
+    }
+
+    public void setRequestChannel(StreamSourceChannel requestChannel) {
+        this.requestChannel = requestChannel;
     }
 
     public long getRequestContentLength() {
-        return 0;
+        return requestContentLength;
+    }
+
+    public void setRequestContentLength(long requestContentLength) {
+        this.requestContentLength = requestContentLength;
     }
 }
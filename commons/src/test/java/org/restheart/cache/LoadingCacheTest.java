@@ -0,0 +1,126 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the default methods of LoadingCache, used by the implementations
+ * that don't support asynchronous loading
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class LoadingCacheTest {
+    @Test
+    public void testGetLoadingAsync() throws Exception {
+        var cache = new SyncLoadingCache(String::length);
+
+        assertEquals(Optional.of(3), cache.getLoadingAsync("foo").get());
+    }
+
+    @Test
+    public void testGetAllLoadingAsync() throws Exception {
+        var cache = new SyncLoadingCache(String::length);
+
+        assertEquals(Map.of("a", Optional.of(1), "bb", Optional.of(2)), cache.getAllLoadingAsync(List.of("a", "bb")).get());
+    }
+
+    @Test
+    public void testRefreshReloads() throws Exception {
+        var cache = new SyncLoadingCache(String::length);
+        cache.put("foo", 0);
+
+        assertEquals(Optional.of(3), cache.refresh("foo").get());
+        assertEquals(Optional.of(3), cache.get("foo"));
+    }
+
+    @Test
+    public void testFailedLoadCompletesExceptionally() {
+        var cache = new SyncLoadingCache(key -> {
+            throw new IllegalStateException("load failed");
+        });
+
+        var future = cache.getLoadingAsync("foo");
+
+        assertTrue(future.isCompletedExceptionally());
+        var ee = assertThrows(ExecutionException.class, () -> future.get());
+        assertTrue(ee.getCause() instanceof IllegalStateException);
+    }
+
+    /**
+     * a LoadingCache implementing only the synchronous methods
+     */
+    private static class SyncLoadingCache implements LoadingCache<String, Integer> {
+        private final Map<String, Optional<Integer>> map = new HashMap<>();
+        private final Function<String, Integer> loader;
+
+        SyncLoadingCache(Function<String, Integer> loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public Optional<Integer> getLoading(String key) {
+            return map.computeIfAbsent(key, k -> Optional.ofNullable(loader.apply(k)));
+        }
+
+        @Override
+        public Optional<Integer> get(String key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Optional<Integer> remove(String key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public void put(String key, Integer value) {
+            map.put(key, Optional.ofNullable(value));
+        }
+
+        @Override
+        public void cleanUp() {
+        }
+
+        @Override
+        public void invalidate(String key) {
+            map.remove(key);
+        }
+
+        @Override
+        public void invalidateAll() {
+            map.clear();
+        }
+
+        @Override
+        public Map<String, Optional<Integer>> asMap() {
+            return map;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.cache.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.SharedMetricRegistries;
+
+import org.junit.Test;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+
+public class CaffeineLoadingCacheTest {
+    @Test
+    public void testRefreshServesStaleValue() {
+        var now = new AtomicLong();
+        var loads = new AtomicInteger();
+        var tasks = new ArrayDeque<Runnable>();
+
+        var cache = new CaffeineLoadingCache<String, Integer>(null, 100, Cache.EXPIRE_POLICY.AFTER_WRITE, 10_000, 1_000,
+            key -> loads.incrementAndGet(), now::get, tasks::add);
+
+        assertEquals(Optional.of(1), cache.getLoading("a"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_500));
+
+        // the stale value is returned while it is reloaded in background
+        assertEquals(Optional.of(1), cache.get("a"));
+        assertEquals(1, loads.get());
+
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+
+        assertEquals(Optional.of(2), cache.get("a"));
+        assertEquals(2, loads.get());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(20_000));
+
+        // expired entries are loaded synchronously
+        assertEquals(null, cache.get("a"));
+        assertEquals(Optional.of(3), cache.getLoading("a"));
+    }
+
+    @Test
+    public void testAsyncLoading() throws Exception {
+        var cache = new CaffeineLoadingCache<String, Integer>(null, 100, Cache.EXPIRE_POLICY.AFTER_WRITE, 10_000, 0,
+            key -> key.length(), System::nanoTime, Runnable::run);
+
+        assertEquals(Optional.of(3), cache.getLoadingAsync("foo").get());
+
+        var all = cache.getAllLoadingAsync(List.of("a", "bb")).get();
+
+        assertEquals(Optional.of(1), all.get("a"));
+        assertEquals(Optional.of(2), all.get("bb"));
+    }
+
+    @Test
+    public void testStats() {
+        var name = "test-stats";
+        var registry = SharedMetricRegistries.getOrCreate(CacheFactory.METRIC_REGISTRY_NAME);
+
+        var cache = new CaffeineLoadingCache<String, Integer>(name, 100, Cache.EXPIRE_POLICY.NEVER, 0, 0,
+            key -> key.length(), System::nanoTime, Runnable::run);
+
+        cache.getLoading("a");
+        cache.getLoading("a");
+        cache.get("b");
+
+        assertEquals(1, registry.counter(name + ".hits").getCount());
+        assertEquals(2, registry.counter(name + ".misses").getCount());
+        assertEquals(1, registry.timer(name + ".loads").getCount());
+    }
+}
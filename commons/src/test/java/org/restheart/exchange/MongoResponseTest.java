@@ -0,0 +1,209 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.restheart.exchange;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.restheart.utils.BsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class MongoResponseTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MongoResponseTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info("executing test {}", description.toString());
+        }
+    };
+
+    @Test
+    public void testWriteContentCursor() throws Exception {
+        var response = response(false);
+        var cursor = new ListCursor(docs(3));
+
+        response.setContentCursor(cursor);
+        assertTrue(response.isContentStreamed());
+
+        var os = new ByteArrayOutputStream();
+        assertTrue(response.writeContent(os));
+
+        assertEquals(BsonUtils.toJson(new BsonArray(docs(3)), null), os.toString(StandardCharsets.UTF_8));
+        assertTrue(cursor.closed);
+        assertFalse(response.isContentStreamed());
+    }
+
+    @Test
+    public void testWriteEmptyContentCursor() throws Exception {
+        var response = response(false);
+        response.setContentCursor(new ListCursor(List.of()));
+
+        var os = new ByteArrayOutputStream();
+        response.writeContent(os);
+
+        assertEquals("[]", os.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteContentCursorAsNdjson() throws Exception {
+        var response = response(true);
+        response.setContentCursor(new ListCursor(docs(2)));
+
+        var os = new ByteArrayOutputStream();
+        response.writeContent(os);
+
+        assertEquals("{\"n\":0}\n{\"n\":1}\n", os.toString(StandardCharsets.UTF_8));
+        assertEquals(Exchange.NDJSON_MEDIA_TYPE, response.getContentType());
+    }
+
+    @Test
+    public void testWriteArrayAsNdjson() throws Exception {
+        var response = response(true);
+        response.setContent(new BsonArray(docs(2)));
+
+        var os = new ByteArrayOutputStream();
+        response.writeContent(os);
+
+        assertEquals("{\"n\":0}\n{\"n\":1}\n", os.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGetContentCollectsTheCursor() throws Exception {
+        var response = response(false);
+        var cursor = new ListCursor(docs(3));
+        response.setContentCursor(cursor);
+
+        // e.g. a response interceptor reads the content
+        assertEquals(new BsonArray(docs(3)), response.getContent());
+        assertTrue(cursor.closed);
+        assertFalse(response.isContentStreamed());
+
+        response.getContent().asArray().remove(0);
+
+        var os = new ByteArrayOutputStream();
+        response.writeContent(os);
+
+        assertEquals(BsonUtils.toJson(new BsonArray(docs(3).subList(1, 3)), null), os.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSetContentClosesTheCursor() throws Exception {
+        var response = response(false);
+        var cursor = new ListCursor(docs(3));
+        response.setContentCursor(cursor);
+
+        response.setInError(500, "error");
+
+        assertTrue(cursor.closed);
+        assertFalse(response.isContentStreamed());
+    }
+
+    private static MongoResponse response(boolean ndjson) {
+        var exchange = new HttpServerExchange(null);
+        exchange.setRequestMethod(Methods.GET);
+        exchange.setRequestPath("/db/coll");
+        exchange.setRelativePath("/db/coll");
+
+        if (ndjson) {
+            exchange.getRequestHeaders().put(Headers.ACCEPT, Exchange.NDJSON_MEDIA_TYPE);
+        }
+
+        Request.setPipelineInfo(exchange, new PipelineInfo(PipelineInfo.PIPELINE_TYPE.SERVICE, "/", "mongo"));
+        MongoRequest.init(exchange, "/db/coll", "/db/coll");
+        return MongoResponse.init(exchange);
+    }
+
+    private static List<BsonDocument> docs(int n) {
+        return IntStream.range(0, n)
+            .mapToObj(i -> new BsonDocument("n", new BsonInt32(i)))
+            .collect(Collectors.toList());
+    }
+
+    private static class ListCursor implements MongoCursor<BsonDocument> {
+        private final Iterator<BsonDocument> it;
+        private boolean closed = false;
+
+        ListCursor(List<BsonDocument> docs) {
+            this.it = docs.iterator();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public BsonDocument next() {
+            return it.next();
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public BsonDocument tryNext() {
+            return it.hasNext() ? it.next() : null;
+        }
+
+        @Override
+        public ServerCursor getServerCursor() {
+            return null;
+        }
+
+        @Override
+        public ServerAddress getServerAddress() {
+            return null;
+        }
+    }
+}
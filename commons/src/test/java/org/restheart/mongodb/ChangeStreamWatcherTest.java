@@ -0,0 +1,189 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.restheart.mongodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChangeStreamWatcherTest {
+    private static final ServerCursor SERVER_CURSOR = new ServerCursor(1, new ServerAddress());
+
+    private static void awaitStopped(ChangeStreamWatcher watcher) throws InterruptedException {
+        for (var i = 0; i < 500 && watcher.isRunning(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testEventsArePassedToConsumer() throws Exception {
+        var event = new ChangeStreamDocument<BsonDocument>("drop", new BsonDocument("_data", new BsonString("token")),
+            new BsonDocument("db", new BsonString("db")).append("coll", new BsonString("coll")), null, null, null, null, null, null, null, null, null, null);
+
+        @SuppressWarnings("unchecked")
+        ChangeStreamIterable<BsonDocument> iterable = mock(ChangeStreamIterable.class);
+        @SuppressWarnings("unchecked")
+        MongoChangeStreamCursor<ChangeStreamDocument<BsonDocument>> cursor = mock(MongoChangeStreamCursor.class);
+
+        when(iterable.maxAwaitTime(anyLong(), any(TimeUnit.class))).thenReturn(iterable);
+        when(iterable.cursor()).thenReturn(cursor);
+        when(cursor.tryNext()).thenReturn(event).thenReturn(null);
+        when(cursor.getServerCursor()).thenReturn(SERVER_CURSOR);
+
+        var received = new CountDownLatch(1);
+        var watcher = ChangeStreamWatcher.start("test-events", () -> iterable, e -> received.countDown(), () -> {});
+
+        try {
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            assertTrue(watcher.isRunning());
+        } finally {
+            watcher.close();
+        }
+
+        awaitStopped(watcher);
+        assertFalse(watcher.isRunning());
+    }
+
+    @Test
+    public void testUnexpectedErrorReopensStream() throws Exception {
+        var attempts = new AtomicInteger();
+        var gaps = new AtomicInteger();
+        var iterable = iterable(cursor());
+
+        var watcher = ChangeStreamWatcher.start("test-error", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("unexpected");
+            } else {
+                return iterable;
+            }
+        }, e -> {}, gaps::incrementAndGet);
+
+        try {
+            awaitCondition(() -> attempts.get() > 1);
+
+            assertTrue(watcher.isRunning());
+            assertEquals(2, attempts.get());
+            assertEquals(1, gaps.get());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testInvalidateReopensStreamAfterIt() throws Exception {
+        var token = new BsonDocument("_data", new BsonString("invalidate-token"));
+        var invalidate = new ChangeStreamDocument<BsonDocument>("invalidate", token, null, null, null, null, null, null, null, null, null, null, null);
+
+        var first = cursor();
+        when(first.tryNext()).thenReturn(invalidate);
+        var second = cursor();
+
+        var iterable = iterable(first, second);
+        var gaps = new AtomicInteger();
+        var changes = new AtomicInteger();
+
+        var watcher = ChangeStreamWatcher.start("test-invalidate", () -> iterable, e -> changes.incrementAndGet(), gaps::incrementAndGet);
+
+        try {
+            awaitCondition(() -> mockingDetails(second).getInvocations().size() > 0);
+
+            verify(iterable).startAfter(token);
+            verify(iterable, times(2)).cursor();
+            assertEquals(1, gaps.get());
+            assertEquals(0, changes.get());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testClosedCursorReopensStream() throws Exception {
+        var closedCursor = cursor();
+        when(closedCursor.getServerCursor()).thenReturn(null);
+        var second = cursor();
+
+        var iterable = iterable(closedCursor, second);
+        var gaps = new AtomicInteger();
+
+        var watcher = ChangeStreamWatcher.start("test-closed-cursor", () -> iterable, e -> {}, gaps::incrementAndGet);
+
+        try {
+            awaitCondition(() -> mockingDetails(second).getInvocations().size() > 0);
+
+            // the closed cursor is not polled again
+            verify(closedCursor, times(1)).tryNext();
+            verify(iterable, times(2)).cursor();
+            assertEquals(1, gaps.get());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoChangeStreamCursor<ChangeStreamDocument<BsonDocument>> cursor() {
+        MongoChangeStreamCursor<ChangeStreamDocument<BsonDocument>> cursor = mock(MongoChangeStreamCursor.class);
+        when(cursor.getServerCursor()).thenReturn(SERVER_CURSOR);
+        return cursor;
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    private static ChangeStreamIterable<BsonDocument> iterable(MongoChangeStreamCursor<ChangeStreamDocument<BsonDocument>> cursor, MongoChangeStreamCursor<ChangeStreamDocument<BsonDocument>>... cursors) {
+        ChangeStreamIterable<BsonDocument> iterable = mock(ChangeStreamIterable.class);
+        when(iterable.maxAwaitTime(anyLong(), any(TimeUnit.class))).thenReturn(iterable);
+        when(iterable.resumeAfter(any())).thenReturn(iterable);
+        when(iterable.startAfter(any())).thenReturn(iterable);
+        when(iterable.cursor()).thenReturn(cursor, cursors);
+        return iterable;
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        for (var i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.polyglot;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.SharedMetricRegistries;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeoutException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class NodeQueueTest {
+    @Test
+    public void testDispatchToLeastLoadedWorker() {
+        var nq = new NodeQueue();
+        nq.setAsRunningOnNode(3);
+
+        var w1 = nq.dispatch("a");
+        var w2 = nq.dispatch("b");
+        var w3 = nq.dispatch("c");
+
+        // one invocation per worker
+        assertEquals(3, java.util.Set.of(w1, w2, w3).size());
+
+        nq.done(w2);
+
+        assertEquals(w2, nq.dispatch("d"));
+        assertEquals(2, nq.queue(w2).size());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testInvoke() throws Exception {
+        var nq = new NodeQueue();
+        nq.setAsRunningOnNode(2);
+
+        // simulate the node workers
+        for (var i = 0; i < nq.workers(); i++) {
+            var queue = nq.queue(i);
+            var worker = new Thread(() -> {
+                try {
+                    while (true) {
+                        var message = (Object[]) queue.take();
+                        ((LinkedBlockingDeque<Object>) message[1]).offer("done " + message[0]);
+                    }
+                } catch (InterruptedException ie) {
+                    // exit
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        var out = new LinkedBlockingDeque<Object>();
+        assertEquals("done 1", nq.invoke(new Object[] { 1, out }, out, 1_000));
+
+        var gauges = SharedMetricRegistries.getOrCreate(NodeQueue.METRIC_REGISTRY_NAME).getGauges();
+        assertEquals(0, ((Gauge<Integer>) gauges.get("node.worker-0.queue-depth")).getValue().intValue());
+        assertEquals(0, ((Gauge<Integer>) gauges.get("node.worker-1.queue-depth")).getValue().intValue());
+    }
+
+    @Test
+    public void testInvokeTimeout() {
+        var nq = new NodeQueue();
+        nq.setAsRunningOnNode(1);
+
+        var out = new LinkedBlockingDeque<Object>();
+        assertThrows(TimeoutException.class, () -> nq.invoke(new Object[] { "handle", out }, out, 10));
+
+        // the timed out invocation is not counted as in-flight anymore
+        nq.dispatch("next");
+        var gauge = SharedMetricRegistries.getOrCreate(NodeQueue.METRIC_REGISTRY_NAME).getGauges().get("node.worker-0.queue-depth");
+        assertEquals(1, ((Integer) gauge.getValue()).intValue());
+    }
+}
@@ -0,0 +1,123 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.undertow.predicate.PredicateParser;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Methods;
+
+/**
+ * Measures the ACL authorization throughput, i.e. the evaluation of all the
+ * permissions of a role for a request, comparing the compiled AclPredicate
+ * with the previous per request interpolation and parsing of the predicate.
+ *
+ * run it with:
+ * mvn test-compile exec:java -Dexec.mainClass=org.restheart.security.AclPredicateBenchmark -Dexec.classpathScope=test
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AclPredicateBenchmark {
+    private static final ClassLoader CL = AclPredicateBenchmark.class.getClassLoader();
+
+    @Param({ "10", "40" })
+    public int permissions;
+
+    private List<String> raw;
+    private List<AclPredicate> compiled;
+    private BsonDocument account;
+    private HttpServerExchange exchange;
+
+    @Setup
+    public void setup() {
+        this.raw = new ArrayList<>();
+        this.compiled = new ArrayList<>();
+
+        for (var i = 0; i < permissions; i++) {
+            // the last permission is the one that matches
+            var predicate = i % 2 == 0
+                ? "path-template('/{tenant}/coll" + i + "') and equals(@user.tenant, ${tenant})"
+                : "method(GET) and path-prefix('/coll" + i + "') and contains(value=%u, search=@user.roles)";
+
+            raw.add(predicate);
+            compiled.add(AclPredicate.compile(predicate, CL));
+        }
+
+        this.account = BsonDocument.parse("{ '_id': { '$oid': '6012eea28ce0797803bd9d7a'}, 'tenant': 'softinstigate', 'roles': ['user'], 'profile': { 'name': 'Andrea', 'city': 'Rome' }, 'tenants': ['a', 'b', 'c'] }");
+
+        this.exchange = new HttpServerExchange();
+        this.exchange.setRequestPath("http://127.0.0.1/softinstigate/coll" + (permissions - 2));
+        this.exchange.setRelativePath("/softinstigate/coll" + (permissions - 2));
+        this.exchange.setRequestMethod(Methods.GET);
+    }
+
+    @Benchmark
+    public boolean interpolateAndParse() {
+        for (var predicate: raw) {
+            var interpolated = AclVarsInterpolator.interpolatePredicate(predicate, "@user.", account);
+
+            if (PredicateParser.parse(interpolated, CL).resolve(exchange)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        for (var predicate: compiled) {
+            if (predicate.resolve(exchange, account)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AclPredicateBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.bson.BsonDocument;
+import org.junit.Test;
+
+import io.undertow.server.HttpServerExchange;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class AclPredicateTest {
+    private static final ClassLoader CL = AclPredicateTest.class.getClassLoader();
+
+    @Test
+    public void testNoVariables() {
+        var p = AclPredicate.compile("method(GET) and path-prefix('/coll')", CL);
+
+        assertSame(p.bind(user()), p.bind(null));
+        assertSame(p.bind(user()), p.bind(new BsonDocument()));
+    }
+
+    @Test
+    public void testBindPrimitivesAndArrays() {
+        var raw = "path-template('/{tenant}/coll') and equals(@user.tenant, ${tenant}) and contains(value=${tenant}, search=@user.tenants) and equals(@user.n, \"1\")";
+        var p = AclPredicate.compile(raw, CL);
+
+        assertEquals("path-template('/{tenant}/coll') and equals(\"softinstigate\", ${tenant}) and contains(value=${tenant}, search={\"a\",\"b\"}) and equals(\"1\", \"1\")", p.interpolate(user()));
+    }
+
+    @Test
+    public void testUnboundAndQuotedVariables() {
+        var raw = "equals(@user.missing, \"@user.tenant\") or equals(@user.nested.a , '@user.tenant')";
+        var interpolated = AclPredicate.compile(raw, CL).interpolate(user());
+
+        assertTrue(interpolated.contains("\"@user.tenant\""));
+        assertTrue(interpolated.contains("'@user.tenant'"));
+        assertTrue(interpolated.contains("equals(\"x\", '@user.tenant')"));
+        assertFalse(interpolated.contains("@user.missing"));
+        assertFalse(interpolated.contains("@user.nested"));
+    }
+
+    @Test
+    public void testSameBindingIsParsedOnce() {
+        var p = AclPredicate.compile("equals(@user.tenant, ${tenant})", CL);
+
+        assertSame(p.bind(user()), p.bind(user()));
+    }
+
+    @Test
+    public void testResolve() {
+        var p = AclPredicate.compile("path-template('/{tenant}/coll') and equals(@user.tenant, ${tenant})", CL);
+
+        var exchange = new HttpServerExchange();
+        exchange.setRequestPath("http://127.0.0.1/softinstigate/coll");
+        exchange.setRelativePath("/softinstigate/coll");
+
+        assertTrue("predicate must resolve path /softinstigate/coll", p.resolve(exchange, user()));
+
+        var exchange2 = new HttpServerExchange();
+        exchange2.setRequestPath("http://127.0.0.1/foo/coll");
+        exchange2.setRelativePath("/foo/coll");
+
+        assertFalse("predicate must not resolve path /foo/coll", p.resolve(exchange2, user()));
+    }
+
+    private static BsonDocument user() {
+        return BsonDocument.parse("{ '_id': { '$oid': '6012eea28ce0797803bd9d7a'}, 'tenant': 'softinstigate', 'tenants': ['a', 'b'], 'n': 1, 'nested': { 'a': 'x' } }");
+    }
+}
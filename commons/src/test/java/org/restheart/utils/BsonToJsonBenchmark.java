@@ -0,0 +1,149 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonArray;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.json.Converter;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.bson.json.StrictJsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the streaming BsonUtils.toJson() with the previous implementation,
+ * that rendered the json to a String, unwrapped arrays with regexes and
+ * minified the result with Minify.
+ *
+ * run it with:
+ * mvn test-compile exec:java -Dexec.mainClass=org.restheart.utils.BsonToJsonBenchmark -Dexec.classpathScope=test
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BsonToJsonBenchmark {
+    @Param({ "100", "1000" })
+    public int docs;
+
+    @Param({ "RELAXED", "NONE" })
+    public String mode;
+
+    private BsonArray page;
+    private JsonMode jsonMode;
+
+    @Setup
+    public void setup() {
+        this.jsonMode = "NONE".equals(mode) ? null : JsonMode.valueOf(mode);
+        this.page = new BsonArray();
+
+        for (var i = 0; i < docs; i++) {
+            var doc = new BsonDocument("_id", new BsonObjectId())
+                .append("n", new BsonInt32(i))
+                .append("price", new BsonDouble(i * 1.5))
+                .append("name", new BsonString("document number " + i))
+                .append("created", new BsonDateTime(1577836800000l + i))
+                .append("tags", new BsonArray(java.util.List.of(new BsonString("a"), new BsonString("b"))))
+                .append("nested", new BsonDocument("x", new BsonInt32(i)).append("y", new BsonString("y")));
+
+            page.add(doc);
+        }
+    }
+
+    @Benchmark
+    public int legacyToJson() {
+        return legacyToJson(page, jsonMode).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public int toJson() {
+        return BsonUtils.toJson(page, jsonMode).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public int toJsonStreaming() throws IOException {
+        var os = new ByteArrayOutputStream(64 * 1024);
+        var writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+        BsonUtils.toJson(page, jsonMode, writer);
+        writer.flush();
+        return os.size();
+    }
+
+    /**
+     * the previous implementation of BsonUtils.toJson()
+     */
+    private static String legacyToJson(BsonValue bson, JsonMode mode) {
+        var settings = mode != null
+            ? JsonWriterSettings.builder()
+                .outputMode(mode)
+                .indent(false)
+                .build()
+            : JsonWriterSettings.builder()
+                .indent(false)
+                .dateTimeConverter(new Converter<Long>() {
+                    @Override
+                    public void convert(Long t, StrictJsonWriter writer) {
+                        writer.writeRaw("{\"$date\": " + t + " }");
+                    }
+                }).build();
+
+        var wrappedArray = new BsonDocument("wrapped", bson.asArray());
+        var json = wrappedArray.toJson(settings);
+
+        json = json.substring(0, json.length() - 1); // removes closing }
+        json = json.replaceFirst("\\{", "");
+        json = json.replaceFirst("\"wrapped\"", "");
+        json = json.replaceFirst(":", "");
+
+        return BsonUtils.minify(json);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BsonToJsonBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -20,19 +20,31 @@
 
 package org.restheart.utils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import org.bson.BsonArray;
+import org.bson.BsonBinaryWriter;
 import org.bson.BsonBoolean;
 import org.bson.BsonDocument;
 import org.bson.BsonDouble;
 import org.bson.BsonInt32;
 import org.bson.BsonNull;
+import org.bson.BsonSerializationException;
 import org.bson.BsonString;
 import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
 import org.bson.types.ObjectId;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -49,6 +61,8 @@ import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
 import static org.restheart.utils.BsonUtils.array;
 import static org.restheart.utils.BsonUtils.document;
 
@@ -1002,4 +1016,105 @@ public class BsonUtilsTest {
         assertFalse(BsonUtils.get(doc, "array[100].idx").isPresent());
         assertFalse(BsonUtils.get(doc, "not.exists").isPresent());
     }
+
+    @Test
+    public void testToJsonEqualsMinifiedJson() {
+        var doc = BsonUtils.parse("""
+        {
+            "_id": {"$oid": "5d0b3d8a4f6c1a2b3c4d5e6f"},
+            "string": "a string with spaces, \\"quotes\\" and : {colons}",
+            "int": 1,
+            "long": {"$numberLong": "5999999999"},
+            "double": 1.5,
+            "decimal": {"$numberDecimal": "1.1"},
+            "date": {"$date": 1577836800000},
+            "regex": {"$regex": "a b/c", "$options": "i"},
+            "timestamp": {"$timestamp": {"t": 1, "i": 2}},
+            "binary": {"$binary": {"base64": "AQID", "subType": "00"}},
+            "null": null,
+            "nested": { "array": [1, "two", { "three": 3 }, [4, 5]] }
+        }
+        """).asDocument();
+
+        var array = new BsonArray(List.of(doc, new BsonInt32(1), new BsonString("a b")));
+
+        for (var mode: new JsonMode[] { null, JsonMode.RELAXED, JsonMode.EXTENDED, JsonMode.SHELL }) {
+            var settings = mode == null
+                ? JsonWriterSettings.builder().indent(false).dateTimeConverter((t, w) -> w.writeRaw("{\"$date\": " + t + " }")).build()
+                : JsonWriterSettings.builder().outputMode(mode).indent(false).build();
+
+            assertEquals(BsonUtils.minify(doc.toJson(settings)), BsonUtils.toJson(doc, mode));
+
+            var wrapped = new BsonDocument("wrapped", array).toJson(settings);
+            var expected = BsonUtils.minify(wrapped.substring(wrapped.indexOf(':') + 1, wrapped.length() - 1));
+            assertEquals(expected, BsonUtils.toJson(array, mode));
+
+            assertEquals("\"a b\"", BsonUtils.toJson(new BsonString("a b"), mode));
+        }
+    }
+
+    @Test
+    public void testParseReaderEqualsParseString() {
+        var jsons = new String[] {
+            "{ 'a': 1, 'b': { 'c': [1, 2, { 'd': 'x' }] } }",
+            "[ { 'a': 1 }, { 'b': { '$oid': '5d0b3d8a4f6c1a2b3c4d5e6f' } } ]",
+            "{ '$oid': '5d0b3d8a4f6c1a2b3c4d5e6f' }",
+            "{ '$date': 1577836800000 }",
+            "  '\u00e8 string'  ",
+            "1",
+            "true",
+            "[]",
+            "{}"
+        };
+
+        for (var json: jsons) {
+            assertEquals(BsonUtils.parse(json), BsonUtils.parse(new StringReader(json)));
+        }
+
+        assertNull(BsonUtils.parse(new StringReader("")));
+        assertNull(BsonUtils.parse(new StringReader("  \n ")));
+    }
+
+    @Test
+    public void testParseBson() {
+        var doc1 = document().put("a", 1).put("s", "x").get();
+        var doc2 = document().put("b", document().put("c", true)).get();
+
+        var out = new BasicOutputBuffer();
+        var codec = new BsonDocumentCodec();
+
+        try (var writer = new BsonBinaryWriter(out)) {
+            codec.encode(writer, doc1, EncoderContext.builder().build());
+        }
+
+        var single = out.toByteArray();
+
+        assertEquals(doc1, BsonUtils.parseBson(ByteBuffer.wrap(single)));
+
+        try (var writer = new BsonBinaryWriter(out)) {
+            codec.encode(writer, doc2, EncoderContext.builder().build());
+        }
+
+        assertEquals(new BsonArray(List.of(doc1, doc2)), BsonUtils.parseBson(ByteBuffer.wrap(out.toByteArray())));
+        assertNull(BsonUtils.parseBson(ByteBuffer.allocate(0)));
+        assertThrows(BsonSerializationException.class, () -> BsonUtils.parseBson(ByteBuffer.wrap(Arrays.copyOf(single, single.length - 1))));
+    }
+
+    @Test
+    public void testWriteBson() throws IOException {
+        var doc1 = document().put("a", 1).put("s", "x").get();
+        var doc2 = document().put("b", document().put("c", true)).get();
+
+        var out = new ByteArrayOutputStream();
+        BsonUtils.writeBson(doc1, out);
+        assertEquals(doc1, BsonUtils.parseBson(ByteBuffer.wrap(out.toByteArray())));
+
+        out.reset();
+        BsonUtils.writeBson(new BsonArray(List.of(doc1, new RawBsonDocument(doc2, new BsonDocumentCodec()))), out);
+        assertEquals(new BsonArray(List.of(doc1, doc2)), BsonUtils.parseBson(ByteBuffer.wrap(out.toByteArray())));
+
+        out.reset();
+        BsonUtils.writeBson(new BsonString("x"), out);
+        assertEquals(new BsonDocument("value", new BsonString("x")), BsonUtils.parseBson(ByteBuffer.wrap(out.toByteArray())));
+    }
 }
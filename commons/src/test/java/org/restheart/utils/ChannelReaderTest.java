@@ -0,0 +1,114 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.xnio.channels.StreamSourceChannel;
+
+import io.undertow.server.HttpServerExchange;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChannelReaderTest {
+    /**
+     * @return a channel that returns content at most 8KB at a time, recording
+     * the capacity of the buffers it is asked to read into
+     */
+    private static StreamSourceChannel channel(byte[] content, List<Integer> capacities) throws Exception {
+        var channel = mock(StreamSourceChannel.class);
+        var source = ByteBuffer.wrap(content);
+
+        when(channel.read(any(ByteBuffer.class))).thenAnswer(i -> {
+            ByteBuffer dst = i.getArgument(0);
+            capacities.add(dst.capacity());
+
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+
+            var n = Math.min(Math.min(dst.remaining(), source.remaining()), 8 * 1024);
+            dst.put(source.slice().limit(n));
+            source.position(source.position() + n);
+            return n;
+        });
+
+        return channel;
+    }
+
+    private static byte[] content(int length) {
+        var content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    @Test
+    public void testReadContentLargerThanInitialCapacity() throws Exception {
+        var content = content(200 * 1024 + 7);
+        var exchange = new HttpServerExchange();
+        exchange.setRequestChannel(channel(content, new ArrayList<>()));
+        exchange.setRequestContentLength(content.length);
+
+        assertArrayEquals(content, ChannelReader.readBytes(exchange));
+    }
+
+    @Test
+    public void testForgedContentLengthDoesNotAllocateUpfront() throws Exception {
+        var content = content(100);
+        var capacities = new ArrayList<Integer>();
+        var exchange = new HttpServerExchange();
+        exchange.setRequestChannel(channel(content, capacities));
+        exchange.setRequestContentLength(ChannelReader.MAX_ARRAY_SIZE);
+
+        assertArrayEquals(content, ChannelReader.readBytes(exchange));
+        assertTrue(capacities.stream().allMatch(c -> c <= ChannelReader.MAX_INITIAL_CAPACITY));
+    }
+
+    @Test
+    public void testTruncatedContent() throws Exception {
+        var content = content(100 * 1024);
+        var exchange = new HttpServerExchange();
+        exchange.setRequestChannel(channel(content, new ArrayList<>()));
+        exchange.setRequestContentLength(content.length + 1024);
+
+        assertArrayEquals(content, ChannelReader.readBytes(exchange));
+    }
+
+    @Test
+    public void testEmptyContent() throws Exception {
+        var exchange = new HttpServerExchange();
+        exchange.setRequestChannel(channel(new byte[0], new ArrayList<>()));
+        exchange.setRequestContentLength(0);
+
+        assertArrayEquals(new byte[0], ChannelReader.readBytes(exchange));
+    }
+}
@@ -0,0 +1,64 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-commons
+ * %%
+ * Copyright (C) 2019 - 2022 SoftInstigate
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class SlidingWindowCountersTest {
+    @Test
+    public void testSlidingWindow() {
+        var clock = new AtomicLong(1_000_000);
+        var counters = new SlidingWindowCounters<String>(10, 100, clock::get);
+
+        assertEquals(1, counters.increment("a"));
+        assertEquals(2, counters.increment("a"));
+        assertEquals(1, counters.increment("b"));
+
+        clock.addAndGet(5_000);
+        assertEquals(3, counters.increment("a"));
+
+        // the first two events are out of the window
+        clock.addAndGet(5_000);
+        assertEquals(1, counters.count("a"));
+
+        clock.addAndGet(10_000);
+        assertEquals(0, counters.count("a"));
+        assertEquals(0, counters.count("unknown"));
+    }
+
+    @Test
+    public void testBounded() {
+        var counters = new SlidingWindowCounters<Integer>(10, 100);
+
+        for (var key = 0; key < 10_000; key++) {
+            counters.increment(key);
+        }
+
+        counters.cleanUp();
+
+        assertTrue(counters.size() <= 100);
+        assertTrue(counters.evictions() >= 9_900);
+    }
+}
@@ -29,6 +29,7 @@ import org.restheart.exchange.UninitializedRequest;
 import org.restheart.exchange.UninitializedResponse;
 import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.PluginsRegistryImpl;
+import org.restheart.plugins.ServicePipeline;
 import org.restheart.plugins.WildcardInterceptor;
 import org.restheart.utils.LambdaUtils;
 import org.restheart.utils.PluginUtils;
@@ -88,7 +89,7 @@ public class BeforeExchangeInitInterceptorsExecutor extends PipelinedHandler {
         var request = UninitializedRequest.of(exchange);
         var response = UninitializedResponse.of(exchange);
 
-        var handlingPlugin = PluginUtils.handlingService(pluginsRegistry, exchange);
+        var handlingPlugin = ServicePipeline.handlingService(pluginsRegistry, exchange);
 
         if (handlingPlugin != null) {
             // if the request is handled by a service set to not execute intrceptors
@@ -27,7 +27,7 @@ import static org.restheart.exchange.CORSHeaders.ACCESS_CONTROL_EXPOSE_HEADERS;
 
 import org.restheart.exchange.Request;
 import org.restheart.plugins.PluginsRegistryImpl;
-import org.restheart.utils.PluginUtils;
+import org.restheart.plugins.ServicePipeline;
 
 /**
  *
@@ -38,7 +38,7 @@ import org.restheart.utils.PluginUtils;
  */
 public class CORSHandler extends PipelinedHandler {
     public static void injectAccessControlAllowHeaders(HttpServerExchange exchange) {
-        var handlingService = PluginUtils.handlingService(PluginsRegistryImpl.getInstance(), exchange);
+        var handlingService = ServicePipeline.handlingService(PluginsRegistryImpl.getInstance(), exchange);
 
         if (handlingService == null) {
             // it must be a proxied or static resource
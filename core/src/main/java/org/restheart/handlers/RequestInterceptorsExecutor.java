@@ -22,7 +22,6 @@ package org.restheart.handlers;
 
 import io.undertow.server.HttpServerExchange;
 
-import java.util.List;
 
 import org.restheart.exchange.ByteArrayProxyRequest;
 import org.restheart.exchange.ByteArrayProxyResponse;
@@ -36,6 +35,7 @@ import org.restheart.plugins.Interceptor;
 import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.PluginsRegistryImpl;
 import org.restheart.plugins.Service;
+import org.restheart.plugins.ServicePipeline;
 import org.restheart.utils.HttpStatus;
 import org.restheart.utils.LambdaUtils;
 import org.restheart.utils.PluginUtils;
@@ -85,43 +85,52 @@ public class RequestInterceptorsExecutor extends PipelinedHandler {
         Request<?> request;
         Response<?> response;
 
-        var handlingService = (Service<ServiceRequest<?>, ServiceResponse<?>>) PluginUtils.handlingService(pluginsRegistry, exchange);
+        var servicePipeline = ServicePipeline.of(exchange);
 
-        List<Interceptor<?, ?>> interceptors;
+        Service<ServiceRequest<?>, ServiceResponse<?>> handlingService;
+        Interceptor<?, ?>[] interceptors;
+
+        if (servicePipeline != null) {
+            // the service and its interceptors are resolved once by the compiled pipeline
+            handlingService = (Service<ServiceRequest<?>, ServiceResponse<?>>) servicePipeline.getService();
+            interceptors = servicePipeline.getInterceptors(interceptPoint);
+        } else {
+            handlingService = (Service<ServiceRequest<?>, ServiceResponse<?>>) PluginUtils.handlingService(pluginsRegistry, exchange);
+            interceptors = (handlingService != null
+                ? pluginsRegistry.getServiceInterceptors(handlingService, interceptPoint)
+                : pluginsRegistry.getProxyInterceptors(interceptPoint)).toArray(Interceptor<?, ?>[]::new);
+        }
 
         if (handlingService != null) {
             request = ServiceRequest.of(exchange, ServiceRequest.class);
             response = ServiceResponse.of(exchange, ServiceResponse.class);
-            interceptors = pluginsRegistry.getServiceInterceptors(handlingService, interceptPoint);
         } else {
             request = ByteArrayProxyRequest.of(exchange);
             response = ByteArrayProxyResponse.of(exchange);
-            interceptors = pluginsRegistry.getProxyInterceptors(interceptPoint);
         }
 
-        interceptors.stream()
-            .filter(ri -> ri instanceof Interceptor)
-            .map(ri -> (Interceptor) ri)
-            .filter(ri -> {
+        for (var _ri: interceptors) {
+            var ri = (Interceptor) _ri;
+            boolean resolved;
+
             try {
-                return ri.resolve(request, response);
+                resolved = ri.resolve(request, response);
             } catch (Exception e) {
                 LOGGER.warn("Error resolving interceptor {} for {} on intercept point {}", ri.getClass().getSimpleName(), exchange.getRequestPath(), interceptPoint, e);
+                resolved = false;
+            }
 
-                return false;
-            }})
-            .forEachOrdered(ri -> {
+            if (resolved) {
                 try {
                     LOGGER.debug("Executing interceptor {} for {} on intercept point {}", PluginUtils.name(ri), exchange.getRequestPath(), interceptPoint);
-
                     ri.handle(request, response);
                 } catch (Exception ex) {
                     LOGGER.error("Error executing interceptor {} for {} on intercept point {}", PluginUtils.name(ri), exchange.getRequestPath(), interceptPoint, ex);
-
                     Exchange.setInError(exchange);
                     LambdaUtils.throwsSneakyException(ex);
                 }
-            });
+            }
+        }
 
         // If an interceptor sets the response as errored
         // stop processing the request and send the response
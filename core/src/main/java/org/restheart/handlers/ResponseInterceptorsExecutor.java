@@ -21,7 +21,6 @@
 package org.restheart.handlers;
 
 import io.undertow.server.HttpServerExchange;
-import java.util.List;
 import org.restheart.exchange.ByteArrayProxyRequest;
 import org.restheart.exchange.ByteArrayProxyResponse;
 import org.restheart.exchange.Exchange;
@@ -34,6 +33,7 @@ import org.restheart.plugins.Interceptor;
 import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.PluginsRegistryImpl;
 import org.restheart.plugins.Service;
+import org.restheart.plugins.ServicePipeline;
 import org.restheart.utils.LambdaUtils;
 import org.restheart.utils.PluginUtils;
 import static org.restheart.utils.PluginUtils.requiresContent;
@@ -79,7 +79,10 @@ public class ResponseInterceptorsExecutor extends PipelinedHandler {
         Request request;
         Response response;
 
-        var handlingService = PluginUtils.handlingService(pluginsRegistry, exchange);
+        var servicePipeline = ServicePipeline.of(exchange);
+        var handlingService = servicePipeline != null
+            ? servicePipeline.getService()
+            : PluginUtils.handlingService(pluginsRegistry, exchange);
 
         if (handlingService != null) {
             request = ServiceRequest.of(exchange, ServiceRequest.class);
@@ -91,37 +94,48 @@ public class ResponseInterceptorsExecutor extends PipelinedHandler {
 
         if (!Exchange.responseInterceptorsExecuted(exchange)) {
             Exchange.setResponseInterceptorsExecuted(exchange);
-            executeAsyncResponseInterceptor(exchange, handlingService, request, response);
-            executeResponseInterceptor(exchange, handlingService, request, response);
+            executeAsyncResponseInterceptor(exchange, interceptors(servicePipeline, handlingService, InterceptPoint.RESPONSE_ASYNC), request, response);
+            executeResponseInterceptor(exchange, interceptors(servicePipeline, handlingService, InterceptPoint.RESPONSE), request, response);
         }
 
         next(exchange);
     }
 
+    /**
+     * @return the interceptors from the compiled service pipeline, if available, otherwise from the registry
+     */
+    private Interceptor<?, ?>[] interceptors(ServicePipeline servicePipeline, Service<?, ?> handlingService, InterceptPoint interceptPoint) {
+        if (servicePipeline != null) {
+            return servicePipeline.getInterceptors(interceptPoint);
+        } else if (handlingService != null) {
+            return this.pluginsRegistry.getServiceInterceptors(handlingService, interceptPoint).toArray(Interceptor<?, ?>[]::new);
+        } else {
+            return this.pluginsRegistry.getProxyInterceptors(interceptPoint).toArray(Interceptor<?, ?>[]::new);
+        }
+    }
+
     @SuppressWarnings({"rawtypes","unchecked"})
-    private void executeResponseInterceptor(HttpServerExchange exchange, Service handlingService, Request request, Response response) {
+    private boolean resolve(HttpServerExchange exchange, Interceptor ri, InterceptPoint interceptPoint, Request request, Response response) {
+        if (this.filterRequiringContent && requiresContent(ri)) {
+            return false;
+        }
 
-        Exchange.setResponseInterceptorsExecuted(exchange);
+        try {
+            return ri.resolve(request, response);
+        } catch (Exception e) {
+            LOGGER.warn("Error resolving interceptor {} for {} on intercept point {}", ri.getClass().getSimpleName(), exchange.getRequestPath(), interceptPoint, e);
+            return false;
+        }
+    }
 
-        List<Interceptor<?,?>> inteceptors;
+    @SuppressWarnings({"rawtypes","unchecked"})
+    private void executeResponseInterceptor(HttpServerExchange exchange, Interceptor<?, ?>[] interceptors, Request request, Response response) {
+        Exchange.setResponseInterceptorsExecuted(exchange);
 
-        if (handlingService != null) {
-            inteceptors = this.pluginsRegistry.getServiceInterceptors(handlingService, InterceptPoint.RESPONSE);
-        } else {
-            inteceptors = this.pluginsRegistry.getProxyInterceptors(InterceptPoint.RESPONSE);
-        }
+        for (var _ri: interceptors) {
+            var ri = (Interceptor) _ri;
 
-        inteceptors.stream()
-            .filter(ri -> ri instanceof Interceptor)
-            .map(ri -> (Interceptor) ri)
-            .filter(ri -> !this.filterRequiringContent || !requiresContent(ri)).filter(ri -> {
-                try {
-                    return ri.resolve(request, response);
-                } catch (Exception e) {
-                    LOGGER.warn("Error resolving interceptor {} for {} on intercept point {}", ri.getClass().getSimpleName(), exchange.getRequestPath(), InterceptPoint.RESPONSE, e);
-                    return false;
-                }
-            }).forEachOrdered(ri -> {
+            if (resolve(exchange, ri, InterceptPoint.RESPONSE, request, response)) {
                 LOGGER.debug("Executing interceptor {} for {} on intercept point {}", PluginUtils.name(ri), exchange.getRequestPath(), InterceptPoint.RESPONSE);
 
                 try {
@@ -132,36 +146,18 @@ public class ResponseInterceptorsExecutor extends PipelinedHandler {
                     Exchange.setInError(exchange);
                     LambdaUtils.throwsSneakyException(ex);
                 }
-            });
+            }
+        }
     }
 
     @SuppressWarnings({"unchecked","rawtypes"})
-    private void executeAsyncResponseInterceptor(HttpServerExchange exchange, Service handlingService, Request request, Response response) {
-
-        List<Interceptor<?, ?>> inteceptors;
-
-        if (handlingService != null) {
-            inteceptors = this.pluginsRegistry.getServiceInterceptors(handlingService, InterceptPoint.RESPONSE_ASYNC);
-        } else {
-            inteceptors = this.pluginsRegistry.getProxyInterceptors(InterceptPoint.RESPONSE_ASYNC);
-        }
-
+    private void executeAsyncResponseInterceptor(HttpServerExchange exchange, Interceptor<?, ?>[] interceptors, Request request, Response response) {
         Exchange.setResponseInterceptorsExecuted(exchange);
 
-        inteceptors.stream()
-            .filter(ri -> ri instanceof Interceptor)
-            .map(ri -> (Interceptor) ri)
-            .filter(ri -> !this.filterRequiringContent || !requiresContent(ri))
-            .filter(ri -> {
-                try {
-                    return ri.resolve(request, response);
-                } catch (Exception e) {
-                    LOGGER.warn("Error resolving interceptor {} for {} on intercept point {}", ri.getClass().getSimpleName(), exchange.getRequestPath(), InterceptPoint.RESPONSE_ASYNC);
+        for (var _ri: interceptors) {
+            var ri = (Interceptor) _ri;
 
-                    return false;
-                }
-            })
-            .forEachOrdered(ri -> {
+            if (resolve(exchange, ri, InterceptPoint.RESPONSE_ASYNC, request, response)) {
                 exchange.getConnection().getWorker().execute(() -> {
                     LOGGER.debug("Executing interceptor {} for {} on intercept point {}", PluginUtils.name(ri), exchange.getRequestPath(), InterceptPoint.RESPONSE_ASYNC);
 
@@ -174,7 +170,7 @@ public class ResponseInterceptorsExecutor extends PipelinedHandler {
                         LambdaUtils.throwsSneakyException(ex);
                     }
                 });
-            });
+            }
+        }
     }
-
 }
@@ -21,12 +21,16 @@
 package org.restheart.handlers;
 
 import io.undertow.server.HttpServerExchange;
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.Optional;
+import org.restheart.exchange.BsonResponse;
 import org.restheart.exchange.ByteArrayProxyResponse;
 import org.restheart.exchange.PipelineInfo;
 import org.restheart.exchange.ServiceResponse;
 import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.PluginsRegistryImpl;
+import org.restheart.plugins.ServicePipeline;
 
 /**
  *
@@ -59,14 +63,18 @@ public class ResponseSender extends PipelinedHandler {
     @Override
     @SuppressWarnings("rawtypes")
     public void handleRequest(HttpServerExchange exchange) throws Exception {
-        var path = exchange.getRequestPath();
+        var servicePipeline = ServicePipeline.of(exchange);
 
-        var pi = pluginsRegistry.getPipelineInfo(path);
+        var pi = servicePipeline != null
+            ? servicePipeline.getPipelineInfo()
+            : pluginsRegistry.getPipelineInfo(exchange.getRequestPath());
 
         if (pi.getType() == PipelineInfo.PIPELINE_TYPE.SERVICE) {
-            var srv = pluginsRegistry.getServices().stream()
-                .filter(s -> s.getName().equals(pi.getName()))
-                .findAny();
+            var srv = servicePipeline != null
+                ? Optional.of(servicePipeline.getServiceRecord())
+                : pluginsRegistry.getServices().stream()
+                    .filter(s -> s.getName().equals(pi.getName()))
+                    .findAny();
 
             if (srv.isPresent()) {
                 var response = (ServiceResponse) srv.get().getInstance().response().apply(exchange);
@@ -79,6 +87,19 @@ public class ResponseSender extends PipelinedHandler {
                 if (response.getCustomerSender() != null) {
                     // use the custom sender if it has been set
                     response.getCustomerSender().run();
+                } else if (response instanceof BsonResponse bresponse) {
+                    if (exchange.isBlocking() && !exchange.isInIoThread()) {
+                        // stream the content directly to the pooled buffers of the response output stream
+                        var os = exchange.getOutputStream();
+                        if (bresponse.writeContent(os)) {
+                            os.close();
+                        }
+                    } else {
+                        var os = new ByteArrayOutputStream();
+                        if (bresponse.writeContent(os)) {
+                            exchange.getResponseSender().send(ByteBuffer.wrap(os.toByteArray()));
+                        }
+                    }
                 } else {
                     var content = response.readContent();
                     if (content != null) {
@@ -25,6 +25,7 @@ import org.restheart.exchange.Request;
 import org.restheart.handlers.PipelinedHandler;
 import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.PluginsRegistryImpl;
+import org.restheart.plugins.ServicePipeline;
 
 /**
  *
@@ -33,9 +34,12 @@ import org.restheart.plugins.PluginsRegistryImpl;
  * Injects the PipelineInfo to allows to programmatically understand which
  * pipeline (service, proxy or static resource) is handling the request via
  * Request.getPipelineInfo()
+ *
+ * For service pipelines, it also binds the compiled ServicePipeline to the exchange
  */
 public class PipelineInfoInjector extends PipelinedHandler {
     private final PluginsRegistry pluginsRegistry = PluginsRegistryImpl.getInstance();
+    private final ServicePipeline servicePipeline;
 
     /**
      * Creates a new instance of PipelineInfoInjector
@@ -44,6 +48,17 @@ public class PipelineInfoInjector extends PipelinedHandler {
      */
     public PipelineInfoInjector(PipelinedHandler next) {
         super(next);
+        this.servicePipeline = null;
+    }
+
+    /**
+     * Creates a new instance of PipelineInfoInjector for a service pipeline
+     *
+     * @param servicePipeline the compiled pipeline of the service
+     */
+    public PipelineInfoInjector(ServicePipeline servicePipeline) {
+        super(null);
+        this.servicePipeline = servicePipeline;
     }
 
     /**
@@ -51,7 +66,7 @@ public class PipelineInfoInjector extends PipelinedHandler {
      *
      */
     public PipelineInfoInjector() {
-        this(null);
+        this((PipelinedHandler) null);
     }
 
     /**
@@ -61,7 +76,12 @@ public class PipelineInfoInjector extends PipelinedHandler {
      */
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
-        Request.setPipelineInfo(exchange, pluginsRegistry.getPipelineInfo(exchange.getRequestPath()));
+        if (this.servicePipeline != null) {
+            Request.setPipelineInfo(exchange, this.servicePipeline.getPipelineInfo());
+            this.servicePipeline.bind(exchange);
+        } else {
+            Request.setPipelineInfo(exchange, pluginsRegistry.getPipelineInfo(exchange.getRequestPath()));
+        }
 
         next(exchange);
     }
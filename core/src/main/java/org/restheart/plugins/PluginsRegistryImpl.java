@@ -27,8 +27,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import java.util.Objects;
@@ -260,20 +262,34 @@ public class PluginsRegistryImpl implements PluginsRegistry {
 
     @Override
     public void addInterceptor(PluginRecord<Interceptor<?, ?>> i) {
-        this.SRV_INTERCEPTORS_CACHE.invalidateAll();
-
         if (this.interceptors == null) {
             // avoid NPE if not already initialized
             getInterceptors();
         }
 
         this.interceptors.add(i);
+
+        invalidateInterceptors();
     }
 
     @Override
     public boolean removeInterceptorIf(java.util.function.Predicate<? super PluginRecord<Interceptor<?, ?>>> filter) {
+        var ret = this.interceptors.removeIf(filter);
+        invalidateInterceptors();
+        return ret;
+    }
+
+    /**
+     * the compiled pipelines of the plugged services, by uri
+     */
+    private final Map<String, ServicePipeline> servicePipelines = new ConcurrentHashMap<>();
+
+    /**
+     * invalidates the interceptors cache and the interceptors of the compiled service pipelines
+     */
+    private void invalidateInterceptors() {
         this.SRV_INTERCEPTORS_CACHE.invalidateAll();
-        return this.interceptors.removeIf(filter);
+        this.servicePipelines.values().forEach(ServicePipeline::invalidate);
     }
 
     private LoadingCache<AbstractMap.SimpleEntry<String, InterceptPoint>, List<Interceptor<?, ?>>> SRV_INTERCEPTORS_CACHE = CacheFactory
@@ -282,6 +298,10 @@ public class PluginsRegistryImpl implements PluginsRegistry {
     private List<Interceptor<?, ?>> __interceptors(String serviceName, InterceptPoint interceptPoint) {
         Optional<PluginRecord<Service<?, ?>>> _service = serviceName == null ? Optional.empty() : getServices().stream().filter(pr -> serviceName.equals(pr.getName())).findFirst();
 
+        return __interceptors(_service, interceptPoint);
+    }
+
+    private List<Interceptor<?, ?>> __interceptors(Optional<PluginRecord<Service<?, ?>>> _service, InterceptPoint interceptPoint) {
         if (_service.isPresent()) {
             // if the request is handled by a service set to not execute interceptors
             // at this interceptPoint, skip interceptors execution
@@ -422,7 +442,13 @@ public class PluginsRegistryImpl implements PluginsRegistry {
 
             var blockingSrv = PluginUtils.blocking(srv.getInstance());
 
-            var _srv = pipe(new PipelineInfoInjector(),
+            var pipelineInfo = new PipelineInfo(SERVICE, uri, mp, srv.getName());
+
+            // the interceptors are resolved directly, bypassing SRV_INTERCEPTORS_CACHE,
+            // since the compiled pipeline caches them
+            var servicePipeline = new ServicePipeline(srv, pipelineInfo, ip -> __interceptors(Optional.of(srv), ip));
+
+            var _srv = pipe(new PipelineInfoInjector(servicePipeline),
                 // if service is blocking (i.e. @RegisterPlugin(blocking=true))
                 // add WorkingThreadsPoolDispatcher to the pipe
                 blockingSrv ? new WorkingThreadsPoolDispatcher() : null,
@@ -442,12 +468,13 @@ public class PluginsRegistryImpl implements PluginsRegistry {
                 new ResponseSender()
             );
 
-            plugPipeline(uri, _srv, new PipelineInfo(SERVICE, uri, mp, srv.getName()));
+            plugPipeline(uri, _srv, pipelineInfo);
 
             this.services.add(srv);
+            this.servicePipelines.put(uri, servicePipeline);
 
             // service list changed, invalidate cache
-            this.SRV_INTERCEPTORS_CACHE.invalidateAll();
+            invalidateInterceptors();
     }
 
     /**
@@ -460,6 +487,7 @@ public class PluginsRegistryImpl implements PluginsRegistry {
         var pi = getPipelineInfo(uri);
 
         this.services.removeIf(s -> s.getName().equals(pi.getName()));
+        this.servicePipelines.remove(uri);
 
         if (mp == MATCH_POLICY.PREFIX) {
             ROOT_PATH_HANDLER.removePrefixPath(uri);
@@ -470,6 +498,6 @@ public class PluginsRegistryImpl implements PluginsRegistry {
         }
 
         // service list changed, invalidate cache
-        this.SRV_INTERCEPTORS_CACHE.invalidateAll();
+        invalidateInterceptors();
     }
 }
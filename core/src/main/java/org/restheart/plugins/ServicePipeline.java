@@ -0,0 +1,159 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-core
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.plugins;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.restheart.exchange.PipelineInfo;
+import org.restheart.utils.PluginUtils;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+
+/**
+ * The compiled pipeline of a service, built by PluginsRegistryImpl.plugService()
+ * and bound to the exchange by PipelineInfoInjector.
+ *
+ * It holds the service record, the PipelineInfo and the interceptors to
+ * execute at each InterceptPoint, so that the handlers of the pipeline don't
+ * need to look them up in the registry for every request.
+ *
+ * The interceptors arrays are computed on first use and recomputed after
+ * the registry invalidates them, i.e. when interceptors or services change.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ServicePipeline {
+    private static final AttachmentKey<ServicePipeline> SERVICE_PIPELINE_KEY = AttachmentKey.create(ServicePipeline.class);
+
+    private static final Interceptor<?, ?>[] NO_INTERCEPTORS = new Interceptor<?, ?>[0];
+
+    private final PluginRecord<Service<?, ?>> service;
+    private final PipelineInfo pipelineInfo;
+    private final Function<InterceptPoint, List<Interceptor<?, ?>>> interceptorsResolver;
+
+    private volatile Interceptor<?, ?>[][] interceptors = null;
+
+    /**
+     *
+     * @param service the record of the service
+     * @param pipelineInfo the PipelineInfo of the service
+     * @param interceptorsResolver returns the interceptors of the service at the given InterceptPoint
+     */
+    public ServicePipeline(PluginRecord<Service<?, ?>> service, PipelineInfo pipelineInfo, Function<InterceptPoint, List<Interceptor<?, ?>>> interceptorsResolver) {
+        this.service = Objects.requireNonNull(service);
+        this.pipelineInfo = Objects.requireNonNull(pipelineInfo);
+        this.interceptorsResolver = Objects.requireNonNull(interceptorsResolver);
+    }
+
+    /**
+     *
+     * @param exchange
+     * @return the ServicePipeline bound to the exchange, null if the request is not handled by a service pipeline
+     */
+    public static ServicePipeline of(HttpServerExchange exchange) {
+        return exchange.getAttachment(SERVICE_PIPELINE_KEY);
+    }
+
+    /**
+     *
+     * @param registry
+     * @param exchange
+     * @return the service handling the exchange or null if the request is not
+     *         handled by a service; uses the ServicePipeline bound to the exchange,
+     *         if any, falling back to PluginUtils.handlingService()
+     */
+    public static Service<?, ?> handlingService(PluginsRegistry registry, HttpServerExchange exchange) {
+        var servicePipeline = of(exchange);
+
+        return servicePipeline != null ? servicePipeline.getService() : PluginUtils.handlingService(registry, exchange);
+    }
+
+    /**
+     * binds this pipeline to the exchange
+     *
+     * @param exchange
+     */
+    public void bind(HttpServerExchange exchange) {
+        exchange.putAttachment(SERVICE_PIPELINE_KEY, this);
+    }
+
+    /**
+     * @return the record of the service
+     */
+    public PluginRecord<Service<?, ?>> getServiceRecord() {
+        return service;
+    }
+
+    /**
+     * @return the service
+     */
+    public Service<?, ?> getService() {
+        return service.getInstance();
+    }
+
+    /**
+     * @return the PipelineInfo
+     */
+    public PipelineInfo getPipelineInfo() {
+        return pipelineInfo;
+    }
+
+    /**
+     *
+     * @param interceptPoint
+     * @return the interceptors of the service at interceptPoint, in execution order; the array must not be modified
+     */
+    public Interceptor<?, ?>[] getInterceptors(InterceptPoint interceptPoint) {
+        var _interceptors = this.interceptors;
+
+        if (_interceptors == null) {
+            _interceptors = compile();
+        }
+
+        return _interceptors[interceptPoint.ordinal()];
+    }
+
+    private synchronized Interceptor<?, ?>[][] compile() {
+        if (this.interceptors == null) {
+            var points = InterceptPoint.values();
+            var _interceptors = new Interceptor<?, ?>[points.length][];
+
+            for (var point: points) {
+                var list = interceptorsResolver.apply(point);
+                _interceptors[point.ordinal()] = list == null || list.isEmpty() ? NO_INTERCEPTORS : list.toArray(Interceptor<?, ?>[]::new);
+            }
+
+            this.interceptors = _interceptors;
+        }
+
+        return this.interceptors;
+    }
+
+    /**
+     * forces the interceptors to be recomputed on next use
+     */
+    synchronized void invalidate() {
+        this.interceptors = null;
+    }
+}
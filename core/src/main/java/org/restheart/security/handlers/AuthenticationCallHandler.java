@@ -24,13 +24,13 @@ import io.undertow.attribute.ExchangeAttributes;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import java.util.concurrent.TimeUnit;
-import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Slf4jReporter;
-import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
 import com.codahale.metrics.Slf4jReporter.LoggingLevel;
-import static org.restheart.utils.MetricsUtils.failedAuthHistogramName;
+import static org.restheart.utils.MetricsUtils.countFailedAuth;
+import static org.restheart.utils.MetricsUtils.failedAuthKey;
 
 import org.restheart.exchange.Request;
 import org.restheart.handlers.CORSHandler;
@@ -66,8 +66,7 @@ public class AuthenticationCallHandler extends PipelinedHandler {
                 .outputTo(LOGGER)
                 .filter((name, metric) ->
                     name.startsWith(MetricRegistry.name(Authenticator.class, FAILED_AUTH_METRIC_PREFIX))
-                    && metric instanceof Histogram hist
-                    && hist.getSnapshot().getMax() > 0)
+                    && metric instanceof Gauge)
                 .withLoggingLevel(LoggingLevel.TRACE)
                 .build()
                 .start(5, TimeUnit.SECONDS);
@@ -121,43 +120,18 @@ public class AuthenticationCallHandler extends PipelinedHandler {
     }
 
     /**
-     * Registers stats of failed authentication in dropwizard's
-     * slide time window histograms of 10 seconds.
+     * Counts the failed authentication in a sliding time window of 10 seconds
+     * keyed by the remote ip or the value of the header X-Forwarded-For,
+     * depending on the configuration of bruteForceAttackGuard.
      *
-     * For each request, register one histogram whose name contains the remote ip
-     * and one with the value of the header X-Forwarded-For, if present.
-     *
-     * This method updates the histograms with with max+1 for failed ones,
-     * so that the max of each histogram is the number of failed authentications
-     * in the last 10 seconds.
+     * The number of tracked keys is bounded, so that an attacker sending
+     * many requests with rotating ips or X-Forwarded-For headers cannot
+     * cause unbounded memory growth.
      *
      * @param exchange
-     * @param success
      */
     private void updateFailedAuthMetrics(HttpServerExchange exchange) {
-        // update the histo
-        _update(AUTH_METRIC_REGISTRY.histogram(failedAuthHistogramName(exchange), () -> new Histogram(new SlidingTimeWindowArrayReservoir(10, TimeUnit.SECONDS))));
-
-        // every 100 failed requests, prune metrics
-        tryPruneMetrics();
-    }
-
-    private void _update(Histogram histo) {
-        histo.update(histo.getSnapshot().getMax()+1);
-    }
-
-    /**
-     * Cleaup metrics to avoid memory leaks when an attacker sends
-     * many requests with rotating ips or X-Forwarded-For headers
-     * generating many dropwizard's meters
-     */
-    private void tryPruneMetrics() {
-        var total = AUTH_METRIC_REGISTRY.counter(MetricRegistry.name(Authenticator.class, "_total"));
-        total.inc();
-        if (total.getCount() % 100 == 0) {
-            total.dec(total.getCount());
-            LOGGER.trace("Pruning auth metrics");
-            AUTH_METRIC_REGISTRY.removeMatching((name, metric) -> name.startsWith(MetricRegistry.name(Authenticator.class, FAILED_AUTH_METRIC_PREFIX)));
-        }
+        var failed = countFailedAuth(exchange);
+        LOGGER.trace("Failed auth attempts in last 10 seconds from {}: {}", failedAuthKey(exchange), failed);
     }
-}
\ No newline at end of file
+}
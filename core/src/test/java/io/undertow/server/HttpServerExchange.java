@@ -150,6 +150,10 @@ public class HttpServerExchange extends AbstractAttachable {
         return new ByteArrayInputStream("FAKE_STREAM".getBytes());
     }
 
+    public long getRequestContentLength() {
+        return -1;
+    }
+
     public HeaderMap getRequestHeaders() {
         return null;
     }
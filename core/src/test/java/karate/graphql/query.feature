@@ -45,7 +45,7 @@ Feature: GraphQL query response test
   Scenario: Illegal HTTP method
 
     Given request {}
-    When method GET
+    When method PUT
     Then status 405
 
     * call confDestroyer
@@ -70,6 +70,71 @@ Feature: GraphQL query response test
     * call confDestroyer
 
 
+  Scenario: Query with GET
+
+    Given param query = '{ users(limit: 2, skip:1) { id } }'
+    When method GET
+    Then status 200
+    And match response.data.users == '#[2]'
+
+    * call confDestroyer
+
+
+  Scenario: Query with GET without query
+
+    When method GET
+    Then status 400
+
+    * call confDestroyer
+
+
+  Scenario: Automatic persisted query
+
+    * def query = '{ users(limit: 2, skip:1) { id } }'
+    * def hash = 'c15674f8b7fd06cfc1fa7b8b2482b1570793679fffbc7a163e5bd09817b70621'
+    * def pq = { persistedQuery: { version: 1, sha256Hash: '#(hash)' } }
+
+    # unknown hash
+    Given request { extensions: { persistedQuery: { version: 1, sha256Hash: 'c15674f8b7fd06cfc1fa7b8b2482b1570793679fffbc7a163e5bd09817b70000' } } }
+    When method POST
+    Then status 400
+    And match response.errors[0].message == 'PersistedQueryNotFound'
+
+    # wrong hash
+    Given path 'testapp'
+    And header Authorization = rhBasicAuth
+    And request { query: '#(query)', extensions: { persistedQuery: { version: 1, sha256Hash: 'c15674f8b7fd06cfc1fa7b8b2482b1570793679fffbc7a163e5bd09817b70000' } } }
+    When method POST
+    Then status 400
+    And match response.errors[0].message == 'PersistedQueryIdInvalid'
+
+    # register the query
+    Given path 'testapp'
+    And header Authorization = rhBasicAuth
+    And request { query: '#(query)', extensions: '#(pq)' }
+    When method POST
+    Then status 200
+    And match response.data.users == '#[2]'
+
+    # hash only
+    Given path 'testapp'
+    And header Authorization = rhBasicAuth
+    And request { extensions: '#(pq)' }
+    When method POST
+    Then status 200
+    And match response.data.users == '#[2]'
+
+    # hash only with GET
+    Given path 'testapp'
+    And header Authorization = rhBasicAuth
+    And param extensions = karate.toJson(pq)
+    When method GET
+    Then status 200
+    And match response.data.users == '#[2]'
+
+    * call confDestroyer
+
+
   Scenario: Undefined GraphQL query
 
     * text query =
@@ -0,0 +1,230 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-core
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.handlers;
+
+import static org.restheart.exchange.PipelineInfo.PIPELINE_TYPE.SERVICE;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.restheart.cache.CacheFactory;
+import org.restheart.cache.LoadingCache;
+import org.restheart.exchange.PipelineInfo;
+import org.restheart.exchange.Request;
+import org.restheart.exchange.ServiceRequest;
+import org.restheart.exchange.ServiceResponse;
+import org.restheart.exchange.StringRequest;
+import org.restheart.exchange.StringResponse;
+import org.restheart.handlers.injectors.PipelineInfoInjector;
+import org.restheart.plugins.InterceptPoint;
+import org.restheart.plugins.Interceptor;
+import org.restheart.plugins.PluginRecord;
+import org.restheart.plugins.RegisterPlugin;
+import org.restheart.plugins.RegisterPlugin.MATCH_POLICY;
+import org.restheart.plugins.Service;
+import org.restheart.plugins.ServicePipeline;
+import org.restheart.plugins.StringInterceptor;
+import org.restheart.plugins.StringService;
+import org.restheart.utils.PluginUtils;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Methods;
+import io.undertow.util.PathMatcher;
+
+/**
+ * Measures the dispatch of a request to an empty service through the
+ * interceptors executors, comparing the compiled ServicePipeline with the
+ * previous implementation, that for every intercept point looked up the
+ * handling service in the registry and the interceptors in the cache keyed by
+ * a new SimpleEntry, and walked them with streams.
+ *
+ * The ResponseSender is left out since it requires a connection that the
+ * mocked HttpServerExchange does not provide.
+ *
+ * run it with:
+ * mvn test-compile exec:java -Dexec.mainClass=org.restheart.handlers.ServicePipelineBenchmark -Dexec.classpathScope=test
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServicePipelineBenchmark {
+    private static final String URI = "/empty";
+    private static final String NAME = "emptyService";
+
+    @Param({ "10", "50" })
+    public int services;
+
+    @Param({ "0", "8" })
+    public int interceptors;
+
+    private PluginRecord<Service<?, ?>> service;
+    private List<Interceptor<?, ?>> serviceInterceptors;
+
+    // state of the previous implementation
+    private Set<PluginRecord<Service<?, ?>>> registryServices;
+    private PathMatcher<PipelineInfo> pipelineInfos;
+    private LoadingCache<AbstractMap.SimpleEntry<String, InterceptPoint>, List<Interceptor<?, ?>>> interceptorsCache;
+
+    private PipelinedHandler compiledPipeline;
+
+    @RegisterPlugin(name = NAME, description = "does nothing")
+    public static class EmptyService implements StringService {
+        @Override
+        public void handle(StringRequest request, StringResponse response) {
+        }
+    }
+
+    private static class NotResolvingInterceptor implements StringInterceptor {
+        @Override
+        public void handle(StringRequest request, StringResponse response) {
+        }
+
+        @Override
+        public boolean resolve(StringRequest request, StringResponse response) {
+            return false;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        this.service = new PluginRecord<>(NAME, "", false, true, EmptyService.class.getName(), new EmptyService(), null);
+        this.serviceInterceptors = new ArrayList<>();
+
+        for (var i = 0; i < interceptors; i++) {
+            this.serviceInterceptors.add(new NotResolvingInterceptor());
+        }
+
+        this.registryServices = new LinkedHashSet<>();
+        this.pipelineInfos = new PathMatcher<>();
+
+        for (var i = 0; i < services - 1; i++) {
+            this.registryServices.add(new PluginRecord<>("service" + i, "", false, true, EmptyService.class.getName(), new EmptyService(), null));
+            this.pipelineInfos.addPrefixPath("/service" + i, new PipelineInfo(SERVICE, "/service" + i, MATCH_POLICY.PREFIX, "service" + i));
+        }
+
+        var pipelineInfo = new PipelineInfo(SERVICE, URI, MATCH_POLICY.PREFIX, NAME);
+
+        this.registryServices.add(service);
+        this.pipelineInfos.addPrefixPath(URI, pipelineInfo);
+        this.interceptorsCache = CacheFactory.createHashMapLoadingCache(key -> serviceInterceptors);
+
+        var servicePipeline = new ServicePipeline(service, pipelineInfo, ip -> serviceInterceptors);
+
+        this.compiledPipeline = PipelinedHandler.pipe(new PipelineInfoInjector(servicePipeline),
+            new RequestInterceptorsExecutor(InterceptPoint.REQUEST_BEFORE_AUTH),
+            new RequestInterceptorsExecutor(InterceptPoint.REQUEST_AFTER_AUTH),
+            new ResponseInterceptorsExecutor());
+    }
+
+    private static HttpServerExchange exchange() {
+        var exchange = new HttpServerExchange();
+        exchange.setRequestMethod(Methods.GET);
+        exchange.setRequestPath(URI);
+        exchange.setRelativePath(URI);
+        StringRequest.init(exchange);
+        StringResponse.init(exchange);
+        return exchange;
+    }
+
+    @Benchmark
+    public int compiled() throws Exception {
+        var exchange = exchange();
+        compiledPipeline.handleRequest(exchange);
+        return exchange.getStatusCode();
+    }
+
+    @Benchmark
+    public int legacy() throws Exception {
+        var exchange = exchange();
+
+        // PipelineInfoInjector
+        Request.setPipelineInfo(exchange, pipelineInfos.match(exchange.getRequestPath()).getValue());
+
+        // RequestInterceptorsExecutor
+        legacyExecuteInterceptors(exchange, InterceptPoint.REQUEST_BEFORE_AUTH);
+        legacyExecuteInterceptors(exchange, InterceptPoint.REQUEST_AFTER_AUTH);
+
+        // ResponseInterceptorsExecutor
+        legacyHandlingService(exchange);
+        legacyExecuteInterceptors(exchange, InterceptPoint.RESPONSE_ASYNC);
+        legacyExecuteInterceptors(exchange, InterceptPoint.RESPONSE);
+
+        return exchange.getStatusCode();
+    }
+
+    private Service<?, ?> legacyHandlingService(HttpServerExchange exchange) {
+        var srvName = Request.getPipelineInfo(exchange).getName();
+        return registryServices.stream().filter(s -> srvName.equals(s.getName())).findAny().get().getInstance();
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void legacyExecuteInterceptors(HttpServerExchange exchange, InterceptPoint interceptPoint) throws Exception {
+        var handlingService = legacyHandlingService(exchange);
+        var request = ServiceRequest.of(exchange, ServiceRequest.class);
+        var response = ServiceResponse.of(exchange, ServiceResponse.class);
+        var _interceptors = interceptorsCache.getLoading(new AbstractMap.SimpleEntry<>(PluginUtils.name(handlingService), interceptPoint)).get();
+
+        _interceptors.stream()
+            .filter(ri -> ri instanceof Interceptor)
+            .map(ri -> (Interceptor) ri)
+            .filter(ri -> {
+                try {
+                    return ri.resolve(request, response);
+                } catch (Exception e) {
+                    return false;
+                }
+            })
+            .forEachOrdered(ri -> {
+                try {
+                    ri.handle(request, response);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ServicePipelineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-core
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.restheart.exchange.PipelineInfo.PIPELINE_TYPE.SERVICE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.restheart.exchange.PipelineInfo;
+import org.restheart.exchange.StringRequest;
+import org.restheart.exchange.StringResponse;
+import org.restheart.plugins.RegisterPlugin.MATCH_POLICY;
+
+import io.undertow.server.HttpServerExchange;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ServicePipelineTest {
+    private static class TestService implements StringService {
+        @Override
+        public void handle(StringRequest request, StringResponse response) {
+        }
+    }
+
+    private static class TestInterceptor implements StringInterceptor {
+        @Override
+        public void handle(StringRequest request, StringResponse response) {
+        }
+
+        @Override
+        public boolean resolve(StringRequest request, StringResponse response) {
+            return true;
+        }
+    }
+
+    private final List<Interceptor<?, ?>> interceptors = new ArrayList<>();
+    private final AtomicInteger resolutions = new AtomicInteger();
+
+    private ServicePipeline pipeline() {
+        var service = new PluginRecord<Service<?, ?>>("test", "", false, true, TestService.class.getName(), new TestService(), null);
+        var pipelineInfo = new PipelineInfo(SERVICE, "/test", MATCH_POLICY.PREFIX, "test");
+
+        return new ServicePipeline(service, pipelineInfo, ip -> {
+            resolutions.incrementAndGet();
+            return ip == InterceptPoint.REQUEST_AFTER_AUTH ? interceptors : List.of();
+        });
+    }
+
+    @Test
+    public void testInterceptorsAreResolvedOnce() {
+        var interceptor = new TestInterceptor();
+        interceptors.add(interceptor);
+
+        var pipeline = pipeline();
+
+        var first = pipeline.getInterceptors(InterceptPoint.REQUEST_AFTER_AUTH);
+        var second = pipeline.getInterceptors(InterceptPoint.REQUEST_AFTER_AUTH);
+
+        assertSame(first, second);
+        assertArrayEquals(new Interceptor<?, ?>[] { interceptor }, first);
+        assertEquals(0, pipeline.getInterceptors(InterceptPoint.RESPONSE).length);
+        assertEquals(InterceptPoint.values().length, resolutions.get());
+    }
+
+    @Test
+    public void testInvalidateRecompilesInterceptors() {
+        var pipeline = pipeline();
+
+        assertEquals(0, pipeline.getInterceptors(InterceptPoint.REQUEST_AFTER_AUTH).length);
+
+        var interceptor = new TestInterceptor();
+        interceptors.add(interceptor);
+        pipeline.invalidate();
+
+        assertArrayEquals(new Interceptor<?, ?>[] { interceptor }, pipeline.getInterceptors(InterceptPoint.REQUEST_AFTER_AUTH));
+        assertEquals(2 * InterceptPoint.values().length, resolutions.get());
+    }
+
+    @Test
+    public void testBind() {
+        var exchange = new HttpServerExchange();
+        var pipeline = pipeline();
+
+        pipeline.bind(exchange);
+
+        assertSame(pipeline, ServicePipeline.of(exchange));
+        assertEquals("test", ServicePipeline.of(exchange).getPipelineInfo().getName());
+    }
+}
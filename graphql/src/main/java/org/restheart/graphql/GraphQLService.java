@@ -23,9 +23,7 @@ package org.restheart.graphql;
 import com.google.gson.Gson;
 import com.mongodb.client.MongoClient;
 import graphql.ExecutionInput;
-import graphql.GraphQL;
-import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentation;
-import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentationOptions;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
 import io.undertow.server.HttpServerExchange;
 import org.bson.BsonValue;
 import org.dataloader.DataLoader;
@@ -36,8 +34,11 @@ import org.restheart.exchange.ExchangeKeys;
 import org.restheart.exchange.MongoResponse;
 import org.restheart.graphql.cache.AppDefinitionLoader;
 import org.restheart.graphql.cache.AppDefinitionLoadingCache;
+import org.restheart.graphql.cache.PersistedQueries;
+import org.restheart.graphql.cache.PreparsedDocumentCache;
 import org.restheart.graphql.datafetchers.GraphQLDataFetcher;
 import org.restheart.graphql.dataloaders.AggregationBatchLoader;
+import org.restheart.graphql.dataloaders.BatchLoaderExecutor;
 import org.restheart.graphql.dataloaders.QueryBatchLoader;
 import org.restheart.exchange.GraphQLRequest;
 import org.restheart.graphql.models.AggregationMapping;
@@ -64,10 +65,11 @@ public class GraphQLService implements Service<GraphQLRequest, MongoResponse> {
     public static final Boolean DEFAULT_VERBOSE = false;
     public static final int DEFAULT_DEFAULT_LIMIT = 100;
     public static final int DEFAULT_MAX_LIMIT = 1_000;
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 1_000;
+    public static final int DEFAULT_PERSISTED_QUERIES_CACHE_SIZE = 1_000;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GraphQLService.class);
 
-    private GraphQL gql;
     private String db = DEFAULT_APP_DEF_DB;
     private String collection = DEFAULT_APP_DEF_COLLECTION;
     private Boolean verbose = DEFAULT_VERBOSE;
@@ -92,12 +94,20 @@ public class GraphQLService implements Service<GraphQLRequest, MongoResponse> {
         this.defaultLimit = argOrDefault(config, "default-limit", 100);
         this.maxLimit = argOrDefault(config, "max-limit", 1000);
 
+        GraphQLApp.setVerbose(this.verbose);
+        GraphQLApp.setQueryCacheSize(argOrDefault(config, "query-cache-size", DEFAULT_QUERY_CACHE_SIZE));
+
         AppDefinitionLoadingCache.setTTL(argOrDefault(config, "app-def-cache-ttl", 1_000));
 
+        BatchLoaderExecutor.setup(argOrDefault(config, "batch-loaders-threads", BatchLoaderExecutor.DEFAULT_THREADS), argOrDefault(config, "batch-loaders-queue-size", BatchLoaderExecutor.DEFAULT_QUEUE_SIZE));
         QueryBatchLoader.setMongoClient(mclient);
         AggregationBatchLoader.setMongoClient(mclient);
         GraphQLDataFetcher.setMongoClient(mclient);
         AppDefinitionLoader.setup(db, collection, mclient);
+        PersistedQueries.setup(db, argOrDefault(config, "persisted-queries-collection", null), mclient,
+            argOrDefault(config, "persisted-queries-cache-size", DEFAULT_PERSISTED_QUERIES_CACHE_SIZE),
+            argOrDefault(config, "persisted-queries-max-query-length", PersistedQueries.DEFAULT_MAX_QUERY_LENGTH),
+            argOrDefault(config, "persisted-queries-max-stored", (int) PersistedQueries.DEFAULT_MAX_STORED_QUERIES));
         AppBuilder.setDefaultLimit(this.defaultLimit);
         AppBuilder.setMaxLimit(this.maxLimit);
         QueryMapping.setMaxLimit(this.maxLimit);
@@ -115,13 +125,16 @@ public class GraphQLService implements Service<GraphQLRequest, MongoResponse> {
 
         var dataLoaderRegistry = setDataloaderRegistry(graphQLApp.objectsMappings());
 
-        if (request.getQuery() == null) {
+        var persistedQuery = request.hasPersistedQuery() && PersistedQueries.enabled();
+
+        if (request.getQuery() == null && !persistedQuery) {
             response.setInError(HttpStatus.SC_BAD_REQUEST, "query cannot be null");
             return;
         }
 
+        // with persisted queries the query can be omitted, it is then resolved from its hash
         var inputBuilder = ExecutionInput.newExecutionInput()
-            .query(request.getQuery())
+            .query(request.getQuery() == null ? PersistedQuerySupport.PERSISTED_QUERY_MARKER : request.getQuery())
             .dataLoaderRegistry(dataLoaderRegistry);
 
         inputBuilder.operationName(request.getOperationName());
@@ -129,20 +142,20 @@ public class GraphQLService implements Service<GraphQLRequest, MongoResponse> {
             inputBuilder.variables((new Gson()).fromJson(request.getVariables(), Map.class));
         }
 
-        var dispatcherInstrumentationOptions = DataLoaderDispatcherInstrumentationOptions.newOptions();
-
-        if (this.verbose) {
-            dispatcherInstrumentationOptions = dispatcherInstrumentationOptions.includeStatistics(true);
+        if (request.hasExtensions()) {
+            inputBuilder.extensions((new Gson()).fromJson(request.getExtensions(), Map.class));
         }
 
-        var dispatcherInstrumentation = new DataLoaderDispatcherInstrumentation(dispatcherInstrumentationOptions);
-
-        this.gql = GraphQL.newGraphQL(graphQLApp.getExecutableSchema()).instrumentation(dispatcherInstrumentation).build();
+        if (request.isGet()) {
+            inputBuilder.graphQLContext(Map.<String, Object>of(PreparsedDocumentCache.READ_ONLY_KEY, true));
+        }
 
-        var result = this.gql.execute(inputBuilder.build());
+        // the GraphQL engine is built once per app, only execution happens here
+        var result = graphQLApp.getGraphQL().execute(inputBuilder.build());
 
         if (this.verbose) {
             logDataLoadersStatistics(dataLoaderRegistry);
+            logQueryCacheStatistics(graphQLApp);
         }
 
         if (!result.getErrors().isEmpty()) {
@@ -157,6 +170,14 @@ public class GraphQLService implements Service<GraphQLRequest, MongoResponse> {
         LOGGER.debug("##################################");
     }
 
+    private void logQueryCacheStatistics(GraphQLApp app) {
+        var cache = app.getPreparsedDocumentCache();
+
+        if (cache != null) {
+            LOGGER.debug("query cache hits: {}, misses: {}", cache.hits(), cache.misses());
+        }
+    }
+
     private DataLoaderRegistry setDataloaderRegistry(Map<String, TypeMapping> mappings) {
         var dataLoaderRegistry = new DataLoaderRegistry();
 
@@ -186,7 +207,9 @@ public class GraphQLService implements Service<GraphQLRequest, MongoResponse> {
     public Consumer<HttpServerExchange> requestInitializer() {
         return e -> {
             try {
-                if (e.getRequestMethod().equalToString(ExchangeKeys.METHOD.POST.name()) || e.getRequestMethod().equalToString(ExchangeKeys.METHOD.OPTIONS.name())) {
+                if (e.getRequestMethod().equalToString(ExchangeKeys.METHOD.POST.name())
+                    || e.getRequestMethod().equalToString(ExchangeKeys.METHOD.GET.name())
+                    || e.getRequestMethod().equalToString(ExchangeKeys.METHOD.OPTIONS.name())) {
                     var appURI = appURI(e);
                     gqlApp(appURI); // throws GraphQLAppDefNotFoundException when uri is not bound to an app definition
                     GraphQLRequest.init(e, appURI);
@@ -0,0 +1,227 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-graphql
+ * %%
+ * Copyright (C) 2020 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.graphql.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import graphql.ExecutionInput;
+
+/**
+ * The store of the automatic persisted queries (APQ), i.e. the query texts keyed by their sha256 hash.
+ *
+ * Queries are kept in a bounded in-memory cache and, if a collection is configured,
+ * also stored in MongoDB next to the app definitions, so that they survive restarts
+ * and are shared by all nodes.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class PersistedQueries {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistedQueries.class);
+
+    public static final String EXTENSION_NAME = "persistedQuery";
+    public static final String HASH_FIELD = "sha256Hash";
+    private static final String QUERY_FIELD = "query";
+
+    /**
+     * the default max length of a query that can be persisted
+     */
+    public static final int DEFAULT_MAX_QUERY_LENGTH = 16 * 1024;
+
+    /**
+     * the default max number of queries stored in the persisted queries collection
+     */
+    public static final long DEFAULT_MAX_STORED_QUERIES = 10_000;
+
+    /**
+     * the time in milliseconds an unknown hash is remembered, to avoid looking it up in MongoDB on each request
+     */
+    static final long NOT_FOUND_TTL = 10_000;
+
+    private static MongoClient mongoClient;
+    private static String db;
+    private static String collection;
+    private static int maxQueryLength = DEFAULT_MAX_QUERY_LENGTH;
+    private static long maxStoredQueries = DEFAULT_MAX_STORED_QUERIES;
+    private static Cache<String, String> cache = null;
+    private static Cache<String, Boolean> notFound = null;
+
+    /**
+     *
+     * @param _db the db of the persisted queries collection
+     * @param _collection the collection where persisted queries are stored, null to keep them only in memory
+     * @param mclient the MongoClient
+     * @param cacheSize the max number of persisted queries kept in memory, 0 disables persisted queries
+     */
+    public static void setup(String _db, String _collection, MongoClient mclient, long cacheSize) {
+        setup(_db, _collection, mclient, cacheSize, DEFAULT_MAX_QUERY_LENGTH, DEFAULT_MAX_STORED_QUERIES);
+    }
+
+    /**
+     *
+     * @param _db the db of the persisted queries collection
+     * @param _collection the collection where persisted queries are stored, null to keep them only in memory
+     * @param mclient the MongoClient
+     * @param cacheSize the max number of persisted queries kept in memory, 0 disables persisted queries
+     * @param _maxQueryLength the max length of a query that can be persisted
+     * @param _maxStoredQueries the max number of queries stored in the collection
+     */
+    public static void setup(String _db, String _collection, MongoClient mclient, long cacheSize, int _maxQueryLength, long _maxStoredQueries) {
+        db = _db;
+        collection = _collection;
+        mongoClient = mclient;
+        maxQueryLength = _maxQueryLength;
+        maxStoredQueries = _maxStoredQueries;
+        cache = cacheSize > 0 ? CacheFactory.createLocalCache(cacheSize, Cache.EXPIRE_POLICY.AFTER_READ, -1) : null;
+        notFound = cacheSize > 0 ? CacheFactory.createLocalCache(cacheSize, Cache.EXPIRE_POLICY.AFTER_WRITE, NOT_FOUND_TTL) : null;
+    }
+
+    public static boolean enabled() {
+        return cache != null;
+    }
+
+    /**
+     * @param executionInput
+     * @return the lowercase sha256 hash of the persisted query extension, null if the request does not use persisted queries
+     */
+    public static String hash(ExecutionInput executionInput) {
+        var extensions = executionInput.getExtensions();
+
+        if (extensions != null && extensions.get(EXTENSION_NAME) instanceof Map<?, ?> pq && pq.get(HASH_FIELD) instanceof String hash) {
+            return hash.toLowerCase(Locale.ROOT);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * @param query the query text
+     * @return the lowercase hex sha256 hash of the query text
+     */
+    public static String hash(String query) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    /**
+     *
+     * @param hash the sha256 hash of the query
+     * @return the query text, null if not found
+     */
+    public static String get(String hash) {
+        var cached = cache.get(hash);
+
+        if (cached != null && cached.isPresent()) {
+            return cached.get();
+        }
+
+        if (collection == null) {
+            return null;
+        }
+
+        var _notFound = notFound.get(hash);
+
+        if (_notFound != null && _notFound.isPresent()) {
+            return null;
+        }
+
+        try {
+            var stored = mongoClient.getDatabase(db).getCollection(collection, BsonDocument.class).find(Filters.eq("_id", hash)).first();
+
+            if (stored != null && stored.isString(QUERY_FIELD)) {
+                var query = stored.getString(QUERY_FIELD).getValue();
+                cache.put(hash, query);
+                return query;
+            } else {
+                notFound.put(hash, true);
+            }
+        } catch (MongoException me) {
+            LOGGER.warn("error loading persisted query {}", hash, me);
+        }
+
+        return null;
+    }
+
+    /**
+     * Persists a query; to be invoked only after the query has been parsed
+     * and validated, so that clients cannot store arbitrary texts.
+     *
+     * Queries longer than the max query length are not persisted and, once
+     * the collection holds the max number of stored queries, new ones are
+     * only kept in memory.
+     *
+     * @param hash the sha256 hash of the query, must be already verified
+     * @param query the query text
+     * @return true if the query has been persisted
+     */
+    public static boolean put(String hash, String query) {
+        if (query.length() > maxQueryLength) {
+            LOGGER.debug("query {} not persisted, it exceeds the max length of {} characters", hash, maxQueryLength);
+            return false;
+        }
+
+        var cached = cache.get(hash);
+
+        if (cached != null && cached.isPresent()) {
+            return true;
+        }
+
+        cache.put(hash, query);
+        notFound.invalidate(hash);
+
+        if (collection != null) {
+            try {
+                var coll = mongoClient.getDatabase(db).getCollection(collection, BsonDocument.class);
+
+                if (coll.estimatedDocumentCount() >= maxStoredQueries) {
+                    LOGGER.warn("query {} kept only in memory, the collection {}.{} already has the max number of persisted queries {}", hash, db, collection, maxStoredQueries);
+                } else {
+                    var doc = new BsonDocument("_id", new BsonString(hash)).append(QUERY_FIELD, new BsonString(query));
+                    coll.replaceOne(Filters.eq("_id", hash), doc, new ReplaceOptions().upsert(true));
+                }
+            } catch (MongoException me) {
+                LOGGER.warn("error storing persisted query {}", hash, me);
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,212 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-graphql
+ * %%
+ * Copyright (C) 2020 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.graphql.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+
+import graphql.ErrorType;
+import graphql.ExecutionInput;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.UnknownOperationException;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import graphql.execution.preparsed.persisted.PersistedQueryError;
+import graphql.execution.preparsed.persisted.PersistedQueryIdInvalid;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import graphql.language.NodeUtil;
+import graphql.language.OperationDefinition;
+
+/**
+ * Caches the parsed and validated documents of the queries of a GraphQL app,
+ * so that requests with an already seen query text skip parsing and validation.
+ *
+ * Since validation depends on the app schema, each GraphQLApp has its own cache
+ * that is discarded when the app definition is reloaded.
+ *
+ * It also resolves automatic persisted queries (APQ) via PersistedQueries and
+ * rejects non-query operations of read-only (i.e. GET) requests.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class PreparsedDocumentCache implements PreparsedDocumentProvider {
+    public static final String METRIC_REGISTRY_NAME = "GRAPHQL";
+
+    /**
+     * the GraphQLContext key that marks read-only requests
+     */
+    public static final String READ_ONLY_KEY = "restheart-read-only";
+
+    private static final MetricRegistry GRAPHQL_METRIC_REGISTRY = SharedMetricRegistries.getOrCreate(METRIC_REGISTRY_NAME);
+
+    private final Cache<String, PreparsedDocumentEntry> cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     *
+     * @param appURI the uri of the GraphQL app, used to name the hit and miss counters
+     * @param size the max number of cached documents, 0 disables caching
+     */
+    public PreparsedDocumentCache(String appURI, long size) {
+        this.cache = size > 0 ? CacheFactory.createLocalCache(size, Cache.EXPIRE_POLICY.NEVER, -1) : null;
+        this.hits = GRAPHQL_METRIC_REGISTRY.counter(MetricRegistry.name("preparsed-documents", appURI, "hits"));
+        this.misses = GRAPHQL_METRIC_REGISTRY.counter(MetricRegistry.name("preparsed-documents", appURI, "misses"));
+    }
+
+    /**
+     * required by PreparsedDocumentProvider, graphql-java invokes getDocumentAsync()
+     */
+    @Override
+    @Deprecated
+    public PreparsedDocumentEntry getDocument(ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        return getDocumentAsync(executionInput, parseAndValidateFunction).join();
+    }
+
+    /**
+     * The document is resolved synchronously, the returned future is already completed
+     */
+    @Override
+    public CompletableFuture<PreparsedDocumentEntry> getDocumentAsync(ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        return CompletableFuture.completedFuture(resolve(executionInput, parseAndValidateFunction));
+    }
+
+    private PreparsedDocumentEntry resolve(ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        // hex digests are case insensitive, persisted queries are keyed by the lowercase hash
+        var hash = PersistedQueries.enabled() ? PersistedQueries.hash(executionInput) : null;
+        // true if the request registers a persisted query
+        var register = false;
+
+        if (hash != null) {
+            try {
+                register = !isHashOnly(executionInput.getQuery());
+                executionInput = resolvePersistedQuery(hash, executionInput);
+            } catch (PersistedQueryError pqe) {
+                return error(pqe, pqe.getMessage());
+            }
+        }
+
+        var entry = getDocument(executionInput.getQuery(), executionInput, parseAndValidateFunction);
+
+        if (isReadOnly(executionInput) && !entry.hasErrors() && !isQuery(entry, executionInput.getOperationName())) {
+            return error(ErrorType.OperationNotSupported, "only query operations are allowed with GET requests");
+        }
+
+        // only queries that parse and validate are persisted
+        if (register && !entry.hasErrors()) {
+            PersistedQueries.put(hash, executionInput.getQuery());
+        }
+
+        return entry;
+    }
+
+    private PreparsedDocumentEntry getDocument(String query, ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        if (this.cache == null) {
+            return parseAndValidateFunction.apply(executionInput);
+        }
+
+        var cached = this.cache.get(query);
+
+        if (cached != null && cached.isPresent()) {
+            this.hits.inc();
+            return cached.get();
+        } else {
+            this.misses.inc();
+            var entry = parseAndValidateFunction.apply(executionInput);
+            this.cache.put(query, entry);
+            return entry;
+        }
+    }
+
+    private static boolean isHashOnly(String query) {
+        return query == null || query.isBlank() || PersistedQuerySupport.PERSISTED_QUERY_MARKER.equals(query);
+    }
+
+    /**
+     * if the request only has the hash, replaces the query marker with the persisted query text;
+     * otherwise verifies the hash. The query is persisted by the caller, after it has been validated.
+     */
+    private ExecutionInput resolvePersistedQuery(String hash, ExecutionInput executionInput) throws PersistedQueryError {
+        var query = executionInput.getQuery();
+
+        if (isHashOnly(query)) {
+            var persisted = PersistedQueries.get(hash);
+
+            if (persisted == null) {
+                throw new PersistedQueryNotFound(hash);
+            }
+
+            return executionInput.transform(builder -> builder.query(persisted));
+        } else if (!hash.equals(PersistedQueries.hash(query))) {
+            throw new PersistedQueryIdInvalid(hash);
+        } else {
+            return executionInput;
+        }
+    }
+
+    private boolean isReadOnly(ExecutionInput executionInput) {
+        return executionInput.getGraphQLContext().getOrDefault(READ_ONLY_KEY, false);
+    }
+
+    private boolean isQuery(PreparsedDocumentEntry entry, String operationName) {
+        try {
+            var operation = NodeUtil.getOperation(entry.getDocument(), operationName).operationDefinition;
+            return operation.getOperation() == OperationDefinition.Operation.QUERY;
+        } catch (UnknownOperationException uoe) {
+            // execution will report the error
+            return true;
+        }
+    }
+
+    private static PreparsedDocumentEntry error(graphql.ErrorClassification type, String message) {
+        var builder = GraphqlErrorBuilder.newError().errorType(type).message(message);
+
+        if (type instanceof PersistedQueryNotFound pqnf) {
+            builder.extensions(pqnf.getExtensions());
+        } else if (type instanceof PersistedQueryIdInvalid pqii) {
+            builder.extensions(pqii.getExtensions());
+        }
+
+        return new PreparsedDocumentEntry(builder.build());
+    }
+
+    /**
+     * @return the number of documents served from the cache
+     */
+    public long hits() {
+        return this.hits.getCount();
+    }
+
+    /**
+     * @return the number of documents parsed and validated
+     */
+    public long misses() {
+        return this.misses.getCount();
+    }
+}
@@ -1,7 +1,6 @@
 package org.restheart.graphql.datafetchers;
 
 import java.util.ArrayList;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import com.mongodb.client.AggregateIterable;
@@ -9,6 +8,7 @@ import org.bson.BsonArray;
 import org.bson.BsonDocument;
 import org.restheart.configuration.Configuration;
 import org.restheart.exchange.QueryVariableNotBoundException;
+import org.restheart.graphql.dataloaders.BatchLoaderExecutor;
 import org.restheart.graphql.models.AggregationMapping;
 import org.restheart.plugins.Inject;
 import org.restheart.plugins.OnInit;
@@ -47,7 +47,7 @@ public class GQLAggregationDataFetcher extends GraphQLDataFetcher {
 
     @Override
     public Object get(DataFetchingEnvironment environment) throws Exception {
-        return CompletableFuture.supplyAsync(() -> {
+        return BatchLoaderExecutor.supplyAsync(() -> {
             var aggregation = (AggregationMapping) this.fieldMapping;
 
             try {
@@ -2,7 +2,6 @@ package org.restheart.graphql.dataloaders;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
 import com.mongodb.client.MongoClient;
@@ -32,7 +31,7 @@ public class AggregationBatchLoader implements BatchLoader<BsonValue, BsonValue>
 
     @Override
     public CompletionStage<List<BsonValue>> load(List<BsonValue> pipelines) {
-        return CompletableFuture.supplyAsync(() -> {
+        return BatchLoaderExecutor.supplyAsync(() -> {
             var res = new ArrayList<BsonValue>();
 
             var listOfFacets = pipelines.stream()
@@ -0,0 +1,168 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-graphql
+ * %%
+ * Copyright (C) 2020 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.graphql.dataloaders;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+import org.restheart.graphql.cache.PreparsedDocumentCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The bounded executor that runs the batch loaders.
+ *
+ * Batch loaders block on synchronous MongoClient calls, so they must not run
+ * on the ForkJoin common pool. When all threads are busy and the queue is full,
+ * the batch runs in the calling (worker) thread, slowing down the producer.
+ *
+ * setup() replaces the executor: the old one completes its queued batches,
+ * while the batches submitted to it afterwards are handed over to the new one.
+ *
+ * Exposes the queued and active batches and the time batches wait in the queue
+ * in the GRAPHQL metric registry.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class BatchLoaderExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchLoaderExecutor.class);
+
+    public static final int DEFAULT_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_QUEUE_SIZE = 1_000;
+
+    private static final MetricRegistry GRAPHQL_METRIC_REGISTRY = SharedMetricRegistries.getOrCreate(PreparsedDocumentCache.METRIC_REGISTRY_NAME);
+    private static final Timer WAIT_TIMER = GRAPHQL_METRIC_REGISTRY.timer(MetricRegistry.name("batch-loaders", "wait"));
+
+    private static volatile ThreadPoolExecutor executor = null;
+
+    static {
+        GRAPHQL_METRIC_REGISTRY.gauge(MetricRegistry.name("batch-loaders", "queued"), () -> (Gauge<Integer>) () -> executor == null ? 0 : executor.getQueue().size());
+        GRAPHQL_METRIC_REGISTRY.gauge(MetricRegistry.name("batch-loaders", "active"), () -> (Gauge<Integer>) () -> executor == null ? 0 : executor.getActiveCount());
+    }
+
+    /**
+     *
+     * @param threads the max number of threads running batch loaders
+     * @param queueSize the max number of batches waiting for a thread
+     */
+    public static synchronized void setup(int threads, int queueSize) {
+        var _executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), new BatchLoaderThreadFactory(), new CallerRunsOrHandOverPolicy());
+        _executor.allowCoreThreadTimeOut(true);
+
+        var old = executor;
+        executor = _executor;
+
+        // the old executor completes the batches already queued
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    /**
+     *
+     * @param <T> the type of the result
+     * @param supplier the batch load function
+     * @return the CompletableFuture completed by the batch load function
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        var submitted = System.nanoTime();
+
+        return CompletableFuture.supplyAsync(() -> {
+            WAIT_TIMER.update(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+            return supplier.get();
+        }, executor());
+    }
+
+    /**
+     * @return the executor, set up with the default options if setup() has not been invoked
+     */
+    static ThreadPoolExecutor executor() {
+        var _executor = executor;
+
+        if (_executor == null) {
+            synchronized (BatchLoaderExecutor.class) {
+                if (executor == null) {
+                    setup(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+                }
+
+                _executor = executor;
+            }
+        }
+
+        return _executor;
+    }
+
+    /**
+     * shuts down the executor, the next batch sets up a new one with the default options
+     */
+    static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Runs the batch in the calling thread when the executor is saturated and
+     * hands it over to the current executor when it has been shut down, rather
+     * than discarding it and never completing its future
+     */
+    private static class CallerRunsOrHandOverPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            if (e.isShutdown()) {
+                var current = executor;
+
+                if (current != null && current != e) {
+                    LOGGER.debug("batch submitted to a replaced executor, handing it over to the current one");
+                    current.execute(r);
+                } else {
+                    LOGGER.debug("batch submitted to a shut down executor, running it in the calling thread");
+                    r.run();
+                }
+            } else {
+                r.run();
+            }
+        }
+    }
+
+    private static class BatchLoaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            var thread = new Thread(r, "graphql-batch-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -20,18 +20,26 @@
  */
 package org.restheart.graphql.dataloaders;
 
+import com.google.common.collect.Lists;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Facet;
+import com.mongodb.client.model.Filters;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
 import org.bson.BsonValue;
 import org.bson.conversions.Bson;
 import org.dataloader.BatchLoader;
+import org.restheart.graphql.models.DataLoaderSettings.BatchingStrategy;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletionStage;
 
 public class QueryBatchLoader implements BatchLoader<BsonValue, BsonValue> {
@@ -40,14 +48,22 @@ public class QueryBatchLoader implements BatchLoader<BsonValue, BsonValue> {
 
     private String db;
     private String collection;
+    private BatchingStrategy strategy;
+    private int subBatchSize;
 
     public static void setMongoClient(MongoClient mClient){
         mongoClient = mClient;
     }
 
     public QueryBatchLoader(String db, String collection) {
+        this(db, collection, BatchingStrategy.FACET, 0);
+    }
+
+    public QueryBatchLoader(String db, String collection, BatchingStrategy strategy, int subBatchSize) {
         this.db = db;
         this.collection = collection;
+        this.strategy = strategy;
+        this.subBatchSize = subBatchSize;
     }
 
     /**
@@ -70,63 +86,301 @@ public class QueryBatchLoader implements BatchLoader<BsonValue, BsonValue> {
      *                  ...
      *              ]}
      *
+     * The whole $facet result must fit in a single 16MB document and every sub-pipeline re-scans the matched
+     * documents. With the IN strategy, batches whose queries are all equalities on the same field are executed as:
+     *
+     * - {$match: {field: {$in: [value1, value2, ...]}}} (plus the common sort)
+     *
+     * and the resulting cursor is partitioned client-side, applying skip and limit of each query while streaming.
+     * Other batches are split into sub batches of subBatchSize queries, each executed with $facet.
+     *
      * @param queries: list of queries to merge by $or operator
      * @return: list of results, one for each query
      */
 
     @Override
     public CompletionStage<List<BsonValue>> load(List<BsonValue> queries) {
-        return CompletableFuture.supplyAsync(() -> {
-            var res = new ArrayList<BsonValue>();
-            List<Bson> stages = new ArrayList<>();
+        return BatchLoaderExecutor.supplyAsync(() -> {
+            if (this.strategy == BatchingStrategy.IN && queries.size() > 1) {
+                var field = inField(queries);
+
+                if (field != null) {
+                    return loadWithIn(field, queries);
+                } else if (this.subBatchSize > 0 && queries.size() > this.subBatchSize) {
+                    var res = new ArrayList<BsonValue>();
+                    Lists.partition(queries, this.subBatchSize).forEach(subBatch -> res.addAll(loadWithFacet(subBatch)));
+                    return res;
+                }
+            }
+
+            return loadWithFacet(queries);
+        });
+    }
+
+    List<BsonValue> loadWithFacet(List<BsonValue> queries) {
+        var res = new ArrayList<BsonValue>();
+        List<Bson> stages = new ArrayList<>();
+
+        // if there are at least 2 queries within the batch
+        if (queries.size() > 1){
+            var mergedCond = new BsonArray();
+            var listOfFacets = new ArrayList<Facet>();
 
-            // if there are at least 2 queries within the batch
-            if (queries.size() > 1){
-                var mergedCond = new BsonArray();
-                var listOfFacets = new ArrayList<Facet>();
+            // foreach query within the batch...
+            queries.forEach(query -> {
+                // add find condition to merged array
+                BsonDocument findClause = query.asDocument().containsKey("find") ? query.asDocument().getDocument("find") : new BsonDocument();
+                mergedCond.add(findClause);
 
-                // foreach query within the batch...
-                queries.forEach(query -> {
-                    // add find condition to merged array
-                    BsonDocument findClause = query.asDocument().containsKey("find") ? query.asDocument().getDocument("find") : new BsonDocument();
-                    mergedCond.add(findClause);
+                // create a new sub-pipeline with query stages
+                listOfFacets.add(new Facet(String.valueOf(query.hashCode()), getQueryStages(query.asDocument())));
+            });
+
+            // 1° stage --> $match with conditions merged by $or operator
+            stages.add(Aggregates.match(new BsonDocument("$or", mergedCond)));
+
+            // 2° stage --> $facet with one sub-pipeline for each query within the batch
+            stages.add(Aggregates.facet(listOfFacets));
+
+            var iterable = mongoClient.getDatabase(this.db).getCollection(this.collection, BsonValue.class).aggregate(stages);
+
+            BsonArray aggResult = new BsonArray();
+
+            iterable.into(aggResult);
+
+            var resultDoc = aggResult.get(0).asDocument();
+            queries.forEach(query -> {
+                BsonValue queryResult = resultDoc.get(String.valueOf(query.hashCode()));
+                res.add(queryResult);
+            });
+            // ... otherwise merging is not needed and sub-pipelines neither
+        } else {
+            var query = queries.get(0).asDocument();
+            stages = getQueryStages(query);
+            var iterable = mongoClient.getDatabase(this.db).getCollection(this.collection, BsonValue.class).aggregate(stages);
+            var aggResult = new BsonArray();
+
+            iterable.into(aggResult);
+
+            res.add(aggResult);
+        }
+
+        return res;
+    }
+
+    /**
+     * @param queries
+     * @return the field if all queries are equality conditions on it with the same sort, null otherwise
+     */
+    static String inField(List<BsonValue> queries) {
+        String field = null;
+        BsonValue sort = null;
+
+        for (var query: queries) {
+            var queryDoc = query.asDocument();
+            var find = queryDoc.containsKey("find") ? queryDoc.get("find") : null;
+
+            if (find == null || !find.isDocument() || find.asDocument().size() != 1) {
+                return null;
+            }
+
+            var _field = find.asDocument().getFirstKey();
+
+            if (!isPlainPath(_field) || !isEqualityValue(find.asDocument().get(_field))) {
+                return null;
+            }
+
+            if (field == null) {
+                field = _field;
+                sort = queryDoc.get("sort");
+            } else if (!field.equals(_field) || !Objects.equals(sort, queryDoc.get("sort"))) {
+                return null;
+            }
+        }
+
+        return field;
+    }
+
+    private List<BsonValue> loadWithIn(String field, List<BsonValue> queries) {
+        // more queries can have the same value
+        var normalized = new HashSet<Object>();
+        var values = new BsonArray();
+
+        queries.stream()
+            .map(query -> query.asDocument().getDocument("find").get(field))
+            .filter(value -> normalized.add(normalize(value)))
+            .forEach(values::add);
+
+        var firstQuery = queries.get(0).asDocument();
+        var find = mongoClient.getDatabase(this.db).getCollection(this.collection, BsonDocument.class).find(Filters.in(field, values));
+
+        if (firstQuery.containsKey("sort")) {
+            find.sort(firstQuery.getDocument("sort"));
+        }
+
+        try (var cursor = find.cursor()) {
+            return partition(field, queries, cursor);
+        }
+    }
 
-                    // create a new sub-pipeline with query stages
-                    listOfFacets.add(new Facet(String.valueOf(query.hashCode()), getQueryStages(query.asDocument())));
-                });
+    /**
+     * Partitions the documents matching the $in condition among the queries,
+     * applying skip and limit of each query.
+     *
+     * The cursor is consumed until all the queries with a limit are filled or,
+     * if a query has no limit, until it is exhausted.
+     *
+     * @param field the field of the equality conditions
+     * @param queries the queries
+     * @param docs the documents matching any of the queries, in the order of the common sort
+     * @return list of results, one for each query
+     */
+    static List<BsonValue> partition(String field, List<BsonValue> queries, Iterator<BsonDocument> docs) {
+        // the queries of each (normalized) value, more queries can have the same value
+        var queriesByValue = new HashMap<Object, List<Integer>>();
 
-                // 1° stage --> $match with conditions merged by $or operator
-                stages.add(Aggregates.match(new BsonDocument("$or", mergedCond)));
+        var results = new ArrayList<BsonArray>(queries.size());
+        var skips = new int[queries.size()];
+        var limits = new int[queries.size()];
 
-                // 2° stage --> $facet with one sub-pipeline for each query within the batch
-                stages.add(Aggregates.facet(listOfFacets));
+        for (int idx = 0; idx < queries.size(); idx++) {
+            var queryDoc = queries.get(idx).asDocument();
+            var value = queryDoc.getDocument("find").get(field);
 
-                var iterable = mongoClient.getDatabase(this.db).getCollection(this.collection, BsonValue.class).aggregate(stages);
+            queriesByValue.computeIfAbsent(normalize(value), k -> new ArrayList<>()).add(idx);
 
-                BsonArray aggResult = new BsonArray();
+            results.add(new BsonArray());
+            skips[idx] = queryDoc.containsKey("skip") ? queryDoc.getInt32("skip").getValue() : 0;
+            limits[idx] = queryDoc.containsKey("limit") ? queryDoc.getInt32("limit").getValue() : 0;
+        }
 
-                iterable.into(aggResult);
+        // the queries with a limit still to fill; queries without a limit get all the matching documents
+        var toFill = 0;
+        var unlimited = false;
 
-                var resultDoc = aggResult.get(0).asDocument();
-                queries.forEach(query -> {
-                    BsonValue queryResult = resultDoc.get(String.valueOf(query.hashCode()));
-                    res.add(queryResult);
-                });
-                // ... otherwise merging is not needed and sub-pipelines neither
+        for (var limit: limits) {
+            if (limit > 0) {
+                toFill++;
             } else {
-                var query = queries.get(0).asDocument();
-                stages = getQueryStages(query);
-                var iterable = mongoClient.getDatabase(this.db).getCollection(this.collection, BsonValue.class).aggregate(stages);
-                var aggResult = new BsonArray();
+                unlimited = true;
+            }
+        }
+
+        while ((unlimited || toFill > 0) && docs.hasNext()) {
+            var doc = docs.next();
 
-                iterable.into(aggResult);
+            // a document can match more values, e.g. when the field is an array
+            for (var value: valuesAt(doc, field)) {
+                var matching = queriesByValue.get(value);
 
-                res.add(aggResult);
+                if (matching == null) {
+                    continue;
+                }
+
+                for (var idx: matching) {
+                    if (skips[idx] > 0) {
+                        skips[idx]--;
+                    } else if (limits[idx] <= 0 || results.get(idx).size() < limits[idx]) {
+                        results.get(idx).add(doc);
+
+                        if (limits[idx] > 0 && results.get(idx).size() == limits[idx]) {
+                            toFill--;
+                        }
+                    }
+                }
             }
+        }
 
-            return res;
-        });
+        return new ArrayList<>(results);
+    }
+
+    private static boolean isPlainPath(String field) {
+        if (field.startsWith("$")) {
+            return false;
+        }
 
+        for (var segment: field.split("\\.")) {
+            if (segment.isEmpty() || segment.chars().allMatch(Character::isDigit)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * values whose equality can be checked client-side consistently with MongoDB
+     */
+    private static boolean isEqualityValue(BsonValue value) {
+        return value.isString() || value.isObjectId() || value.isInt32() || value.isInt64() || value.isBoolean() || value.isDateTime();
+    }
+
+    /**
+     * numbers with the same value are equal for MongoDB, whatever their type:
+     * integral numbers are normalized to Long, the others to BigDecimal and
+     * NaN and infinities to Double
+     */
+    static Object normalize(BsonValue value) {
+        if (value.isInt32()) {
+            return (long) value.asInt32().getValue();
+        } else if (value.isInt64()) {
+            return value.asInt64().getValue();
+        } else if (value.isDouble()) {
+            var d = value.asDouble().getValue();
+            return Double.isNaN(d) || Double.isInfinite(d) ? d : normalize(new BigDecimal(d));
+        } else if (value.isDecimal128()) {
+            var d = value.asDecimal128().getValue();
+
+            if (d.isNaN()) {
+                return Double.NaN;
+            } else if (d.isInfinite()) {
+                return d.isNegative() ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            } else {
+                try {
+                    return normalize(d.bigDecimalValue());
+                } catch (ArithmeticException ae) {
+                    // negative zero
+                    return 0L;
+                }
+            }
+        } else {
+            return value;
+        }
+    }
+
+    private static Object normalize(BigDecimal number) {
+        try {
+            return number.longValueExact();
+        } catch (ArithmeticException ae) {
+            return number.stripTrailingZeros();
+        }
+    }
+
+    /**
+     * @return the normalized values at path, traversing arrays like MongoDB does
+     */
+    static Set<Object> valuesAt(BsonDocument doc, String path) {
+        var ret = new HashSet<Object>();
+        collect(doc, path.split("\\."), 0, ret);
+        return ret;
+    }
+
+    private static void collect(BsonValue value, String[] segments, int idx, Set<Object> ret) {
+        if (value == null) {
+            return;
+        }
+
+        if (idx == segments.length) {
+            if (value.isArray()) {
+                value.asArray().forEach(e -> ret.add(normalize(e)));
+            }
+
+            ret.add(normalize(value));
+        } else if (value.isDocument()) {
+            collect(value.asDocument().get(segments[idx]), segments, idx + 1, ret);
+        } else if (value.isArray()) {
+            value.asArray().forEach(e -> collect(e, segments, idx, ret));
+        }
     }
 
     private List<Bson> getQueryStages(BsonDocument queryDoc){
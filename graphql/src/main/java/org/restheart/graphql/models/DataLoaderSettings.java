@@ -22,14 +22,28 @@ package org.restheart.graphql.models;
 
 public class DataLoaderSettings {
 
+    /**
+     * how the queries of a batch are sent to MongoDB
+     *
+     * FACET: one aggregation with a $match merging all queries by $or and a $facet with one sub-pipeline per query
+     *
+     * IN: if all queries are equality conditions on the same field, one query with $in whose results are
+     * partitioned client-side while streaming them; otherwise FACET aggregations on sub batches of bounded size
+     */
+    public enum BatchingStrategy { FACET, IN };
+
     private Boolean batching;
     private Integer max_batch_size;
     private Boolean caching;
+    private BatchingStrategy strategy;
+    private Integer sub_batch_size;
 
-    private DataLoaderSettings(Boolean batching, Boolean caching, Integer max_batch_size){
+    private DataLoaderSettings(Boolean batching, Boolean caching, Integer max_batch_size, BatchingStrategy strategy, Integer sub_batch_size){
         this.batching = batching;
         this.caching = caching;
         this.max_batch_size = max_batch_size;
+        this.strategy = strategy;
+        this.sub_batch_size = sub_batch_size;
     }
 
     public static Builder newBuilder(){
@@ -47,6 +61,14 @@ public class DataLoaderSettings {
         return max_batch_size;
     }
 
+    public BatchingStrategy getStrategy() {
+        return strategy;
+    }
+
+    public Integer getSub_batch_size() {
+        return sub_batch_size;
+    }
+
     public void setBatching(Boolean enabled) {
         this.batching = enabled;
     }
@@ -60,11 +82,21 @@ public class DataLoaderSettings {
         this.max_batch_size = max_batch_size;
     }
 
+    public void setStrategy(BatchingStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public void setSub_batch_size(Integer sub_batch_size) {
+        this.sub_batch_size = sub_batch_size;
+    }
+
     public static class Builder{
 
         private Boolean batching;
         private Boolean caching;
         private Integer max_batch_size;
+        private BatchingStrategy strategy;
+        private Integer sub_batch_size;
 
         private Builder(){}
 
@@ -83,6 +115,16 @@ public class DataLoaderSettings {
             return this;
         }
 
+        public Builder strategy(BatchingStrategy strategy){
+            this.strategy = strategy;
+            return this;
+        }
+
+        public Builder sub_batch_size(Integer size){
+            this.sub_batch_size = size;
+            return this;
+        }
+
         public DataLoaderSettings build(){
 
             if (this.batching == null){
@@ -97,7 +139,15 @@ public class DataLoaderSettings {
                 this.max_batch_size = 0;
             }
 
-            return new DataLoaderSettings(this.batching, this.caching, this.max_batch_size);
+            if (this.strategy == null){
+                this.strategy = BatchingStrategy.FACET;
+            }
+
+            if (this.sub_batch_size == null){
+                this.sub_batch_size = 10;
+            }
+
+            return new DataLoaderSettings(this.batching, this.caching, this.max_batch_size, this.strategy, this.sub_batch_size);
 
         }
 
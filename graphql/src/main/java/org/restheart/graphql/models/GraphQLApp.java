@@ -20,7 +20,10 @@
  */
 package org.restheart.graphql.models;
 
+import graphql.GraphQL;
 import graphql.TypeResolutionEnvironment;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentation;
+import graphql.execution.instrumentation.dataloader.DataLoaderDispatcherInstrumentationOptions;
 import graphql.language.InterfaceTypeDefinition;
 import graphql.language.UnionTypeDefinition;
 import graphql.schema.*;
@@ -32,6 +35,7 @@ import graphql.schema.idl.TypeRuntimeWiring;
 import graphql.schema.idl.errors.SchemaProblem;
 import io.undertow.predicate.Predicate;
 import org.bson.BsonDocument;
+import org.restheart.graphql.cache.PreparsedDocumentCache;
 import org.restheart.graphql.predicates.DocInExchange;
 import org.restheart.graphql.scalars.BsonScalars;
 import org.slf4j.Logger;
@@ -41,15 +45,34 @@ import java.util.Map;
 public class GraphQLApp {
     private static final Logger LOGGER = LoggerFactory.getLogger(GraphQLApp.class);
 
+    private static boolean verbose = false;
+    private static long queryCacheSize = 1_000;
+
     private AppDescriptor descriptor;
     private String schema;
     private Map<String, TypeMapping> objectsMappings;
     private GraphQLSchema executableSchema;
+    private GraphQL graphQL;
+    private PreparsedDocumentCache preparsedDocumentCache;
 
     public static Builder newBuilder() {
         return new Builder();
     }
 
+    /**
+     * @param _verbose true to include the data loaders statistics
+     */
+    public static void setVerbose(boolean _verbose) {
+        verbose = _verbose;
+    }
+
+    /**
+     * @param _queryCacheSize the max number of parsed and validated queries cached per app, 0 disables the cache
+     */
+    public static void setQueryCacheSize(long _queryCacheSize) {
+        queryCacheSize = _queryCacheSize;
+    }
+
     public GraphQLApp() {
     }
 
@@ -57,7 +80,7 @@ public class GraphQLApp {
         this.descriptor = descriptor;
         this.schema = schema;
         this.objectsMappings = objectsMappings;
-        this.executableSchema = executableSchema;
+        setExecutableSchema(executableSchema);
     }
 
     public AppDescriptor getDescriptor() {
@@ -90,6 +113,36 @@ public class GraphQLApp {
 
     public void setExecutableSchema(GraphQLSchema executableSchema) {
         this.executableSchema = executableSchema;
+        this.graphQL = executableSchema == null ? null : graphQL(executableSchema);
+    }
+
+    /**
+     * @return the GraphQL engine of this app, built once for its executable schema
+     */
+    public GraphQL getGraphQL() {
+        return graphQL;
+    }
+
+    /**
+     * @return the cache of parsed and validated queries
+     */
+    public PreparsedDocumentCache getPreparsedDocumentCache() {
+        return preparsedDocumentCache;
+    }
+
+    private GraphQL graphQL(GraphQLSchema executableSchema) {
+        var dispatcherInstrumentationOptions = DataLoaderDispatcherInstrumentationOptions.newOptions();
+
+        if (verbose) {
+            dispatcherInstrumentationOptions = dispatcherInstrumentationOptions.includeStatistics(true);
+        }
+
+        var builder = GraphQL.newGraphQL(executableSchema).instrumentation(new DataLoaderDispatcherInstrumentation(dispatcherInstrumentationOptions));
+
+        // also resolves persisted queries, so it is installed even when caching is disabled
+        this.preparsedDocumentCache = new PreparsedDocumentCache(this.descriptor == null ? "" : this.descriptor.getUrl(), queryCacheSize);
+
+        return builder.preparsedDocumentProvider(this.preparsedDocumentCache).build();
     }
 
     public static class Builder {
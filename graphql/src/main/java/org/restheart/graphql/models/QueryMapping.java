@@ -80,7 +80,9 @@ public class QueryMapping extends FieldMapping implements Batchable {
             options.setBatchingEnabled(this.dataLoaderSettings.getBatching());
             options.setCachingEnabled(this.dataLoaderSettings.getCaching());
 
-            return new DataLoader<BsonValue, BsonValue>(new QueryBatchLoader(this.db, this.collection), options);
+            var batchLoader = new QueryBatchLoader(this.db, this.collection, this.dataLoaderSettings.getStrategy(), this.dataLoaderSettings.getSub_batch_size());
+
+            return new DataLoader<BsonValue, BsonValue>(batchLoader, options);
         } else {
             return null;
         }
@@ -20,6 +20,7 @@
  */
 package org.restheart.graphql.models.builder;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -221,6 +222,18 @@ class ObjectsMappings extends Mappings {
                                     if (settings.containsKey("maxBatchSize") && settings.get("maxBatchSize").isNumber()) {
                                         dataLoaderBuilder.max_batch_size(settings.getNumber("maxBatchSize").intValue());
                                     }
+
+                                    if (settings.containsKey("strategy")) {
+                                        if (settings.get("strategy").isString() && isBatchingStrategy(settings.getString("strategy").getValue())) {
+                                            dataLoaderBuilder.strategy(DataLoaderSettings.BatchingStrategy.valueOf(settings.getString("strategy").getValue().toUpperCase()));
+                                        } else {
+                                            throwIllegalDefinitionException(field, type, "dataLoader.strategy", "'facet' or 'in'", settings.get("strategy"));
+                                        }
+                                    }
+
+                                    if (settings.containsKey("subBatchSize") && settings.get("subBatchSize").isNumber()) {
+                                        dataLoaderBuilder.sub_batch_size(settings.getNumber("subBatchSize").intValue());
+                                    }
                                 }
 
                                 if (settings.containsKey("caching") && settings.get("caching").isBoolean()) {
@@ -246,4 +259,8 @@ class ObjectsMappings extends Mappings {
 
         return typeMappings;
     }
+
+    private static boolean isBatchingStrategy(String value) {
+        return Arrays.stream(DataLoaderSettings.BatchingStrategy.values()).anyMatch(s -> s.name().equalsIgnoreCase(value));
+    }
 }
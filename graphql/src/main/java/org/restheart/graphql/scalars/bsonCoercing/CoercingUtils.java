@@ -54,7 +54,8 @@ public class CoercingUtils {
     }
 
     static void saveBuiltInCoercing(){
-        builtInScalars.forEach(((s, graphQLScalarType) -> builtInCoercing.put(s, graphQLScalarType.getCoercing())));
+        // only the first time, afterwards the scalars have the replacements
+        builtInScalars.forEach(((s, graphQLScalarType) -> builtInCoercing.putIfAbsent(s, graphQLScalarType.getCoercing())));
     }
 
     public static void replaceBuiltInCoercing() throws NoSuchFieldException, IllegalAccessException {
@@ -0,0 +1,111 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-graphql
+ * %%
+ * Copyright (C) 2020 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.graphql.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.ReplaceOptions;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class PersistedQueriesTest {
+    private MongoClient mclient;
+    private MongoCollection<BsonDocument> coll;
+    private FindIterable<BsonDocument> find;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        this.mclient = mock(MongoClient.class);
+        var mdb = mock(MongoDatabase.class);
+        this.coll = mock(MongoCollection.class);
+        this.find = mock(FindIterable.class);
+
+        when(mclient.getDatabase("db")).thenReturn(mdb);
+        when(mdb.getCollection("pq", BsonDocument.class)).thenReturn(coll);
+        when(coll.find(any(Bson.class))).thenReturn(find);
+
+        PersistedQueries.setup("db", "pq", mclient, 10, 100, 2);
+    }
+
+    @After
+    public void tearDown() {
+        PersistedQueries.setup(null, null, null, 0);
+    }
+
+    @Test
+    public void testUnknownHashIsLookedUpOnce() {
+        var hash = PersistedQueries.hash("{ hello }");
+
+        assertNull(PersistedQueries.get(hash));
+        assertNull(PersistedQueries.get(hash));
+
+        verify(coll, times(1)).find(any(Bson.class));
+
+        // registering the query forgets the unknown hash
+        assertTrue(PersistedQueries.put(hash, "{ hello }"));
+        assertEquals("{ hello }", PersistedQueries.get(hash));
+    }
+
+    @Test
+    public void testStoredQueriesAreCapped() {
+        when(coll.estimatedDocumentCount()).thenReturn(1L);
+        assertTrue(PersistedQueries.put(PersistedQueries.hash("{ a }"), "{ a }"));
+        verify(coll, times(1)).replaceOne(any(Bson.class), any(BsonDocument.class), any(ReplaceOptions.class));
+
+        // the collection is full, the query is only kept in memory
+        when(coll.estimatedDocumentCount()).thenReturn(2L);
+        var hash = PersistedQueries.hash("{ b }");
+        assertTrue(PersistedQueries.put(hash, "{ b }"));
+        verify(coll, times(1)).replaceOne(any(Bson.class), any(BsonDocument.class), any(ReplaceOptions.class));
+        assertEquals("{ b }", PersistedQueries.get(hash));
+    }
+
+    @Test
+    public void testTooLongQueriesAreNotStored() {
+        var query = "{ " + "a".repeat(100) + " }";
+
+        assertFalse(PersistedQueries.put(PersistedQueries.hash(query), query));
+        verify(coll, never()).estimatedDocumentCount();
+        verify(coll, never()).replaceOne(any(Bson.class), any(BsonDocument.class), any(ReplaceOptions.class));
+    }
+}
@@ -0,0 +1,202 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-graphql
+ * %%
+ * Copyright (C) 2020 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.graphql.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restheart.graphql.GraphQLService;
+import org.restheart.graphql.models.GraphQLApp;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class PreparsedDocumentCacheTest {
+    private static final String SCHEMA = "type Query { hello: String, bye: String }";
+
+    private static GraphQLSchema schema() {
+        return new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), RuntimeWiring.newRuntimeWiring().build());
+    }
+
+    private static ExecutionInput query(String query) {
+        return ExecutionInput.newExecutionInput().query(query).build();
+    }
+
+    @Before
+    public void disablePersistedQueries() {
+        PersistedQueries.setup(null, null, null, 0);
+    }
+
+    @Test
+    public void testEngineIsBuiltOnce() {
+        var app = new GraphQLApp(null, SCHEMA, Map.of(), schema());
+
+        var graphQL = app.getGraphQL();
+        graphQL.execute(query("{ hello }"));
+
+        assertSame(graphQL, app.getGraphQL());
+        assertSame(app.getPreparsedDocumentCache(), graphQL.getPreparsedDocumentProvider());
+    }
+
+    @Test
+    public void testCacheHitsAndMisses() {
+        var cache = new PreparsedDocumentCache("/test-hits-and-misses", 10);
+        var graphQL = new GraphQLApp(null, SCHEMA, Map.of(), schema()).getGraphQL().transform(builder -> builder.preparsedDocumentProvider(cache));
+
+        assertTrue(graphQL.execute(query("{ hello }")).getErrors().isEmpty());
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+
+        graphQL.execute(query("{ hello }"));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        graphQL.execute(query("{ bye }"));
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testInvalidQueriesAreCached() {
+        var cache = new PreparsedDocumentCache("/test-invalid", 10);
+        var graphQL = new GraphQLApp(null, SCHEMA, Map.of(), schema()).getGraphQL().transform(builder -> builder.preparsedDocumentProvider(cache));
+
+        assertEquals(1, graphQL.execute(query("{ notExisting }")).getErrors().size());
+        assertEquals(1, graphQL.execute(query("{ notExisting }")).getErrors().size());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+        initGraphQLService(Map.of("query-cache-size", 0));
+
+        try {
+            var app = new GraphQLApp(null, SCHEMA, Map.of(), schema());
+            var cache = app.getPreparsedDocumentCache();
+            var hits = cache.hits();
+            var misses = cache.misses();
+
+            assertTrue(app.getGraphQL().execute(query("{ hello }")).getErrors().isEmpty());
+            assertTrue(app.getGraphQL().execute(query("{ hello }")).getErrors().isEmpty());
+
+            // queries are parsed and validated without looking up the cache
+            assertEquals(hits, cache.hits());
+            assertEquals(misses, cache.misses());
+        } finally {
+            GraphQLApp.setQueryCacheSize(GraphQLService.DEFAULT_QUERY_CACHE_SIZE);
+        }
+    }
+
+    @Test
+    public void testCacheEnabledByDefault() throws Exception {
+        initGraphQLService(Map.of());
+
+        var app = new GraphQLApp(null, SCHEMA, Map.of(), schema());
+        var cache = app.getPreparsedDocumentCache();
+        var hits = cache.hits();
+
+        app.getGraphQL().execute(query("{ hello }"));
+        app.getGraphQL().execute(query("{ hello }"));
+
+        assertEquals(hits + 1, cache.hits());
+    }
+
+    /**
+     * initializes the GraphQLService with the given configuration, that sets
+     * up the query cache of the apps created afterwards
+     */
+    private static void initGraphQLService(Map<String, Object> config) throws Exception {
+        var service = new GraphQLService();
+        var field = GraphQLService.class.getDeclaredField("config");
+        field.setAccessible(true);
+        field.set(service, config);
+        service.init();
+
+        // init() sets up the persisted queries, disabled in these tests
+        PersistedQueries.setup(null, null, null, 0);
+    }
+
+    @Test
+    public void testPersistedQueryHashIsCaseInsensitive() {
+        PersistedQueries.setup(null, null, null, 10);
+
+        var graphQL = new GraphQLApp(null, SCHEMA, Map.of(), schema()).getGraphQL();
+        var query = "{ hello }";
+        var hash = PersistedQueries.hash(query).toUpperCase();
+
+        // unknown hash
+        var notFound = graphQL.execute(persistedQuery(hash, null));
+        assertEquals("PersistedQueryNotFound", notFound.getErrors().get(0).getMessage());
+
+        // register the query with the uppercase hash
+        assertTrue(graphQL.execute(persistedQuery(hash, query)).getErrors().isEmpty());
+
+        assertTrue(graphQL.execute(persistedQuery(hash, null)).getErrors().isEmpty());
+        assertTrue(graphQL.execute(persistedQuery(hash.toLowerCase(), null)).getErrors().isEmpty());
+    }
+
+    @Test
+    public void testOnlyValidQueriesArePersisted() {
+        PersistedQueries.setup(null, null, null, 10);
+
+        var graphQL = new GraphQLApp(null, SCHEMA, Map.of(), schema()).getGraphQL();
+
+        for (var query: new String[] { "{ notExisting }", "{ hello" }) {
+            var hash = PersistedQueries.hash(query);
+
+            assertTrue(!graphQL.execute(persistedQuery(hash, query)).getErrors().isEmpty());
+            assertEquals("PersistedQueryNotFound", graphQL.execute(persistedQuery(hash, null)).getErrors().get(0).getMessage());
+        }
+    }
+
+    @Test
+    public void testTooLongQueriesAreNotPersisted() {
+        PersistedQueries.setup(null, null, null, 10, 5, PersistedQueries.DEFAULT_MAX_STORED_QUERIES);
+
+        var graphQL = new GraphQLApp(null, SCHEMA, Map.of(), schema()).getGraphQL();
+        var query = "{ hello }";
+        var hash = PersistedQueries.hash(query);
+
+        // the query is executed but not persisted
+        assertTrue(graphQL.execute(persistedQuery(hash, query)).getErrors().isEmpty());
+        assertEquals("PersistedQueryNotFound", graphQL.execute(persistedQuery(hash, null)).getErrors().get(0).getMessage());
+    }
+
+    private static ExecutionInput persistedQuery(String hash, String query) {
+        return ExecutionInput.newExecutionInput()
+            .query(query == null ? PersistedQuerySupport.PERSISTED_QUERY_MARKER : query)
+            .extensions(Map.of(PersistedQueries.EXTENSION_NAME, Map.of("version", 1, PersistedQueries.HASH_FIELD, hash)))
+            .build();
+    }
+}
@@ -0,0 +1,162 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-graphql
+ * %%
+ * Copyright (C) 2020 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.graphql.dataloaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class BatchLoaderExecutorTest {
+    @After
+    public void shutdown() {
+        BatchLoaderExecutor.shutdown();
+    }
+
+    @Test
+    public void testConcurrentFirstBatchesShareTheExecutor() throws Exception {
+        BatchLoaderExecutor.shutdown();
+
+        var threads = 16;
+        var start = new CountDownLatch(1);
+        var pool = Executors.newFixedThreadPool(threads);
+        var executors = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+
+        try {
+            var futures = new ArrayList<CompletableFuture<Void>>();
+
+            for (var i = 0; i < threads; i++) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    executors.add(BatchLoaderExecutor.executor());
+                }, pool));
+            }
+
+            start.countDown();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(1, executors.size());
+    }
+
+    @Test
+    public void testBatchesRunOnBatchLoaderThreads() throws Exception {
+        BatchLoaderExecutor.setup(2, 10);
+
+        var thread = BatchLoaderExecutor.supplyAsync(() -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+
+        assertTrue(thread.startsWith("graphql-batch-loader-"));
+    }
+
+    @Test
+    public void testCallerRunsWhenSaturated() throws Exception {
+        BatchLoaderExecutor.setup(1, 1);
+
+        var release = new CountDownLatch(1);
+        Supplier<String> blocking = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+
+            return Thread.currentThread().getName();
+        };
+
+        // occupies the only thread and the only queue slot
+        var running = BatchLoaderExecutor.supplyAsync(blocking);
+        var queued = BatchLoaderExecutor.supplyAsync(blocking);
+
+        // waits for the first batch to be taken by the thread
+        while (BatchLoaderExecutor.executor().getActiveCount() < 1 || BatchLoaderExecutor.executor().getQueue().isEmpty()) {
+            Thread.sleep(1);
+        }
+
+        var caller = BatchLoaderExecutor.supplyAsync(() -> Thread.currentThread().getName());
+
+        release.countDown();
+
+        assertEquals(Thread.currentThread().getName(), caller.get(10, TimeUnit.SECONDS));
+        running.get(10, TimeUnit.SECONDS);
+        queued.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSetupReplacesExecutor() {
+        BatchLoaderExecutor.setup(1, 1);
+        var old = BatchLoaderExecutor.executor();
+
+        BatchLoaderExecutor.setup(2, 2);
+
+        assertNotSame(old, BatchLoaderExecutor.executor());
+        assertTrue(old.isShutdown());
+    }
+
+    @Test
+    public void testBatchSubmittedToReplacedExecutorCompletes() throws Exception {
+        BatchLoaderExecutor.setup(1, 1);
+        var old = BatchLoaderExecutor.executor();
+
+        var release = new CountDownLatch(1);
+        var queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+
+            return "queued";
+        }, old);
+
+        BatchLoaderExecutor.setup(2, 2);
+
+        // a batch that got the old executor before it was replaced
+        var late = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), old);
+
+        assertTrue(late.get(10, TimeUnit.SECONDS).startsWith("graphql-batch-loader-"));
+
+        // the old executor completes the batches submitted before the replacement
+        release.countDown();
+        assertEquals("queued", queued.get(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,288 @@
+package org.restheart.graphql.dataloaders;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.BsonArray;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.types.Decimal128;
+import org.junit.Test;
+import org.restheart.graphql.models.DataLoaderSettings.BatchingStrategy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryBatchLoaderTest {
+
+    @Test
+    public void testInFieldSameField() {
+        assertEquals("author", QueryBatchLoader.inField(queries(
+            "{ 'find': { 'author': 'a' }, 'limit': 10 }",
+            "{ 'find': { 'author': 'b' }, 'limit': 5, 'skip': 1 }")));
+
+        assertEquals("author.id", QueryBatchLoader.inField(queries(
+            "{ 'find': { 'author.id': { '$oid': '63a0b8f7e4b0c5a1f1d2e3f4' } }, 'sort': { 'date': -1 } }",
+            "{ 'find': { 'author.id': { '$oid': '63a0b8f7e4b0c5a1f1d2e3f5' } }, 'sort': { 'date': -1 } }")));
+    }
+
+    @Test
+    public void testInFieldNotApplicable() {
+        // different fields
+        assertNull(QueryBatchLoader.inField(queries("{ 'find': { 'a': 1 } }", "{ 'find': { 'b': 1 } }")));
+        // different sorts
+        assertNull(QueryBatchLoader.inField(queries("{ 'find': { 'a': 1 }, 'sort': { 'x': 1 } }", "{ 'find': { 'a': 2 } }")));
+        // operators
+        assertNull(QueryBatchLoader.inField(queries("{ 'find': { 'a': { '$gt': 1 } } }", "{ 'find': { 'a': 2 } }")));
+        assertNull(QueryBatchLoader.inField(queries("{ 'find': { '$or': [ { 'a': 1 } ] } }", "{ 'find': { '$or': [ { 'a': 2 } ] } }")));
+        // more conditions
+        assertNull(QueryBatchLoader.inField(queries("{ 'find': { 'a': 1, 'b': 1 } }", "{ 'find': { 'a': 2, 'b': 1 } }")));
+        // array index in path
+        assertNull(QueryBatchLoader.inField(queries("{ 'find': { 'a.0': 1 } }", "{ 'find': { 'a.0': 2 } }")));
+        // doubles and arrays
+        assertNull(QueryBatchLoader.inField(queries("{ 'find': { 'a': 1.5 } }", "{ 'find': { 'a': 2 } }")));
+        assertNull(QueryBatchLoader.inField(queries("{ 'find': { 'a': [1] } }", "{ 'find': { 'a': 2 } }")));
+        // no find
+        assertNull(QueryBatchLoader.inField(queries("{ 'find': { 'a': 1 } }", "{ 'limit': 2 }")));
+    }
+
+    @Test
+    public void testPartitionMatchesResultsToKeysInOrder() {
+        var a1 = doc("{ '_id': 1, 'author': 'a' }");
+        var b1 = doc("{ '_id': 2, 'author': 'b' }");
+        var a2 = doc("{ '_id': 3, 'author': 'a' }");
+
+        var res = QueryBatchLoader.partition("author", queries(
+            "{ 'find': { 'author': 'b' } }",
+            "{ 'find': { 'author': 'c' } }",
+            "{ 'find': { 'author': 'a' } }"), List.of(a1, b1, a2).iterator());
+
+        assertEquals(3, res.size());
+        assertEquals(new BsonArray(List.of(b1)), res.get(0));
+        // missing key
+        assertEquals(new BsonArray(), res.get(1));
+        // documents keep the order of the cursor
+        assertEquals(new BsonArray(List.of(a1, a2)), res.get(2));
+    }
+
+    @Test
+    public void testPartitionDuplicateKeys() {
+        var a1 = doc("{ '_id': 1, 'author': 1 }");
+        var a2 = doc("{ '_id': 2, 'author': { '$numberLong': '1' } }");
+        var a3 = doc("{ '_id': 3, 'author': 1.0 }");
+
+        // same value, also with different numeric types, in more queries
+        var res = QueryBatchLoader.partition("author", queries(
+            "{ 'find': { 'author': 1 } }",
+            "{ 'find': { 'author': { '$numberLong': '1' } }, 'limit': 1 }",
+            "{ 'find': { 'author': 1 }, 'skip': 2 }"), List.of(a1, a2, a3).iterator());
+
+        assertEquals(new BsonArray(List.of(a1, a2, a3)), res.get(0));
+        assertEquals(new BsonArray(List.of(a1)), res.get(1));
+        assertEquals(new BsonArray(List.of(a3)), res.get(2));
+    }
+
+    @Test
+    public void testPartitionSkipAndLimit() {
+        var docs = new ArrayList<BsonDocument>();
+        for (int i = 0; i < 10; i++) {
+            docs.add(doc("{ '_id': " + i + ", 'author': '" + (i % 2 == 0 ? "a" : "b") + "' }"));
+        }
+
+        var it = new CountingIterator<>(docs.iterator());
+
+        var res = QueryBatchLoader.partition("author", queries(
+            "{ 'find': { 'author': 'a' }, 'skip': 1, 'limit': 2 }",
+            "{ 'find': { 'author': 'b' }, 'limit': 1 }"), it);
+
+        assertEquals(new BsonArray(List.of(docs.get(2), docs.get(4))), res.get(0));
+        assertEquals(new BsonArray(List.of(docs.get(1))), res.get(1));
+        // the cursor is not consumed after all queries with a limit are filled
+        assertEquals(5, it.count);
+    }
+
+    @Test
+    public void testPartitionArrayField() {
+        var ab = doc("{ '_id': 1, 'tags': [ 'a', 'b' ] }");
+        var nested = doc("{ '_id': 2, 'tags': [ [ 'a' ] ] }");
+
+        var res = QueryBatchLoader.partition("tags", queries(
+            "{ 'find': { 'tags': 'a' } }",
+            "{ 'find': { 'tags': 'b' } }"), List.of(ab, nested).iterator());
+
+        assertEquals(new BsonArray(List.of(ab)), res.get(0));
+        assertEquals(new BsonArray(List.of(ab)), res.get(1));
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals(1L, QueryBatchLoader.normalize(new BsonInt32(1)));
+        assertEquals(1L, QueryBatchLoader.normalize(new BsonInt64(1)));
+        assertEquals(1L, QueryBatchLoader.normalize(new BsonDouble(1.0)));
+        assertNotEquals(1L, QueryBatchLoader.normalize(new BsonDouble(1.5)));
+        assertEquals(new BsonString("1"), QueryBatchLoader.normalize(new BsonString("1")));
+        assertNotEquals(QueryBatchLoader.normalize(new BsonString("1")), QueryBatchLoader.normalize(new BsonInt32(1)));
+    }
+
+    @Test
+    public void testNormalizeDecimal128() {
+        assertEquals(1L, QueryBatchLoader.normalize(new BsonDecimal128(Decimal128.parse("1"))));
+        assertEquals(1L, QueryBatchLoader.normalize(new BsonDecimal128(Decimal128.parse("1.000"))));
+        assertEquals(0L, QueryBatchLoader.normalize(new BsonDecimal128(Decimal128.NEGATIVE_ZERO)));
+        assertEquals(QueryBatchLoader.normalize(new BsonDouble(1.5)), QueryBatchLoader.normalize(new BsonDecimal128(Decimal128.parse("1.50"))));
+        assertEquals(QueryBatchLoader.normalize(new BsonDouble(Double.NaN)), QueryBatchLoader.normalize(new BsonDecimal128(Decimal128.NaN)));
+        assertEquals(QueryBatchLoader.normalize(new BsonDouble(Double.NEGATIVE_INFINITY)), QueryBatchLoader.normalize(new BsonDecimal128(Decimal128.NEGATIVE_INFINITY)));
+        // 0.1 has no exact double representation
+        assertNotEquals(QueryBatchLoader.normalize(new BsonDouble(0.1)), QueryBatchLoader.normalize(new BsonDecimal128(Decimal128.parse("0.1"))));
+    }
+
+    @Test
+    public void testPartitionDecimal128Keys() {
+        var a1 = doc("{ '_id': 1, 'author': { '$numberDecimal': '1' } }");
+        var a2 = doc("{ '_id': 2, 'author': { '$numberDecimal': '1.0' } }");
+        var b1 = doc("{ '_id': 3, 'author': { '$numberDecimal': '2' } }");
+
+        var res = QueryBatchLoader.partition("author", queries(
+            "{ 'find': { 'author': 1 } }",
+            "{ 'find': { 'author': { '$numberLong': '2' } } }"), List.of(a1, a2, b1).iterator());
+
+        assertEquals(new BsonArray(List.of(a1, a2)), res.get(0));
+        assertEquals(new BsonArray(List.of(b1)), res.get(1));
+    }
+
+    @Test
+    public void testPartitionWithAndWithoutLimit() {
+        var docs = new ArrayList<BsonDocument>();
+        for (int i = 0; i < 10; i++) {
+            docs.add(doc("{ '_id': " + i + ", 'author': '" + (i % 2 == 0 ? "a" : "b") + "' }"));
+        }
+
+        var it = new CountingIterator<>(docs.iterator());
+
+        var res = QueryBatchLoader.partition("author", queries(
+            "{ 'find': { 'author': 'a' }, 'limit': 1 }",
+            "{ 'find': { 'author': 'b' } }",
+            "{ 'find': { 'author': 'b' }, 'limit': 0 }"), it);
+
+        assertEquals(new BsonArray(List.of(docs.get(0))), res.get(0));
+        // the queries without a limit, or with limit 0, get all the documents
+        var bs = new BsonArray(List.of(docs.get(1), docs.get(3), docs.get(5), docs.get(7), docs.get(9)));
+        assertEquals(bs, res.get(1));
+        assertEquals(bs, res.get(2));
+        assertEquals(10, it.count);
+    }
+
+    @Test
+    public void testValuesAt() {
+        var doc = doc("{ 'a': { 'b': 1 }, 'c': [ { 'd': 1 }, { 'd': { '$numberLong': '2' } }, { 'e': 3 } ], 'f': [ 'x', 'y' ] }");
+
+        assertEquals(Set.of(1L), QueryBatchLoader.valuesAt(doc, "a.b"));
+        // arrays of documents are traversed
+        assertEquals(Set.of(1L, 2L), QueryBatchLoader.valuesAt(doc, "c.d"));
+        // the elements and the array itself
+        var f = QueryBatchLoader.valuesAt(doc, "f");
+        assertTrue(f.containsAll(Set.of(new BsonString("x"), new BsonString("y"))));
+        assertTrue(f.contains(doc.get("f")));
+        // missing
+        assertTrue(QueryBatchLoader.valuesAt(doc, "a.x").isEmpty());
+        assertTrue(QueryBatchLoader.valuesAt(doc, "a.b.c").isEmpty());
+        assertFalse(QueryBatchLoader.valuesAt(doc, "c.e").contains(1L));
+    }
+
+    @Test
+    public void testSubBatches() {
+        var loader = new RecordingQueryBatchLoader(BatchingStrategy.IN, 2);
+        var queries = queries(
+            "{ 'find': { 'a': { '$gt': 1 } } }",
+            "{ 'find': { 'a': { '$gt': 2 } } }",
+            "{ 'find': { 'a': { '$gt': 3 } } }",
+            "{ 'find': { 'a': { '$gt': 4 } } }",
+            "{ 'find': { 'a': { '$gt': 5 } } }");
+
+        var res = loader.load(queries).toCompletableFuture().join();
+
+        assertEquals(List.of(queries.subList(0, 2), queries.subList(2, 4), queries.subList(4, 5)), loader.batches);
+        // results are in the order of the queries
+        assertEquals(queries, res);
+    }
+
+    @Test
+    public void testNoSubBatches() {
+        var queries = queries(
+            "{ 'find': { 'a': { '$gt': 1 } } }",
+            "{ 'find': { 'a': { '$gt': 2 } } }",
+            "{ 'find': { 'a': { '$gt': 3 } } }");
+
+        // sub batches are disabled
+        var loader = new RecordingQueryBatchLoader(BatchingStrategy.IN, 0);
+        assertEquals(queries, loader.load(queries).toCompletableFuture().join());
+        assertEquals(List.of(queries), loader.batches);
+
+        // sub batches only apply to the IN strategy
+        loader = new RecordingQueryBatchLoader(BatchingStrategy.FACET, 2);
+        assertEquals(queries, loader.load(queries).toCompletableFuture().join());
+        assertEquals(List.of(queries), loader.batches);
+
+        // the batch fits in a sub batch
+        loader = new RecordingQueryBatchLoader(BatchingStrategy.IN, 3);
+        assertEquals(queries, loader.load(queries).toCompletableFuture().join());
+        assertEquals(List.of(queries), loader.batches);
+    }
+
+    private static BsonDocument doc(String json) {
+        return BsonDocument.parse(json);
+    }
+
+    /**
+     * records the batches executed with $facet, returning each query as its result
+     */
+    private static class RecordingQueryBatchLoader extends QueryBatchLoader {
+        final List<List<BsonValue>> batches = new ArrayList<>();
+
+        RecordingQueryBatchLoader(BatchingStrategy strategy, int subBatchSize) {
+            super("db", "coll", strategy, subBatchSize);
+        }
+
+        @Override
+        List<BsonValue> loadWithFacet(List<BsonValue> queries) {
+            synchronized (batches) {
+                batches.add(queries);
+            }
+            return new ArrayList<>(queries);
+        }
+    }
+
+    private static class CountingIterator<T> implements Iterator<T> {
+        final Iterator<T> wrapped;
+        int count = 0;
+
+        CountingIterator(Iterator<T> wrapped) {
+            this.wrapped = wrapped;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return wrapped.hasNext();
+        }
+
+        @Override
+        public T next() {
+            count++;
+            return wrapped.next();
+        }
+    }
+
+    private static List<BsonValue> queries(String... queries) {
+        return List.of(queries).stream().map(q -> (BsonValue) BsonDocument.parse(q)).toList();
+    }
+}
@@ -67,6 +67,8 @@ public class MongoServiceConfiguration {
     private final Map<String, Map<String, Object>> pluginsArgs;
     private final boolean localCacheEnabled;
     private final long localCacheTtl;
+    private final long localCacheRefresh;
+    private final boolean localCacheInvalidation;
     private final boolean schemaCacheEnabled;
     private final long schemaCacheTtl;
     private final int requestsLimit;
@@ -80,10 +82,13 @@ public class MongoServiceConfiguration {
     private final long queryTimeLimit;
     private final long aggregationTimeLimit;
     private final boolean aggregationCheckOperators;
+    private final boolean streamResponses;
     private final int cursorBatchSize;
     private final int defaultPagesize;
     private final int maxPagesize;
     private final METRICS_GATHERING_LEVEL metricsGatheringLevel;
+    private final int changeStreamsQueueSize;
+    private final CHANGE_STREAMS_OVERFLOW_POLICY changeStreamsOverflowPolicy;
 
     public static MongoServiceConfiguration get() {
         return INSTANCE;
@@ -164,9 +169,12 @@ public class MongoServiceConfiguration {
         queryTimeLimit = asLong(conf, QUERY_TIME_LIMIT_KEY, (long) 0, silent);
         aggregationTimeLimit = asLong(conf, AGGREGATION_TIME_LIMIT_KEY, (long) 0, silent);
         aggregationCheckOperators = asBoolean(conf, AGGREGATION_CHECK_OPERATORS, true, silent);
+        streamResponses = asBoolean(conf, STREAM_RESPONSES_KEY, false, silent);
 
         localCacheEnabled = asBoolean(conf, LOCAL_CACHE_ENABLED_KEY, true, silent);
         localCacheTtl = asLong(conf, LOCAL_CACHE_TTL_KEY, (long) 1000, silent);
+        localCacheRefresh = asLong(conf, LOCAL_CACHE_REFRESH_KEY, localCacheTtl / 2, silent);
+        localCacheInvalidation = asBoolean(conf, LOCAL_CACHE_INVALIDATION_KEY, false, silent);
 
         schemaCacheEnabled = asBoolean(conf, SCHEMA_CACHE_ENABLED_KEY, true, silent);
         schemaCacheTtl = asLong(conf, SCHEMA_CACHE_TTL_KEY, (long) 1000, silent);
@@ -239,6 +247,18 @@ public class MongoServiceConfiguration {
             mglevel = METRICS_GATHERING_LEVEL.ROOT;
         }
         metricsGatheringLevel = mglevel;
+
+        changeStreamsQueueSize = asInteger(conf, CHANGE_STREAMS_QUEUE_SIZE_KEY, DEFAULT_CHANGE_STREAMS_QUEUE_SIZE, silent);
+
+        CHANGE_STREAMS_OVERFLOW_POLICY csopolicy;
+        try {
+            var value = asString(conf, CHANGE_STREAMS_OVERFLOW_POLICY_KEY, CHANGE_STREAMS_OVERFLOW_POLICY.DROP_OLDEST.name(), silent);
+            csopolicy = CHANGE_STREAMS_OVERFLOW_POLICY.valueOf(value.toUpperCase(Locale.getDefault()).replace('-', '_'));
+        } catch (IllegalArgumentException iae) {
+            LOGGER.warn("wrong value for parameter {} setting it to default value {}", CHANGE_STREAMS_OVERFLOW_POLICY_KEY, CHANGE_STREAMS_OVERFLOW_POLICY.DROP_OLDEST);
+            csopolicy = CHANGE_STREAMS_OVERFLOW_POLICY.DROP_OLDEST;
+        }
+        changeStreamsOverflowPolicy = csopolicy;
     }
 
     @Override
@@ -246,13 +266,13 @@ public class MongoServiceConfiguration {
         return "Configuration{instanceBaseURL=" + instanceBaseURL
                 + ", defaultRepresentationFromat=" + defaultRepresentationFormat + ", mongoUri=" + mongoUri
                 + ", mongoMounts=" + mongoMounts + ", pluginsArgs=" + getPluginsArgs() + ", localCacheEnabled="
-                + localCacheEnabled + ", localCacheTtl=" + localCacheTtl + ", schemaCacheEnabled=" + schemaCacheEnabled
+                + localCacheEnabled + ", localCacheTtl=" + localCacheTtl + ", localCacheRefresh=" + localCacheRefresh + ", localCacheInvalidation=" + localCacheInvalidation + ", schemaCacheEnabled=" + schemaCacheEnabled
                 + ", schemaCacheTtl=" + schemaCacheTtl + ", requestsLimit=" + requestsLimit + ", metricsGatheringLevel="
                 + metricsGatheringLevel + ", cacheSize=" + getCollectionCacheSize + ", cacheTTL" + getCollectionCacheTTL
                 + ", dbEtagCheckPolicy=" + dbEtagCheckPolicy + ", collEtagCheckPolicy=" + collEtagCheckPolicy + ", docEtagCheckPolicy="
                 + docEtagCheckPolicy + ", connectionOptions=" + connectionOptions + ", queryTimeLimit=" + queryTimeLimit
                 + ", aggregationTimeLimit=" + aggregationTimeLimit + ", aggregationCheckOperators="
-                + aggregationCheckOperators + ", cursorBatchSize=" + cursorBatchSize + ", defaultPagesize="
+                + aggregationCheckOperators + ", streamResponses=" + streamResponses + ", cursorBatchSize=" + cursorBatchSize + ", defaultPagesize="
                 + defaultPagesize + ", maxPagesize=" + maxPagesize + ", configurationFileMap=" + mongoSrvConfiguration
                 + '}';
     }
@@ -278,6 +298,20 @@ public class MongoServiceConfiguration {
         return localCacheTtl;
     }
 
+    /**
+     * @return the localCacheRefresh
+     */
+    public long getLocalCacheRefresh() {
+        return localCacheRefresh;
+    }
+
+    /**
+     * @return the localCacheInvalidation
+     */
+    public boolean isLocalCacheInvalidation() {
+        return localCacheInvalidation;
+    }
+
     /**
      * @return the requestsLimit
      */
@@ -306,6 +340,14 @@ public class MongoServiceConfiguration {
         return aggregationCheckOperators;
     }
 
+    /**
+     * @return true if the documents of collections and aggregations are
+     * streamed to the client as the cursor yields them
+     */
+    public boolean isStreamResponses() {
+        return streamResponses;
+    }
+
     /**
      * @return the getCollectionCacheSize
      */
@@ -411,6 +453,20 @@ public class MongoServiceConfiguration {
         return cursorBatchSize;
     }
 
+    /**
+     * @return the size of the outbound queue of each change stream websocket session
+     */
+    public int getChangeStreamsQueueSize() {
+        return changeStreamsQueueSize;
+    }
+
+    /**
+     * @return the policy applied when the outbound queue of a change stream websocket session is full
+     */
+    public CHANGE_STREAMS_OVERFLOW_POLICY getChangeStreamsOverflowPolicy() {
+        return changeStreamsOverflowPolicy;
+    }
+
     /**
      * @return the maxPagesize
      */
@@ -465,4 +521,20 @@ public class MongoServiceConfiguration {
          */
         COLLECTION
     }
+
+    public enum CHANGE_STREAMS_OVERFLOW_POLICY {
+        /**
+         * drop the oldest queued notification
+         */
+        DROP_OLDEST,
+        /**
+         * replace the queued notification of the same document, if any;
+         * otherwise drop the oldest queued notification
+         */
+        COALESCE,
+        /**
+         * close the websocket session
+         */
+        DISCONNECT
+    }
 }
@@ -78,6 +78,11 @@ public interface MongoServiceConfigurationKeys {
      */
     public static final int DEFAULT_CURSOR_BATCH_SIZE = 1000;
 
+    /**
+     * default value for the size of the outbound queue of each change stream websocket session
+     */
+    public static final int DEFAULT_CHANGE_STREAMS_QUEUE_SIZE = 1000;
+
     /**
      * the key for the plugins-args property.
      */
@@ -93,6 +98,16 @@ public interface MongoServiceConfigurationKeys {
      */
     public static final String LOCAL_CACHE_TTL_KEY = "local-cache-ttl";
 
+    /**
+     * the key for the local-cache-refresh property.
+     */
+    public static final String LOCAL_CACHE_REFRESH_KEY = "local-cache-refresh";
+
+    /**
+     * the key for the local-cache-invalidation property.
+     */
+    public static final String LOCAL_CACHE_INVALIDATION_KEY = "local-cache-invalidation";
+
     /**
      * the key for the schema-cache-enabled property.
      */
@@ -123,6 +138,11 @@ public interface MongoServiceConfigurationKeys {
      */
     public static final String AGGREGATION_CHECK_OPERATORS = "aggregation-check-operators";
 
+    /**
+     * the key for the stream-responses property
+     */
+    public static final String STREAM_RESPONSES_KEY = "stream-responses";
+
     /**
      * the key for the mongo-uri property.
      */
@@ -221,4 +241,14 @@ public interface MongoServiceConfigurationKeys {
      * The key for specifying the cursor batch size
      */
     public static final String CURSOR_BATCH_SIZE_KEY = "cursor-batch-size";
+
+    /**
+     * The key for specifying the size of the outbound queue of each change stream websocket session
+     */
+    public static final String CHANGE_STREAMS_QUEUE_SIZE_KEY = "change-streams-queue-size";
+
+    /**
+     * The key for specifying what to do when the outbound queue of a change stream websocket session is full
+     */
+    public static final String CHANGE_STREAMS_OVERFLOW_POLICY_KEY = "change-streams-overflow-policy";
 }
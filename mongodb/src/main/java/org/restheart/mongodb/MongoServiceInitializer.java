@@ -22,6 +22,8 @@ package org.restheart.mongodb;
 
 import java.util.Map;
 
+import com.mongodb.client.MongoClient;
+
 import org.restheart.configuration.Configuration;
 import org.restheart.mongodb.db.sessions.TxnClientSessionFactory;
 import org.restheart.mongodb.interceptors.MetadataCachesSingleton;
@@ -45,6 +47,9 @@ public class MongoServiceInitializer implements Initializer {
     @Inject("rh-config")
     private Configuration config;
 
+    @Inject("mclient")
+    private MongoClient mclient;
+
     @OnInit
     public void onInit() {
         Map<String, Object> mongoConfig = config.getOrDefault("mongo", null);
@@ -67,6 +72,10 @@ public class MongoServiceInitializer implements Initializer {
 
         // initialize MetadataCachesSingleton
         MetadataCachesSingleton.init(MongoServiceConfiguration.get());
+
+        if (MongoServiceConfiguration.get().isLocalCacheEnabled() && MongoServiceConfiguration.get().isLocalCacheInvalidation()) {
+            MetadataCachesSingleton.getInstance().watch(mclient);
+        }
     }
 
     private boolean isMongoEnabled(Map<String, Object> mc) {
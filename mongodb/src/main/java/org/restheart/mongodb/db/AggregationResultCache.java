@@ -0,0 +1,313 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the results of the aggregation pipelines that opt in via the
+ * {@code cache} property of their definition.
+ *
+ * Each pipeline gets its own size and time bounded cache, whose entries are
+ * keyed by the resolved stages, i.e. with the aggregation variables bound, and
+ * by the data version of the source collection. The data version is
+ * incremented by every write to the collection executed by this node, so that
+ * a result computed concurrently to a write can never be returned after it.
+ *
+ * Pipelines whose last stage is {@code $out} or {@code $merge} are never
+ * cached, since a cache hit would skip their write. The state kept for a
+ * namespace is evicted when it is deleted, and the caches of its pipelines
+ * when the collection properties, that define them, are updated.
+ *
+ * Results are stored as {@code RawBsonDocument}s, so that the cached values are
+ * immutable and their size in bytes is known; callers get fresh mutable copies.
+ *
+ * The hits and misses of each pipeline cache are recorded in the CACHES metric
+ * registry as {@code aggregation.<db>.<coll>.<uri>.*}
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class AggregationResultCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AggregationResultCache.class);
+
+    private static final BsonDocumentCodec CODEC = new BsonDocumentCodec();
+
+    /**
+     *
+     * @return
+     */
+    public static AggregationResultCache getInstance() {
+        return AggregationResultCacheHolder.INSTANCE;
+    }
+
+    private final Map<MongoNamespace, Long> versions = new ConcurrentHashMap<>();
+
+    // versions are taken from a single clock, so that the version of an evicted namespace never repeats
+    private final AtomicLong clock = new AtomicLong();
+
+    // the version of the namespaces without cached results or writes
+    private volatile long floor = 0;
+
+    private final Map<PipelineId, PipelineCache> caches = new ConcurrentHashMap<>();
+
+    AggregationResultCache() {
+    }
+
+    /**
+     * the data version of a collection, to be taken before executing the
+     * aggregation and passed to put()
+     *
+     * @param db
+     * @param coll
+     * @return the current data version of the collection
+     */
+    public long version(String db, String coll) {
+        var v = versions.get(new MongoNamespace(db, coll));
+        return v == null ? floor : v;
+    }
+
+    /**
+     * @param stages
+     * @return false if the last stage is $out or $merge, i.e. the pipeline writes its result
+     */
+    public static boolean cacheable(List<BsonDocument> stages) {
+        if (stages.isEmpty()) {
+            return true;
+        }
+
+        var last = stages.get(stages.size() - 1);
+        return !last.containsKey("$out") && !last.containsKey("$merge");
+    }
+
+    /**
+     *
+     * @param db
+     * @param coll
+     * @param uri the uri of the aggregation
+     * @param options the cache options of the aggregation
+     * @param stages the resolved stages
+     * @param allowDiskUse
+     * @return a mutable copy of the cached result or null if not cached
+     */
+    public List<BsonDocument> get(String db, String coll, String uri, Options options, List<BsonDocument> stages, boolean allowDiskUse) {
+        if (!cacheable(stages)) {
+            return null;
+        }
+
+        var cache = cache(db, coll, uri, options);
+        var key = new Key(version(db, coll), stages, allowDiskUse);
+        var cached = cache.get(key);
+
+        if (cached == null || cached.isEmpty()) {
+            return null;
+        }
+
+        var ret = new ArrayList<BsonDocument>(cached.get().size());
+        cached.get().forEach(raw -> ret.add(raw.decode(CODEC)));
+        return ret;
+    }
+
+    /**
+     * caches the result, unless the collection has been written since version
+     * was taken, the result exceeds the maxBytes option or the pipeline
+     * writes its result
+     *
+     * @param db
+     * @param coll
+     * @param uri the uri of the aggregation
+     * @param options the cache options of the aggregation
+     * @param stages the resolved stages
+     * @param allowDiskUse
+     * @param version the data version of the collection taken before executing the aggregation
+     * @param result
+     * @return true if the result has been cached
+     */
+    public boolean put(String db, String coll, String uri, Options options, List<BsonDocument> stages, boolean allowDiskUse, long version, List<BsonDocument> result) {
+        if (!cacheable(stages)) {
+            return false;
+        }
+
+        var raws = new ArrayList<RawBsonDocument>(result.size());
+        long bytes = 0;
+
+        for (var doc : result) {
+            var raw = new RawBsonDocument(doc, CODEC);
+            bytes += raw.getByteBuffer().remaining();
+
+            if (bytes > options.maxBytes()) {
+                LOGGER.debug("aggregation /{}/{}/_aggrs/{} result not cached, exceeds {} bytes", db, coll, uri, options.maxBytes());
+                return false;
+            }
+
+            raws.add(raw);
+        }
+
+        // a cached namespace gets its own version, so that its results survive the eviction of other namespaces
+        if (version != versions.computeIfAbsent(new MongoNamespace(db, coll), k -> floor)) {
+            return false;
+        }
+
+        cache(db, coll, uri, options).put(new Key(version, stages, allowDiskUse), raws);
+        return true;
+    }
+
+    /**
+     * invalidates the cached results of all the aggregations of a collection
+     *
+     * @param db
+     * @param coll
+     */
+    public void invalidateAll(String db, String coll) {
+        invalidateAll(new MongoNamespace(db, coll));
+    }
+
+    /**
+     * invalidates the cached results of all the aggregations of a database
+     *
+     * @param db
+     */
+    public void invalidateAll(String db) {
+        Stream.concat(versions.keySet().stream(), caches.keySet().stream().map(PipelineId::ns))
+            .filter(ns -> ns.getDatabaseName().equals(db))
+            .distinct()
+            .forEach(this::invalidateAll);
+    }
+
+    /**
+     * invalidates the cached results of all the aggregations of a collection
+     *
+     * @param coll
+     */
+    public void invalidateAll(MongoCollection<?> coll) {
+        invalidateAll(coll.getNamespace());
+    }
+
+    private void invalidateAll(MongoNamespace ns) {
+        // bump the version first, so that results computed before this write are not cached anymore
+        versions.merge(ns, clock.incrementAndGet(), Math::max);
+
+        caches.forEach((id, pc) -> {
+            if (id.ns().equals(ns)) {
+                pc.cache().invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * evicts the caches of the aggregations of a collection, to be called when
+     * its properties, that define the aggregations, are updated
+     *
+     * @param db
+     * @param coll
+     */
+    public void evictAggregations(String db, String coll) {
+        var ns = new MongoNamespace(db, coll);
+        caches.keySet().removeIf(id -> id.ns().equals(ns));
+    }
+
+    /**
+     * evicts the data version and the caches of a deleted collection
+     *
+     * @param db
+     * @param coll
+     */
+    public void evict(String db, String coll) {
+        evict(ns -> ns.equals(new MongoNamespace(db, coll)));
+    }
+
+    /**
+     * evicts the data versions and the caches of the collections of a deleted
+     * database
+     *
+     * @param db
+     */
+    public void evict(String db) {
+        evict(ns -> ns.getDatabaseName().equals(db));
+    }
+
+    private void evict(Predicate<MongoNamespace> matches) {
+        // raise the floor before removing the versions, so that results computed before the deletion are not cached anymore
+        floor = clock.incrementAndGet();
+
+        versions.keySet().removeIf(matches);
+        caches.keySet().removeIf(id -> matches.test(id.ns()));
+    }
+
+    private Cache<Key, List<RawBsonDocument>> cache(String db, String coll, String uri, Options options) {
+        var id = new PipelineId(new MongoNamespace(db, coll), uri);
+        var pc = caches.get(id);
+
+        if (pc != null && pc.options().equals(options)) {
+            return pc.cache();
+        }
+
+        // first use or the definition of the aggregation changed its cache options
+        return caches.compute(id, (k, v) -> v != null && v.options().equals(options)
+            ? v
+            : new PipelineCache(options, CacheFactory.createLocalCache(metricName(id), options.maxSize(), Cache.EXPIRE_POLICY.AFTER_WRITE, options.ttl())))
+            .cache();
+    }
+
+    private static String metricName(PipelineId id) {
+        return String.join(".", "aggregation", id.ns().getDatabaseName(), id.ns().getCollectionName(), id.uri());
+    }
+
+    /**
+     * the cache options of an aggregation
+     *
+     * @param ttl the Time To Live of the cached results in milliseconds
+     * @param maxSize the max number of cached results
+     * @param maxBytes the max size in bytes of a cached result; bigger results are not cached
+     */
+    public record Options(long ttl, long maxSize, long maxBytes) {
+    }
+
+    private record PipelineId(MongoNamespace ns, String uri) {
+    }
+
+    private record PipelineCache(Options options, Cache<Key, List<RawBsonDocument>> cache) {
+    }
+
+    private record Key(long version, List<BsonDocument> stages, boolean allowDiskUse) {
+    }
+
+    private static class AggregationResultCacheHolder {
+        private static final AggregationResultCache INSTANCE = new AggregationResultCache();
+
+        private AggregationResultCacheHolder() {
+        }
+    };
+}
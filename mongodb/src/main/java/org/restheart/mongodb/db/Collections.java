@@ -473,6 +473,9 @@ class Collections {
         final MongoCollection<BsonDocument> mcoll,
         final BsonDocument dcontent,
         final ObjectId newEtag) {
+           // the properties define the aggregations of the collection
+           AggregationResultCache.getInstance().evictAggregations(mcoll.getNamespace().getDatabaseName(), collName);
+
            return switch(method) {
                 case PATCH -> {
                     var ret = DbUtils.writeDocument(
@@ -555,6 +558,8 @@ class Collections {
             mcoll.deleteOne(query);
         }
 
+        AggregationResultCache.getInstance().evict(dbName, collName);
+
         return new OperationResult(HttpStatus.SC_NO_CONTENT, null, properties, null);
     }
 }
@@ -405,6 +405,8 @@ public class Databases {
             db.drop();
         }
 
+        AggregationResultCache.getInstance().evict(dbName);
+
         return new OperationResult(HttpStatus.SC_NO_CONTENT);
     }
 
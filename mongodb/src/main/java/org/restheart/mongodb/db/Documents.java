@@ -156,6 +156,7 @@ public class Documents {
 
             // invalidate the cache entris of this collection
             GetCollectionCache.getInstance().invalidateAll(dbName, collName);
+            AggregationResultCache.getInstance().invalidateAll(dbName, collName);
             return new OperationResult(httpCode, newEtag, oldDocument, newDocument, writeResult.getCause());
         }
     }
@@ -200,6 +201,7 @@ public class Documents {
 
         // invalidate the cache entris of this collection
         GetCollectionCache.getInstance().invalidateAll(dbName, collName);
+        AggregationResultCache.getInstance().invalidateAll(dbName, collName);
 
         return ret;
     }
@@ -245,6 +247,7 @@ public class Documents {
 
             // invalidate the cache entris of this collection
             GetCollectionCache.getInstance().invalidateAll(dbName, collName);
+            AggregationResultCache.getInstance().invalidateAll(dbName, collName);
             return ret;
         } catch (MongoBulkWriteException mce) {
             return switch (mce.getCode()) {
@@ -298,6 +301,7 @@ public class Documents {
         } else {
             // invalidate the cache entris of this collection
             GetCollectionCache.getInstance().invalidateAll(dbName, collName);
+            AggregationResultCache.getInstance().invalidateAll(dbName, collName);
             return new OperationResult(HttpStatus.SC_NO_CONTENT, oldDocument);
         }
     }
@@ -366,6 +370,7 @@ public class Documents {
 
         // invalidate the cache entris of this collection
         GetCollectionCache.getInstance().invalidateAll(dbName, collName);
+        AggregationResultCache.getInstance().invalidateAll(dbName, collName);
 
         return new BulkOperationResult(HttpStatus.SC_OK, null, result);
     }
@@ -426,6 +431,7 @@ public class Documents {
 
             // invalidate the cache entris of this collection
             GetCollectionCache.getInstance().invalidateAll(coll);
+            AggregationResultCache.getInstance().invalidateAll(coll);
 
             return new OperationResult(httpStatusIfOk, newEtag, oldDocument, newDocument);
         } else {
@@ -20,14 +20,17 @@
  */
 package org.restheart.mongodb.db;
 
+import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.bson.BsonDocument;
+import com.mongodb.MongoNamespace;
 import com.mongodb.client.MongoCollection;
 import static org.fusesource.jansi.Ansi.Color.GREEN;
 import static org.fusesource.jansi.Ansi.Color.RED;
@@ -41,6 +44,13 @@ import org.slf4j.LoggerFactory;
 
 
 /**
+ * Caches the documents fetched by GET /coll requests.
+ *
+ * Entries are stored in a size and time bounded cache and are indexed by
+ * namespace and then by bucket, i.e. by (filter, sort, keys, hint); each bucket
+ * keeps its entries in a skip list ordered by the from index, so that finding
+ * the entry that covers a requested [from, to] range is a lock-free
+ * O(log n) lookup instead of a scan over all the cache keys.
  *
  * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
  */
@@ -51,6 +61,13 @@ public class GetCollectionCache {
     private static final long CACHE_SIZE = MongoServiceConfiguration.get() == null ? 100 : MongoServiceConfiguration.get().getGetCollectionCacheSize();
     private static final long CACHE_TTL = MongoServiceConfiguration.get() == null ? 10_000 : MongoServiceConfiguration.get().getGetCollectionCacheTTL();
 
+    /**
+     * orders the entries of a bucket by from index; cursorId disambiguates entries with the same from
+     */
+    private static final Comparator<GetCollectionCacheKey> FROM_COMPARATOR = Comparator
+        .comparingInt(GetCollectionCacheKey::from)
+        .thenComparingLong(GetCollectionCacheKey::cursorId);
+
     /**
      *
      * @return
@@ -61,8 +78,10 @@ public class GetCollectionCache {
 
     private final Cache<GetCollectionCacheKey, List<BsonDocument>> cache;
 
+    private final Map<MongoNamespace, Map<Bucket, ConcurrentSkipListSet<GetCollectionCacheKey>>> index = new ConcurrentHashMap<>();
+
     private GetCollectionCache() {
-        cache = CacheFactory.createLocalCache(CACHE_SIZE, Cache.EXPIRE_POLICY.AFTER_WRITE, CACHE_TTL);
+        this(CACHE_SIZE, CACHE_TTL);
 
         if (LOGGER.isTraceEnabled()) {
             // print stats every 1 minute
@@ -76,75 +95,117 @@ public class GetCollectionCache {
         }
     }
 
-    public synchronized void put(GetCollectionCacheKey key, List<BsonDocument> value) {
+    /**
+     *
+     * @param size the max number of entries
+     * @param ttl the entries Time To Live in milliseconds
+     */
+    GetCollectionCache(long size, long ttl) {
+        this.cache = CacheFactory.createLocalCache(size, Cache.EXPIRE_POLICY.AFTER_WRITE, ttl, entry -> unindex(entry.getKey()));
+    }
+
+    public void put(GetCollectionCacheKey key, List<BsonDocument> value) {
+        // index before caching, so that an immediate eviction always finds the key to unindex
+        index.compute(key.collection().getNamespace(), (ns, buckets) -> {
+            var _buckets = buckets == null ? new ConcurrentHashMap<Bucket, ConcurrentSkipListSet<GetCollectionCacheKey>>() : buckets;
+            _buckets.computeIfAbsent(Bucket.of(key), b -> new ConcurrentSkipListSet<>(FROM_COMPARATOR)).add(key);
+            return _buckets;
+        });
+
         cache.put(key, value);
     }
 
-    public synchronized Pair<GetCollectionCacheKey, List<BsonDocument>> find(GetCollectionCacheKey key) {
+    public Pair<GetCollectionCacheKey, List<BsonDocument>> find(GetCollectionCacheKey key) {
         return _get(key, false);
     }
 
-    public synchronized List<BsonDocument> get(GetCollectionCacheKey key) {
-        return _get(key, false).getValue();
+    public List<BsonDocument> get(GetCollectionCacheKey key) {
+        var ret = _get(key, false);
+        return ret == null ? null : ret.getValue();
     }
 
-    public synchronized List<BsonDocument> remove(GetCollectionCacheKey key) {
-        return _get(key, true).getValue();
+    public List<BsonDocument> remove(GetCollectionCacheKey key) {
+        var ret = _get(key, true);
+        return ret == null ? null : ret.getValue();
     }
 
     /**
+     * returns the entry with the greatest from index that covers
+     * the requested range, i.e. the one requiring the smallest skip
      *
      * @param key
-     * @param allocationPolicy
+     * @param remove
      * @return
      */
-    private synchronized Pair<GetCollectionCacheKey, List<BsonDocument>> _get(GetCollectionCacheKey key, boolean remove) {
-        // return the first entry with all avaible documents
-        var _bestKey = cache.asMap().keySet().stream()
-            .filter(cacheKeyFilter(key))
-            .findFirst();
-
-        if (_bestKey.isPresent()) {
-            var _cached = remove ? cache.remove(_bestKey.get()) : cache.get(_bestKey.get());
-
-            if (_cached != null && _cached.isPresent()) {
-                LOGGER.debug("{} cached documents. cache entry id {}", ansi().fg(GREEN).bold().a("found").reset().toString(), _bestKey.get().cursorId());
-                return new Pair<>(_bestKey.get(), _cached.get());
-            } else {
-                LOGGER.debug("{} cached documents.", ansi().fg(RED).bold().a("no").reset().toString());
-                return null;
+    private Pair<GetCollectionCacheKey, List<BsonDocument>> _get(GetCollectionCacheKey key, boolean remove) {
+        var buckets = index.get(key.collection().getNamespace());
+        var entries = buckets == null ? null : buckets.get(Bucket.of(key));
+
+        if (entries != null) {
+            // probe with the greatest cursorId, so that all the entries with from == key.from() are included
+            var probe = new GetCollectionCacheKey(key.session(), key.collection(), key.sort(), key.filter(), key.keys(), key.hint(), key.from(), key.to(), Long.MAX_VALUE, false);
+
+            for (var candidate : entries.headSet(probe, true).descendingSet()) {
+                if (candidate.to() < key.to() && !candidate.exhausted()) {
+                    continue;
+                }
+
+                var _cached = remove ? cache.remove(candidate) : cache.get(candidate);
+
+                if (_cached != null && _cached.isPresent()) {
+                    LOGGER.debug("{} cached documents. cache entry id {}", ansi().fg(GREEN).bold().a("found").reset().toString(), candidate.cursorId());
+                    return new Pair<>(candidate, _cached.get());
+                }
+
+                // expired or concurrently removed entry, not yet unindexed
             }
+
+            LOGGER.debug("{} cached documents.", ansi().fg(RED).bold().a("no").reset().toString());
         } else {
             LOGGER.debug(ansi().fg(RED).bold().a("missed").reset().toString() + " get collection cache.");
-            return null;
         }
+
+        return null;
     }
 
-    public synchronized void invalidate(GetCollectionCacheKey key) {
+    public void invalidate(GetCollectionCacheKey key) {
         cache.invalidate(key);
     }
 
     public void invalidateAll(String db, String coll) {
-        cache.asMap().keySet().stream()
-            .filter(k -> k.collection().getNamespace().getDatabaseName().equals(db))
-            .filter(k -> k.collection().getNamespace().getCollectionName().equals(coll))
-            .forEach(k -> cache.invalidate(k));
+        invalidateAll(new MongoNamespace(db, coll));
     }
 
     public void invalidateAll(MongoCollection<?> coll) {
-        cache.asMap().keySet().stream()
-            .filter(k -> k.collection().getNamespace().equals(coll.getNamespace()))
-            .forEach(k -> cache.invalidate(k));
+        invalidateAll(coll.getNamespace());
+    }
+
+    private void invalidateAll(MongoNamespace ns) {
+        var buckets = index.remove(ns);
+
+        if (buckets != null) {
+            buckets.values().forEach(entries -> entries.forEach(cache::invalidate));
+        }
     }
 
-    private Predicate<? super GetCollectionCacheKey> cacheKeyFilter(GetCollectionCacheKey requested) {
-        return cached
-            -> Objects.equals(cached.collection().getNamespace(), requested.collection().getNamespace())
-            && Objects.equals(cached.filter(), requested.filter())
-            && Objects.equals(cached.sort(), requested.sort())
-            && Objects.equals(cached.keys(), requested.keys())
-            && ((cached.from() <= requested.from() && cached.to() >= requested.to())
-                || (cached.exhausted() && cached.from() <= requested.from()));
+    /**
+     * invoked by the cache when an entry is removed
+     *
+     * @param key
+     */
+    private void unindex(GetCollectionCacheKey key) {
+        if (key == null) {
+            return;
+        }
+
+        index.computeIfPresent(key.collection().getNamespace(), (ns, buckets) -> {
+            buckets.computeIfPresent(Bucket.of(key), (b, entries) -> {
+                entries.remove(key);
+                return entries.isEmpty() ? null : entries;
+            });
+
+            return buckets.isEmpty() ? null : buckets;
+        });
     }
 
     private TreeMap<String, Long> getCacheSizes() {
@@ -154,6 +215,23 @@ public class GetCollectionCache {
             .collect(Collectors.groupingBy(GetCollectionCacheKey::getCacheStatsGroup, Collectors.counting())));
     }
 
+    /**
+     * @return the number of cached entries
+     */
+    long size() {
+        cache.cleanUp();
+        return cache.asMap().size();
+    }
+
+    /**
+     * the entries that can serve each other's requests, i.e. that only differ by range
+     */
+    private record Bucket(BsonDocument filter, BsonDocument sort, BsonDocument keys, BsonDocument hint) {
+        static Bucket of(GetCollectionCacheKey key) {
+            return new Bucket(key.filter(), key.sort(), key.keys(), key.hint());
+        }
+    }
+
     private static class DBCursorPoolSingletonHolder {
         private static final GetCollectionCache INSTANCE = new GetCollectionCache();
 
@@ -27,8 +27,10 @@ import com.mongodb.client.gridfs.GridFSBucket;
 import com.mongodb.client.gridfs.GridFSBuckets;
 import com.mongodb.client.gridfs.model.GridFSFile;
 import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import com.mongodb.client.model.ReplaceOptions;
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.set;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -44,6 +46,8 @@ import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.restheart.exchange.ExchangeKeys.METHOD;
+import static org.restheart.mongodb.ConnectionChecker.replicaSet;
+import org.restheart.mongodb.RHMongoClients;
 import org.restheart.mongodb.RSOps;
 import org.restheart.utils.HttpStatus;
 
@@ -93,33 +97,61 @@ public class GridFs {
         final BsonDocument metadata,
         final Path filePath)
         throws IOException, DuplicateKeyException {
+        try (InputStream sourceStream = new FileInputStream(filePath.toFile())) {
+            return createFile(rsOps, dbName, bucketName, metadata, sourceStream);
+        }
+    }
+
+    /**
+     * Creates the file reading its content from the given stream, that is
+     * piped to GridFS chunk by chunk; the stream is not closed.
+     *
+     * @param rsOps the ReplicaSet connection options
+     * @param dbName the database name
+     * @param bucketName
+     * @param metadata
+     * @param sourceStream the stream of the file content
+     * @return the OperationResult
+     * @throws IOException
+     * @throws DuplicateKeyException
+     */
+    public OperationResult createFile(
+        final Optional<RSOps> rsOps,
+        final String dbName,
+        final String bucketName,
+        final BsonDocument metadata,
+        final InputStream sourceStream)
+        throws IOException, DuplicateKeyException {
         final var db = dbs.db(rsOps, dbName);
         final var bucket = extractBucketName(bucketName);
 
-        var gridFSBucket = GridFSBuckets.create(db, bucket);
+        return createFile(GridFSBuckets.create(db, bucket), metadata, sourceStream);
+    }
 
+    private static OperationResult createFile(
+        final GridFSBucket gridFSBucket,
+        final BsonDocument metadata,
+        final InputStream sourceStream) {
         var filename = extractFilenameFromProperties(metadata);
 
         //add etag to metadata
         var etag = new ObjectId();
         metadata.put("_etag", new BsonObjectId(etag));
 
-        try (InputStream sourceStream = new FileInputStream(filePath.toFile())) {
-            if (metadata.get("_id") == null) {
-                var options = new GridFSUploadOptions().metadata(Document.parse(metadata.toJson()));
+        if (metadata.get("_id") == null) {
+            var options = new GridFSUploadOptions().metadata(Document.parse(metadata.toJson()));
 
-                var _id = gridFSBucket.uploadFromStream(filename, sourceStream, options);
+            var _id = gridFSBucket.uploadFromStream(filename, sourceStream, options);
 
-                return new OperationResult(SC_CREATED, new BsonObjectId(etag), new BsonObjectId(_id));
-            } else {
-                var _id = metadata.remove("_id");
+            return new OperationResult(SC_CREATED, new BsonObjectId(etag), new BsonObjectId(_id));
+        } else {
+            var _id = metadata.remove("_id");
 
-                var options = new GridFSUploadOptions().metadata(Document.parse(metadata.toJson()));
+            var options = new GridFSUploadOptions().metadata(Document.parse(metadata.toJson()));
 
-                gridFSBucket.uploadFromStream(_id, filename, sourceStream, options);
+            gridFSBucket.uploadFromStream(_id, filename, sourceStream, options);
 
-                return new OperationResult(SC_CREATED, new BsonObjectId(etag), _id);
-            }
+            return new OperationResult(SC_CREATED, new BsonObjectId(etag), _id);
         }
     }
 
@@ -147,35 +179,175 @@ public class GridFs {
         final BsonDocument filter,
         final String requestEtag,
         final boolean checkEtag) throws IOException {
+        try (InputStream sourceStream = new FileInputStream(filePath.toFile())) {
+            return upsertFile(rsOps, dbName, bucketName, metadata, sourceStream, fileId, filter, requestEtag, checkEtag);
+        }
+    }
+
+    /**
+     * Replaces the file reading its content from the given stream; the stream
+     * is not closed.
+     *
+     * @param rsOps the ReplicaSet connection options
+     * @param dbName the database name
+     * @param bucketName
+     * @param metadata
+     * @param sourceStream the stream of the file content
+     * @param fileId
+     * @param filter
+     * @param requestEtag
+     * @param checkEtag
+     * @return
+     * @throws IOException
+     */
+    public OperationResult upsertFile(
+        final Optional<RSOps> rsOps,
+        final String dbName,
+        final String bucketName,
+        final BsonDocument metadata,
+        final InputStream sourceStream,
+        final BsonValue fileId,
+        final BsonDocument filter,
+        final String requestEtag,
+        final boolean checkEtag) throws IOException {
+        final var db = dbs.db(rsOps, dbName);
+        final var bucket = extractBucketName(bucketName);
+
+        final var gridFSBucket = GridFSBuckets.create(db, bucket);
+        final var filesColl = db.getCollection(bucket.concat(".files"), BsonDocument.class);
+        final var chunksColl = db.getCollection(bucket.concat(".chunks"), BsonDocument.class);
+        final var mclient = RHMongoClients.mclient();
+
+        // the swap of the replaced file runs in a transaction when the deployment supports it
+        if (replicaSet(mclient)) {
+            try (var session = mclient.startSession()) {
+                return upsertFile(gridFSBucket, filesColl, chunksColl, Optional.of(session), metadata, sourceStream, fileId, filter, requestEtag, checkEtag);
+            }
+        } else {
+            return upsertFile(gridFSBucket, filesColl, chunksColl, Optional.empty(), metadata, sourceStream, fileId, filter, requestEtag, checkEtag);
+        }
+    }
 
-        var deletionResult = deleteFile(rsOps, dbName, bucketName, fileId, filter, requestEtag, checkEtag);
+    /**
+     * The new content of an existing file is uploaded under a temporary id and
+     * swapped in place of the existing file only after the upload succeeded,
+     * so that a failed or truncated upload leaves the existing file untouched.
+     *
+     * With a session the swap runs in a transaction. Without it, the existing
+     * file is first moved to a backup id, so that it is never deleted before
+     * the new content is in place; if the swap fails midway, the existing
+     * file is restored or, failing that, left under the backup id.
+     */
+    static OperationResult upsertFile(
+        final GridFSBucket gridFSBucket,
+        final MongoCollection<BsonDocument> filesColl,
+        final MongoCollection<BsonDocument> chunksColl,
+        final Optional<ClientSession> cs,
+        final BsonDocument metadata,
+        final InputStream sourceStream,
+        final BsonValue fileId,
+        final BsonDocument filter,
+        final String requestEtag,
+        final boolean checkEtag) {
+        var file = getFileForId(gridFSBucket, fileId, filter);
 
-        //https://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.7
-        final boolean deleteOperationWasSuccessful = deletionResult.getHttpCode() == SC_NO_CONTENT || deletionResult.getHttpCode() == SC_OK;
-        final boolean fileDidntExist = deletionResult.getHttpCode() == SC_NOT_FOUND;
-        final boolean fileExisted = !fileDidntExist;
+        //https://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.6
+        if (file == null) {
+            var creationResult = createFile(gridFSBucket, metadata, sourceStream);
+            return new OperationResult(SC_CREATED, creationResult.getEtag(), creationResult.getNewId());
+        }
+
+        if (checkEtag) {
+            var etagCheckResult = checkEtag(file, requestEtag);
+
+            if (etagCheckResult != null) {
+                return etagCheckResult;
+            }
+        }
+
+        var tmpId = new BsonObjectId();
+        metadata.put("_id", tmpId);
 
-        if (deleteOperationWasSuccessful || fileDidntExist) {
-            var creationResult = createFile(rsOps, dbName, bucketName, metadata, filePath);
+        // if the upload fails, GridFS deletes the chunks already written and the existing file is kept
+        var creationResult = createFile(gridFSBucket, metadata, sourceStream);
 
-            //https://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.5
-            final boolean creationOperationWasSuccessful = SC_CREATED == creationResult.getHttpCode() || SC_OK == creationResult.getHttpCode();
-            if (creationOperationWasSuccessful) {
-                //https://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.6
-                if (fileExisted) {
-                    return new OperationResult(SC_OK, creationResult.getEtag(), creationResult.getOldData(), creationResult.getNewData());
+        try {
+            if (cs.isPresent()) {
+                cs.get().withTransaction(() -> {
+                    swapInTransaction(cs.get(), filesColl, chunksColl, fileId, tmpId);
+                    return null;
+                });
+            } else {
+                swap(filesColl, chunksColl, fileId, tmpId);
+            }
+        } finally {
+            // removes the temporary files document and, if the swap failed, the uploaded chunks
+            filesColl.deleteOne(eq("_id", tmpId));
+            chunksColl.deleteMany(eq("files_id", tmpId));
+        }
+
+        LOGGER.debug("Succesfully replaced fileId {}", fileId);
+
+        return new OperationResult(SC_OK, creationResult.getEtag(), null, null);
+    }
+
+    private static void swapInTransaction(
+        final ClientSession cs,
+        final MongoCollection<BsonDocument> filesColl,
+        final MongoCollection<BsonDocument> chunksColl,
+        final BsonValue fileId,
+        final BsonValue tmpId) {
+        var newFile = filesColl.find(cs, eq("_id", tmpId)).first();
+        newFile.put("_id", fileId);
+
+        chunksColl.deleteMany(cs, eq("files_id", fileId));
+        chunksColl.updateMany(cs, eq("files_id", tmpId), set("files_id", fileId));
+        filesColl.replaceOne(cs, eq("_id", fileId), newFile, new ReplaceOptions().upsert(true));
+    }
+
+    private static void swap(
+        final MongoCollection<BsonDocument> filesColl,
+        final MongoCollection<BsonDocument> chunksColl,
+        final BsonValue fileId,
+        final BsonValue tmpId) {
+        var newFile = filesColl.find(eq("_id", tmpId)).first();
+        newFile.put("_id", fileId);
+
+        var oldFile = filesColl.find(eq("_id", fileId)).first();
+        var backupId = new BsonObjectId();
+
+        // keep the existing file under the backup id until the new content is in place
+        if (oldFile != null) {
+            oldFile.put("_id", backupId);
+            filesColl.insertOne(oldFile);
+        }
+
+        chunksColl.updateMany(eq("files_id", fileId), set("files_id", backupId));
+
+        try {
+            chunksColl.updateMany(eq("files_id", tmpId), set("files_id", fileId));
+            filesColl.replaceOne(eq("_id", fileId), newFile, new ReplaceOptions().upsert(true));
+        } catch (Throwable t) {
+            // restore the existing file, unless some chunks already took its id
+            try {
+                if (chunksColl.countDocuments(eq("files_id", fileId)) == 0) {
+                    chunksColl.updateMany(eq("files_id", backupId), set("files_id", fileId));
+                    filesColl.deleteOne(eq("_id", backupId));
                 } else {
-                    return new OperationResult(SC_CREATED, creationResult.getEtag(), creationResult.getNewId());
+                    LOGGER.error("Error replacing fileId {}, its previous content is kept with id {}", fileId, backupId, t);
                 }
-            } else {
-                return creationResult;
+            } catch (Throwable rt) {
+                LOGGER.error("Error restoring fileId {}, its previous content is kept with id {}", fileId, backupId, rt);
             }
-        } else {
-            return deletionResult;
+
+            throw t;
         }
+
+        chunksColl.deleteMany(eq("files_id", backupId));
+        filesColl.deleteOne(eq("_id", backupId));
     }
 
-    private String extractFilenameFromProperties(final BsonDocument properties) {
+    private static String extractFilenameFromProperties(final BsonDocument properties) {
         String filename = null;
 
         if (properties != null && properties.containsKey(FILENAME)) {
@@ -224,17 +396,10 @@ public class GridFs {
         }
 
         if (checkEtag) {
-            var metadata = file.getMetadata();
-            if (metadata != null) {
-                var oldEtag = metadata.get("_etag");
-
-                if (oldEtag != null) {
-                    if (requestEtag == null) {
-                        return new OperationResult(SC_CONFLICT, oldEtag);
-                    } else if (!Objects.equals(oldEtag.toString(), requestEtag)) {
-                        return new OperationResult(SC_PRECONDITION_FAILED, oldEtag);
-                    }
-                }
+            var etagCheckResult = checkEtag(file, requestEtag);
+
+            if (etagCheckResult != null) {
+                return etagCheckResult;
             }
         }
 
@@ -249,7 +414,28 @@ public class GridFs {
         return new OperationResult(SC_NO_CONTENT);
     }
 
-    private GridFSFile getFileForId(GridFSBucket gridFSBucket, BsonValue fileId, BsonDocument filter) {
+    /**
+     * @return the OperationResult to return if the etag check fails, null otherwise
+     */
+    private static OperationResult checkEtag(GridFSFile file, String requestEtag) {
+        var metadata = file.getMetadata();
+
+        if (metadata != null) {
+            var oldEtag = metadata.get("_etag");
+
+            if (oldEtag != null) {
+                if (requestEtag == null) {
+                    return new OperationResult(SC_CONFLICT, oldEtag);
+                } else if (!Objects.equals(oldEtag.toString(), requestEtag)) {
+                    return new OperationResult(SC_PRECONDITION_FAILED, oldEtag);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static GridFSFile getFileForId(GridFSBucket gridFSBucket, BsonValue fileId, BsonDocument filter) {
         Bson cfilter;
 
         if (filter != null && !filter.isNull()) {
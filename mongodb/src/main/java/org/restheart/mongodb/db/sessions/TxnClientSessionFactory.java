@@ -107,6 +107,19 @@ public class TxnClientSessionFactory extends ClientSessionFactory {
 
             var cs = getTxnClientSession(sid, MongoRequest.of(exchange).rsOps(), new Txn(txnId, Txn.TransactionStatus.IN));
 
+            // a successful operation confirms the txn in progress (without
+            // extending its lifetime), a failed one might have aborted it
+            final var currentTxnId = txnId;
+            exchange.addExchangeCompleteListener((ex, nextListener) -> {
+                if (ex.getStatusCode() < 400) {
+                    TxnStates.update(sid, new Txn(currentTxnId, Txn.TransactionStatus.IN));
+                } else {
+                    TxnStates.invalidate(sid);
+                }
+
+                nextListener.proceed();
+            });
+
             LOGGER.debug("Request is executed in session {} with {}", _sid, cs.getTxnServerStatus());
 
             if (cs.getTxnServerStatus().getStatus() == IN) {
@@ -127,13 +140,14 @@ public class TxnClientSessionFactory extends ClientSessionFactory {
 
     /**
      *
-     * Warn: requires a round trip to the server
+     * Warn: requires a round trip to the server if the txn status is not
+     * in the TxnStates table
      *
      * @param sid
      * @return
      */
     public TxnClientSessionImpl getTxnClientSession(UUID sid, Optional<RSOps> rsOps) {
-        return getTxnClientSession(sid, rsOps, TxnsUtils.getTxnServerStatus(sid, rsOps));
+        return getTxnClientSession(sid, rsOps, TxnsUtils.getTxnStatus(sid, rsOps));
     }
 
     /**
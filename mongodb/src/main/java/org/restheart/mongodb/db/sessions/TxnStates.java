@@ -0,0 +1,170 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db.sessions;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.SharedMetricRegistries;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+
+/**
+ * Node-local table of the transaction state of the sessions.
+ *
+ * It is updated after each operation executed by this node in a transaction,
+ * so that the transaction status is known without the server round trips of
+ * TxnsUtils.getTxnServerStatus(). On miss, or after a failed operation that
+ * might have aborted the transaction, the status is probed from the server.
+ *
+ * The server aborts a transaction transactionLifetimeLimitSeconds (60 by
+ * default) after it started, regardless of the operations executed in it. So
+ * the IN status is recorded only by start(), when this node starts the
+ * transaction, and it is trusted for TTL from then; later operations do not
+ * extend it. An IN status whose start is unknown, i.e. probed from the server
+ * or of a transaction started by another node, is not recorded.
+ *
+ * The other statuses are recorded only after this node committed or aborted
+ * the transaction, and expire TTL after they are recorded. Statuses probed from
+ * the server are never recorded.
+ *
+ * The table assumes that the transactions of a session are handled by a
+ * single node, e.g. via sticky sessions: another node might start a new
+ * transaction of the session, making the recorded status stale. Requests that
+ * refer to a transaction id greater than the recorded one always probe the
+ * server, and failed operations invalidate the recorded status.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class TxnStates {
+    /**
+     * the name of the metric registry of the probes and probes-avoided counters
+     */
+    public static final String METRIC_REGISTRY_NAME = "TXNS";
+
+    static final long MAX_SIZE = 10_000;
+    static final long TTL = 60_000;
+
+    /**
+     * @param txn the txn status
+     * @param since the System.nanoTime() the status was recorded at or, for IN, the transaction started at
+     */
+    private record State(Txn txn, long since) {
+        boolean expired(long now) {
+            return now - since >= TimeUnit.MILLISECONDS.toNanos(TTL);
+        }
+    }
+
+    private static final Cache<UUID, State> STATES = CacheFactory.createLocalCache(MAX_SIZE, Cache.EXPIRE_POLICY.AFTER_WRITE, TTL);
+
+    private static final Counter PROBES = SharedMetricRegistries.getOrCreate(METRIC_REGISTRY_NAME).counter("probes");
+    private static final Counter PROBES_AVOIDED = SharedMetricRegistries.getOrCreate(METRIC_REGISTRY_NAME).counter("probes-avoided");
+
+    private TxnStates() {
+    }
+
+    /**
+     * @param sid the session id
+     * @param probe the function that gets the txn status from the server
+     * @return the txn status, from the local table or probed on miss
+     */
+    public static Txn get(UUID sid, Function<UUID, Txn> probe) {
+        return get(sid, -1, probe, System.nanoTime());
+    }
+
+    /**
+     * @param sid the session id
+     * @param txnId the id of the transaction the request refers to
+     * @param probe the function that gets the txn status from the server
+     * @return the txn status, from the local table or probed on miss or if the
+     * recorded transaction is older than txnId, i.e. another node might have started txnId
+     */
+    public static Txn get(UUID sid, long txnId, Function<UUID, Txn> probe) {
+        return get(sid, txnId, probe, System.nanoTime());
+    }
+
+    static Txn get(UUID sid, long txnId, Function<UUID, Txn> probe, long now) {
+        var cached = STATES.get(sid);
+
+        if (cached != null && cached.isPresent() && !cached.get().expired(now) && cached.get().txn().getTxnId() >= txnId) {
+            PROBES_AVOIDED.inc();
+            return cached.get().txn();
+        }
+
+        PROBES.inc();
+
+        // the probed status is not recorded, the start of an IN transaction is unknown
+        // and a terminal status might be stale if another node starts a new transaction
+        STATES.invalidate(sid);
+
+        return probe.apply(sid);
+    }
+
+    /**
+     * Records the start of a transaction
+     *
+     * @param sid the session id
+     * @param txnId the id of the transaction
+     * @param started the System.nanoTime() taken before the transaction was started on the server
+     */
+    public static void start(UUID sid, long txnId, long started) {
+        STATES.put(sid, new State(new Txn(txnId, Txn.TransactionStatus.IN), started));
+    }
+
+    /**
+     * Records the txn status after an operation; the IN status is recorded
+     * only by start(), so that it expires relative to the start of the
+     * transaction
+     *
+     * @param sid the session id
+     * @param txn the txn status
+     */
+    public static void update(UUID sid, Txn txn) {
+        update(sid, txn, System.nanoTime());
+    }
+
+    static void update(UUID sid, Txn txn, long now) {
+        if (txn.getStatus() == Txn.TransactionStatus.IN) {
+            var cached = STATES.get(sid);
+
+            if (cached == null || cached.isEmpty()
+                || cached.get().txn().getStatus() != Txn.TransactionStatus.IN
+                || cached.get().txn().getTxnId() != txn.getTxnId()) {
+                // a transaction not started by this node, its start is unknown
+                STATES.invalidate(sid);
+            }
+        } else {
+            STATES.put(sid, new State(txn, now));
+        }
+    }
+
+    /**
+     * Forgets the txn status, so that the next request probes it from the
+     * server; to be called when an operation fails, since the server might have
+     * aborted the transaction
+     *
+     * @param sid the session id
+     */
+    public static void invalidate(UUID sid) {
+        STATES.invalidate(sid);
+    }
+}
@@ -43,6 +43,29 @@ public class TxnsUtils {
 
     private static final MongoClient MCLIENT = RHMongoClients.mclient();
 
+    /**
+     * Gets the txn status from the node-local TxnStates table, probing it from
+     * the server only on miss
+     *
+     * @param sid
+     * @return the txn status
+     */
+    public static Txn getTxnStatus(UUID sid, Optional<RSOps> rsOps) {
+        return TxnStates.get(sid, _sid -> getTxnServerStatus(_sid, rsOps));
+    }
+
+    /**
+     * Gets the txn status from the node-local TxnStates table, probing it from
+     * the server on miss or if the recorded transaction is older than txnId
+     *
+     * @param sid
+     * @param txnId the id of the transaction the request refers to
+     * @return the txn status
+     */
+    public static Txn getTxnStatus(UUID sid, long txnId, Optional<RSOps> rsOps) {
+        return TxnStates.get(sid, txnId, _sid -> getTxnServerStatus(_sid, rsOps));
+    }
+
     /**
      * Warn: requires two round trips to server
      *
@@ -25,11 +25,18 @@ import io.undertow.server.handlers.form.FormData;
 import io.undertow.server.handlers.form.FormParserFactory;
 import io.undertow.util.HeaderValues;
 import io.undertow.util.Headers;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import org.apache.tika.Tika;
 import org.bson.BsonDocument;
+import org.bson.BsonSerializationException;
 import org.bson.BsonString;
 import org.bson.BsonValue;
 import org.bson.json.JsonParseException;
@@ -50,6 +57,7 @@ import org.restheart.utils.HttpStatus;
 import org.restheart.utils.BsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xnio.streams.ChannelInputStream;
 
 /**
  *
@@ -66,7 +74,7 @@ public class MongoRequestContentInjector {
 
     private static final String CONTENT_TYPE = "contentType";
 
-    private static final String ERROR_INVALID_CONTENTTYPE = "Content-Type must be either: " + Exchange.JSON_MEDIA_TYPE + " or " + Exchange.HAL_JSON_MEDIA_TYPE;
+    private static final String ERROR_INVALID_CONTENTTYPE = "Content-Type must be either: " + Exchange.JSON_MEDIA_TYPE + ", " + Exchange.HAL_JSON_MEDIA_TYPE + " or " + Exchange.BSON_MEDIA_TYPE;
 
     private static final String ERROR_INVALID_CONTENTTYPE_FILE = "Content-Type must be either: " + Exchange.APP_FORM_URLENCODED_TYPE + " or " + Exchange.MULTIPART_FORM_DATA_TYPE;
 
@@ -77,6 +85,24 @@ public class MongoRequestContentInjector {
                 || ct.startsWith(Exchange.JSON_MEDIA_TYPE)));
     }
 
+    private static boolean isBson(final HeaderValues contentTypes) {
+        return contentTypes != null
+                && contentTypes.stream().anyMatch(ct -> ct.startsWith(Exchange.BSON_MEDIA_TYPE));
+    }
+
+    private static boolean isMultipart(final HeaderValues contentTypes) {
+        return contentTypes != null
+                && contentTypes.stream().anyMatch(ct -> ct.startsWith(Exchange.MULTIPART_FORM_DATA_TYPE));
+    }
+
+    /**
+     * @return true if the request uploads a file (POST to a files bucket or PUT
+     * to a file)
+     */
+    private static boolean isFileUpload(final MongoRequest request) {
+        return (request.isPost() && request.isFilesBucket()) || (request.isPut() && request.isFile());
+    }
+
     private static boolean isFormOrMultipart(final HeaderValues contentTypes) {
         return contentTypes != null
                 && !contentTypes.isEmpty()
@@ -175,6 +201,19 @@ public class MongoRequestContentInjector {
         return metadata;
     }
 
+    /**
+     * Search the fields of a multipart request for a field named 'metadata' (or
+     * 'properties') which must contain valid JSON
+     *
+     * @param fields
+     * @return the parsed BsonDocument from the fields or an empty BsonDocument
+     */
+    protected static BsonDocument extractMetadata(final Map<String, String> fields) throws JsonParseException {
+        var metadataString = fields.containsKey(FILE_METADATA) ? fields.get(FILE_METADATA) : fields.get(PROPERTIES);
+
+        return metadataString == null ? new BsonDocument() : BsonDocument.parse(metadataString);
+    }
+
     /**
      * Find the name of the first file field in this request
      *
@@ -203,6 +242,31 @@ public class MongoRequestContentInjector {
         return new Tika().detect(file);
     }
 
+    /**
+     * Detect the mediatype of a stream; the stream must support mark and
+     * reset, the bytes read for the detection are not consumed
+     *
+     * @param stream input stream
+     * @param fileName the name of the file, can be null
+     * @return the content-type as a String
+     * @throws IOException
+     */
+    public static String detectMediaType(InputStream stream, String fileName) throws IOException {
+        return new Tika().detect(stream, fileName);
+    }
+
+    /**
+     * @return the stream of the request body, read on demand from the request
+     * channel unless the content has been already buffered
+     */
+    private static InputStream requestInputStream(HttpServerExchange exchange) throws IOException {
+        var bar = ByteArrayProxyRequest.of(exchange);
+
+        return bar.isContentAvailable()
+            ? new ByteArrayInputStream(bar.readContent())
+            : new ChannelInputStream(exchange.getRequestChannel());
+    }
+
     private static final FormParserFactory FORM_PARSER = FormParserFactory.builder().build();
 
     /**
@@ -234,10 +298,16 @@ public class MongoRequestContentInjector {
 
         if (contentType == null) {
             content = null;
+        } else if (isMultipart(contentType)) {
+            content = injectStreamedMultipart(exchange, request, response);
         } else if (isFormOrMultipart(contentType)) {
             content = injectMultipart(exchange, request, response);
         } else if (isHalOrJson(contentType)) {
             content = injectBson(exchange, request, response);
+        } else if (isBson(contentType)) {
+            content = injectBinaryBson(exchange, request, response);
+        } else if (isFileUpload(request)) {
+            content = injectRawFile(exchange, request, response);
         } else {
             response.setInError(HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE, ERROR_INVALID_CONTENTTYPE);
             return;
@@ -299,19 +369,22 @@ public class MongoRequestContentInjector {
 
     private static BsonValue injectBson(HttpServerExchange exchange, MongoRequest request, MongoResponse response) {
         BsonValue content;
-        final String contentString;
 
         var bar = ByteArrayProxyRequest.of(exchange);
 
-        try {
-            if (bar.isContentAvailable()) {
-                // if content has been already injected
-                // get it from MongoRequest.readContent()
-                contentString = new String(bar.readContent(), StandardCharsets.UTF_8);
-            } else {
-                // otherwise use ChannelReader
-                contentString = ChannelReader.readString(exchange);
+        // if content has been already injected get it from ByteArrayProxyRequest.readContent()
+        // otherwise parse it directly from the request channel
+        try (var reader = bar.isContentAvailable()
+                ? new InputStreamReader(new ByteArrayInputStream(bar.readContent()), StandardCharsets.UTF_8)
+                : ChannelReader.reader(exchange)) {
+            content = BsonUtils.parse(reader);
+
+            if (content != null && !content.isDocument() && !content.isArray()) {
+                throw new IllegalArgumentException("request data must be either a json object or an array, got " + content.getBsonType().name());
             }
+        } catch (JsonParseException | IllegalArgumentException ex) {
+            response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, "Invalid JSON. " + ex.getMessage(), ex);
+            return null;
         } catch (IOException ieo) {
             var errMsg = "Error reading request content";
             LOGGER.error(errMsg, ieo);
@@ -319,29 +392,118 @@ public class MongoRequestContentInjector {
             return null;
         }
 
-        // parse the json content
-        if (contentString != null && !contentString.isEmpty()) { // check content type
-            try {
-                content = BsonUtils.parse(contentString);
+        return content;
+    }
+
+    private static BsonValue injectBinaryBson(HttpServerExchange exchange, MongoRequest request, MongoResponse response) {
+        var bar = ByteArrayProxyRequest.of(exchange);
+
+        try {
+            var bytes = bar.isContentAvailable() ? bar.readContent() : ChannelReader.readBytes(exchange);
+
+            return bytes == null ? null : BsonUtils.parseBson(ByteBuffer.wrap(bytes));
+        } catch (BsonSerializationException ex) {
+            response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, "Invalid BSON. " + ex.getMessage(), ex);
+            return null;
+        } catch (IOException ieo) {
+            var errMsg = "Error reading request content";
+            LOGGER.error(errMsg, ieo);
+            response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, errMsg);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the fields of the multipart request up to the first file part and
+     * sets the stream of the file content in the request, so that the handler
+     * can pipe it to GridFS while it is received. The file metadata must
+     * precede the file part.
+     */
+    private static BsonValue injectStreamedMultipart(HttpServerExchange exchange, MongoRequest request, MongoResponse response) {
+        if (!isFileUpload(request)) {
+            response.setInError(HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE, ERROR_INVALID_CONTENTTYPE_FILE);
+            return null;
+        }
+
+        var boundary = Headers.extractQuotedValueFromHeader(request.getHeaders().getFirst(Headers.CONTENT_TYPE), "boundary");
+
+        if (boundary == null) {
+            response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, "Error parsing the multipart form: missing boundary");
+            return null;
+        }
+
+        MultipartStream multipart;
+
+        try {
+            multipart = new MultipartStream(requestInputStream(exchange), boundary, exchange.getConnection().getByteBufferPool());
+
+            if (!multipart.readFields()) {
+                response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, "This request does not contain any binary file");
+                return null;
+            }
+        } catch (MultipartStream.LimitExceededException lee) {
+            response.setInError(HttpStatus.SC_BAD_REQUEST, "Error parsing the multipart form: " + lee.getMessage());
+            return null;
+        } catch (IOException ioe) {
+            response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, "Error parsing the multipart form: data could not be read", ioe);
+            return null;
+        }
+
+        BsonDocument content;
 
-                if (content != null && !content.isDocument() && !content.isArray()) {
-                    throw new IllegalArgumentException("request data must be either a json object or an array, got " + content.getBsonType().name());
+        try {
+            content = extractMetadata(multipart.fields());
+        } catch (JsonParseException | IllegalArgumentException ex) {
+            response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, "Invalid data: 'properties' field is not a valid JSON", ex);
+            return null;
+        }
+
+        // buffered to allow detecting the content type without consuming the stream
+        var fileStream = new BufferedInputStream(multipart.fileInputStream(), MultipartStream.CHUNK_SIZE);
+
+        request.setFileInputStream(fileStream);
+
+        if (content.get(CONTENT_TYPE) == null) {
+            try {
+                final var contentType = detectMediaType(fileStream, multipart.fileName());
+                if (contentType != null) {
+                    content.append(CONTENT_TYPE, new BsonString(contentType));
                 }
-            } catch (JsonParseException | IllegalArgumentException ex) {
-                response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, "Invalid JSON. " + ex.getMessage(), ex);
+            } catch (IOException ioe) {
+                response.addWarning("error detecting content type");
+                LOGGER.warn("error detecting content type of file", ioe);
                 return null;
             }
-        } else {
-            content = null;
         }
 
         return content;
     }
 
+    /**
+     * Sets the request body as the stream of the file content; used for file
+     * uploads whose body is the raw file, the file content type being the
+     * request Content-Type
+     */
+    private static BsonValue injectRawFile(HttpServerExchange exchange, MongoRequest request, MongoResponse response) {
+        try {
+            request.setFileInputStream(requestInputStream(exchange));
+        } catch (IOException ioe) {
+            var errMsg = "Error reading request content";
+            LOGGER.error(errMsg, ioe);
+            response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, errMsg);
+            return null;
+        }
+
+        var content = new BsonDocument();
+        content.put(CONTENT_TYPE, new BsonString(request.getHeaders().getFirst(Headers.CONTENT_TYPE)));
+
+        return content;
+    }
+
     private static BsonValue injectMultipart(HttpServerExchange exchange, MongoRequest request, MongoResponse response) {
         BsonValue content = null;
 
-        if (!((request.isPost() && request.isFilesBucket()) || (request.isPut() && request.isFile()))) {
+        if (!isFileUpload(request)) {
             response.setInError(HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE, ERROR_INVALID_CONTENTTYPE_FILE);
             return null;
         }
@@ -21,12 +21,14 @@
 package org.restheart.mongodb.exchange;
 
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.Optional;
 import org.bson.BsonDocument;
 import org.bson.BsonValue;
 import org.bson.json.JsonParseException;
+import org.restheart.exchange.Exchange;
 import static org.restheart.exchange.ExchangeKeys.AGGREGATION_VARIABLES_QPARAM_KEY;
 import org.restheart.exchange.ExchangeKeys.DOC_ID_TYPE;
 import static org.restheart.exchange.ExchangeKeys.DOC_ID_TYPE_QPARAM_KEY;
@@ -95,9 +97,11 @@ public class MongoRequestPropsInjector {
                 try {
                     rep = REPRESENTATION_FORMAT.valueOf(_rep.trim().toUpperCase());
                 } catch (IllegalArgumentException iae) {
-                    response.addWarning("illegal rep parameter " + _rep + " (must be STANDARD, NESTED or HAL; S is an alias for STANDARD; PLAIN_JSON, PJ are aliases for NESTED)");
+                    response.addWarning("illegal rep parameter " + _rep + " (must be STANDARD, NESTED, HAL or BSON; S is an alias for STANDARD; PLAIN_JSON, PJ are aliases for NESTED)");
                 }
             }
+        } else if (acceptsBson(exchange)) {
+            rep = REPRESENTATION_FORMAT.BSON;
         }
 
         request.setRepresentationFormat(rep);
@@ -414,4 +418,10 @@ public class MongoRequestPropsInjector {
             request.setFilter(exchange.getQueryParameters().get(FILTER_QPARAM_KEY));
         }
     }
+
+    private static boolean acceptsBson(HttpServerExchange exchange) {
+        var accept = exchange.getRequestHeaders().get(Headers.ACCEPT);
+
+        return accept != null && accept.stream().anyMatch(a -> a.contains(Exchange.BSON_MEDIA_TYPE));
+    }
 }
@@ -0,0 +1,269 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.exchange;
+
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.MultipartParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pull based reader of multipart/form-data request bodies.
+ *
+ * It reads the fields preceding the first file part and exposes the content of
+ * the file part as an InputStream that reads the request body on demand, so
+ * that the uploaded file can be piped to GridFS without spooling it to a
+ * temporary file. At most one chunk of the body is buffered in memory.
+ *
+ * Parts following the first file part are ignored. The fields are limited in
+ * size, number and total size, exceeding any limit raises a
+ * LimitExceededException.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+class MultipartStream implements MultipartParser.PartHandler {
+    static final int CHUNK_SIZE = 16 * 1024;
+    static final int MAX_FIELD_SIZE = 1024 * 1024;
+    static final int MAX_FIELDS = 100;
+    static final int MAX_FIELDS_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Thrown when the fields exceed the allowed size or number
+     */
+    static class LimitExceededException extends IOException {
+        LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    private enum PART { FIELD, FILE, IGNORED };
+
+    private final InputStream body;
+    private final MultipartParser.ParseState parser;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    private final Map<String, String> fields = new HashMap<>();
+    private int fieldsCount = 0;
+    private long fieldsSize = 0;
+
+    private PART part = null;
+    private String partName = null;
+    private Charset partCharset = null;
+    private ByteArrayOutputStream partValue = null;
+
+    private String fileField = null;
+    private String fileName = null;
+    private boolean fileEnded = false;
+    private final ArrayDeque<ByteBuffer> fileChunks = new ArrayDeque<>();
+
+    /**
+     *
+     * @param body the request body
+     * @param boundary the multipart boundary
+     * @param bufferPool the pool used to decode base64 and quoted-printable parts
+     */
+    MultipartStream(InputStream body, String boundary, ByteBufferPool bufferPool) {
+        this.body = body;
+        this.parser = MultipartParser.beginParse(bufferPool, this, boundary.getBytes(StandardCharsets.US_ASCII), StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Reads the request body up to the beginning of the first file part
+     *
+     * @return true if the request contains a file part
+     * @throws IOException
+     */
+    boolean readFields() throws IOException {
+        while (fileField == null && feed());
+        return fileField != null;
+    }
+
+    /**
+     * @return the fields preceding the first file part
+     */
+    Map<String, String> fields() {
+        return fields;
+    }
+
+    /**
+     * @return the name of the first file field
+     */
+    String fileField() {
+        return fileField;
+    }
+
+    /**
+     * @return the filename of the first file part
+     */
+    String fileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the stream of the content of the first file part
+     */
+    InputStream fileInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                var b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+
+                while (fileChunks.isEmpty() && !fileEnded && feed());
+
+                var head = fileChunks.peek();
+
+                if (head == null) {
+                    return -1;
+                }
+
+                var n = Math.min(len, head.remaining());
+                head.get(b, off, n);
+
+                if (!head.hasRemaining()) {
+                    fileChunks.poll();
+                }
+
+                return n;
+            }
+
+            @Override
+            public int available() {
+                var head = fileChunks.peek();
+                return head == null ? 0 : head.remaining();
+            }
+        };
+    }
+
+    /**
+     * Parses the next chunk of the request body
+     *
+     * @return false if the multipart body has been completely parsed
+     * @throws IOException
+     */
+    private boolean feed() throws IOException {
+        if (parser.isComplete()) {
+            return false;
+        }
+
+        var read = body.read(chunk);
+
+        if (read < 0) {
+            throw new IOException("unexpected end of the multipart request body");
+        }
+
+        parser.parse(ByteBuffer.wrap(chunk, 0, read));
+
+        if (fieldsCount > MAX_FIELDS) {
+            throw new LimitExceededException("multipart request exceeds the maximum number of " + MAX_FIELDS + " fields");
+        }
+
+        return true;
+    }
+
+    @Override
+    public void beginPart(HeaderMap headers) {
+        var disposition = headers.getFirst(Headers.CONTENT_DISPOSITION);
+        var name = disposition == null ? null : Headers.extractQuotedValueFromHeader(disposition, "name");
+        var filename = disposition == null ? null : Headers.extractQuotedValueFromHeaderWithEncoding(disposition, "filename");
+
+        if (fileField != null) {
+            this.part = PART.IGNORED;
+        } else if (filename != null) {
+            this.part = PART.FILE;
+            this.fileField = name;
+            this.fileName = filename;
+        } else {
+            this.part = PART.FIELD;
+            this.fieldsCount++;
+            this.partName = name;
+            this.partValue = new ByteArrayOutputStream();
+
+            var contentType = headers.getFirst(Headers.CONTENT_TYPE);
+            var charset = contentType == null ? null : Headers.extractQuotedValueFromHeader(contentType, "charset");
+
+            try {
+                this.partCharset = charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset);
+            } catch (IllegalArgumentException iae) {
+                this.partCharset = StandardCharsets.UTF_8;
+            }
+        }
+    }
+
+    @Override
+    public void data(ByteBuffer buffer) throws IOException {
+        switch (part) {
+            case FILE -> {
+                if (!buffer.hasRemaining()) {
+                    return;
+                }
+
+                var copy = ByteBuffer.allocate(buffer.remaining());
+                copy.put(buffer).flip();
+                fileChunks.add(copy);
+            }
+            case FIELD -> {
+                if (partValue.size() + buffer.remaining() > MAX_FIELD_SIZE) {
+                    throw new LimitExceededException("multipart field " + partName + " exceeds the maximum size of " + MAX_FIELD_SIZE + " bytes");
+                }
+
+                if (fieldsSize + buffer.remaining() > MAX_FIELDS_SIZE) {
+                    throw new LimitExceededException("multipart fields exceed the maximum total size of " + MAX_FIELDS_SIZE + " bytes");
+                }
+
+                fieldsSize += buffer.remaining();
+
+                var bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                partValue.write(bytes);
+            }
+            default -> buffer.position(buffer.limit());
+        }
+    }
+
+    @Override
+    public void endPart() {
+        if (part == PART.FILE) {
+            this.fileEnded = true;
+        } else if (part == PART.FIELD && partName != null) {
+            this.fields.putIfAbsent(partName, new String(partValue.toByteArray(), partCharset));
+        }
+
+        this.part = null;
+        this.partValue = null;
+    }
+}
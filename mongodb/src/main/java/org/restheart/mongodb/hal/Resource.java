@@ -268,10 +268,11 @@ class Resource {
 
     /**
      * @param request
-     * @return true if representationFormat == STSNDARD or S
+     * @return true if representationFormat == STSNDARD or S or BSON
      */
     public static boolean isStandardRep(MongoRequest request) {
         return request.getRepresentationFormat() == REPRESENTATION_FORMAT.STANDARD
-                || request.getRepresentationFormat() == REPRESENTATION_FORMAT.S;
+                || request.getRepresentationFormat() == REPRESENTATION_FORMAT.S
+                || request.getRepresentationFormat() == REPRESENTATION_FORMAT.BSON;
     }
 }
@@ -28,6 +28,7 @@ import org.bson.BsonDocument;
 import org.bson.BsonValue;
 import org.restheart.exchange.InvalidMetadataException;
 import org.restheart.exchange.QueryVariableNotBoundException;
+import org.restheart.mongodb.db.AggregationResultCache;
 import org.restheart.utils.BsonUtils;
 
 /**
@@ -47,8 +48,18 @@ public class AggregationPipeline extends AbstractAggregationOperation {
      */
     public static final String ALLOW_DISK_USER_ELEMENT_NAME = "allowDiskUse";
 
+    /**
+     *
+     */
+    public static final String CACHE_ELEMENT_NAME = "cache";
+
+    private static final long DEFAULT_CACHE_TTL = 60_000;
+    private static final long DEFAULT_CACHE_MAX_SIZE = 100;
+    private static final long DEFAULT_CACHE_MAX_BYTES = 1_048_576;
+
     private final BsonArray stages;
     private final BsonBoolean allowDiskUse;
+    private final AggregationResultCache.Options cache;
 
     /**
      * @param properties the json properties object. It must include the
@@ -73,6 +84,14 @@ public class AggregationPipeline extends AbstractAggregationOperation {
      *     ]
      * }]
      * </code>
+     * <p>
+     * The optional <code>cache</code> object enables caching the results on
+     * this node; the results are keyed by the resolved stages and invalidated
+     * by any write to the collection executed by this node:
+     * <code>"cache": { "ttl": 60000, "maxSize": 100, "maxBytes": 1048576 }</code>
+     * where <code>ttl</code> is in milliseconds, <code>maxSize</code> is the
+     * max number of cached results and <code>maxBytes</code> the max size of a
+     * cached result.
      * @throws org.restheart.exchange.InvalidMetadataException
      */
     public AggregationPipeline(BsonDocument properties)
@@ -111,6 +130,37 @@ public class AggregationPipeline extends AbstractAggregationOperation {
         this.allowDiskUse = _allowDiskUse != null
                 ? _allowDiskUse.asBoolean()
                 : BsonBoolean.FALSE;
+
+        BsonValue _cache = properties.get(CACHE_ELEMENT_NAME);
+
+        if (_cache == null) {
+            this.cache = null;
+        } else if (!_cache.isDocument()) {
+            throw new InvalidMetadataException("query /" + getUri()
+                    + "has invalid '" + CACHE_ELEMENT_NAME
+                    + "': " + _cache
+                    + "; must be an object");
+        } else {
+            this.cache = new AggregationResultCache.Options(
+                cacheOption(_cache.asDocument(), "ttl", DEFAULT_CACHE_TTL),
+                cacheOption(_cache.asDocument(), "maxSize", DEFAULT_CACHE_MAX_SIZE),
+                cacheOption(_cache.asDocument(), "maxBytes", DEFAULT_CACHE_MAX_BYTES));
+        }
+    }
+
+    private long cacheOption(BsonDocument cache, String name, long defaultValue) throws InvalidMetadataException {
+        var value = cache.get(name);
+
+        if (value == null) {
+            return defaultValue;
+        } else if (!value.isNumber() || value.asNumber().longValue() <= 0) {
+            throw new InvalidMetadataException("query /" + getUri()
+                    + "has invalid '" + CACHE_ELEMENT_NAME + "." + name
+                    + "': " + value
+                    + "; must be a positive number");
+        } else {
+            return value.asNumber().longValue();
+        }
     }
 
     /**
@@ -148,4 +198,11 @@ public class AggregationPipeline extends AbstractAggregationOperation {
     public BsonBoolean getAllowDiskUse() {
         return allowDiskUse;
     }
+
+    /**
+     * @return the options of the results cache or null if the results are not cached
+     */
+    public AggregationResultCache.Options getCache() {
+        return cache;
+    }
 }
@@ -23,8 +23,11 @@ package org.restheart.mongodb.handlers.aggregation;
 import com.mongodb.MongoCommandException;
 import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.MapReduceIterable;
+import com.mongodb.client.MongoCursor;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
@@ -37,7 +40,9 @@ import org.restheart.exchange.MongoResponse;
 import org.restheart.exchange.QueryVariableNotBoundException;
 import org.restheart.handlers.PipelinedHandler;
 import org.restheart.mongodb.MongoServiceConfiguration;
+import org.restheart.mongodb.db.AggregationResultCache;
 import org.restheart.mongodb.db.Databases;
+import org.restheart.mongodb.utils.ResponseHelper;
 import org.restheart.security.AclVarsInterpolator;
 import org.restheart.security.FileRealmAccount;
 import org.restheart.security.JwtAccount;
@@ -57,8 +62,15 @@ import org.slf4j.LoggerFactory;
 public class GetAggregationHandler extends PipelinedHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(GetAggregationHandler.class);
 
+    /**
+     * the response header that tells whether the result of a cached aggregation was served from the cache
+     */
+    public static final HttpString X_CACHE = HttpString.tryFromString("X-Cache");
+
     private final Databases dbs = Databases.get();
 
+    private final AggregationResultCache aggrCache = AggregationResultCache.getInstance();
+
     /**
      * Default ctor
      */
@@ -103,6 +115,7 @@ public class GetAggregationHandler extends PipelinedHandler {
         }
 
         var _data = new ArrayList<BsonDocument>();
+        MongoCursor<BsonDocument> aggrCursor = null;
         var query = _query.get();
 
         if (null == query.getType()) {
@@ -152,19 +165,47 @@ public class GetAggregationHandler extends PipelinedHandler {
                 case AGGREGATION_PIPELINE:
                     AggregateIterable<BsonDocument> agrOutput;
                     var pipeline = (AggregationPipeline) query;
+                    List<BsonDocument> resolvedStages;
+                    boolean cacheable;
+                    long version;
                     try {
                         var clientSession = request.getClientSession();
+                        resolvedStages = pipeline.getResolvedStagesAsList(avars);
+                        var allowDiskUse = pipeline.getAllowDiskUse().getValue();
+
+                        // results are cached only for requests outside sessions and with the default replica set options
+                        // and for pipelines that don't write their result with $out or $merge
+                        cacheable = pipeline.getCache() != null && clientSession == null && request.rsOps().isEmpty()
+                            && AggregationResultCache.cacheable(resolvedStages);
+
+                        if (cacheable) {
+                            var cached = aggrCache.get(request.getDBName(), request.getCollectionName(), queryUri, pipeline.getCache(), resolvedStages, allowDiskUse);
+
+                            if (cached != null) {
+                                _data.addAll(cached);
+                                response.getHeaders().put(X_CACHE, "HIT");
+                                break;
+                            }
+                        }
+
+                        // the data version must be taken before executing the aggregation
+                        version = aggrCache.version(request.getDBName(), request.getCollectionName());
 
                         if (clientSession == null) {
                             agrOutput = dbs.collection(request.rsOps(), request.getDBName(), request.getCollectionName())
-                                .aggregate(pipeline.getResolvedStagesAsList(avars))
+                                .aggregate(resolvedStages)
                                 .maxTime(MongoServiceConfiguration.get() .getAggregationTimeLimit(), TimeUnit.MILLISECONDS)
-                                .allowDiskUse(pipeline.getAllowDiskUse().getValue());
+                                .allowDiskUse(allowDiskUse);
                         } else {
                             agrOutput = dbs.collection(request.rsOps(), request.getDBName(), request.getCollectionName())
-                                .aggregate(clientSession, pipeline.getResolvedStagesAsList(avars))
+                                .aggregate(clientSession, resolvedStages)
                                 .maxTime(MongoServiceConfiguration.get() .getAggregationTimeLimit(), TimeUnit.MILLISECONDS)
-                                .allowDiskUse(pipeline.getAllowDiskUse().getValue());
+                                .allowDiskUse(allowDiskUse);
+                        }
+
+                        if (!cacheable && ResponseHelper.isStreamable(request)) {
+                            // opening the cursor executes the aggregation and fetches the first batch
+                            aggrCursor = agrOutput.batchSize(MongoServiceConfiguration.get().getCursorBatchSize()).cursor();
                         }
                     } catch (MongoCommandException | InvalidMetadataException ex) {
                         response.setInError(HttpStatus.SC_INTERNAL_SERVER_ERROR, "error executing aggregation pipeline", ex);
@@ -175,10 +216,20 @@ public class GetAggregationHandler extends PipelinedHandler {
                         next(exchange);
                         return;
                     }
+                    if (aggrCursor != null) {
+                        // the documents are sent as the cursor yields them
+                        break;
+                    }
+
                     // ***** get data
                     for (BsonDocument obj : agrOutput) {
                         _data.add(obj);
                     }
+
+                    if (cacheable) {
+                        aggrCache.put(request.getDBName(), request.getCollectionName(), queryUri, pipeline.getCache(), resolvedStages, pipeline.getAllowDiskUse().getValue(), version, _data);
+                        response.getHeaders().put(X_CACHE, "MISS");
+                    }
                     break;
                 default:
                     response.setInError(HttpStatus.SC_INTERNAL_SERVER_ERROR, "unknown query type");
@@ -193,12 +244,16 @@ public class GetAggregationHandler extends PipelinedHandler {
         }
 
         try {
-            var data = new BsonArray();
+            if (aggrCursor != null) {
+                response.setContentCursor(aggrCursor);
+            } else {
+                var data = new BsonArray();
 
-            _data.stream().forEachOrdered(data::add);
+                _data.stream().forEachOrdered(data::add);
 
-            response.setContent(data);
-            response.setCount(data.size());
+                response.setContent(data);
+                response.setCount(data.size());
+            }
 
             response.setContentTypeAsJson();
             response.setStatusCode(HttpStatus.SC_OK);
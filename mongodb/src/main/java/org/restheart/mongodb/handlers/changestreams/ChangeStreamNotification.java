@@ -20,6 +20,8 @@
  */
 package org.restheart.mongodb.handlers.changestreams;
 
+import org.bson.BsonDocument;
+
 /**
  *
  * @author omartrasatti
@@ -28,10 +30,24 @@ public class ChangeStreamNotification {
 
     private final SessionKey sessionKey;
     private final String notificationMessage;
+    private final BsonDocument documentKey;
+    private final long timestamp;
 
     public ChangeStreamNotification(SessionKey sessionKey, String notificationMessage) {
+        this(sessionKey, notificationMessage, null);
+    }
+
+    /**
+     *
+     * @param sessionKey
+     * @param notificationMessage
+     * @param documentKey the key of the document the notification refers to, used to coalesce queued notifications
+     */
+    public ChangeStreamNotification(SessionKey sessionKey, String notificationMessage, BsonDocument documentKey) {
         this.sessionKey = sessionKey;
         this.notificationMessage = notificationMessage;
+        this.documentKey = documentKey;
+        this.timestamp = System.nanoTime();
     }
 
     public SessionKey getSessionKey() {
@@ -41,4 +57,18 @@ public class ChangeStreamNotification {
     public String getNotificationMessage() {
         return this.notificationMessage;
     }
+
+    /**
+     * @return the key of the document the notification refers to, can be null
+     */
+    public BsonDocument getDocumentKey() {
+        return this.documentKey;
+    }
+
+    /**
+     * @return the value of System.nanoTime() when the notification was created
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
 }
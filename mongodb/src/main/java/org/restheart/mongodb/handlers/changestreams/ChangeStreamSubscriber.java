@@ -21,9 +21,14 @@
 package org.restheart.mongodb.handlers.changestreams;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+import com.mongodb.MongoCommandException;
 import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.FullDocument;
 import org.bson.BsonArray;
@@ -32,6 +37,7 @@ import org.bson.BsonNull;
 import org.bson.BsonString;
 import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.json.JsonMode;
 import org.bson.codecs.DocumentCodec;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
@@ -43,6 +49,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Subscribes to a MongoDB change stream and fans out its events to the
+ * websocket sessions of all the session keys attached to it.
+ *
+ * Sessions watching the same collection with the same resolved pipeline share
+ * the same change stream (see {@link StreamKey}); each event is converted to
+ * json once per json mode.
  *
  * @author omartrasatti
  */
@@ -50,37 +62,144 @@ public class ChangeStreamSubscriber implements Subscriber<ChangeStreamDocument<?
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ChangeStreamSubscriber.class);
 
-    private final SessionKey sessionKey;
-    private List<BsonDocument> resolvedStages;
-    private String dbName;
-    private String collName;
+    /**
+     * max number of events requested and not yet received from the change stream
+     */
+    private static final int DEMAND = 100;
+
+    /**
+     * MongoDB error codes meaning that the stream cannot be resumed from the resume token,
+     * i.e. ChangeStreamFatalError and ChangeStreamHistoryLost
+     */
+    private static final List<Integer> NOT_RESUMABLE_ERROR_CODES = List.of(280, 286);
+
+    private final StreamKey streamKey;
+    private final Set<SessionKey> sessionKeys;
+    private final String dbName;
+    private final String collName;
 
     // Can be a configuration.
     private boolean init;
+    private final AtomicBoolean started = new AtomicBoolean(false);
     private Subscription sub;
+    private long outstanding = 0;
+    private boolean cancelled = false;
 
-    public ChangeStreamSubscriber(SessionKey sessionKey, List<BsonDocument> resolvedStages, String dbName, String collName) {
-        super();
-        this.sessionKey = sessionKey;
-        this.resolvedStages = resolvedStages;
-        this.dbName = dbName;
-        this.collName = collName;
-        this.init = false;
+    // the resume token of the last received event
+    private volatile BsonDocument resumeToken;
+    // true if resumeToken was received by this stream, false if it was passed by the client
+    private volatile boolean resumeTokenReceived = false;
+
+    public ChangeStreamSubscriber(StreamKey streamKey) {
+        this(streamKey, ConcurrentHashMap.newKeySet(), false, streamKey.resumeToken(), false);
     }
 
-    public ChangeStreamSubscriber(SessionKey sessionKey, List<BsonDocument> resolvedStages, String dbName, String collName, boolean init) {
+    /**
+     *
+     * @param streamKey
+     * @param sessionKeys the session keys watching the stream
+     * @param init
+     * @param resumeToken the resume token the stream has to be started from, can be null
+     * @param resumeTokenReceived true if the resume token was received from a previous stream, false if it was passed by the client
+     */
+    private ChangeStreamSubscriber(StreamKey streamKey, Set<SessionKey> sessionKeys, boolean init, BsonDocument resumeToken, boolean resumeTokenReceived) {
         super();
-        this.sessionKey = sessionKey;
-        this.resolvedStages = resolvedStages;
-        this.dbName = dbName;
-        this.collName = collName;
+        this.streamKey = streamKey;
+        this.sessionKeys = sessionKeys;
+        this.dbName = streamKey.db();
+        this.collName = streamKey.collection();
         this.init = init;
+        this.resumeToken = resumeToken;
+        this.resumeTokenReceived = resumeTokenReceived;
+    }
+
+    /**
+     * Opens the MongoDB change stream, if not yet started
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+
+        var watch = RHMongoClients.mclientReactive()
+            .getDatabase(dbName)
+            .getCollection(collName)
+            .watch(streamKey.resolvedStages())
+            .fullDocument(FullDocument.UPDATE_LOOKUP);
+
+        var _resumeToken = this.resumeToken;
+
+        // resume from the last received event so that no events are lost
+        // or replay the events after the one identified by the client resume token
+        if (_resumeToken != null && resumeTokenReceived) {
+            watch = watch.resumeAfter(_resumeToken);
+        } else if (_resumeToken != null) {
+            watch = watch.startAfter(_resumeToken);
+        }
+
+        watch.subscribe(this);
+    }
+
+    public StreamKey getStreamKey() {
+        return streamKey;
+    }
+
+    /**
+     * @return the session keys watching this stream
+     */
+    public Set<SessionKey> getSessionKeys() {
+        return sessionKeys;
+    }
+
+    /**
+     * @return the resume token of the last received event, or the one the stream has been started from
+     */
+    public BsonDocument getResumeToken() {
+        return resumeToken;
     }
 
     @Override
     public void onSubscribe(final Subscription s) {
-        s.request(Long.MAX_VALUE);
-        this.sub = s;
+        synchronized (this) {
+            this.sub = s;
+
+            if (cancelled) {
+                // stopped before subscription
+                s.cancel();
+                return;
+            }
+        }
+
+        requestMore();
+    }
+
+    /**
+     * Requests more events from the change stream, up to DEMAND outstanding events.
+     *
+     * No events are requested when all the websocket sessions have their outbound
+     * queue full; the sessions call this method again when their queue drains.
+     */
+    public synchronized void requestMore() {
+        if (sub == null || cancelled || outstanding > DEMAND / 2) {
+            return;
+        }
+
+        var sessions = sessions();
+
+        if (!sessions.isEmpty() && sessions.stream().allMatch(ChangeStreamWebSocketSession::isSaturated)) {
+            LOGGER.trace("All clients are saturated, pausing stream, streamKey={}", streamKey);
+            return;
+        }
+
+        sub.request(DEMAND - outstanding);
+        outstanding = DEMAND;
+    }
+
+    private List<ChangeStreamWebSocketSession> sessions() {
+        var registry = WebSocketSessionsRegistry.getInstance();
+        return sessionKeys.stream()
+            .flatMap(sk -> List.copyOf(registry.get(sk)).stream())
+            .collect(Collectors.toList());
     }
 
     @Override
@@ -89,18 +208,50 @@ public class ChangeStreamSubscriber implements Subscriber<ChangeStreamDocument<?
             setInit(true);
         }
 
-        if (!WebSocketSessionsRegistry.getInstance().get(sessionKey).isEmpty()) {
-            LOGGER.trace("[clients watching]: " + WebSocketSessionsRegistry.getInstance().get(sessionKey).size());
+        synchronized (this) {
+            outstanding--;
+        }
 
-            LOGGER.trace("Change stream notification for sessionKey={}: {}", sessionKey, notification);
+        if (notification.getResumeToken() != null) {
+            this.resumeToken = notification.getResumeToken();
+            this.resumeTokenReceived = true;
+        }
 
-            ChangeStreamWebsocketCallback.NOTIFICATION_PUBLISHER.submit(
-                new ChangeStreamNotification(sessionKey,
-                    BsonUtils.toJson(getDocument(notification), sessionKey.getJsonMode())));
-        } else {
+        LOGGER.trace("Change stream notification for streamKey={}: {}", streamKey, notification);
+
+        var registry = WebSocketSessionsRegistry.getInstance();
+        BsonDocument doc = null;
+        // the notification is converted to json once per json mode
+        var jsons = new HashMap<JsonMode, String>();
+
+        for (var sessionKey: sessionKeys) {
+            var sessions = List.copyOf(registry.get(sessionKey));
+
+            if (sessions.isEmpty()) {
+                LOGGER.debug("Removing unwatched session key from stream, sessionKey={}", sessionKey);
+                // this also stops the stream, if no other session key is watching it
+                ChangeStreamsRegistry.getInstance().remove(sessionKey);
+                continue;
+            }
+
+            LOGGER.trace("[clients watching]: " + sessions.size());
+
+            if (doc == null) {
+                doc = getDocument(notification);
+            }
+
+            final var _doc = doc;
+            var json = jsons.computeIfAbsent(sessionKey.getJsonMode(), jsonMode -> BsonUtils.toJson(_doc, jsonMode));
+            var _notification = new ChangeStreamNotification(sessionKey, json, notification.getDocumentKey());
+
+            sessions.forEach(session -> session.send(_notification));
+        }
+
+        if (sessionKeys.isEmpty()) {
+            LOGGER.debug("Closing unwatched stream, streamKey={}", streamKey);
             this.stop();
-            LOGGER.debug("Closing unwatched stream, sessionKey=" + sessionKey);
-            ChangeStreamsRegistry.getInstance().remove(sessionKey);
+        } else {
+            requestMore();
         }
     }
 
@@ -109,33 +260,35 @@ public class ChangeStreamSubscriber implements Subscriber<ChangeStreamDocument<?
         LOGGER.warn("Error from stream: " + t.getMessage());
 
         if (init) {
+            if (resumeToken != null && t instanceof MongoCommandException mce && NOT_RESUMABLE_ERROR_CODES.contains(mce.getErrorCode())) {
+                LOGGER.warn("Stream {}/{} cannot be resumed, events occurred in the meantime are lost", dbName, collName);
+                this.resumeToken = null;
+            }
+
             LOGGER.warn("Restarting stream: {}/{}", dbName, collName);
             restartStream();
         } else {
-            LOGGER.warn("Closing all connected ws clients: {}/{}", dbName, collName);
-            closeAllOnError(dbName, collName);
+            // e.g. the resume token passed by the client is not valid
+            LOGGER.warn("Closing the ws clients of stream {}/{}", dbName, collName);
+            closeAllOnError();
         }
     }
 
-    private void closeAllOnError(String db, String collection) {
+    /**
+     * closes the websocket sessions of the session keys watching this stream
+     */
+    private void closeAllOnError() {
         var webSocketSessions = WebSocketSessionsRegistry.getInstance();
         var changeStreams = ChangeStreamsRegistry.getInstance();
 
-        var sessionKeys = changeStreams.getSessionKeysOnCollection(db, collection);
-
-        sessionKeys.stream()
-            .collect(Collectors.toSet())
-            .forEach(sk -> {
-            var _webSocketSession = webSocketSessions.get(sk);
-            _webSocketSession.stream()
-                .collect(Collectors.toSet())
-                .forEach(wss -> {
-                    try {
-                        wss.close();
-                        webSocketSessions.remove(sk, wss);
-                    } catch(IOException ioe) {
-                        // LOGGER
-                    }
+        List.copyOf(sessionKeys).forEach(sk -> {
+            List.copyOf(webSocketSessions.get(sk)).forEach(wss -> {
+                try {
+                    wss.close();
+                    webSocketSessions.remove(sk, wss);
+                } catch(IOException ioe) {
+                    LOGGER.warn("error closing session {}", sk);
+                }
             });
 
             changeStreams.remove(sk);
@@ -148,17 +301,15 @@ public class ChangeStreamSubscriber implements Subscriber<ChangeStreamDocument<?
 
     private void restartStream() {
         try {
-            RHMongoClients.mclientReactive()
-                .getDatabase(dbName)
-                .getCollection(collName)
-                .watch(resolvedStages)
-                .fullDocument(FullDocument.UPDATE_LOOKUP)
-                .subscribe(new ChangeStreamSubscriber(sessionKey,
-                        resolvedStages,
-                        dbName,
-                        collName,
-                        true));
-
+            var subscriber = new ChangeStreamSubscriber(streamKey,
+                        sessionKeys,
+                        true,
+                        this.resumeToken,
+                        this.resumeTokenReceived);
+
+            if (!ChangeStreamsRegistry.getInstance().replaceStream(streamKey, this, subscriber)) {
+                LOGGER.debug("Stream not restarted since it has been closed meanwhile, streamKey={}", streamKey);
+            }
         }  catch(Throwable e) {
             LOGGER.warn("Error trying to restart the stream: " + e.getMessage());
         }
@@ -166,11 +317,15 @@ public class ChangeStreamSubscriber implements Subscriber<ChangeStreamDocument<?
 
     @Override
     public void onComplete() {
-        LOGGER.debug("Stream completed, sessionKey=" + sessionKey);
+        LOGGER.debug("Stream completed, streamKey={}", streamKey);
     }
 
-    public void stop() {
-        this.sub.cancel();
+    public synchronized void stop() {
+        this.cancelled = true;
+
+        if (this.sub != null) {
+            this.sub.cancel();
+        }
     }
 
     private BsonDocument getDocument(ChangeStreamDocument<?> notification) {
@@ -180,6 +335,11 @@ public class ChangeStreamSubscriber implements Subscriber<ChangeStreamDocument<?
             return doc;
         }
 
+        // the resume token, that clients can pass to replay the events after this one
+        if (notification.getResumeToken() != null) {
+            doc.put("_id", notification.getResumeToken());
+        }
+
         if (notification.getFullDocument() != null) {
             try {
                 doc.put("fullDocument", toBson((Document) notification.getFullDocument()));
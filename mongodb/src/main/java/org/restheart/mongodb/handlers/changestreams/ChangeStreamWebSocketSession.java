@@ -20,14 +20,30 @@
  */
 package org.restheart.mongodb.handlers.changestreams;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 import io.undertow.server.session.SecureRandomSessionIdGenerator;
 import io.undertow.websockets.core.AbstractReceiveListener;
 import io.undertow.websockets.core.StreamSourceFrameChannel;
+import io.undertow.websockets.core.WebSocketCallback;
 import io.undertow.websockets.core.WebSocketChannel;
+import io.undertow.websockets.core.WebSockets;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import org.restheart.mongodb.MongoServiceConfiguration;
+import org.restheart.mongodb.MongoServiceConfiguration.CHANGE_STREAMS_OVERFLOW_POLICY;
+import org.restheart.mongodb.MongoServiceConfigurationKeys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 /**
+ * A websocket session watching a change stream.
+ *
+ * Notifications are queued in a bounded outbound queue and sent one at a time,
+ * so that a slow client does not stall the notifications of the others.
+ * When the queue is full, the configured overflow policy is applied.
  *
  * @author Omar Trasatti {@literal <omar@softinstigate.com>}
  */
@@ -36,17 +52,52 @@ public class ChangeStreamWebSocketSession {
     private static final Logger LOGGER
             = LoggerFactory.getLogger(ChangeStreamWebSocketSession.class);
 
+    public static final String METRIC_REGISTRY_NAME = "CHANGE_STREAMS";
+    private static final MetricRegistry CHANGE_STREAMS_METRIC_REGISTRY = SharedMetricRegistries.getOrCreate(METRIC_REGISTRY_NAME);
+
     private final String sessionId;
     private final SessionKey sessionKey;
     private final WebSocketChannel webSocketChannel;
 
-    public ChangeStreamWebSocketSession(WebSocketChannel channel, SessionKey sessionKey) {
+    private final int queueSize;
+    private final CHANGE_STREAMS_OVERFLOW_POLICY overflowPolicy;
+    private final ArrayDeque<ChangeStreamNotification> queue;
+    private boolean sending = false;
+    private boolean saturated = false;
+    private boolean closed = false;
+
+    private final Timer lag;
+    private final Meter drops;
+
+    /**
+     *
+     * @param channel
+     * @param sessionKey
+     * @param info the info of the stream, used to name its metrics, can be null
+     */
+    public ChangeStreamWebSocketSession(WebSocketChannel channel, SessionKey sessionKey, SessionInfo info) {
         this.sessionId = new SecureRandomSessionIdGenerator().createSessionId();
         this.webSocketChannel = channel;
         this.sessionKey = sessionKey;
+
+        var conf = MongoServiceConfiguration.get();
+        this.queueSize = conf == null ? MongoServiceConfigurationKeys.DEFAULT_CHANGE_STREAMS_QUEUE_SIZE : Math.max(1, conf.getChangeStreamsQueueSize());
+        this.overflowPolicy = conf == null ? CHANGE_STREAMS_OVERFLOW_POLICY.DROP_OLDEST : conf.getChangeStreamsOverflowPolicy();
+        this.queue = new ArrayDeque<>(Math.min(queueSize, 64));
+
+        var streamName = streamName(sessionKey, info);
+        this.lag = CHANGE_STREAMS_METRIC_REGISTRY.timer(MetricRegistry.name(streamName, "lag"));
+        this.drops = CHANGE_STREAMS_METRIC_REGISTRY.meter(MetricRegistry.name(streamName, "drops"));
+
         initChannelReceiveListener(webSocketChannel);
     }
 
+    private static String streamName(SessionKey sessionKey, SessionInfo info) {
+        return info == null
+            ? sessionKey.getUrl()
+            : "/" + info.getDb() + "/" + info.getCollection() + "/_streams/" + info.getChangeStreamOperation();
+    }
+
     private void initChannelReceiveListener(WebSocketChannel channel) {
         channel.getReceiveSetter().set(new ChangeStreamReceiveListener(this));
 
@@ -65,11 +116,143 @@ public class ChangeStreamWebSocketSession {
         return this.webSocketChannel;
     }
 
+    /**
+     * Enqueues the notification and sends it asynchronously; never blocks.
+     *
+     * @param notification
+     */
+    public void send(ChangeStreamNotification notification) {
+        var disconnect = false;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            if (queue.size() >= queueSize) {
+                disconnect = !overflow(queue, overflowPolicy, notification);
+                drops.mark();
+            }
+
+            if (!disconnect) {
+                queue.addLast(notification);
+                saturated = queue.size() >= queueSize;
+            }
+        }
+
+        if (disconnect) {
+            LOGGER.debug("Closing slow stream connection, sessionkey={}", sessionKey);
+            closeQuietly();
+        } else {
+            drain();
+        }
+    }
+
+    /**
+     * Makes room in the full queue for the notification, according to the overflow policy
+     *
+     * @param queue the full queue
+     * @param overflowPolicy
+     * @param notification the notification to enqueue
+     * @return false if the session must be disconnected instead
+     */
+    static boolean overflow(ArrayDeque<ChangeStreamNotification> queue, CHANGE_STREAMS_OVERFLOW_POLICY overflowPolicy, ChangeStreamNotification notification) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> queue.pollFirst();
+            case COALESCE -> {
+                var documentKey = notification.getDocumentKey();
+                if (documentKey == null || !queue.removeIf(queued -> documentKey.equals(queued.getDocumentKey()))) {
+                    queue.pollFirst();
+                }
+            }
+            case DISCONNECT -> {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the outbound queue is full
+     */
+    public synchronized boolean isSaturated() {
+        return saturated;
+    }
+
+    /**
+     * sends the next queued notification, if any and if no other send is in progress
+     */
+    private void drain() {
+        final ChangeStreamNotification next;
+        var resumed = false;
+
+        synchronized (this) {
+            if (sending || closed) {
+                return;
+            }
+
+            next = queue.pollFirst();
+
+            if (next == null) {
+                return;
+            }
+
+            sending = true;
+
+            if (saturated && queue.size() <= queueSize / 2) {
+                saturated = false;
+                resumed = true;
+            }
+        }
+
+        if (resumed) {
+            // the stream might have stopped requesting events because all sessions were saturated
+            var info = ChangeStreamsRegistry.getInstance().get(sessionKey);
+            if (info != null && info.getSubscriber() != null) {
+                info.getSubscriber().requestMore();
+            }
+        }
+
+        WebSockets.sendText(next.getNotificationMessage(), webSocketChannel, new WebSocketCallback<Void>() {
+            @Override
+            public void complete(final WebSocketChannel channel, Void context) {
+                lag.update(System.nanoTime() - next.getTimestamp(), TimeUnit.NANOSECONDS);
+
+                synchronized (ChangeStreamWebSocketSession.this) {
+                    sending = false;
+                }
+
+                // continue on the io thread to avoid deep recursion when sends complete immediately
+                channel.getIoThread().execute(ChangeStreamWebSocketSession.this::drain);
+            }
+
+            @Override
+            public void onError(final WebSocketChannel channel, Void context, Throwable throwable) {
+                LOGGER.debug("Error sending stream notification, sessionkey={}: {}", sessionKey, throwable.getMessage());
+                closeQuietly();
+            }
+        });
+    }
+
     public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+        }
+
         WebSocketSessionsRegistry.getInstance().remove(this.sessionKey, this);
         this.webSocketChannel.close();
     }
 
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ioe) {
+            LOGGER.warn("error closing session {}", sessionKey);
+        }
+    }
+
     class ChangeStreamReceiveListener extends AbstractReceiveListener {
         private final ChangeStreamWebSocketSession session;
 
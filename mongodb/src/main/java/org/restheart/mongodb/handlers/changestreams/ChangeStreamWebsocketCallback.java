@@ -23,7 +23,6 @@ package org.restheart.mongodb.handlers.changestreams;
 import io.undertow.websockets.WebSocketConnectionCallback;
 import io.undertow.websockets.core.WebSocketChannel;
 import io.undertow.websockets.spi.WebSocketHttpExchange;
-import java.util.concurrent.SubmissionPublisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,29 +33,36 @@ import org.slf4j.LoggerFactory;
  */
 public class ChangeStreamWebsocketCallback implements WebSocketConnectionCallback {
 
-    public static final SubmissionPublisher<ChangeStreamNotification> NOTIFICATION_PUBLISHER = new SubmissionPublisher<>();
-
     private static final Logger LOGGER
             = LoggerFactory.getLogger(ChangeStreamWebsocketCallback.class);
 
     public ChangeStreamWebsocketCallback() {
-        NOTIFICATION_PUBLISHER.subscribe(new WebSocketNotificationSubscriber());
     }
 
     @Override
     public void onConnect(WebSocketHttpExchange exchange, WebSocketChannel channel) {
         var sessionKey = new SessionKey(exchange);
+        var streamKey = exchange.getAttachment(GetChangeStreamHandler.STREAM_KEY_ATTACHMENT_KEY);
+        var info = exchange.getAttachment(GetChangeStreamHandler.SESSION_INFO_ATTACHMENT_KEY);
 
-        ChangeStreamWebSocketSession newSession = createSession(channel, sessionKey);
+        ChangeStreamWebSocketSession newSession = createSession(channel, sessionKey, info);
 
         LOGGER.debug("New stream connection, sessionkey={}", sessionKey);
 
+        // the session must be registered before attaching the session key to the stream,
+        // an event received in between would otherwise detach the session key since it has no sessions
         WebSocketSessionsRegistry.getInstance().add(sessionKey, newSession);
+
+        var changeStreams = ChangeStreamsRegistry.getInstance();
+
+        if (!changeStreams.containsKey(sessionKey)) {
+            changeStreams.attach(streamKey, sessionKey, info);
+        }
     }
 
-    private ChangeStreamWebSocketSession createSession(WebSocketChannel channel, SessionKey sessionKey) {
+    ChangeStreamWebSocketSession createSession(WebSocketChannel channel, SessionKey sessionKey, SessionInfo info) {
         ChangeStreamWebSocketSession newSession = new ChangeStreamWebSocketSession(
-                channel, sessionKey);
+                channel, sessionKey, info);
 
         return newSession;
     }
@@ -31,11 +31,15 @@ import java.util.concurrent.ConcurrentHashMap;
  * wraps a map to easily allow to get corresponding SessionInfo that
  * encapsulates db, coll, and opName
  *
+ * Session keys watching the same collection with the same resolved pipeline
+ * share the same MongoDB change stream, see {@link StreamKey}
+ *
  * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
  */
 public class ChangeStreamsRegistry {
 
     private final Map<SessionKey, SessionInfo> OPENED_STREAMS = new ConcurrentHashMap<SessionKey, SessionInfo>();
+    private final Map<StreamKey, ChangeStreamSubscriber> STREAMS = new ConcurrentHashMap<StreamKey, ChangeStreamSubscriber>();
 
     public static ChangeStreamsRegistry getInstance() {
         return ChangeStreamsRegistrySingletonHolder.INSTANCE;
@@ -57,8 +61,92 @@ public class ChangeStreamsRegistry {
         return OPENED_STREAMS.containsKey(key);
     }
 
+    /**
+     * Removes the session key, detaching it from its change stream;
+     * the change stream is stopped if no other session key is watching it
+     *
+     * @param key
+     * @return the removed SessionInfo
+     */
     public SessionInfo remove(SessionKey key) {
-        return OPENED_STREAMS.remove(key);
+        var info = OPENED_STREAMS.remove(key);
+
+        if (info != null && info.getSubscriber() != null) {
+            var subscriber = info.getSubscriber();
+
+            STREAMS.computeIfPresent(subscriber.getStreamKey(), (sk, current) -> {
+                current.getSessionKeys().remove(key);
+
+                if (current.getSessionKeys().isEmpty()) {
+                    current.stop();
+                    return null;
+                } else {
+                    return current;
+                }
+            });
+        }
+
+        return info;
+    }
+
+    /**
+     * Attaches the session key to the change stream identified by streamKey,
+     * opening it if no other session key is watching it
+     *
+     * @param streamKey
+     * @param key
+     * @param info
+     * @return the subscriber of the change stream
+     */
+    public ChangeStreamSubscriber attach(StreamKey streamKey, SessionKey key, SessionInfo info) {
+        var subscriber = STREAMS.compute(streamKey, (sk, current) -> {
+            var _subscriber = current == null ? new ChangeStreamSubscriber(sk) : current;
+            _subscriber.getSessionKeys().add(key);
+            return _subscriber;
+        });
+
+        info.setSubscriber(subscriber);
+        OPENED_STREAMS.put(key, info);
+
+        subscriber.start();
+
+        return subscriber;
+    }
+
+    /**
+     * Replaces the subscriber of a change stream, i.e. when restarting it,
+     * and starts the new subscriber.
+     *
+     * If the old subscriber is no longer registered, e.g. because all the
+     * session keys have been removed meanwhile, the new subscriber is stopped
+     * and not started.
+     *
+     * @param streamKey
+     * @param oldSubscriber
+     * @param newSubscriber
+     * @return true if the subscriber has been replaced
+     */
+    public boolean replaceStream(StreamKey streamKey, ChangeStreamSubscriber oldSubscriber, ChangeStreamSubscriber newSubscriber) {
+        if (!STREAMS.replace(streamKey, oldSubscriber, newSubscriber)) {
+            newSubscriber.stop();
+            return false;
+        }
+
+        newSubscriber.getSessionKeys().stream()
+            .map(OPENED_STREAMS::get)
+            .filter(info -> info != null)
+            .forEach(info -> info.setSubscriber(newSubscriber));
+
+        newSubscriber.start();
+
+        return true;
+    }
+
+    /**
+     * @return the number of open MongoDB change streams
+     */
+    public int streamsCount() {
+        return STREAMS.size();
     }
 
     public Set<SessionKey> getSessionKeysOnDb(String db) {
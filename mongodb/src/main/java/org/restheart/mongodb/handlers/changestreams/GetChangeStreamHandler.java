@@ -20,7 +20,6 @@
  */
 package org.restheart.mongodb.handlers.changestreams;
 
-import com.mongodb.client.model.changestream.FullDocument;
 import io.undertow.Handlers;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
@@ -29,14 +28,16 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import org.bson.BsonDocument;
+import org.bson.BsonString;
 import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
 import org.restheart.exchange.InvalidMetadataException;
 import org.restheart.exchange.MongoRequest;
 import org.restheart.exchange.MongoResponse;
 import org.restheart.exchange.QueryNotFoundException;
 import org.restheart.exchange.QueryVariableNotBoundException;
 import org.restheart.handlers.PipelinedHandler;
-import org.restheart.mongodb.RHMongoClients;
+import static org.restheart.exchange.ExchangeKeys.RESUME_TOKEN_QPARAM_KEY;
 import org.restheart.utils.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +58,9 @@ public class GetChangeStreamHandler extends PipelinedHandler {
 
     public static final AttachmentKey<BsonDocument> AVARS_ATTACHMENT_KEY = AttachmentKey.create(BsonDocument.class);
     public static final AttachmentKey<JsonMode> JSON_MODE_ATTACHMENT_KEY = AttachmentKey.create(JsonMode.class);
+    public static final AttachmentKey<BsonDocument> RESUME_TOKEN_ATTACHMENT_KEY = AttachmentKey.create(BsonDocument.class);
+    public static final AttachmentKey<StreamKey> STREAM_KEY_ATTACHMENT_KEY = AttachmentKey.create(StreamKey.class);
+    public static final AttachmentKey<SessionInfo> SESSION_INFO_ATTACHMENT_KEY = AttachmentKey.create(SessionInfo.class);
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
@@ -73,7 +77,13 @@ public class GetChangeStreamHandler extends PipelinedHandler {
                 exchange.putAttachment(JSON_MODE_ATTACHMENT_KEY, request.getJsonMode());
                 exchange.putAttachment(AVARS_ATTACHMENT_KEY, request.getAggregationVars());
 
-                startStream(exchange);
+                var resumeToken = resumeToken(exchange);
+
+                if (resumeToken != null) {
+                    exchange.putAttachment(RESUME_TOKEN_ATTACHMENT_KEY, resumeToken);
+                }
+
+                prepareStream(exchange);
 
                 WEBSOCKET_HANDSHAKE_HANDLER.handleRequest(exchange);
             } else {
@@ -99,6 +109,11 @@ public class GetChangeStreamHandler extends PipelinedHandler {
                     + "in the avars query paramter: {}",
                     ex.getMessage());
 
+            next(exchange);
+        } catch (JsonParseException jpe) {
+            response.setInError(HttpStatus.SC_BAD_REQUEST,
+                    "illegal " + RESUME_TOKEN_QPARAM_KEY + " paramenter, it is not a valid resume token");
+
             next(exchange);
         } catch (IllegalStateException ise) {
             if (ise.getMessage() != null
@@ -132,6 +147,57 @@ public class GetChangeStreamHandler extends PipelinedHandler {
                     .anyMatch(val -> val.toLowerCase().contains(UPGRADE_HEADER_VALUE));
     }
 
+    /**
+     * The resume token can be passed either as the _id of a notification,
+     * e.g. {"_data": "8263..."}, or just as the value of its _data field
+     *
+     * @param exchange
+     * @return the resume token specified via query parameter, or null
+     * @throws JsonParseException if the value is not a valid resume token
+     */
+    private BsonDocument resumeToken(HttpServerExchange exchange) throws JsonParseException {
+        var _resumeToken = exchange.getQueryParameters().get(RESUME_TOKEN_QPARAM_KEY);
+
+        if (_resumeToken == null || _resumeToken.isEmpty() || _resumeToken.getFirst().isBlank()) {
+            return null;
+        }
+
+        return parseResumeToken(_resumeToken.getFirst());
+    }
+
+    /**
+     * Checks the format of the resume token, so that a malformed one gets 400
+     * instead of failing the change stream after the websocket handshake.
+     *
+     * @param value the value of the resume token query parameter
+     * @return the resume token
+     * @throws JsonParseException if the value is not a valid resume token
+     */
+    static BsonDocument parseResumeToken(String value) throws JsonParseException {
+        value = value.strip();
+
+        var token = value.startsWith("{")
+            ? BsonDocument.parse(value)
+            : new BsonDocument("_data", new BsonString(value));
+
+        if (token.size() != 1 || !token.containsKey("_data")) {
+            throw new JsonParseException("the resume token must only have the _data field");
+        }
+
+        var data = token.get("_data");
+
+        // _data is a hex string since MongoDB 4.2, binary data before
+        if (!(data.isBinary() || (data.isString() && isHex(data.asString().getValue())))) {
+            throw new JsonParseException("_data is not a hex string");
+        }
+
+        return token;
+    }
+
+    private static boolean isHex(String value) {
+        return !value.isEmpty() && value.length() % 2 == 0 && value.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'));
+    }
+
     private List<BsonDocument> getResolvedStagesAsList(MongoRequest request) throws InvalidMetadataException, QueryVariableNotBoundException, QueryNotFoundException {
         String changesStreamOperation = request.getChangeStreamOperation();
 
@@ -156,28 +222,29 @@ public class GetChangeStreamHandler extends PipelinedHandler {
         return resolvedStages;
     }
 
-    private boolean startStream(HttpServerExchange exchange) throws QueryVariableNotBoundException, QueryNotFoundException, InvalidMetadataException {
-        var streamKey = new SessionKey(exchange);
+    /**
+     * Resolves the change stream the session key will be attached to.
+     *
+     * The session key is attached by ChangeStreamWebsocketCallback.onConnect()
+     * after the websocket session is registered; otherwise an event received
+     * during the handshake would find no sessions for the session key and detach it.
+     *
+     * @param exchange
+     */
+    private void prepareStream(HttpServerExchange exchange) throws QueryVariableNotBoundException, QueryNotFoundException, InvalidMetadataException {
+        var sessionKey = new SessionKey(exchange);
         var request = MongoRequest.of(exchange);
 
         List<BsonDocument> resolvedStages = getResolvedStagesAsList(request);
 
-        if (!ChangeStreamsRegistry.getInstance().containsKey(streamKey)) {
-            ChangeStreamsRegistry.getInstance().put(streamKey, new SessionInfo(MongoRequest.of(exchange)));
-
-            RHMongoClients.mclientReactive()
-                    .getDatabase(request.getDBName())
-                    .getCollection(request.getCollectionName())
-                    .watch(resolvedStages)
-                    .fullDocument(FullDocument.UPDATE_LOOKUP)
-                    .subscribe(new ChangeStreamSubscriber(streamKey,
-                            resolvedStages,
-                            request.getDBName(),
-                            request.getCollectionName()));
-
-            return true;
-        } else {
-            return false;
-        }
+        // session keys with the same db, collection and resolved pipeline share the same change stream
+        // the resume token is part of the key, since a client replaying events needs a dedicated stream
+        var streamKey = new StreamKey(request.getDBName(),
+                        request.getCollectionName(),
+                        resolvedStages,
+                        sessionKey.getResumeToken());
+
+        exchange.putAttachment(STREAM_KEY_ATTACHMENT_KEY, streamKey);
+        exchange.putAttachment(SESSION_INFO_ATTACHMENT_KEY, new SessionInfo(request));
     }
 }
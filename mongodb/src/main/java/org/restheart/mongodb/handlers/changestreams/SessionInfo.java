@@ -32,6 +32,7 @@ public class SessionInfo {
     private final String db;
     private final String collection;
     private final String changeStreamOperation;
+    private volatile ChangeStreamSubscriber subscriber;
 
     public SessionInfo(MongoRequest request) {
         this.db = request.getDBName();
@@ -78,4 +79,18 @@ public class SessionInfo {
     public String getChangeStreamOperation() {
         return changeStreamOperation;
     }
+
+    /**
+     * @return the subscriber of the change stream
+     */
+    public ChangeStreamSubscriber getSubscriber() {
+        return subscriber;
+    }
+
+    /**
+     * @param subscriber the subscriber of the change stream
+     */
+    public void setSubscriber(ChangeStreamSubscriber subscriber) {
+        this.subscriber = subscriber;
+    }
 }
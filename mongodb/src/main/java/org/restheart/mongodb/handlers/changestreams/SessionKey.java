@@ -37,11 +37,17 @@ public class SessionKey {
     private final String url;
     private final BsonDocument avars;
     private final JsonMode jsonMode;
+    private final BsonDocument resumeToken;
 
     public SessionKey(String url, BsonDocument avars, JsonMode jsonMode) {
+        this(url, avars, jsonMode, null);
+    }
+
+    public SessionKey(String url, BsonDocument avars, JsonMode jsonMode, BsonDocument resumeToken) {
         this.url = url;
         this.avars = avars;
         this.jsonMode = jsonMode;
+        this.resumeToken = resumeToken;
     }
 
     public SessionKey(WebSocketHttpExchange exchange) {
@@ -57,6 +63,7 @@ public class SessionKey {
 
         this.avars = exchange.getAttachment(GetChangeStreamHandler.AVARS_ATTACHMENT_KEY);
         this.jsonMode = exchange.getAttachment(GetChangeStreamHandler.JSON_MODE_ATTACHMENT_KEY);
+        this.resumeToken = exchange.getAttachment(GetChangeStreamHandler.RESUME_TOKEN_ATTACHMENT_KEY);
     }
 
     public SessionKey(HttpServerExchange exchange) {
@@ -64,11 +71,12 @@ public class SessionKey {
 
         this.avars = exchange.getAttachment(GetChangeStreamHandler.AVARS_ATTACHMENT_KEY);
         this.jsonMode = exchange.getAttachment(GetChangeStreamHandler.JSON_MODE_ATTACHMENT_KEY);
+        this.resumeToken = exchange.getAttachment(GetChangeStreamHandler.RESUME_TOKEN_ATTACHMENT_KEY);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getUrl(), getAvars(), getJsonMode());
+        return Objects.hash(getUrl(), getAvars(), getJsonMode(), getResumeToken());
     }
 
     @Override
@@ -112,4 +120,11 @@ public class SessionKey {
     public JsonMode getJsonMode() {
         return jsonMode;
     }
+
+    /**
+     * @return the resume token the client asked to replay the events from, can be null
+     */
+    public BsonDocument getResumeToken() {
+        return resumeToken;
+    }
 }
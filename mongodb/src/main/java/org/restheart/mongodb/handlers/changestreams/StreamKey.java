@@ -0,0 +1,38 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import java.util.List;
+import org.bson.BsonDocument;
+
+/**
+ * Identifies a MongoDB change stream, that is shared by all the sessions
+ * watching the same collection with the same resolved pipeline
+ *
+ * @param db the database name
+ * @param collection the collection name
+ * @param resolvedStages the pipeline stages with the aggregation variables resolved
+ * @param resumeToken the resume token the stream starts after, can be null
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public record StreamKey(String db, String collection, List<BsonDocument> resolvedStages, BsonDocument resumeToken) {
+}
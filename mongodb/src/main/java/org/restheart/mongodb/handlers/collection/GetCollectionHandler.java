@@ -23,6 +23,7 @@ package org.restheart.mongodb.handlers.collection;
 import java.util.Optional;
 
 import com.mongodb.MongoException;
+import com.mongodb.client.MongoCursor;
 import io.undertow.server.HttpServerExchange;
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
@@ -31,6 +32,7 @@ import org.restheart.exchange.IllegalQueryParamenterException;
 import org.restheart.exchange.MongoRequest;
 import org.restheart.exchange.MongoResponse;
 import org.restheart.handlers.PipelinedHandler;
+import org.restheart.mongodb.MongoServiceConfiguration;
 import org.restheart.mongodb.db.Databases;
 import org.restheart.mongodb.utils.ResponseHelper;
 import org.restheart.utils.HttpStatus;
@@ -90,6 +92,7 @@ public class GetCollectionHandler extends PipelinedHandler {
 
         // ***** get data
         BsonArray data = null;
+        MongoCursor<BsonDocument> cursor = null;
 
         if (request.getPagesize() > 0) {
             BsonDocument filter, sort;
@@ -115,18 +118,35 @@ public class GetCollectionHandler extends PipelinedHandler {
             }
 
             try {
-                data = dbs.getCollectionData(
-                    Optional.ofNullable(request.getClientSession()),
-                    request.rsOps(),
-                    request.getDBName(),
-                    request.getCollectionName(),
-                    request.getPage(),
-                    request.getPagesize(),
-                    sort,
-                    filter,
-                    request.getHintDocument(),
-                    request.getProjectionDocument(),
-                    request.isCache());
+                if (!request.isCache() && ResponseHelper.isStreamable(request)) {
+                    // opening the cursor executes the query and fetches the first batch
+                    cursor = dbs.findIterable(
+                        Optional.ofNullable(request.getClientSession()),
+                        request.rsOps(),
+                        request.getDBName(),
+                        request.getCollectionName(),
+                        sort,
+                        filter,
+                        request.getHintDocument(),
+                        request.getProjectionDocument(),
+                        Math.min(request.getPagesize(), MongoServiceConfiguration.get().getCursorBatchSize()))
+                        .skip(request.getPagesize() * (request.getPage() - 1))
+                        .limit(request.getPagesize())
+                        .cursor();
+                } else {
+                    data = dbs.getCollectionData(
+                        Optional.ofNullable(request.getClientSession()),
+                        request.rsOps(),
+                        request.getDBName(),
+                        request.getCollectionName(),
+                        request.getPage(),
+                        request.getPagesize(),
+                        sort,
+                        filter,
+                        request.getHintDocument(),
+                        request.getProjectionDocument(),
+                        request.isCache());
+                }
             } catch (MongoException me) {
                 if (me.getMessage().matches(".*Can't canonicalize query.*")) {
                     // error with the filter expression during query execution
@@ -146,7 +166,13 @@ public class GetCollectionHandler extends PipelinedHandler {
         }
 
         try {
-            response.setContent(data);
+            if (cursor != null) {
+                // the documents are sent as the cursor yields them
+                response.setContentCursor(cursor);
+            } else {
+                response.setContent(data);
+            }
+
             response.setCount(size);
 
             response.setContentTypeAsJson();
@@ -27,8 +27,15 @@ import com.mongodb.client.gridfs.model.GridFSFile;
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ByteRange;
 import io.undertow.util.Headers;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import org.bson.BsonObjectId;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
@@ -59,6 +66,12 @@ public class GetFileBinaryHandler extends PipelinedHandler {
      */
     public static final String CONTENT_TRANSFER_ENCODING_BINARY = "binary";
 
+    /**
+     * requests with more ranges get the whole file, since each range opens its
+     * own download stream
+     */
+    static final int MAX_RANGES = 16;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(GetFileBinaryHandler.class);
 
     /**
@@ -167,15 +180,15 @@ public class GetFileBinaryHandler extends PipelinedHandler {
         LOGGER.trace("Filename = {}", file.getFilename());
         LOGGER.trace("Content length = {}", file.getLength());
 
+        String contentType;
+
         if (file.getMetadata() != null && file.getMetadata().get("contentType") != null) {
-            response.getHeaders().put(Headers.CONTENT_TYPE, file.getMetadata().get("contentType").toString());
-        } else if (file.getMetadata() != null && file.getMetadata().get("contentType") != null) {
-            response.getHeaders().put(Headers.CONTENT_TYPE, file.getMetadata().get("contentType").toString());
+            contentType = file.getMetadata().get("contentType").toString();
         } else {
-            response.getHeaders().put(Headers.CONTENT_TYPE, APPLICATION_OCTET_STREAM);
+            contentType = APPLICATION_OCTET_STREAM;
         }
 
-        response.getHeaders().put(Headers.CONTENT_LENGTH, file.getLength());
+        response.getHeaders().put(Headers.ACCEPT_RANGES, "bytes");
 
         response.getHeaders().put(Headers.CONTENT_DISPOSITION, String.format("inline; filename=\"%s\"", extractFilename(file)));
 
@@ -183,15 +196,211 @@ public class GetFileBinaryHandler extends PipelinedHandler {
 
         ResponseHelper.injectEtagHeader(exchange, file.getMetadata());
 
-        response.setStatusCode(HttpStatus.SC_OK);
+        var ranges = requestedRanges(exchange, file);
+
+        if (ranges == null) {
+            // no Range header, unsupported range unit or If-Range not matching: send the whole file
+            response.getHeaders().put(Headers.CONTENT_TYPE, contentType);
+            response.getHeaders().put(Headers.CONTENT_LENGTH, file.getLength());
+            response.setStatusCode(HttpStatus.SC_OK);
+
+            response.setCustomSender(() -> {
+                if (request.getClientSession() != null) {
+                    gridFSBucket.downloadToStream(request.getClientSession(), file.getId(), exchange.getOutputStream());
+                } else {
+                    gridFSBucket.downloadToStream(file.getId(), exchange.getOutputStream());
+                }
+            });
+        } else if (ranges.isEmpty()) {
+            response.getHeaders().put(Headers.CONTENT_RANGE, "bytes */" + file.getLength());
+            response.setInError(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE, "Requested range not satisfiable");
+        } else if (ranges.size() == 1) {
+            var range = ranges.get(0);
+
+            response.getHeaders().put(Headers.CONTENT_TYPE, contentType);
+            response.getHeaders().put(Headers.CONTENT_RANGE, range.contentRange(file.getLength()));
+            response.getHeaders().put(Headers.CONTENT_LENGTH, range.length());
+            response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+
+            response.setCustomSender(() -> sendRange(request, gridFSBucket, file, range, exchange.getOutputStream()));
+        } else {
+            var boundary = new ObjectId().toHexString();
+            var parts = new ArrayList<byte[]>(ranges.size());
+            var end = String.format("\r\n--%s--\r\n", boundary).getBytes(StandardCharsets.ISO_8859_1);
+            long contentLength = end.length;
+
+            for (var range : ranges) {
+                var part = String.format("\r\n--%s\r\nContent-Type: %s\r\nContent-Range: %s\r\n\r\n", boundary, contentType, range.contentRange(file.getLength()))
+                    .getBytes(StandardCharsets.ISO_8859_1);
+                parts.add(part);
+                contentLength += part.length + range.length();
+            }
+
+            response.getHeaders().put(Headers.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+            response.getHeaders().put(Headers.CONTENT_LENGTH, contentLength);
+            response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+
+            response.setCustomSender(() -> {
+                var os = exchange.getOutputStream();
+
+                try {
+                    for (int i = 0; i < ranges.size(); i++) {
+                        os.write(parts.get(i));
+                        sendRange(request, gridFSBucket, file, ranges.get(i), os);
+                    }
+
+                    os.write(end);
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            });
+        }
+    }
+
+    /**
+     * copies the bytes of the range to the output stream; the download stream
+     * skips to the chunk that contains the first byte, without reading the
+     * previous ones
+     */
+    private static void sendRange(MongoRequest request, GridFSBucket gridFSBucket, GridFSFile file, Range range, OutputStream os) {
+        try (var ds = request.getClientSession() != null
+            ? gridFSBucket.openDownloadStream(request.getClientSession(), file.getId())
+            : gridFSBucket.openDownloadStream(file.getId())) {
+            ds.skip(range.start());
+
+            var buffer = new byte[Math.min(file.getChunkSize(), (int) Math.min(range.length(), Integer.MAX_VALUE))];
+            var remaining = range.length();
+
+            while (remaining > 0) {
+                var read = ds.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+
+                if (read < 0) {
+                    break;
+                }
+
+                os.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * @return the satisfiable ranges requested by the Range header, an empty
+     * list if none is satisfiable or null if the whole file must be sent
+     */
+    private static List<Range> requestedRanges(HttpServerExchange exchange, GridFSFile file) {
+        var range = exchange.getRequestHeaders().getFirst(Headers.RANGE);
+
+        if (range == null) {
+            return null;
+        }
+
+        var ifRange = exchange.getRequestHeaders().getFirst(Headers.IF_RANGE);
+
+        if (ifRange != null && !ifRangeMatches(ifRange, file)) {
+            return null;
+        }
+
+        return resolveRanges(range, file.getLength());
+    }
+
+    /**
+     * If-Range matches only the current etag with strong comparison; we don't
+     * send Last-Modified, so a date never matches
+     */
+    private static boolean ifRangeMatches(String ifRange, GridFSFile file) {
+        var etag = file.getMetadata() == null ? null : file.getMetadata().get("_etag");
+
+        if (etag == null || ifRange.startsWith("W/")) {
+            return false;
+        }
+
+        var _ifRange = ifRange.length() > 1 && ifRange.startsWith("\"") && ifRange.endsWith("\"")
+            ? ifRange.substring(1, ifRange.length() - 1)
+            : ifRange;
+
+        return _ifRange.equals(etag.toString());
+    }
 
-        response.setCustomSender(() -> {
-            if (request.getClientSession() != null) {
-                gridFSBucket.downloadToStream(request.getClientSession(), file.getId(), exchange.getOutputStream());
+    /**
+     * Overlapping and adjacent ranges are coalesced, so that the response never
+     * reads the same bytes of the file twice
+     *
+     * @param header the value of the Range header
+     * @param length the length of the file
+     * @return the satisfiable ranges sorted by start, an empty list if none is
+     * satisfiable or null if the header is not a valid bytes range or it
+     * requests more than MAX_RANGES ranges
+     */
+    static List<Range> resolveRanges(String header, long length) {
+        // ByteRange does not allow whitespace between the ranges
+        var byteRange = ByteRange.parse(header.replaceAll("\\s", ""));
+
+        if (byteRange == null || byteRange.getRanges() > MAX_RANGES) {
+            return null;
+        }
+
+        var ret = new ArrayList<Range>(byteRange.getRanges());
+
+        for (int i = 0; i < byteRange.getRanges(); i++) {
+            long start = byteRange.getStart(i);
+            long end = byteRange.getEnd(i);
+
+            if (start != -1 && end != -1 && end < start) {
+                // syntactically invalid, the Range header is ignored
+                return null;
+            } else if (start == -1) {
+                // suffix range, the last end bytes
+                if (end <= 0 || length == 0) {
+                    continue;
+                }
+
+                ret.add(new Range(Math.max(0, length - end), length - 1));
+            } else if (start < length) {
+                ret.add(new Range(start, end == -1 ? length - 1 : Math.min(end, length - 1)));
+            }
+        }
+
+        return coalesce(ret);
+    }
+
+    private static List<Range> coalesce(List<Range> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+
+        ranges.sort(Comparator.comparingLong(Range::start));
+
+        var ret = new ArrayList<Range>(ranges.size());
+        var current = ranges.get(0);
+
+        for (var range : ranges.subList(1, ranges.size())) {
+            if (range.start() <= current.end() + 1) {
+                current = new Range(current.start(), Math.max(current.end(), range.end()));
             } else {
-                gridFSBucket.downloadToStream(file.getId(), exchange.getOutputStream());
+                ret.add(current);
+                current = range;
             }
-        });
+        }
+
+        ret.add(current);
+
+        return ret;
+    }
+
+    /**
+     * a satisfiable byte range, inclusive
+     */
+    record Range(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+
+        String contentRange(long total) {
+            return "bytes " + start + "-" + end + "/" + total;
+        }
     }
 
     private String extractFilename(final GridFSFile dbsfile) {
@@ -85,7 +85,14 @@ public class PostBucketHandler extends PipelinedHandler {
         OperationResult result;
 
         try {
-            if (request.getFilePath() != null) {
+            if (request.getFileInputStream() != null) {
+                result = gridFs.createFile(
+                    request.rsOps(),
+                    request.getDBName(),
+                    request.getCollectionName(),
+                    metadata,
+                    request.getFileInputStream());
+            } else if (request.getFilePath() != null) {
                 result = gridFs.createFile(
                     request.rsOps(),
                     request.getDBName(),
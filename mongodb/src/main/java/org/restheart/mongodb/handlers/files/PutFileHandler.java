@@ -90,7 +90,18 @@ public class PutFileHandler extends PipelinedHandler {
         OperationResult result;
 
         try {
-            if (request.getFilePath() != null) {
+            if (request.getFileInputStream() != null) {
+                result = gridFs.upsertFile(
+                    request.rsOps(),
+                    request.getDBName(),
+                    request.getCollectionName(),
+                    metadata,
+                    request.getFileInputStream(),
+                    id,
+                    request.getFiltersDocument(),
+                    request.getETag(),
+                    request.isETagCheckRequired());
+            } else if (request.getFilePath() != null) {
                 result = gridFs.upsertFile(
                     request.rsOps(),
                     request.getDBName(),
@@ -27,6 +27,8 @@ import org.restheart.exchange.MongoResponse;
 import org.restheart.handlers.PipelinedHandler;
 import org.restheart.mongodb.db.sessions.Txn;
 import org.restheart.mongodb.db.sessions.TxnClientSessionFactory;
+import org.restheart.mongodb.db.sessions.TxnStates;
+import org.restheart.mongodb.db.sessions.TxnsUtils;
 import org.restheart.utils.HttpStatus;
 
 /**
@@ -61,13 +63,23 @@ public class DeleteTxnHandler extends PipelinedHandler {
             return;
         }
 
-        var cs = TxnClientSessionFactory.getInstance().getTxnClientSession(sid, request.rsOps());
+        var cs = TxnClientSessionFactory.getInstance().getTxnClientSession(sid, request.rsOps(), TxnsUtils.getTxnStatus(sid, request.getTxnId(), request.rsOps()));
 
         if (cs.getTxnServerStatus().getTxnId() != request.getTxnId() || cs.getTxnServerStatus().getStatus() != Txn.TransactionStatus.IN) {
+            // the local txn state might be stale, probe it on next request
+            TxnStates.invalidate(sid);
             response.setInError(HttpStatus.SC_NOT_ACCEPTABLE, "The given transaction is not in-progress");
         } else {
             cs.setMessageSentInCurrentTransaction(true);
-            cs.abortTransaction();
+
+            try {
+                cs.abortTransaction();
+            } catch (RuntimeException re) {
+                TxnStates.invalidate(sid);
+                throw re;
+            }
+
+            TxnStates.update(sid, new Txn(request.getTxnId(), Txn.TransactionStatus.ABORTED));
 
             response.setContentTypeAsJson();
             response.setStatusCode(HttpStatus.SC_NO_CONTENT);
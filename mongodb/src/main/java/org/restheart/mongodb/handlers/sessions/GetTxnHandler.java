@@ -69,7 +69,7 @@ public class GetTxnHandler extends PipelinedHandler {
             return;
         }
 
-        var txn = TxnsUtils.getTxnServerStatus(sid, request.rsOps());
+        var txn = TxnsUtils.getTxnStatus(sid, request.rsOps());
 
         if (txn.getStatus() == NONE) {
             response.setContent(new BsonDocument("currentTxn", new BsonNull()));
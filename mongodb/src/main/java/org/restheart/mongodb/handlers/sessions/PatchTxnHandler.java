@@ -27,6 +27,7 @@ import org.restheart.exchange.MongoResponse;
 import org.restheart.handlers.PipelinedHandler;
 import org.restheart.mongodb.db.sessions.Txn;
 import org.restheart.mongodb.db.sessions.TxnClientSessionFactory;
+import org.restheart.mongodb.db.sessions.TxnStates;
 import org.restheart.utils.HttpStatus;
 
 /**
@@ -75,7 +76,14 @@ public class PatchTxnHandler extends PipelinedHandler {
             cs.startTransaction();
         }
 
-        cs.commitTransaction();
+        try {
+            cs.commitTransaction();
+        } catch (RuntimeException re) {
+            TxnStates.invalidate(sid);
+            throw re;
+        }
+
+        TxnStates.update(sid, new Txn(txnId, Txn.TransactionStatus.COMMITTED));
 
         response.setContentTypeAsJson();
         response.setStatusCode(HttpStatus.SC_OK);
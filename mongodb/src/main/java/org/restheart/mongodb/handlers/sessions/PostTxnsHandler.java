@@ -32,6 +32,7 @@ import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.ABORTED;
 import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.COMMITTED;
 import static org.restheart.mongodb.db.sessions.Txn.TransactionStatus.NONE;
 import org.restheart.mongodb.db.sessions.TxnClientSessionFactory;
+import org.restheart.mongodb.db.sessions.TxnStates;
 import org.restheart.mongodb.db.sessions.TxnsUtils;
 import org.restheart.utils.HttpStatus;
 import static org.restheart.utils.RepresentationUtils.getReferenceLink;
@@ -70,7 +71,7 @@ public class PostTxnsHandler extends PipelinedHandler {
             return;
         }
 
-        var txn = TxnsUtils.getTxnServerStatus(sid, request.rsOps());
+        var txn = TxnsUtils.getTxnStatus(sid, request.rsOps());
 
         if (txn.getStatus() == ABORTED || txn.getStatus() == COMMITTED || txn.getStatus() == NONE) {
             var nextTxnId = txn.getStatus() == NONE ? txn.getTxnId() : txn.getTxnId() + 1;
@@ -83,8 +84,18 @@ public class PostTxnsHandler extends PipelinedHandler {
                 cs.startTransaction();
             }
 
+            // the server starts counting the transaction lifetime from now on
+            var started = System.nanoTime();
+
             // propagate the transaction
-            TxnsUtils.propagateSession(cs);
+            try {
+                TxnsUtils.propagateSession(cs);
+            } catch (RuntimeException re) {
+                TxnStates.invalidate(sid);
+                throw re;
+            }
+
+            TxnStates.start(sid, nextTxnId, started);
 
             response.getHeaders().add(HttpString.tryFromString("Location"), getReferenceLink(request.getMappedRequestUri(), new BsonString("" + nextTxnId)));
 
@@ -21,11 +21,19 @@
 package org.restheart.mongodb.interceptors;
 
 import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import org.bson.BsonDocument;
+import static org.restheart.exchange.ExchangeKeys.META_COLLNAME;
 import org.restheart.cache.Cache;
 import org.restheart.cache.CacheFactory;
 import org.restheart.cache.LoadingCache;
+import org.restheart.mongodb.ChangeStreamWatcher;
 import org.restheart.mongodb.MongoServiceConfiguration;
 import org.restheart.mongodb.db.Databases;
 
@@ -40,12 +48,14 @@ public class MetadataCachesSingleton {
     private static boolean initialized = false;
 
     private static long ttl = 1_000;
+    private static long refresh = 500;
     private static boolean enabled = false;
     private static final long MAX_CACHE_SIZE = 1_000;
 
     private final Databases dbs;
     private LoadingCache<String, BsonDocument> dbPropsCache = null;
     private LoadingCache<String, BsonDocument> collectionPropsCache = null;
+    private ChangeStreamWatcher watcher = null;
 
     /**
      *
@@ -53,6 +63,7 @@ public class MetadataCachesSingleton {
      */
     public static void init(MongoServiceConfiguration conf) {
         ttl = conf.getLocalCacheTtl();
+        refresh = conf.getLocalCacheRefresh();
         enabled = conf.isLocalCacheEnabled();
         initialized = true;
     }
@@ -84,9 +95,10 @@ public class MetadataCachesSingleton {
 
         if (enabled) {
             // no client session
-            this.dbPropsCache = CacheFactory.createLocalLoadingCache(MAX_CACHE_SIZE, Cache.EXPIRE_POLICY.AFTER_WRITE, ttl, (String key) -> dbs.getDatabaseProperties(Optional.empty(), Optional.empty(), key));
+            // hot entries are refreshed in background after refresh ms, serving the cached value meanwhile
+            this.dbPropsCache = CacheFactory.createLocalLoadingCache("db-props", MAX_CACHE_SIZE, Cache.EXPIRE_POLICY.AFTER_WRITE, ttl, refresh, (String key) -> dbs.getDatabaseProperties(Optional.empty(), Optional.empty(), key));
 
-            this.collectionPropsCache = CacheFactory.createLocalLoadingCache(MAX_CACHE_SIZE, Cache.EXPIRE_POLICY.AFTER_WRITE, ttl,
+            this.collectionPropsCache = CacheFactory.createLocalLoadingCache("collection-props", MAX_CACHE_SIZE, Cache.EXPIRE_POLICY.AFTER_WRITE, ttl, refresh,
                 key -> {
                     var dbNameAndCollectionName = key.split(SEPARATOR);
                     return this.dbs.getCollectionProperties(
@@ -195,6 +207,86 @@ public class MetadataCachesSingleton {
         }
     }
 
+    /**
+     * Watches the _properties collections of all dbs, and the drop and rename
+     * events, to invalidate the entries modified by any node of the cluster.
+     * Requires MongoDB running as a replica set.
+     *
+     * @param mclient
+     */
+    public synchronized void watch(MongoClient mclient) {
+        if (!enabled || watcher != null) {
+            return;
+        }
+
+        var pipeline = List.of(Aggregates.match(Filters.or(
+            Filters.eq("ns.coll", META_COLLNAME),
+            Filters.in("operationType", "drop", "dropDatabase", "rename"))));
+
+        this.watcher = ChangeStreamWatcher.start("metadata",
+            () -> mclient.watch(pipeline, BsonDocument.class),
+            this::invalidate,
+            () -> {
+                dbPropsCache.invalidateAll();
+                collectionPropsCache.invalidateAll();
+            });
+    }
+
+    private void invalidate(ChangeStreamDocument<BsonDocument> event) {
+        invalidate(event, (db, coll) -> {
+            if (coll == null) {
+                invalidateDb(db);
+            } else {
+                invalidateCollection(db, coll);
+            }
+        });
+    }
+
+    /**
+     * routes the change event to the cache entries to invalidate
+     *
+     * @param event the change event
+     * @param invalidator accepts the db name and the collection name, null
+     * if the entries of the whole db must be invalidated
+     */
+    static void invalidate(ChangeStreamDocument<BsonDocument> event, BiConsumer<String, String> invalidator) {
+        var ns = event.getNamespaceDocument();
+
+        if (ns == null || !ns.isString("db")) {
+            // e.g. invalidate events
+            return;
+        }
+
+        var db = ns.getString("db").getValue();
+        var coll = ns.isString("coll") ? ns.getString("coll").getValue() : null;
+
+        if (coll == null) {
+            // dropDatabase
+            invalidator.accept(db, null);
+        } else if (META_COLLNAME.equals(coll)) {
+            var id = event.getDocumentKey() == null ? null : event.getDocumentKey().get("_id");
+
+            if (id != null && id.isString() && id.asString().getValue().startsWith(META_COLLNAME + ".")) {
+                // _properties.<coll> document
+                invalidator.accept(db, id.asString().getValue().substring(META_COLLNAME.length() + 1));
+            } else {
+                // _properties document or the _properties collection itself
+                invalidator.accept(db, null);
+            }
+        } else {
+            // drop or rename of a collection
+            invalidator.accept(db, coll);
+        }
+
+        // rename also changes the target collection, possibly in another db
+        var to = event.getDestinationNamespaceDocument();
+
+        if (to != null && to.isString("db") && to.isString("coll")) {
+            var toColl = to.getString("coll").getValue();
+            invalidator.accept(to.getString("db").getValue(), META_COLLNAME.equals(toColl) ? null : toColl);
+        }
+    }
+
     private static class LocalCachesSingletonHolder {
         private static final MetadataCachesSingleton INSTANCE = new MetadataCachesSingleton();
 
@@ -38,7 +38,7 @@ import org.restheart.plugins.RegisterPlugin;
  *
  */
 @RegisterPlugin(name = "namespacesResponseFlattener",
-        description = "flattens the response of GET / and GET /db to a simple array of names for STANDARD representation format",
+        description = "flattens the response of GET / and GET /db to a simple array of names for STANDARD and BSON representation formats",
         interceptPoint = InterceptPoint.RESPONSE)
 public class NamespacesResponseFlattener implements MongoInterceptor {
     /**
@@ -63,7 +63,8 @@ public class NamespacesResponseFlattener implements MongoInterceptor {
     public boolean resolve(MongoRequest request, MongoResponse response) {
         return request.isHandledBy("mongo")
                 && (request.getRepresentationFormat()== REPRESENTATION_FORMAT.STANDARD
-                || request.getRepresentationFormat()== REPRESENTATION_FORMAT.S)
+                || request.getRepresentationFormat()== REPRESENTATION_FORMAT.S
+                || request.getRepresentationFormat()== REPRESENTATION_FORMAT.BSON)
                 && request.isGet()
                 && (request.isRoot() || request.isDb())
                 && response.getContent() != null
@@ -112,15 +112,17 @@ public class ProjectResponse implements MongoInterceptor {
 
     @Override
     public boolean resolve(MongoRequest request, MongoResponse response) {
-        if (!request.isHandledBy("mongo") || response.getContent() == null || !request.isGet()) {
+        if (!request.isHandledBy("mongo") || !request.isGet()) {
             return false;
         }
 
         var mongoPermission = MongoPermissions.of(request);
 
+        // check the content last, since reading it collects the documents of a streamed response
         if (mongoPermission != null) {
             return mongoPermission.getProjectResponse() != null
-                && !mongoPermission.getProjectResponse().isEmpty();
+                && !mongoPermission.getProjectResponse().isEmpty()
+                && response.getContent() != null;
         } else {
             return false;
         }
@@ -29,6 +29,10 @@ import org.bson.BsonDocument;
 import org.bson.BsonValue;
 import org.bson.Document;
 import org.bson.types.ObjectId;
+import org.restheart.exchange.Exchange;
+import org.restheart.exchange.MongoRequest;
+import org.restheart.exchange.ExchangeKeys.REPRESENTATION_FORMAT;
+import org.restheart.mongodb.MongoServiceConfiguration;
 import org.restheart.utils.HttpStatus;
 
 /**
@@ -189,6 +193,22 @@ public class ResponseHelper {
         };
     }
 
+    /**
+     * The documents are streamed if enabled by the stream-responses option or
+     * if the client accepts application/x-ndjson, and only if the
+     * representation format sends them as a plain array
+     *
+     * @param request
+     * @return true if the documents of the response can be streamed to the client
+     */
+    public static boolean isStreamable(MongoRequest request) {
+        var conf = MongoServiceConfiguration.get();
+        var rep = request.getRepresentationFormat();
+
+        return ((conf != null && conf.isStreamResponses()) || Exchange.acceptsNdjson(request.getExchange()))
+            && (rep == REPRESENTATION_FORMAT.STANDARD || rep == REPRESENTATION_FORMAT.S || rep == REPRESENTATION_FORMAT.BSON);
+    }
+
     /**
      *
      * @param code mongodb error code from MongoException.getCode()
@@ -0,0 +1,185 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class AggregationResultCacheTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AggregationResultCacheTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info("executing test {}", description.toString());
+        }
+    };
+
+    private static final AggregationResultCache.Options OPTIONS = new AggregationResultCache.Options(60_000, 100, 1_048_576);
+
+    private static final List<BsonDocument> STAGES = List.of(BsonDocument.parse("{ '$match': { 'a': 1 } }"));
+
+    private AggregationResultCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new AggregationResultCache();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        assertNull(cache.get("db", "coll", "aggr", OPTIONS, STAGES, false));
+
+        assertTrue(cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, cache.version("db", "coll"), docs(10)));
+
+        assertEquals(docs(10), cache.get("db", "coll", "aggr", OPTIONS, STAGES, false));
+        assertNull(cache.get("db", "coll", "aggr", OPTIONS, List.of(BsonDocument.parse("{ '$match': { 'a': 2 } }")), false));
+        assertNull(cache.get("db", "coll", "other", OPTIONS, STAGES, false));
+    }
+
+    @Test
+    public void testCachedResultIsNotShared() {
+        cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, cache.version("db", "coll"), docs(1));
+
+        cache.get("db", "coll", "aggr", OPTIONS, STAGES, false).get(0).put("n", new BsonString("modified"));
+
+        assertEquals(docs(1), cache.get("db", "coll", "aggr", OPTIONS, STAGES, false));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, cache.version("db", "coll"), docs(10));
+        cache.put("db", "other", "aggr", OPTIONS, STAGES, false, cache.version("db", "other"), docs(10));
+
+        cache.invalidateAll("db", "coll");
+
+        assertNull(cache.get("db", "coll", "aggr", OPTIONS, STAGES, false));
+        assertNotNull(cache.get("db", "other", "aggr", OPTIONS, STAGES, false));
+
+        cache.invalidateAll("db");
+
+        assertNull(cache.get("db", "other", "aggr", OPTIONS, STAGES, false));
+    }
+
+    @Test
+    public void testResultComputedBeforeWriteIsNotCached() {
+        var version = cache.version("db", "coll");
+
+        // a write happens while the aggregation is executing
+        cache.invalidateAll("db", "coll");
+
+        assertFalse(cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, version, docs(10)));
+        assertNull(cache.get("db", "coll", "aggr", OPTIONS, STAGES, false));
+    }
+
+    @Test
+    public void testResultExceedingMaxBytesIsNotCached() {
+        var options = new AggregationResultCache.Options(60_000, 100, 100);
+
+        assertFalse(cache.put("db", "coll", "aggr", options, STAGES, false, cache.version("db", "coll"), docs(100)));
+        assertNull(cache.get("db", "coll", "aggr", options, STAGES, false));
+    }
+
+    @Test
+    public void testChangedOptionsReplaceTheCache() {
+        cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, cache.version("db", "coll"), docs(10));
+
+        assertNull(cache.get("db", "coll", "aggr", new AggregationResultCache.Options(1_000, 10, 1_000), STAGES, false));
+    }
+
+    @Test
+    public void testWritingPipelinesAreNotCached() {
+        var out = List.of(STAGES.get(0), BsonDocument.parse("{ '$out': 'target' }"));
+        var merge = List.of(STAGES.get(0), BsonDocument.parse("{ '$merge': { 'into': 'target' } }"));
+
+        assertFalse(AggregationResultCache.cacheable(out));
+        assertFalse(AggregationResultCache.cacheable(merge));
+        assertTrue(AggregationResultCache.cacheable(STAGES));
+
+        assertFalse(cache.put("db", "coll", "aggr", OPTIONS, out, false, cache.version("db", "coll"), docs(1)));
+        assertFalse(cache.put("db", "coll", "aggr", OPTIONS, merge, false, cache.version("db", "coll"), docs(1)));
+        assertNull(cache.get("db", "coll", "aggr", OPTIONS, out, false));
+        assertNull(cache.get("db", "coll", "aggr", OPTIONS, merge, false));
+    }
+
+    @Test
+    public void testEvictDeletedCollection() {
+        cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, cache.version("db", "coll"), docs(10));
+        cache.put("db", "other", "aggr", OPTIONS, STAGES, false, cache.version("db", "other"), docs(10));
+
+        // an aggregation executing while the collection is deleted
+        var version = cache.version("db", "coll");
+
+        cache.evict("db", "coll");
+
+        assertNull(cache.get("db", "coll", "aggr", OPTIONS, STAGES, false));
+        assertNotNull(cache.get("db", "other", "aggr", OPTIONS, STAGES, false));
+        assertFalse(cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, version, docs(10)));
+    }
+
+    @Test
+    public void testEvictDeletedDatabase() {
+        // a collection never written, whose version is the initial one
+        var version = cache.version("db", "coll");
+        cache.invalidateAll("db", "other");
+
+        cache.evict("db");
+
+        assertFalse(cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, version, docs(10)));
+        assertNotEquals(version, cache.version("db", "coll"));
+        assertTrue(cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, cache.version("db", "coll"), docs(10)));
+    }
+
+    @Test
+    public void testEvictAggregations() {
+        cache.put("db", "coll", "aggr", OPTIONS, STAGES, false, cache.version("db", "coll"), docs(10));
+
+        // the collection properties, that define the aggregations, are updated
+        cache.evictAggregations("db", "coll");
+
+        assertNull(cache.get("db", "coll", "aggr", OPTIONS, STAGES, false));
+    }
+
+    private static List<BsonDocument> docs(int n) {
+        return IntStream.range(0, n)
+            .mapToObj(i -> new BsonDocument("n", new BsonInt32(i)))
+            .collect(Collectors.toList());
+    }
+}
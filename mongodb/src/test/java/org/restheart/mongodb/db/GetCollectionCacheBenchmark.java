@@ -0,0 +1,168 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.restheart.utils.Pair;
+
+/**
+ * Compares the lookup throughput of GetCollectionCache with the previous
+ * implementation, that scanned all the cache keys holding a global lock.
+ *
+ * run it with:
+ * mvn test-compile exec:java -Dexec.mainClass=org.restheart.mongodb.db.GetCollectionCacheBenchmark -Dexec.classpathScope=test
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class GetCollectionCacheBenchmark {
+    private static final int COLLECTIONS = 10;
+    private static final int FILTERS = 10;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({ "1000", "10000" })
+    public int entries;
+
+    private MongoClient client;
+    private MongoCollection<BsonDocument>[] colls;
+    private BsonDocument[] filters;
+    private final BsonDocument sort = BsonDocument.parse("{ '_id': -1 }");
+    private final List<BsonDocument> docs = IntStream.range(0, BATCH_SIZE).mapToObj(n -> new BsonDocument("n", new BsonInt32(n))).toList();
+
+    private GetCollectionCache indexed;
+    private LegacyGetCollectionCache legacy;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        // the client is never used to connect, it just provides the collections
+        client = MongoClients.create("mongodb://127.0.0.1:27017");
+        colls = IntStream.range(0, COLLECTIONS).mapToObj(n -> client.getDatabase("db").getCollection("coll" + n, BsonDocument.class)).toArray(MongoCollection[]::new);
+        filters = IntStream.range(0, FILTERS).mapToObj(n -> new BsonDocument("n", new BsonInt32(n))).toArray(BsonDocument[]::new);
+
+        indexed = new GetCollectionCache(entries, 0);
+        legacy = new LegacyGetCollectionCache(entries);
+
+        for (int n = 0; n < entries; n++) {
+            var key = key(n % COLLECTIONS, (n / COLLECTIONS) % FILTERS, n / (COLLECTIONS * FILTERS) * BATCH_SIZE, BATCH_SIZE, n);
+            indexed.put(key, docs);
+            legacy.put(key, docs);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public Object indexed() {
+        return indexed.find(randomKey());
+    }
+
+    @Benchmark
+    public Object legacy() {
+        return legacy.find(randomKey());
+    }
+
+    private GetCollectionCacheKey randomKey() {
+        var rnd = ThreadLocalRandom.current();
+        var slices = entries / (COLLECTIONS * FILTERS);
+        var from = rnd.nextInt(slices * BATCH_SIZE - 10);
+        return key(rnd.nextInt(COLLECTIONS), rnd.nextInt(FILTERS), from, 10, 0);
+    }
+
+    private GetCollectionCacheKey key(int coll, int filter, int from, int size, long cursorId) {
+        return new GetCollectionCacheKey(Optional.empty(), colls[coll], sort, filters[filter], null, null, from, from + size, cursorId, false);
+    }
+
+    /**
+     * the previous GetCollectionCache lookup logic
+     */
+    private static class LegacyGetCollectionCache {
+        private final Cache<GetCollectionCacheKey, List<BsonDocument>> cache;
+
+        LegacyGetCollectionCache(long size) {
+            this.cache = CacheFactory.createLocalCache(size, Cache.EXPIRE_POLICY.NEVER, 0);
+        }
+
+        synchronized void put(GetCollectionCacheKey key, List<BsonDocument> value) {
+            cache.put(key, value);
+        }
+
+        synchronized Pair<GetCollectionCacheKey, List<BsonDocument>> find(GetCollectionCacheKey requested) {
+            var _bestKey = cache.asMap().keySet().stream()
+                .filter(cached -> Objects.equals(cached.collection().getNamespace(), requested.collection().getNamespace())
+                    && Objects.equals(cached.filter(), requested.filter())
+                    && Objects.equals(cached.sort(), requested.sort())
+                    && Objects.equals(cached.keys(), requested.keys())
+                    && ((cached.from() <= requested.from() && cached.to() >= requested.to())
+                        || (cached.exhausted() && cached.from() <= requested.from())))
+                .findFirst();
+
+            if (_bestKey.isPresent()) {
+                var _cached = cache.get(_bestKey.get());
+                return _cached != null && _cached.isPresent() ? new Pair<>(_bestKey.get(), _cached.get()) : null;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GetCollectionCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
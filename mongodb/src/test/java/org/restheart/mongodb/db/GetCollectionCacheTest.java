@@ -0,0 +1,152 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class GetCollectionCacheTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GetCollectionCacheTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info("executing test {}", description.toString());
+        }
+    };
+
+    private static final BsonDocument SORT = BsonDocument.parse("{ '_id': 1 }");
+    private static final BsonDocument FILTER = BsonDocument.parse("{ 'a': 1 }");
+
+    private GetCollectionCache cache;
+    private MongoCollection<BsonDocument> coll;
+    private MongoCollection<BsonDocument> otherColl;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        cache = new GetCollectionCache(100, 0);
+        coll = mock(MongoCollection.class);
+        when(coll.getNamespace()).thenReturn(new MongoNamespace("db", "coll"));
+        otherColl = mock(MongoCollection.class);
+        when(otherColl.getNamespace()).thenReturn(new MongoNamespace("db", "other"));
+    }
+
+    @Test
+    public void testFindCoveringEntry() {
+        cache.put(key(coll, FILTER, 0, 100, 1, false), docs(0, 100));
+        cache.put(key(coll, FILTER, 100, 200, 2, false), docs(100, 200));
+
+        var match = cache.find(key(coll, FILTER, 120, 140, 0, false));
+        assertNotNull(match);
+        assertEquals(100, match.getKey().from());
+        assertEquals(new BsonInt32(120), match.getValue().get(20).get("n"));
+
+        assertNull(cache.find(key(coll, FILTER, 150, 250, 0, false)));
+    }
+
+    @Test
+    public void testFindPicksGreatestCoveringFrom() {
+        cache.put(key(coll, FILTER, 0, 1000, 1, false), docs(0, 1000));
+        cache.put(key(coll, FILTER, 500, 1000, 2, false), docs(500, 1000));
+
+        var match = cache.find(key(coll, FILTER, 600, 700, 0, false));
+        assertNotNull(match);
+        assertEquals(500, match.getKey().from());
+
+        // the entry starting at 500 does not cover 400
+        match = cache.find(key(coll, FILTER, 400, 500, 0, false));
+        assertNotNull(match);
+        assertEquals(0, match.getKey().from());
+    }
+
+    @Test
+    public void testFindExhaustedEntry() {
+        cache.put(key(coll, FILTER, 0, 50, 1, true), docs(0, 50));
+
+        var match = cache.find(key(coll, FILTER, 40, 140, 0, false));
+        assertNotNull(match);
+        assertTrue(match.getKey().exhausted());
+    }
+
+    @Test
+    public void testBuckets() {
+        cache.put(key(coll, FILTER, 0, 100, 1, false), docs(0, 100));
+
+        assertNull(cache.find(key(coll, new BsonDocument(), 0, 10, 0, false)));
+        assertNull(cache.find(key(otherColl, FILTER, 0, 10, 0, false)));
+        assertNull(cache.find(new GetCollectionCacheKey(Optional.empty(), coll, SORT, FILTER, null, BsonDocument.parse("{ 'a': 1 }"), 0, 10, 0, false)));
+        assertNotNull(cache.find(key(coll, FILTER, 0, 10, 0, false)));
+    }
+
+    @Test
+    public void testRemove() {
+        cache.put(key(coll, FILTER, 0, 100, 1, false), docs(0, 100));
+
+        assertNotNull(cache.remove(key(coll, FILTER, 10, 20, 0, false)));
+        assertNull(cache.find(key(coll, FILTER, 10, 20, 0, false)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        cache.put(key(coll, FILTER, 0, 100, 1, false), docs(0, 100));
+        cache.put(key(coll, new BsonDocument(), 0, 100, 2, false), docs(0, 100));
+        cache.put(key(otherColl, FILTER, 0, 100, 3, false), docs(0, 100));
+
+        cache.invalidateAll("db", "coll");
+
+        assertNull(cache.find(key(coll, FILTER, 0, 10, 0, false)));
+        assertNull(cache.find(key(coll, new BsonDocument(), 0, 10, 0, false)));
+        assertNotNull(cache.find(key(otherColl, FILTER, 0, 10, 0, false)));
+        assertEquals(1, cache.size());
+    }
+
+    private static GetCollectionCacheKey key(MongoCollection<BsonDocument> coll, BsonDocument filter, int from, int to, long cursorId, boolean exhausted) {
+        return new GetCollectionCacheKey(Optional.empty(), coll, SORT, filter, null, null, from, to, cursorId, exhausted);
+    }
+
+    private static List<BsonDocument> docs(int from, int to) {
+        return IntStream.range(from, to).mapToObj(n -> new BsonDocument("n", new BsonInt32(n))).toList();
+    }
+}
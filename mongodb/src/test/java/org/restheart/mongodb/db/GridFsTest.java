@@ -20,14 +20,48 @@
  */
 package org.restheart.mongodb.db;
 
+import com.mongodb.MongoException;
+import com.mongodb.MongoGridFSException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.TransactionBody;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSFindIterable;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import static com.mongodb.client.model.Updates.set;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Date;
+import java.util.Optional;
 import org.apache.tika.Tika;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestRule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
+import org.mockito.ArgumentCaptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,4 +119,174 @@ public class GridFsTest {
         assertEquals("mybucket.foo", GridFs.extractBucketName("mybucket.foo.files"));
         assertEquals("mybucket.foo.bar", GridFs.extractBucketName("mybucket.foo.bar.files"));
     }
+
+    @Test
+    public void testFailedUploadKeepsExistingFile() throws Exception {
+        var fileId = new BsonString("myfile");
+        var bucket = bucketWithFile(fileId);
+        @SuppressWarnings("unchecked")
+        MongoCollection<BsonDocument> files = mock(MongoCollection.class);
+        @SuppressWarnings("unchecked")
+        MongoCollection<BsonDocument> chunks = mock(MongoCollection.class);
+
+        // the client disconnects after sending part of the body
+        var truncated = new InputStream() {
+            private int sent = 0;
+
+            @Override
+            public int read() throws IOException {
+                if (sent++ < 1024) {
+                    return 'a';
+                } else {
+                    throw new IOException("connection reset by peer");
+                }
+            }
+        };
+
+        assertThrows(MongoGridFSException.class, () -> GridFs.upsertFile(bucket, files, chunks, Optional.empty(), new BsonDocument(), truncated, fileId, null, null, false));
+
+        verify(bucket, never()).delete(any(BsonValue.class));
+        verifyNoInteractions(files, chunks);
+    }
+
+    @Test
+    public void testUploadReplacesExistingFile() throws Exception {
+        var fileId = new BsonString("myfile");
+        var bucket = bucketWithFile(fileId);
+        var files = filesWithUpload(bucket, fileId);
+        @SuppressWarnings("unchecked")
+        MongoCollection<BsonDocument> chunks = mock(MongoCollection.class);
+
+        var result = GridFs.upsertFile(bucket, files, chunks, Optional.empty(), new BsonDocument(), new ByteArrayInputStream("new content".getBytes()), fileId, null, null, false);
+
+        assertEquals(200, result.getHttpCode());
+
+        var tmpId = uploadedId(bucket);
+        assertNotEquals("the new content is uploaded under a temporary id", fileId, tmpId);
+
+        var replaced = ArgumentCaptor.forClass(BsonDocument.class);
+        var backup = ArgumentCaptor.forClass(BsonDocument.class);
+
+        // the existing file is moved to the backup id before the new content takes its id
+        var order = inOrder(bucket, chunks, files);
+        order.verify(bucket).uploadFromStream(any(BsonValue.class), anyString(), any(InputStream.class), any(GridFSUploadOptions.class));
+        order.verify(files).insertOne(backup.capture());
+        order.verify(chunks).updateMany(Filters.eq("files_id", fileId), set("files_id", backup.getValue().get("_id")));
+        order.verify(chunks).updateMany(Filters.eq("files_id", tmpId), set("files_id", fileId));
+        order.verify(files).replaceOne(eq(Filters.eq("_id", fileId)), replaced.capture(), any(ReplaceOptions.class));
+        order.verify(chunks).deleteMany(Filters.eq("files_id", backup.getValue().get("_id")));
+        order.verify(files).deleteOne(Filters.eq("_id", backup.getValue().get("_id")));
+        order.verify(files).deleteOne(Filters.eq("_id", tmpId));
+
+        assertEquals(fileId, replaced.getValue().get("_id"));
+        assertEquals("new", replaced.getValue().getString("filename").getValue());
+        assertEquals("old", backup.getValue().getString("filename").getValue());
+        verify(bucket, never()).delete(any(BsonValue.class));
+    }
+
+    @Test
+    public void testFailedSwapRestoresExistingFile() throws Exception {
+        var fileId = new BsonString("myfile");
+        var bucket = bucketWithFile(fileId);
+        var files = filesWithUpload(bucket, fileId);
+        @SuppressWarnings("unchecked")
+        MongoCollection<BsonDocument> chunks = mock(MongoCollection.class);
+
+        when(files.replaceOne(any(Bson.class), any(BsonDocument.class), any(ReplaceOptions.class))).thenThrow(new MongoException("network error"));
+        when(chunks.countDocuments(any(Bson.class))).thenReturn(0l);
+
+        assertThrows(MongoException.class, () -> GridFs.upsertFile(bucket, files, chunks, Optional.empty(), new BsonDocument(), new ByteArrayInputStream("new content".getBytes()), fileId, null, null, false));
+
+        var tmpId = uploadedId(bucket);
+        var backup = ArgumentCaptor.forClass(BsonDocument.class);
+        verify(files).insertOne(backup.capture());
+        var backupId = backup.getValue().get("_id");
+
+        // the existing chunks get back their id and the temporary file is removed
+        var order = inOrder(chunks, files);
+        order.verify(chunks).updateMany(Filters.eq("files_id", backupId), set("files_id", fileId));
+        order.verify(files).deleteOne(Filters.eq("_id", backupId));
+        order.verify(files).deleteOne(Filters.eq("_id", tmpId));
+        order.verify(chunks).deleteMany(Filters.eq("files_id", tmpId));
+        verify(chunks, never()).deleteMany(Filters.eq("files_id", backupId));
+    }
+
+    @Test
+    public void testSwapInTransaction() throws Exception {
+        var fileId = new BsonString("myfile");
+        var bucket = bucketWithFile(fileId);
+        var files = filesWithUpload(bucket, fileId);
+        @SuppressWarnings("unchecked")
+        MongoCollection<BsonDocument> chunks = mock(MongoCollection.class);
+        var session = mock(ClientSession.class);
+
+        when(session.withTransaction(any())).thenAnswer(i -> i.<TransactionBody<?>>getArgument(0).execute());
+
+        var result = GridFs.upsertFile(bucket, files, chunks, Optional.of(session), new BsonDocument(), new ByteArrayInputStream("new content".getBytes()), fileId, null, null, false);
+
+        assertEquals(200, result.getHttpCode());
+
+        var tmpId = uploadedId(bucket);
+        var order = inOrder(session, chunks, files);
+        order.verify(session).withTransaction(any());
+        order.verify(chunks).deleteMany(session, Filters.eq("files_id", fileId));
+        order.verify(chunks).updateMany(session, Filters.eq("files_id", tmpId), set("files_id", fileId));
+        order.verify(files).replaceOne(eq(session), eq(Filters.eq("_id", fileId)), any(BsonDocument.class), any(ReplaceOptions.class));
+        order.verify(files).deleteOne(Filters.eq("_id", tmpId));
+
+        verify(files, never()).insertOne(any(BsonDocument.class));
+        verify(bucket, never()).delete(any(BsonValue.class));
+    }
+
+    /**
+     * @return a mocked files collection containing the file with the given id
+     * and the one uploaded to the bucket
+     */
+    @SuppressWarnings("unchecked")
+    private static MongoCollection<BsonDocument> filesWithUpload(GridFSBucket bucket, BsonValue fileId) {
+        MongoCollection<BsonDocument> files = mock(MongoCollection.class);
+        FindIterable<BsonDocument> found = mock(FindIterable.class);
+        FindIterable<BsonDocument> foundTmp = mock(FindIterable.class);
+
+        when(files.find(any(Bson.class))).thenReturn(foundTmp);
+        when(files.find(Filters.eq("_id", fileId))).thenReturn(found);
+        when(files.find(any(ClientSession.class), any(Bson.class))).thenReturn(foundTmp);
+        when(found.first()).thenAnswer(i -> new BsonDocument("_id", fileId).append("filename", new BsonString("old")));
+        when(foundTmp.first()).thenAnswer(i -> new BsonDocument("_id", uploadedId(bucket)).append("filename", new BsonString("new")));
+
+        return files;
+    }
+
+    private static BsonValue uploadedId(GridFSBucket bucket) {
+        var id = ArgumentCaptor.forClass(BsonValue.class);
+        verify(bucket).uploadFromStream(id.capture(), anyString(), any(InputStream.class), any(GridFSUploadOptions.class));
+        return id.getValue();
+    }
+
+    /**
+     * @return a mocked bucket containing the file with the given id, whose
+     * uploadFromStream reads the stream as GridFS does
+     */
+    @SuppressWarnings("unchecked")
+    private static GridFSBucket bucketWithFile(BsonValue fileId) {
+        var bucket = mock(GridFSBucket.class);
+        var found = mock(GridFSFindIterable.class);
+        MongoCursor<GridFSFile> cursor = mock(MongoCursor.class);
+
+        when(bucket.find(any(Bson.class))).thenReturn(found);
+        when(found.limit(1)).thenReturn(found);
+        when(found.iterator()).thenReturn(cursor);
+        when(cursor.tryNext()).thenReturn(new GridFSFile(fileId, "myfile", 11, 255 * 1024, new Date(), new Document()));
+
+        doAnswer(i -> {
+            try {
+                i.<InputStream>getArgument(2).readAllBytes();
+            } catch (IOException e) {
+                throw new MongoGridFSException("IOException when reading from the InputStream", e);
+            }
+            return null;
+        }).when(bucket).uploadFromStream(any(BsonValue.class), anyString(), any(InputStream.class), any(GridFSUploadOptions.class));
+
+        return bucket;
+    }
 }
@@ -0,0 +1,161 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.db.sessions;
+
+import com.codahale.metrics.SharedMetricRegistries;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class TxnStatesTest {
+    private static long count(String counter) {
+        return SharedMetricRegistries.getOrCreate(TxnStates.METRIC_REGISTRY_NAME).counter(counter).getCount();
+    }
+
+    @Test
+    public void testProbedStatusIsNotRecorded() {
+        var sid = UUID.randomUUID();
+        var probes = new AtomicInteger();
+        var probesBefore = count("probes");
+        var avoidedBefore = count("probes-avoided");
+
+        var txn = TxnStates.get(sid, _sid -> { probes.incrementAndGet(); return new Txn(3, Txn.TransactionStatus.COMMITTED); });
+        assertEquals(3, txn.getTxnId());
+        assertEquals(1, probes.get());
+
+        // another node might start a new transaction of the session
+        txn = TxnStates.get(sid, _sid -> { probes.incrementAndGet(); return new Txn(4, Txn.TransactionStatus.IN); });
+        assertEquals(Txn.TransactionStatus.IN, txn.getStatus());
+        assertEquals(2, probes.get());
+
+        assertEquals(probesBefore + 2, count("probes"));
+        assertEquals(avoidedBefore, count("probes-avoided"));
+    }
+
+    @Test
+    public void testRecordedStatusAvoidsProbes() {
+        var sid = UUID.randomUUID();
+        var avoidedBefore = count("probes-avoided");
+
+        TxnStates.update(sid, new Txn(3, Txn.TransactionStatus.COMMITTED));
+
+        var txn = TxnStates.get(sid, _sid -> { throw new AssertionError("unexpected probe"); });
+        assertEquals(Txn.TransactionStatus.COMMITTED, txn.getStatus());
+        assertEquals(avoidedBefore + 1, count("probes-avoided"));
+    }
+
+    @Test
+    public void testNewerTxnIdProbes() {
+        var sid = UUID.randomUUID();
+        var probes = new AtomicInteger();
+
+        TxnStates.update(sid, new Txn(3, Txn.TransactionStatus.COMMITTED));
+
+        // the request refers to the recorded transaction
+        var txn = TxnStates.get(sid, 3, _sid -> { throw new AssertionError("unexpected probe"); });
+        assertEquals(Txn.TransactionStatus.COMMITTED, txn.getStatus());
+
+        // the request refers to a transaction started by another node
+        txn = TxnStates.get(sid, 4, _sid -> { probes.incrementAndGet(); return new Txn(4, Txn.TransactionStatus.IN); });
+        assertEquals(1, probes.get());
+        assertEquals(4, txn.getTxnId());
+        assertEquals(Txn.TransactionStatus.IN, txn.getStatus());
+    }
+
+    @Test
+    public void testUpdate() {
+        var sid = UUID.randomUUID();
+
+        TxnStates.update(sid, new Txn(5, Txn.TransactionStatus.COMMITTED));
+
+        var txn = TxnStates.get(sid, _sid -> { throw new AssertionError("unexpected probe"); });
+        assertEquals(5, txn.getTxnId());
+        assertEquals(Txn.TransactionStatus.COMMITTED, txn.getStatus());
+    }
+
+    @Test
+    public void testInvalidate() {
+        var sid = UUID.randomUUID();
+        var probes = new AtomicInteger();
+
+        TxnStates.update(sid, new Txn(5, Txn.TransactionStatus.IN));
+        TxnStates.invalidate(sid);
+
+        var txn = TxnStates.get(sid, _sid -> { probes.incrementAndGet(); return new Txn(5, Txn.TransactionStatus.ABORTED); });
+        assertEquals(1, probes.get());
+        assertEquals(Txn.TransactionStatus.ABORTED, txn.getStatus());
+    }
+
+    @Test
+    public void testProbedInIsNotRecorded() {
+        var sid = UUID.randomUUID();
+        var probes = new AtomicInteger();
+
+        TxnStates.get(sid, _sid -> { probes.incrementAndGet(); return new Txn(3, Txn.TransactionStatus.IN); });
+        TxnStates.get(sid, _sid -> { probes.incrementAndGet(); return new Txn(3, Txn.TransactionStatus.IN); });
+
+        assertEquals("the start of a probed transaction is unknown", 2, probes.get());
+    }
+
+    @Test
+    public void testInExpiresRelativeToStart() {
+        var sid = UUID.randomUUID();
+        var probes = new AtomicInteger();
+        var started = System.nanoTime();
+        var ttl = TimeUnit.MILLISECONDS.toNanos(TxnStates.TTL);
+
+        TxnStates.start(sid, 7, started);
+
+        // operations in the transaction do not extend its lifetime
+        TxnStates.update(sid, new Txn(7, Txn.TransactionStatus.IN), started + ttl / 2);
+        TxnStates.update(sid, new Txn(7, Txn.TransactionStatus.IN), started + ttl - 1);
+
+        var txn = TxnStates.get(sid, -1, _sid -> { probes.incrementAndGet(); return new Txn(7, Txn.TransactionStatus.ABORTED); }, started + ttl - 1);
+        assertEquals(Txn.TransactionStatus.IN, txn.getStatus());
+        assertEquals(0, probes.get());
+
+        txn = TxnStates.get(sid, -1, _sid -> { probes.incrementAndGet(); return new Txn(7, Txn.TransactionStatus.ABORTED); }, started + ttl);
+        assertEquals(Txn.TransactionStatus.ABORTED, txn.getStatus());
+        assertEquals(1, probes.get());
+    }
+
+    @Test
+    public void testUpdateInOfTxnNotStartedByThisNode() {
+        var sid = UUID.randomUUID();
+        var probes = new AtomicInteger();
+
+        TxnStates.update(sid, new Txn(9, Txn.TransactionStatus.IN));
+        TxnStates.get(sid, _sid -> { probes.incrementAndGet(); return new Txn(9, Txn.TransactionStatus.IN); });
+        assertEquals(1, probes.get());
+
+        // a different transaction of the session
+        TxnStates.start(sid, 9, System.nanoTime());
+        TxnStates.update(sid, new Txn(10, Txn.TransactionStatus.IN));
+        TxnStates.get(sid, _sid -> { probes.incrementAndGet(); return new Txn(10, Txn.TransactionStatus.IN); });
+        assertEquals(2, probes.get());
+    }
+}
@@ -0,0 +1,187 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.exchange;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class MultipartStreamTest {
+    private static final String BOUNDARY = "----restheartBoundary7MA4YWxkTrZu0gW";
+
+    private static byte[] body(byte[] file, String... fields) throws IOException {
+        var out = new ByteArrayOutputStream();
+
+        for (var i = 0; i < fields.length; i += 2) {
+            out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + fields[i] + "\"\r\n\r\n" + fields[i+1] + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (file != null) {
+            out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\nContent-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(file);
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"trailing\"\r\n\r\nignored\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return out.toByteArray();
+    }
+
+    /**
+     * a stream that returns at most 1000 bytes per read, like a network channel
+     */
+    private static InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1000));
+            }
+        };
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testFieldsAndFileContent() throws IOException {
+        var file = randomBytes(5 * MultipartStream.CHUNK_SIZE + 123);
+        var ms = new MultipartStream(trickle(body(file, "properties", "{\"a\":1}", "other", "x")), BOUNDARY, null);
+
+        assertTrue(ms.readFields());
+        assertEquals("{\"a\":1}", ms.fields().get("properties"));
+        assertEquals("x", ms.fields().get("other"));
+        assertEquals("file", ms.fileField());
+        assertEquals("data.bin", ms.fileName());
+        assertArrayEquals(file, ms.fileInputStream().readAllBytes());
+        assertFalse(ms.fields().containsKey("trailing"));
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        var ms = new MultipartStream(trickle(body(new byte[0], "properties", "{}")), BOUNDARY, null);
+
+        assertTrue(ms.readFields());
+        assertEquals(-1, ms.fileInputStream().read());
+    }
+
+    @Test
+    public void testNoFilePart() throws IOException {
+        var ms = new MultipartStream(trickle(body(null, "properties", "{}")), BOUNDARY, null);
+
+        assertFalse(ms.readFields());
+    }
+
+    @Test
+    public void testFileIsReadOnDemand() throws IOException {
+        var file = randomBytes(100 * MultipartStream.CHUNK_SIZE);
+        var bytes = body(file);
+        var body = new ByteArrayInputStream(bytes);
+        var ms = new MultipartStream(body, BOUNDARY, null);
+
+        assertTrue(ms.readFields());
+        assertTrue(bytes.length - body.available() <= MultipartStream.CHUNK_SIZE);
+
+        var in = ms.fileInputStream();
+        assertEquals(1024, in.readNBytes(1024).length);
+        assertTrue(bytes.length - body.available() <= 2 * MultipartStream.CHUNK_SIZE);
+    }
+
+    @Test
+    public void testTruncatedBody() throws IOException {
+        var bytes = body(randomBytes(3 * MultipartStream.CHUNK_SIZE));
+        var truncated = new byte[2 * MultipartStream.CHUNK_SIZE];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        var ms = new MultipartStream(new ByteArrayInputStream(truncated), BOUNDARY, null);
+
+        assertTrue(ms.readFields());
+        assertThrows(IOException.class, () -> ms.fileInputStream().readAllBytes());
+    }
+
+    @Test
+    public void testFieldTooLarge() throws IOException {
+        var ms = new MultipartStream(trickle(body(new byte[1], "properties", "x".repeat(MultipartStream.MAX_FIELD_SIZE + 1))), BOUNDARY, null);
+
+        assertThrows(MultipartStream.LimitExceededException.class, () -> ms.readFields());
+    }
+
+    @Test
+    public void testTooManyFields() throws IOException {
+        var fields = new String[2 * (MultipartStream.MAX_FIELDS + 1)];
+
+        for (var i = 0; i < fields.length; i += 2) {
+            fields[i] = "f" + i;
+            fields[i + 1] = "";
+        }
+
+        var ms = new MultipartStream(trickle(body(new byte[1], fields)), BOUNDARY, null);
+
+        assertThrows(MultipartStream.LimitExceededException.class, () -> ms.readFields());
+    }
+
+    @Test
+    public void testFieldsTooLarge() throws IOException {
+        var n = MultipartStream.MAX_FIELDS_SIZE / MultipartStream.MAX_FIELD_SIZE + 1;
+        var fields = new String[2 * n];
+
+        for (var i = 0; i < fields.length; i += 2) {
+            fields[i] = "f" + i;
+            fields[i + 1] = "x".repeat(MultipartStream.MAX_FIELD_SIZE);
+        }
+
+        var ms = new MultipartStream(trickle(body(new byte[1], fields)), BOUNDARY, null);
+
+        assertThrows(MultipartStream.LimitExceededException.class, () -> ms.readFields());
+    }
+
+    @Test
+    public void testFieldsWithinLimits() throws IOException {
+        var fields = new String[2 * MultipartStream.MAX_FIELDS];
+
+        for (var i = 0; i < fields.length; i += 2) {
+            fields[i] = "f" + i;
+            fields[i + 1] = "v";
+        }
+
+        var ms = new MultipartStream(trickle(body(new byte[1], fields)), BOUNDARY, null);
+
+        assertTrue(ms.readFields());
+        assertEquals(MultipartStream.MAX_FIELDS, ms.fields().size());
+    }
+}
@@ -0,0 +1,98 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.json.JsonMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restheart.exchange.MongoRequest;
+import org.restheart.mongodb.RHMongoClients;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.reactivestreams.client.MongoClient;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChangeStreamSubscriberTest {
+    private final ChangeStreamsRegistry registry = ChangeStreamsRegistry.getInstance();
+    private final WebSocketSessionsRegistry sessions = WebSocketSessionsRegistry.getInstance();
+
+    private final SessionKey resumingKey = new SessionKey("/db/coll/_streams/subscriber-test-resuming", new BsonDocument(), JsonMode.RELAXED, new BsonDocument("_data", new BsonString("00")));
+    private final SessionKey otherKey = new SessionKey("/db/coll/_streams/subscriber-test-other", new BsonDocument(), JsonMode.RELAXED);
+    private final ChangeStreamWebSocketSession resumingSession = mock(ChangeStreamWebSocketSession.class);
+    private final ChangeStreamWebSocketSession otherSession = mock(ChangeStreamWebSocketSession.class);
+
+    @Before
+    public void setUp() {
+        RHMongoClients.setClients(null, mock(MongoClient.class, RETURNS_DEEP_STUBS));
+    }
+
+    @After
+    public void tearDown() {
+        sessions.remove(resumingKey, resumingSession);
+        sessions.remove(otherKey, otherSession);
+        registry.remove(resumingKey);
+        registry.remove(otherKey);
+        RHMongoClients.setClients(null, null);
+    }
+
+    @Test
+    public void testErrorClosesOnlyTheSessionsOfTheStream() throws Exception {
+        sessions.add(resumingKey, resumingSession);
+        sessions.add(otherKey, otherSession);
+
+        // two streams on the same collection, one resuming from a client resume token
+        var resuming = registry.attach(new StreamKey("db", "coll", List.of(), resumingKey.getResumeToken()), resumingKey, sessionInfo());
+        registry.attach(new StreamKey("db", "coll", List.of(), null), otherKey, sessionInfo());
+
+        // the stream fails before receiving any event, e.g. the resume token is not valid
+        resuming.onError(new MongoCommandException(BsonDocument.parse("{ 'ok': 0, 'code': 260, 'errmsg': 'invalid resume token' }"), new ServerAddress()));
+
+        verify(resumingSession).close();
+        verify(otherSession, never()).close();
+        assertFalse(registry.containsKey(resumingKey));
+        assertTrue(registry.containsKey(otherKey));
+    }
+
+    private static SessionInfo sessionInfo() {
+        var request = mock(MongoRequest.class);
+        when(request.getDBName()).thenReturn("db");
+        when(request.getCollectionName()).thenReturn("coll");
+        when(request.getChangeStreamOperation()).thenReturn("s");
+        return new SessionInfo(request);
+    }
+}
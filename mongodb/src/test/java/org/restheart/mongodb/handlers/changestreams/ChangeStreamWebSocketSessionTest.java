@@ -0,0 +1,98 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.json.JsonMode;
+import org.junit.Test;
+import org.restheart.mongodb.MongoServiceConfiguration.CHANGE_STREAMS_OVERFLOW_POLICY;
+
+/**
+ * Tests the overflow policies of the outbound queue of ChangeStreamWebSocketSession
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChangeStreamWebSocketSessionTest {
+    private static final SessionKey SESSION_KEY = new SessionKey("/db/coll/_streams/s", new BsonDocument(), JsonMode.RELAXED);
+
+    @Test
+    public void testDropOldest() {
+        var n1 = notification("1", 1);
+        var n2 = notification("2", 2);
+        var queue = queue(n1, n2);
+
+        assertTrue(ChangeStreamWebSocketSession.overflow(queue, CHANGE_STREAMS_OVERFLOW_POLICY.DROP_OLDEST, notification("3", 3)));
+        assertEquals(List.of(n2), List.copyOf(queue));
+    }
+
+    @Test
+    public void testCoalesce() {
+        var n1 = notification("1", 1);
+        var n2 = notification("2", 2);
+        var n3 = notification("3", 1);
+        var queue = queue(n1, n2, n3);
+
+        // all the queued notifications of the same document are removed
+        assertTrue(ChangeStreamWebSocketSession.overflow(queue, CHANGE_STREAMS_OVERFLOW_POLICY.COALESCE, notification("4", 1)));
+        assertEquals(List.of(n2), List.copyOf(queue));
+    }
+
+    @Test
+    public void testCoalesceWithoutQueuedNotificationsOfSameDocument() {
+        var n1 = notification("1", 1);
+        var n2 = notification("2", 2);
+        var queue = queue(n1, n2);
+
+        // falls back to drop oldest
+        assertTrue(ChangeStreamWebSocketSession.overflow(queue, CHANGE_STREAMS_OVERFLOW_POLICY.COALESCE, notification("3", 3)));
+        assertEquals(List.of(n2), List.copyOf(queue));
+
+        // notifications without document key
+        assertTrue(ChangeStreamWebSocketSession.overflow(queue, CHANGE_STREAMS_OVERFLOW_POLICY.COALESCE, new ChangeStreamNotification(SESSION_KEY, "4")));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDisconnect() {
+        var n1 = notification("1", 1);
+        var n2 = notification("2", 2);
+        var queue = queue(n1, n2);
+
+        assertFalse(ChangeStreamWebSocketSession.overflow(queue, CHANGE_STREAMS_OVERFLOW_POLICY.DISCONNECT, notification("3", 3)));
+        assertEquals(List.of(n1, n2), List.copyOf(queue));
+    }
+
+    private static ChangeStreamNotification notification(String message, int id) {
+        return new ChangeStreamNotification(SESSION_KEY, message, new BsonDocument("_id", new BsonInt32(id)));
+    }
+
+    private static ArrayDeque<ChangeStreamNotification> queue(ChangeStreamNotification... notifications) {
+        return new ArrayDeque<>(List.of(notifications));
+    }
+}
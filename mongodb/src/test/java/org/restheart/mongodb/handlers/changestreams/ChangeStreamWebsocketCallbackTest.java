@@ -0,0 +1,150 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restheart.exchange.MongoRequest;
+import org.restheart.mongodb.RHMongoClients;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.reactivestreams.client.MongoClient;
+
+import io.undertow.websockets.core.WebSocketChannel;
+import io.undertow.websockets.spi.WebSocketHttpExchange;
+
+/**
+ * Tests attaching the session keys of new websocket connections to the change streams
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChangeStreamWebsocketCallbackTest {
+    private static final StreamKey STREAM_KEY = new StreamKey("db", "coll", List.of(), null);
+
+    private final Map<SessionKey, ChangeStreamWebSocketSession> sessions = new HashMap<>();
+    private final ChangeStreamWebsocketCallback callback = new ChangeStreamWebsocketCallback() {
+        @Override
+        ChangeStreamWebSocketSession createSession(WebSocketChannel channel, SessionKey sessionKey, SessionInfo info) {
+            var session = mock(ChangeStreamWebSocketSession.class);
+            sessions.put(sessionKey, session);
+            return session;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        RHMongoClients.setClients(null, mock(MongoClient.class, RETURNS_DEEP_STUBS));
+    }
+
+    @After
+    public void tearDown() {
+        sessions.forEach((key, session) -> {
+            WebSocketSessionsRegistry.getInstance().remove(key, session);
+            ChangeStreamsRegistry.getInstance().remove(key);
+        });
+
+        RHMongoClients.setClients(null, null);
+    }
+
+    @Test
+    public void testEventBeforeHandshakeCompletes() {
+        var registry = ChangeStreamsRegistry.getInstance();
+
+        // a client is watching the stream
+        var exchange0 = exchange("/db/coll/_streams/callback-test-0");
+        var key0 = new SessionKey(exchange0);
+        callback.onConnect(exchange0, mock(WebSocketChannel.class));
+        var subscriber = registry.get(key0).getSubscriber();
+
+        // the handshake of another client watching the same stream is in progress
+        var exchange1 = exchange("/db/coll/_streams/callback-test-1");
+        var key1 = new SessionKey(exchange1);
+
+        subscriber.onNext(event(1));
+
+        verify(sessions.get(key0), times(1)).send(any());
+
+        // the handshake completes
+        callback.onConnect(exchange1, mock(WebSocketChannel.class));
+
+        assertSame(subscriber, registry.get(key1).getSubscriber());
+        assertTrue(subscriber.getSessionKeys().contains(key1));
+
+        subscriber.onNext(event(2));
+
+        // the new client receives the events after the connection
+        verify(sessions.get(key0), times(2)).send(any());
+        verify(sessions.get(key1), times(1)).send(any());
+        assertTrue(registry.containsKey(key1));
+    }
+
+    @Test
+    public void testSessionRegisteredBeforeAttaching() throws Exception {
+        var exchange = exchange("/db/coll/_streams/callback-test-2");
+        var key = new SessionKey(exchange);
+
+        callback.onConnect(exchange, mock(WebSocketChannel.class));
+
+        var subscriber = ChangeStreamsRegistry.getInstance().get(key).getSubscriber();
+        subscriber.onNext(event(1));
+
+        verify(sessions.get(key)).send(any());
+        verify(sessions.get(key), never()).close();
+        assertTrue(ChangeStreamsRegistry.getInstance().containsKey(key));
+    }
+
+    private static WebSocketHttpExchange exchange(String uri) {
+        var request = mock(MongoRequest.class);
+        when(request.getDBName()).thenReturn("db");
+        when(request.getCollectionName()).thenReturn("coll");
+        when(request.getChangeStreamOperation()).thenReturn("s");
+        var info = new SessionInfo(request);
+
+        var exchange = mock(WebSocketHttpExchange.class);
+        when(exchange.getQueryString()).thenReturn("");
+        when(exchange.getRequestURI()).thenReturn(uri);
+        when(exchange.getAttachment(GetChangeStreamHandler.STREAM_KEY_ATTACHMENT_KEY)).thenReturn(STREAM_KEY);
+        when(exchange.getAttachment(GetChangeStreamHandler.SESSION_INFO_ATTACHMENT_KEY)).thenReturn(info);
+
+        return exchange;
+    }
+
+    private static ChangeStreamDocument<BsonDocument> event(int id) {
+        return new ChangeStreamDocument<>("insert", null, null, null, null, null, new BsonDocument("_id", new BsonInt32(id)), null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,188 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.bson.json.JsonMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import org.restheart.exchange.MongoRequest;
+import org.restheart.mongodb.RHMongoClients;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+
+/**
+ * Tests sharing of change streams between session keys
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ChangeStreamsRegistryTest {
+    private static final StreamKey STREAM_KEY = new StreamKey("db", "coll", List.of(BsonDocument.parse("{ '$match': { 'a': 1 } }")), null);
+
+    private MongoClient mclientReactive;
+    private ChangeStreamsRegistry registry;
+
+    @Before
+    public void setUp() {
+        this.mclientReactive = mock(MongoClient.class, RETURNS_DEEP_STUBS);
+        RHMongoClients.setClients(null, mclientReactive);
+        this.registry = new ChangeStreamsRegistry();
+    }
+
+    @After
+    public void tearDown() {
+        RHMongoClients.setClients(null, null);
+    }
+
+    @Test
+    public void testSessionKeysShareStream() {
+        var key1 = sessionKey("/db/coll/_streams/s?avars={'a':1}");
+        var key2 = sessionKey("/db/coll/_streams/s?avars={'a':1}&other");
+        var info1 = sessionInfo();
+        var info2 = sessionInfo();
+
+        var subscriber1 = registry.attach(STREAM_KEY, key1, info1);
+        var subscriber2 = registry.attach(STREAM_KEY, key2, info2);
+
+        assertSame(subscriber1, subscriber2);
+        assertSame(subscriber1, info1.getSubscriber());
+        assertSame(subscriber1, info2.getSubscriber());
+        assertEquals(1, registry.streamsCount());
+        assertTrue(subscriber1.getSessionKeys().containsAll(List.of(key1, key2)));
+        // a single MongoDB change stream is opened
+        verify(mclientReactive, times(1)).getDatabase("db");
+
+        // a different pipeline opens another stream
+        var otherStreamKey = new StreamKey("db", "coll", List.of(BsonDocument.parse("{ '$match': { 'a': 2 } }")), null);
+        var subscriber3 = registry.attach(otherStreamKey, sessionKey("/db/coll/_streams/s?avars={'a':2}"), sessionInfo());
+
+        assertNotSame(subscriber1, subscriber3);
+        assertEquals(2, registry.streamsCount());
+    }
+
+    @Test
+    public void testStreamStoppedWhenLastSessionKeyRemoved() {
+        var key1 = sessionKey("/db/coll/_streams/s?1");
+        var key2 = sessionKey("/db/coll/_streams/s?2");
+
+        var subscriber = registry.attach(STREAM_KEY, key1, sessionInfo());
+        registry.attach(STREAM_KEY, key2, sessionInfo());
+
+        var subscription = mock(Subscription.class);
+        subscriber.onSubscribe(subscription);
+        verify(subscription).request(anyLong());
+
+        registry.remove(key1);
+        verify(subscription, never()).cancel();
+        assertEquals(1, registry.streamsCount());
+        assertFalse(registry.containsKey(key1));
+
+        registry.remove(key2);
+        verify(subscription).cancel();
+        assertEquals(0, registry.streamsCount());
+        assertTrue(subscriber.getSessionKeys().isEmpty());
+    }
+
+    @Test
+    public void testReplaceStream() {
+        var key = sessionKey("/db/coll/_streams/s");
+        var info = sessionInfo();
+        var oldSubscriber = registry.attach(STREAM_KEY, key, info);
+
+        var newSubscriber = newSubscriber(oldSubscriber);
+
+        assertTrue(registry.replaceStream(STREAM_KEY, oldSubscriber, newSubscriber));
+        assertSame(newSubscriber, info.getSubscriber());
+        assertEquals(1, registry.streamsCount());
+        verify(newSubscriber).start();
+        verify(newSubscriber, never()).stop();
+    }
+
+    @Test
+    public void testReplaceStreamOfRemovedStream() {
+        var key = sessionKey("/db/coll/_streams/s");
+        var oldSubscriber = registry.attach(STREAM_KEY, key, sessionInfo());
+
+        registry.remove(key);
+
+        var newSubscriber = newSubscriber(oldSubscriber);
+
+        // the stream has been closed meanwhile, the new subscriber must not leak
+        assertFalse(registry.replaceStream(STREAM_KEY, oldSubscriber, newSubscriber));
+        assertEquals(0, registry.streamsCount());
+        verify(newSubscriber, never()).start();
+        verify(newSubscriber).stop();
+    }
+
+    @Test
+    public void testReplaceStreamAlreadyReplaced() {
+        var key = sessionKey("/db/coll/_streams/s");
+        var info = sessionInfo();
+        var oldSubscriber = registry.attach(STREAM_KEY, key, info);
+
+        var winner = newSubscriber(oldSubscriber);
+        var loser = newSubscriber(oldSubscriber);
+
+        assertTrue(registry.replaceStream(STREAM_KEY, oldSubscriber, winner));
+        assertFalse(registry.replaceStream(STREAM_KEY, oldSubscriber, loser));
+
+        assertSame(winner, info.getSubscriber());
+        verify(winner).start();
+        verify(loser, never()).start();
+        verify(loser).stop();
+    }
+
+    private static ChangeStreamSubscriber newSubscriber(ChangeStreamSubscriber oldSubscriber) {
+        var newSubscriber = mock(ChangeStreamSubscriber.class);
+        when(newSubscriber.getSessionKeys()).thenReturn(oldSubscriber.getSessionKeys());
+        when(newSubscriber.getStreamKey()).thenReturn(oldSubscriber.getStreamKey());
+        return newSubscriber;
+    }
+
+    private static SessionKey sessionKey(String url) {
+        return new SessionKey(url, new BsonDocument(), JsonMode.RELAXED);
+    }
+
+    private static SessionInfo sessionInfo() {
+        var request = mock(MongoRequest.class);
+        when(request.getDBName()).thenReturn("db");
+        when(request.getCollectionName()).thenReturn("coll");
+        when(request.getChangeStreamOperation()).thenReturn("s");
+        return new SessionInfo(request);
+    }
+}
@@ -0,0 +1,62 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.changestreams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.json.JsonParseException;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class GetChangeStreamHandlerTest {
+    private static final String DATA = "8263A0B8F7000000012B022C0100296E5A1004";
+
+    @Test
+    public void testParseResumeToken() {
+        var expected = new BsonDocument("_data", new BsonString(DATA));
+
+        assertEquals(expected, GetChangeStreamHandler.parseResumeToken(DATA));
+        assertEquals(expected, GetChangeStreamHandler.parseResumeToken(" " + DATA + " "));
+        assertEquals(expected, GetChangeStreamHandler.parseResumeToken("{ \"_data\": \"" + DATA + "\" }"));
+    }
+
+    @Test
+    public void testInvalidResumeToken() {
+        // not hex
+        assertThrows(JsonParseException.class, () -> GetChangeStreamHandler.parseResumeToken("not-a-token"));
+        assertThrows(JsonParseException.class, () -> GetChangeStreamHandler.parseResumeToken("{ \"_data\": \"xyz0\" }"));
+        // odd length
+        assertThrows(JsonParseException.class, () -> GetChangeStreamHandler.parseResumeToken(DATA + "0"));
+        // not a string
+        assertThrows(JsonParseException.class, () -> GetChangeStreamHandler.parseResumeToken("{ \"_data\": 1 }"));
+        // missing or additional fields
+        assertThrows(JsonParseException.class, () -> GetChangeStreamHandler.parseResumeToken("{ \"data\": \"" + DATA + "\" }"));
+        assertThrows(JsonParseException.class, () -> GetChangeStreamHandler.parseResumeToken("{ \"_data\": \"" + DATA + "\", \"a\": 1 }"));
+        // not json
+        assertThrows(JsonParseException.class, () -> GetChangeStreamHandler.parseResumeToken("{ \"_data\": "));
+    }
+}
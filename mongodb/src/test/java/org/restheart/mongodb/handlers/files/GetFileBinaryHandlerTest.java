@@ -0,0 +1,89 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.handlers.files;
+
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.restheart.mongodb.handlers.files.GetFileBinaryHandler.Range;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class GetFileBinaryHandlerTest {
+
+    @Test
+    public void testSingleRange() {
+        assertEquals(List.of(new Range(0, 99)), GetFileBinaryHandler.resolveRanges("bytes=0-99", 1000));
+        assertEquals(List.of(new Range(500, 999)), GetFileBinaryHandler.resolveRanges("bytes=500-", 1000));
+        assertEquals(List.of(new Range(900, 999)), GetFileBinaryHandler.resolveRanges("bytes=-100", 1000));
+    }
+
+    @Test
+    public void testRangeClampedToLength() {
+        assertEquals(List.of(new Range(900, 999)), GetFileBinaryHandler.resolveRanges("bytes=900-5000", 1000));
+        assertEquals(List.of(new Range(0, 999)), GetFileBinaryHandler.resolveRanges("bytes=-5000", 1000));
+    }
+
+    @Test
+    public void testMultipleRanges() {
+        assertEquals(List.of(new Range(0, 9), new Range(100, 199), new Range(990, 999)),
+            GetFileBinaryHandler.resolveRanges("bytes=0-9, 100-199, -10", 1000));
+    }
+
+    @Test
+    public void testUnsatisfiableRanges() {
+        assertEquals(List.of(), GetFileBinaryHandler.resolveRanges("bytes=1000-", 1000));
+        assertEquals(List.of(new Range(0, 9)), GetFileBinaryHandler.resolveRanges("bytes=0-9,2000-3000", 1000));
+        assertEquals(List.of(), GetFileBinaryHandler.resolveRanges("bytes=-10", 0));
+    }
+
+    @Test
+    public void testInvalidRanges() {
+        assertNull(GetFileBinaryHandler.resolveRanges("items=0-9", 1000));
+        assertNull(GetFileBinaryHandler.resolveRanges("bytes=9-0", 1000));
+        assertNull(GetFileBinaryHandler.resolveRanges("bytes=a-b", 1000));
+    }
+
+    @Test
+    public void testOverlappingRangesAreCoalesced() {
+        assertEquals(List.of(new Range(0, 999)), GetFileBinaryHandler.resolveRanges("bytes=0-,0-,0-,0-", 1000));
+        assertEquals(List.of(new Range(0, 199)), GetFileBinaryHandler.resolveRanges("bytes=100-199,0-99", 1000));
+        assertEquals(List.of(new Range(0, 150), new Range(900, 999)), GetFileBinaryHandler.resolveRanges("bytes=-100,50-150,0-60", 1000));
+    }
+
+    @Test
+    public void testTooManyRanges() {
+        var tooMany = "bytes=" + String.join(",", Collections.nCopies(GetFileBinaryHandler.MAX_RANGES + 1, "0-"));
+        assertNull("the whole file is sent", GetFileBinaryHandler.resolveRanges(tooMany, 1000));
+
+        var max = "bytes=" + String.join(",", Collections.nCopies(GetFileBinaryHandler.MAX_RANGES, "0-9"));
+        assertEquals(List.of(new Range(0, 9)), GetFileBinaryHandler.resolveRanges(max, 1000));
+    }
+
+    @Test
+    public void testContentRange() {
+        assertEquals("bytes 0-99/1000", new Range(0, 99).contentRange(1000));
+        assertEquals(100, new Range(0, 99).length());
+    }
+}
@@ -0,0 +1,95 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-mongodb
+ * %%
+ * Copyright (C) 2014 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.mongodb.interceptors;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class MetadataCachesSingletonTest {
+    private static final String DB = "db";
+
+    private static BsonDocument ns(String db, String coll) {
+        var ns = new BsonDocument("db", new BsonString(db));
+
+        if (coll != null) {
+            ns.put("coll", new BsonString(coll));
+        }
+
+        return ns;
+    }
+
+    private static ChangeStreamDocument<BsonDocument> event(String operationType, BsonDocument ns, BsonDocument to, String id) {
+        var documentKey = id == null ? null : new BsonDocument("_id", new BsonString(id));
+        return new ChangeStreamDocument<>(operationType, new BsonDocument(), ns, to, null, null, documentKey, null, null, null, null, null, null);
+    }
+
+    /**
+     * @return the invalidated entries as db or db/coll
+     */
+    private static List<String> invalidated(ChangeStreamDocument<BsonDocument> event) {
+        var ret = new ArrayList<String>();
+        MetadataCachesSingleton.invalidate(event, (db, coll) -> ret.add(coll == null ? db : db + "/" + coll));
+        return ret;
+    }
+
+    @Test
+    public void testDbProperties() {
+        assertEquals(List.of(DB), invalidated(event("update", ns(DB, "_properties"), null, "_properties")));
+    }
+
+    @Test
+    public void testCollectionProperties() {
+        assertEquals(List.of(DB + "/coll"), invalidated(event("replace", ns(DB, "_properties"), null, "_properties.coll")));
+        assertEquals(List.of(DB + "/coll.with.dots"), invalidated(event("delete", ns(DB, "_properties"), null, "_properties.coll.with.dots")));
+    }
+
+    @Test
+    public void testDrop() {
+        assertEquals(List.of(DB + "/coll"), invalidated(event("drop", ns(DB, "coll"), null, null)));
+        assertEquals(List.of(DB), invalidated(event("drop", ns(DB, "_properties"), null, null)));
+    }
+
+    @Test
+    public void testDropDatabase() {
+        assertEquals(List.of(DB), invalidated(event("dropDatabase", ns(DB, null), null, null)));
+    }
+
+    @Test
+    public void testRename() {
+        assertEquals(List.of(DB + "/source", DB + "/target"), invalidated(event("rename", ns(DB, "source"), ns(DB, "target"), null)));
+        assertEquals(List.of(DB + "/source", "other/target"), invalidated(event("rename", ns(DB, "source"), ns("other", "target"), null)));
+        assertEquals(List.of(DB + "/source", DB), invalidated(event("rename", ns(DB, "source"), ns(DB, "_properties"), null)));
+    }
+
+    @Test
+    public void testInvalidateEvent() {
+        assertEquals(List.of(), invalidated(event("invalidate", null, null, null)));
+    }
+}
@@ -2,141 +2,156 @@
 // requires GraalVM installed and properly configured
 // example:
 // $ node --jvm --vm.cp=core/target/restheart.jar core/bin/restheart.js core/etc/test/restheart.yml
+//
+// node plugins are executed by a pool of node workers, one per core by default;
+// set the environment variable RH_NODE_WORKERS to change the number of workers
 
-const { Worker } = require('worker_threads');
+const { Worker, isMainThread, workerData, parentPort } = require('worker_threads');
 
 const nqueue = Java.type('org.restheart.polyglot.NodeQueue').instance();
-// set NodeQueue.asRunningOnNode=true to run js plugins with NodeService
-nqueue.setAsRunningOnNode();
-
-const RuntimeException = Java.type('java.lang.RuntimeException');
-const queue = nqueue.queue();
-
-/**
- * simple cache to save executing eval(code)
- */
-class EvalCache {
-    constructor(minutesToLive = 10) {
-      this.millisecondsToLive = minutesToLive * 60 * 1000;
-      this.cache = new Map();
-      this.get = this.get.bind(this);
-      this.put = this.put.bind(this);
-      this.gc = this.gc.bind(this);
-      this.fetchDate = new Date(0);
-    }
 
-    isCacheExpired() {
-      return (this.fetchDate.getTime() + this.millisecondsToLive) < new Date().getTime();
-    }
+if (isMainThread) {
+    const workers = parseInt(process.env.RH_NODE_WORKERS) || require('os').cpus().length;
 
-    get(codeHash) {
-      if (!this.cache.has(codeHash)) {
-        return null;
-      } else {
-        const ci = this.cache.get(codeHash);
-        if ((Date.now() - ci.timestamp) > this.millisecondsToLive) {
-            this.cache.delete(codeHash);
-            return null;
-        } else {
-            return ci.value;
-        }
-      }
-    }
+    // set NodeQueue.asRunningOnNode=true to run js plugins with NodeService
+    nqueue.setAsRunningOnNode(workers);
 
-    put(codeHash, value) {
-        this.cache.set(codeHash, {timestamp: Date.now(), value: value});
+    // start the workers that execute the plugins
+    for (let worker = 0; worker < workers; worker++) {
+        new Worker(__filename, { workerData: { worker: worker, notifier: false } });
     }
 
-    gc() {
-        const now = Date.now();
-        this.cache.forEach((ci, key, cache) => {
-            if ((now - ci.timestamp) > this.millisecondsToLive) {
-                cache.delete(key);
-            }
-        });
-    }
-}
+    // start RESTHeart
 
-const CACHE = new EvalCache(60);
-
-// handle uncaughtException
-process.on('uncaughtException', function (err) {
-    console.log('Caught exception from node plugin: ' + err);
-});
-
-function JavaToJSNotifier() {
-    this.queue = queue;
-    this.worker = new Worker(`
-        const { workerData, parentPort } = require('worker_threads');
-        while (true) {
-          // block the worker waiting for the next notification from RESTHeart
-          var data = workerData.queue.take();
-          // notify the main event loop that we got new data
-          parentPort.postMessage(data);
-        }`,
-        { eval: true, workerData: { queue: this.queue } });
-}
+    const Bootstrapper = Java.type('org.restheart.Bootstrapper');
 
-// register a callback to be executed when something is added to the shared queue
-const asyncJavaEvents = new JavaToJSNotifier();
+    process.argv.shift();
+    process.argv.shift();
 
-asyncJavaEvents.worker.on('message', (n) => {
-    const type = n[0];
+    Bootstrapper.main(process.argv);
+} else if (workerData.notifier) {
+    // block the notifier waiting for the next message from RESTHeart
+    // and notify the event loop of the worker that we got new data
+    const queue = nqueue.queue(workerData.worker);
 
-    if (type === 'parse') {
-        const code = n[1];
-        const out = n[2];
+    while (true) {
+        parentPort.postMessage(queue.take());
+    }
+} else {
+    executePlugins(workerData.worker);
+}
 
-        const parsed = eval(code);
+function executePlugins(worker) {
+    const RuntimeException = Java.type('java.lang.RuntimeException');
+
+    /**
+     * simple cache to save executing eval(code)
+     */
+    class EvalCache {
+        constructor(minutesToLive = 10) {
+          this.millisecondsToLive = minutesToLive * 60 * 1000;
+          this.cache = new Map();
+          this.get = this.get.bind(this);
+          this.put = this.put.bind(this);
+          this.gc = this.gc.bind(this);
+          this.fetchDate = new Date(0);
+        }
 
-        if (typeof parsed.handle === "function") {
-            const ret = {};
-            ret.options = parsed.options ? parsed.options : {};
-            ret.handle = 'function';
-            out.offer(JSON.stringify(ret));
-        } else {
-            const ret = {};
-            ret.options = parsed.options ? parsed.options : {};
-            out.offer(JSON.stringify(ret));
+        isCacheExpired() {
+          return (this.fetchDate.getTime() + this.millisecondsToLive) < new Date().getTime();
         }
-    } else if (type === 'handle') {
-        const codeHash = n[1];
-        const code = n[2];
-        const request = n[3];
-        const response = n[4];
-        const out = n[5];
-        const LOGGER = n[6];
-        const mclient = n[7];
-        const pluginsArgs = n[8];
-
-        try {
-            CACHE.gc();
-            let evaluated = CACHE.get(codeHash);
-
-            if (evaluated === null) {
-                evaluated = eval(code);
-                CACHE.put(codeHash, evaluated);
-            }
 
-            const result = Promise.resolve(evaluated.handle(request, response));
+        get(codeHash) {
+          if (!this.cache.has(codeHash)) {
+            return null;
+          } else {
+            const ci = this.cache.get(codeHash);
+            if ((Date.now() - ci.timestamp) > this.millisecondsToLive) {
+                this.cache.delete(codeHash);
+                return null;
+            } else {
+                return ci.value;
+            }
+          }
+        }
 
-            // timeout 60 seconds
-            const timeout = new Promise((resolve, reject) => setTimeout(function() { reject('timeout'); }, 60*1000) );
+        put(codeHash, value) {
+            this.cache.set(codeHash, {timestamp: Date.now(), value: value});
+        }
 
-            Promise.race([ timeout, result ])
-                .then(() => out.offer('done'))
-                .catch(error => out.offer(new RuntimeException("Error " + error)));
-        } catch (error) {
-            out.offer(new RuntimeException("Error " + error));
+        gc() {
+            const now = Date.now();
+            this.cache.forEach((ci, key, cache) => {
+                if ((now - ci.timestamp) > this.millisecondsToLive) {
+                    cache.delete(key);
+                }
+            });
         }
     }
-});
-
-// start RESTHeart
 
-const Bootstrapper = Java.type('org.restheart.Bootstrapper');
-
-process.argv.shift();
-process.argv.shift();
-
-Bootstrapper.main(process.argv);
\ No newline at end of file
+    const CACHE = new EvalCache(60);
+
+    // handle uncaughtException
+    process.on('uncaughtException', function (err) {
+        console.log('Caught exception from node plugin: ' + err);
+    });
+
+    // register a callback to be executed when something is added to the queue of this worker
+    const notifier = new Worker(__filename, { workerData: { worker: worker, notifier: true } });
+
+    notifier.on('message', (n) => {
+        const type = n[0];
+
+        if (type === 'parse') {
+            const code = n[1];
+            const out = n[2];
+
+            try {
+                const parsed = eval(code);
+
+                if (typeof parsed.handle === "function") {
+                    const ret = {};
+                    ret.options = parsed.options ? parsed.options : {};
+                    ret.handle = 'function';
+                    out.offer(JSON.stringify(ret));
+                } else {
+                    const ret = {};
+                    ret.options = parsed.options ? parsed.options : {};
+                    out.offer(JSON.stringify(ret));
+                }
+            } catch (error) {
+                out.offer(new RuntimeException("Error " + error));
+            }
+        } else if (type === 'handle') {
+            const codeHash = n[1];
+            const code = n[2];
+            const request = n[3];
+            const response = n[4];
+            const out = n[5];
+            const LOGGER = n[6];
+            const mclient = n[7];
+            const pluginsArgs = n[8];
+            const timeoutMillis = n[9] || 60*1000;
+
+            try {
+                CACHE.gc();
+                let evaluated = CACHE.get(codeHash);
+
+                if (evaluated === null) {
+                    evaluated = eval(code);
+                    CACHE.put(codeHash, evaluated);
+                }
+
+                const result = Promise.resolve(evaluated.handle(request, response));
+
+                const timeout = new Promise((resolve, reject) => setTimeout(function() { reject('timeout'); }, timeoutMillis) );
+
+                Promise.race([ timeout, result ])
+                    .then(() => out.offer('done'))
+                    .catch(error => out.offer(new RuntimeException("Error " + error)));
+            } catch (error) {
+                out.offer(new RuntimeException("Error " + error));
+            }
+        }
+    });
+}
@@ -23,15 +23,16 @@ package org.restheart.polyglot;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
-import com.google.common.collect.Maps;
 import com.mongodb.client.MongoClient;
 
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.HostAccess;
 import org.graalvm.polyglot.Source;
-import org.graalvm.polyglot.Value;
 import org.restheart.configuration.Configuration;
 import org.restheart.plugins.InterceptPoint;
 import org.restheart.plugins.RegisterPlugin.MATCH_POLICY;
@@ -44,7 +45,7 @@ public abstract class AbstractJSPlugin {
 
     protected Map<String, String> contextOptions = new HashMap<>();
 
-    protected Engine engine = Engine.create();
+    protected Engine engine = sharedEngine();
 
     protected String modulesReplacements;
     protected Source handleSource;
@@ -76,7 +77,7 @@ public abstract class AbstractJSPlugin {
         this.isInterceptor = false;
 
         // register cleaner
-        CleanerUtils.get().cleaner().register(this, new State(this.ctxs));
+        CleanerUtils.get().cleaner().register(this, new State(this.contextPool));
     }
 
     protected AbstractJSPlugin(String name,
@@ -101,7 +102,21 @@ public abstract class AbstractJSPlugin {
         this.isInterceptor = isInterceptor;
 
         // register cleaner
-        CleanerUtils.get().cleaner().register(this, new State(this.ctxs));
+        CleanerUtils.get().cleaner().register(this, new State(this.contextPool));
+    }
+
+    private static class SharedEngineHolder {
+        private static final Engine ENGINE = Engine.create();
+    }
+
+    /**
+     * The Engine shared by the contexts of all plugins, so that the parsed and
+     * compiled code is cached across contexts and plugins
+     *
+     * @return the shared Engine
+     */
+    public static Engine sharedEngine() {
+        return SharedEngineHolder.ENGINE;
     }
 
     public static Context context(Engine engine, Map<String, String> OPTS) {
@@ -161,67 +176,113 @@ public abstract class AbstractJSPlugin {
         ctx.getBindings("js").putMember("pluginArgs", args);
     }
 
-    // cache Context and handles for performace
-    // each working thread is associates with one context and one handle
-    // because js Context does not allow multithreaded access
-    protected Map<String, Context> ctxs = Maps.newHashMap();
-    protected Map<String, Value> handles = Maps.newHashMap();
+    // js Context does not allow multithreaded access
+    // each request checks out a Context from the pool and uses it exclusively
+    protected final AtomicReference<ContextPool> contextPool = new AtomicReference<>();
+
+    /**
+     *
+     * @return a new Context with the plugin bindings
+     */
+    protected Context newContext() {
+        var ctx = context(engine, contextOptions);
+        addBindings(ctx, this.name, this.conf, LOGGER, this.mclient);
+        return ctx;
+    }
+
+    /**
+     *
+     * @return the sources evaluated in the contexts created by prewarming the pool
+     */
+    protected Source[] prewarmSources() {
+        return new Source[] { this.handleSource };
+    }
 
     /**
+     * Creates the pool of contexts, replacing the existing one, and warms it up
      *
-     * @return the Context associated with this thread. If not existing, it instanitates it.
+     * @param size the max number of contexts
+     * @param prewarm the number of contexts to create and warm up evaluating the plugin sources
+     * @param waitTimeout the max time in milliseconds a request waits for a context
      */
-    protected Context ctx() {
-        var workingThreadName = Thread.currentThread().getName();
+    public void initContextPool(int size, int prewarm, long waitTimeout) {
+        var pool = new ContextPool(this.name, size, waitTimeout, this::newContext);
+        var old = this.contextPool.getAndSet(pool);
 
-        if (this.ctxs.get(workingThreadName) == null) {
-            var ctx = context(engine, contextOptions);
-            this.ctxs.put(workingThreadName, ctx);
+        if (old != null) {
+            old.close();
+        }
+
+        pool.prewarm(prewarm, prewarmSources());
+    }
 
-            addBindings(ctx, this.name, this.conf, LOGGER, this.mclient);
+    /**
+     * Closes the pool of contexts
+     */
+    public void closeContextPool() {
+        var pool = this.contextPool.getAndSet(null);
+
+        if (pool != null) {
+            pool.close();
         }
+    }
 
-        return this.ctxs.get(workingThreadName);
+    /**
+     *
+     * @return the pool of contexts. If not existing, it instanitates it with the default size.
+     */
+    protected ContextPool contextPool() {
+        return this.contextPool.updateAndGet(pool -> pool != null ? pool : new ContextPool(this.name, ContextPool.DEFAULT_SIZE, this::newContext));
     }
 
     /**
+     * Applies the function with a Context checked out from the pool; the
+     * function must not leak Values bound to the Context
      *
-     * @return the handle Value associated with this thread. If not existing, it instanitates it.
+     * @param <T>
+     * @param fn
+     * @return the result of the function
      */
-    protected Value _handle() {
-        var workingThreadName = Thread.currentThread().getName();
-
-        if (this.handles.containsKey(workingThreadName)) {
-            return this.handles.get(workingThreadName);
-        } else {
-            var handle = ctx().eval(this.handleSource);
-            this.handles.put(workingThreadName, handle);
-            return handle;
+    protected <T> T computeWithContext(Function<ContextPool.PooledContext, T> fn) {
+        var pool = contextPool();
+        var pctx = pool.checkout();
+
+        try {
+            return fn.apply(pctx);
+        } finally {
+            pool.checkin(pctx);
         }
     }
 
+    /**
+     * Accepts the consumer with a Context checked out from the pool
+     *
+     * @param consumer
+     */
+    protected void withContext(Consumer<ContextPool.PooledContext> consumer) {
+        computeWithContext(pctx -> {
+            consumer.accept(pctx);
+            return null;
+        });
+    }
+
     // for cleaning
     protected static class State implements Runnable {
-        private Map<String, Context> ctxs;
+        private AtomicReference<ContextPool> contextPool;
 
-        State(Map<String, Context> ctxs) {
+        State(AtomicReference<ContextPool> contextPool) {
             // initialize State needed for cleaning action
-            this.ctxs = ctxs;
+            this.contextPool = contextPool;
         }
 
         public void run() {
-            if (this.ctxs != null) {
-                this.ctxs.entrySet().stream().map(e -> e.getValue())
-                .filter(ctx -> ctx != null)
-                .forEach(ctx -> {
-                    try {
-                        ctx.close();
-                    } catch(Throwable t) {
-                        // nothing to do
-                    }
-                });
+            if (this.contextPool != null) {
+                var pool = this.contextPool.get();
+
+                if (pool != null) {
+                    pool.close();
+                }
             }
         }
     }
 }
-
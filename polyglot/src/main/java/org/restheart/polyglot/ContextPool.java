@@ -0,0 +1,267 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-polyglot
+ * %%
+ * Copyright (C) 2020 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.polyglot;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of js Contexts.
+ *
+ * A js Context does not allow multithreaded access, so each request checks out
+ * a context, uses it exclusively and returns it to the pool. Contexts are
+ * created on demand up to the pool size; when all of them are in use, the
+ * request waits for one to be returned, up to the wait timeout. The wait time
+ * is recorded in the POLYGLOT metric registry with the name
+ * {@code <plugin-name>.context-wait}.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ContextPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContextPool.class);
+
+    /**
+     * the name of the metric registry of the pools wait time
+     */
+    public static final String METRIC_REGISTRY_NAME = "POLYGLOT";
+
+    /**
+     * the default pool size
+     */
+    public static final int DEFAULT_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * the default max time in milliseconds a request waits for a context
+     */
+    public static final long DEFAULT_WAIT_TIMEOUT = 30_000;
+
+    /**
+     * put in the idle queue by close() to wake up the waiting requests
+     */
+    private static final PooledContext CLOSED = new PooledContext(null);
+
+    private final int size;
+    private final long waitTimeout;
+    private final Supplier<Context> factory;
+    private final BlockingQueue<PooledContext> idle;
+    private final AtomicInteger created = new AtomicInteger(0);
+    private final Timer waitTime;
+
+    private volatile boolean closed = false;
+
+    /**
+     * A pooled Context that caches the Values evaluated from Sources, e.g. the
+     * handle function of the plugin
+     */
+    public static class PooledContext {
+        private final Context ctx;
+        private final Map<Source, Value> evaluated = new HashMap<>();
+
+        PooledContext(Context ctx) {
+            this.ctx = ctx;
+        }
+
+        public Context ctx() {
+            return ctx;
+        }
+
+        /**
+         * @param source
+         * @return the Value resulting from the evaluation of the source, that
+         * is evaluated only the first time
+         */
+        public Value eval(Source source) {
+            return evaluated.computeIfAbsent(source, ctx::eval);
+        }
+    }
+
+    /**
+     *
+     * @param name the name of the plugin
+     * @param size the max number of contexts
+     * @param factory creates a context with bindings
+     */
+    public ContextPool(String name, int size, Supplier<Context> factory) {
+        this(name, size, DEFAULT_WAIT_TIMEOUT, factory);
+    }
+
+    /**
+     *
+     * @param name the name of the plugin
+     * @param size the max number of contexts
+     * @param waitTimeout the max time in milliseconds a request waits for a context
+     * @param factory creates a context with bindings
+     */
+    public ContextPool(String name, int size, long waitTimeout, Supplier<Context> factory) {
+        if (size < 1) {
+            throw new IllegalArgumentException("context pool size must be > 0, got " + size);
+        }
+
+        this.size = size;
+        this.waitTimeout = waitTimeout;
+        this.factory = factory;
+        this.idle = new LinkedBlockingQueue<>(size);
+        this.waitTime = SharedMetricRegistries.getOrCreate(METRIC_REGISTRY_NAME).timer(MetricRegistry.name(name == null ? "anonymous" : name, "context-wait"));
+    }
+
+    /**
+     * @return the max number of contexts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks out a context, waiting for one to be returned to the pool if all
+     * of them are in use. The context must be returned with checkin()
+     *
+     * @return a context for the exclusive use of the caller
+     * @throws IllegalStateException if the pool is closed or no context is
+     * returned to the pool within the wait timeout
+     */
+    public PooledContext checkout() {
+        if (closed) {
+            throw new IllegalStateException("context pool is closed");
+        }
+
+        var pctx = idle.poll();
+
+        if (pctx != null) {
+            waitTime.update(0, TimeUnit.NANOSECONDS);
+        } else if (created.incrementAndGet() <= size) {
+            return newContext();
+        } else {
+            created.decrementAndGet();
+
+            try (var timer = waitTime.time()) {
+                pctx = idle.poll(waitTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for a js context", ie);
+            }
+
+            if (pctx == null) {
+                throw new IllegalStateException("timeout waiting for a js context, all " + size + " contexts are in use");
+            }
+        }
+
+        if (pctx == CLOSED) {
+            // wake up the next waiting request
+            idle.offer(CLOSED);
+            throw new IllegalStateException("context pool is closed");
+        }
+
+        return pctx;
+    }
+
+    /**
+     * creates a context, releasing its slot if the factory fails
+     */
+    private PooledContext newContext() {
+        try {
+            return new PooledContext(factory.get());
+        } catch (RuntimeException | Error e) {
+            created.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the context to the pool
+     *
+     * @param pctx the context to return
+     */
+    public void checkin(PooledContext pctx) {
+        if (closed || !idle.offer(pctx)) {
+            close(pctx);
+        } else if (closed && idle.remove(pctx)) {
+            // the pool has been closed meanwhile
+            close(pctx);
+        }
+    }
+
+    /**
+     * Creates and adds contexts to the pool evaluating the given sources
+     *
+     * @param count the number of contexts to create, up to the pool size
+     * @param sources the sources to evaluate in each context
+     */
+    public void prewarm(int count, Source... sources) {
+        for (var i = 0; i < count; i++) {
+            if (created.incrementAndGet() > size) {
+                created.decrementAndGet();
+                break;
+            }
+
+            var pctx = newContext();
+
+            for (var source: sources) {
+                if (source != null) {
+                    pctx.eval(source);
+                }
+            }
+
+            checkin(pctx);
+        }
+    }
+
+    /**
+     * Closes the idle contexts and fails the requests waiting for one;
+     * contexts in use are closed when returned
+     */
+    public void close() {
+        this.closed = true;
+
+        do {
+            PooledContext pctx;
+            while ((pctx = idle.poll()) != null) {
+                close(pctx);
+            }
+        } while (!idle.offer(CLOSED));
+    }
+
+    private void close(PooledContext pctx) {
+        if (pctx == CLOSED) {
+            return;
+        }
+
+        try {
+            pctx.ctx().close();
+        } catch (Throwable t) {
+            LOGGER.debug("error closing js context", t);
+        }
+    }
+}
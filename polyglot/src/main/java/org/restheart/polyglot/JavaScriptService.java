@@ -34,7 +34,6 @@ import org.restheart.exchange.StringRequest;
 import org.restheart.exchange.StringResponse;
 import org.restheart.plugins.StringService;
 import org.restheart.plugins.RegisterPlugin.MATCH_POLICY;
-import org.restheart.utils.CleanerUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,9 +71,6 @@ public class JavaScriptService extends AbstractJSPlugin implements StringService
     """;
 
     JavaScriptService(Path pluginPath, Optional<MongoClient> mclient, Configuration conf) throws IOException {
-        // register cleaner
-        CleanerUtils.get().cleaner().register(this, new State(this.ctxs));
-
         this.mclient = mclient;
         this.conf = conf;
         this.isService = true;
@@ -182,15 +178,15 @@ public class JavaScriptService extends AbstractJSPlugin implements StringService
      *
      */
     public void handle(StringRequest request, StringResponse response) {
-        _handle().executeVoid(request, response);
+        withContext(pctx -> pctx.eval(this.handleSource).executeVoid(request, response));
     }
 
     /**
      *
-     * @return the Context associated with this thread. If not existing, it instanitates it.
+     * @return a new Context with the plugin bindings and modules replacements
      */
     @Override
-    protected Context ctx() {
+    protected Context newContext() {
         if (getModulesReplacements() != null) {
             LOGGER.debug("modules-replacements: {} ", getModulesReplacements());
             contextOptions.put("js.commonjs-core-modules-replacements", getModulesReplacements());
@@ -198,16 +194,9 @@ public class JavaScriptService extends AbstractJSPlugin implements StringService
             contextOptions.remove("js.commonjs-core-modules-replacements");
         }
 
-        var workingThreadName = Thread.currentThread().getName();
-
-        if (this.ctxs.get(workingThreadName) == null) {
-            var ctx = context(engine, contextOptions);
-            this.ctxs.put(workingThreadName, ctx);
-
-            addBindings(ctx, this.name, conf, LOGGER, this.mclient);
-        }
-
-        return this.ctxs.get(workingThreadName);
+        var ctx = context(engine, contextOptions);
+        addBindings(ctx, this.name, conf, LOGGER, this.mclient);
+        return ctx;
     }
 
     public String getModulesReplacements() {
@@ -27,6 +27,7 @@ import java.util.concurrent.LinkedBlockingDeque;
 import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
 import com.google.common.collect.Maps;
 import com.google.gson.JsonParser;
@@ -51,6 +52,13 @@ public class NodeService extends AbstractJSPlugin implements StringService {
 
     private int codeHash = 0;
 
+    private final long timeout;
+
+    /**
+     * the default timeout of node invocations in milliseconds
+     */
+    public static final long DEFAULT_TIMEOUT = 60_000;
+
     private static final String errorHint = """
     hint: the last statement in the script something like:
     ({
@@ -77,28 +85,45 @@ public class NodeService extends AbstractJSPlugin implements StringService {
     """;
 
     public static Future<NodeService> get(Path scriptPath, Optional<MongoClient> mclient, Configuration conf) throws IOException {
+        return get(scriptPath, mclient, conf, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     *
+     * @param scriptPath
+     * @param mclient
+     * @param conf
+     * @param timeout the timeout of node invocations in milliseconds
+     * @return
+     * @throws IOException
+     */
+    public static Future<NodeService> get(Path scriptPath, Optional<MongoClient> mclient, Configuration conf, long timeout) throws IOException {
         var executor = Executors.newSingleThreadExecutor();
-        return executor.submit(() -> new NodeService(scriptPath, mclient, conf));
+        var ret = executor.submit(() -> new NodeService(scriptPath, mclient, conf, timeout));
+        executor.shutdown();
+        return ret;
     }
 
-    private NodeService(Path scriptPath, Optional<MongoClient> mclient, Configuration conf) throws IOException {
+    private NodeService(Path scriptPath, Optional<MongoClient> mclient, Configuration conf, long timeout) throws IOException {
         this.mclient = mclient;
         this.conf = conf;
+        this.timeout = timeout;
 
         this.source = Files.readString(scriptPath);
         this.codeHash = this.source.hashCode();
 
         // check plugin definition
 
-        var out = new LinkedBlockingDeque<String>();
+        var out = new LinkedBlockingDeque<Object>();
         Object[] message = { "parse", this.source, out };
-        NodeQueue.instance().queue().offer(message);
         try {
-            var result = out.take();
+            var result = NodeQueue.instance().invoke(message, out, this.timeout);
 
-            Thread.sleep(300);
+            if (result instanceof RuntimeException) {
+                throw new IllegalArgumentException("wrong node plugin, " + ((RuntimeException) result).getMessage());
+            }
 
-            var parsed = JsonParser.parseString(result);
+            var parsed = JsonParser.parseString(result.toString());
 
             if (!parsed.isJsonObject()) {
                 throw new IllegalArgumentException("wrong node plugin, " + errorHint);
@@ -193,6 +218,9 @@ public class NodeService extends AbstractJSPlugin implements StringService {
             }
         } catch (InterruptedException ie) {
             LOGGER.debug("Error initializing node plugin", ie);
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException te) {
+            throw new IllegalStateException("Error initializing node plugin " + scriptPath, te);
         }
     }
 
@@ -208,19 +236,22 @@ public class NodeService extends AbstractJSPlugin implements StringService {
             LOGGER,                  // pass LOGGER to node runtime
             this.mclient,            // pass mclient to node runtime
             this.conf == null        // pass pluginArgs to node runtime
-                ? Maps.newHashMap() : this.conf.getOrDefault(this.name, Maps.newHashMap())
+                ? Maps.newHashMap() : this.conf.getOrDefault(this.name, Maps.newHashMap()),
+            this.timeout             // pass the invocation timeout to node runtime
         };
 
         try {
-            NodeQueue.instance().queue().offer(message);
-            var result = out.take();
+            var result = NodeQueue.instance().invoke(message, out, this.timeout);
             if (result instanceof RuntimeException) {
                 throw ((RuntimeException) result);
             } else {
                 LOGGER.debug("handle result: {}", result);
             }
         } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException("error", ie);
+        } catch (TimeoutException te) {
+            throw new RuntimeException("error", te);
         }
     }
 }
@@ -54,9 +54,11 @@ import org.restheart.plugins.PluginsRegistry;
 import org.restheart.plugins.RegisterPlugin;
 import org.restheart.plugins.Service;
 import org.restheart.configuration.Configuration;
+import org.restheart.configuration.ConfigurationException;
 import org.restheart.exchange.ServiceRequest;
 import org.restheart.exchange.ServiceResponse;
 import static org.restheart.configuration.Utils.findOrDefault;
+import static org.restheart.plugins.ConfigurablePlugin.argValueOrDefault;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,15 +85,28 @@ public class PolyglotDeployer implements Initializer {
     @Inject("rh-config")
     private Configuration config;
 
+    @Inject("config")
+    private Map<String, Object> pluginConfig;
+
+    private int contextPoolSize = ContextPool.DEFAULT_SIZE;
+    private int contextPoolPrewarm = 1;
+    private long contextPoolWaitTimeout = ContextPool.DEFAULT_WAIT_TIMEOUT;
+    private long nodeInvocationTimeout = NodeService.DEFAULT_TIMEOUT;
+
     private Optional<MongoClient> mclient;
 
     @OnInit
-    public void onInit() {
+    public void onInit() throws ConfigurationException {
         if (!isRunningOnGraalVM()) {
             LOGGER.warn("Not running on GraalVM, polyglot plugins deployer disabled!");
             return;
         }
 
+        this.contextPoolSize = argValueOrDefault(pluginConfig, "context-pool-size", ContextPool.DEFAULT_SIZE);
+        this.contextPoolPrewarm = argValueOrDefault(pluginConfig, "context-pool-prewarm", 1);
+        this.contextPoolWaitTimeout = argValueOrDefault(pluginConfig, "context-pool-wait-timeout", (Number) ContextPool.DEFAULT_WAIT_TIMEOUT).longValue();
+        this.nodeInvocationTimeout = argValueOrDefault(pluginConfig, "node-invocation-timeout", (Number) NodeService.DEFAULT_TIMEOUT).longValue();
+
         pluginsDirectory = getPluginsDirectory(config.toMap());
 
         this.mclient = mongoClient(registry);
@@ -359,6 +374,8 @@ public class PolyglotDeployer implements Initializer {
         try {
             var srv = new JavaScriptService(pluginPath, this.mclient, this.config);
 
+            srv.initContextPool(this.contextPoolSize, this.contextPoolPrewarm, this.contextPoolWaitTimeout);
+
             var record = new PluginRecord<Service<? extends ServiceRequest<?>, ? extends ServiceResponse<?>>>(srv.getName(),
                 srv.getDescription(),
                 srv.isSecured(),
@@ -387,13 +404,7 @@ public class PolyglotDeployer implements Initializer {
         var executor = Executors.newSingleThreadExecutor();
             executor.submit(() -> {
                 try {
-                    var srvf = NodeService.get(pluginPath, this.mclient, this.config);
-
-                    while (!srvf.isDone()) {
-                        Thread.sleep(300);
-                    }
-
-                    var srv = srvf.get();
+                    var srv = NodeService.get(pluginPath, this.mclient, this.config, this.nodeInvocationTimeout).get();
 
                     var record = new PluginRecord<Service<? extends ServiceRequest<?>, ? extends ServiceResponse<?>>>(srv.getName(), "description", srv.isSecured(), true,
                             srv.getClass().getName(), srv, new HashMap<>());
@@ -409,6 +420,7 @@ public class PolyglotDeployer implements Initializer {
                     return;
                 }
             });
+        executor.shutdown();
     }
 
 
@@ -418,10 +430,13 @@ public class PolyglotDeployer implements Initializer {
         }
 
         var interceptorRecord = this.jsInterceptorFactory.create(pluginPath);
+        var interceptor = (AbstractJSPlugin) interceptorRecord.getInstance();
+
+        interceptor.initContextPool(this.contextPoolSize, this.contextPoolPrewarm, this.contextPoolWaitTimeout);
 
         registry.addInterceptor(interceptorRecord);
 
-        DEPLOYEES.put(pluginPath.toAbsolutePath(), (AbstractJSPlugin) interceptorRecord.getInstance());
+        DEPLOYEES.put(pluginPath.toAbsolutePath(), interceptor);
 
         LOGGER.info(ansi().fg(GREEN).a("Added interceptor {}, description: {}").reset().toString(),
             interceptorRecord.getName(),
@@ -444,6 +459,7 @@ public class PolyglotDeployer implements Initializer {
 
             if (toUndeploy != null) {
                 registry.unplug(toUndeploy.getUri(), toUndeploy.getMatchPolicy());
+                toUndeploy.closeContextPool();
 
                 LOGGER.info(ansi().fg(GREEN).a("removed service {} bound to URI {}").reset().toString(),
                 toUndeploy.getName(), toUndeploy.getUri());
@@ -460,6 +476,7 @@ public class PolyglotDeployer implements Initializer {
         for (var pathToUndeploy: pathsToUndeploy) {
             var toUndeploy = DEPLOYEES.remove(pathToUndeploy);
             var removed = registry.removeInterceptorIf(interceptor -> Objects.equal(interceptor.getName(), toUndeploy.getName()));
+            toUndeploy.closeContextPool();
 
             if (removed) {
                 LOGGER.info(ansi().fg(GREEN).a("removed interceptor {}").reset().toString(), toUndeploy.getName());
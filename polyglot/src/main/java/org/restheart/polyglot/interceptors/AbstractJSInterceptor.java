@@ -23,11 +23,9 @@ package org.restheart.polyglot.interceptors;
 import java.util.Map;
 import java.util.Optional;
 
-import com.google.common.collect.Maps;
 import com.mongodb.client.MongoClient;
 
 import org.graalvm.polyglot.Source;
-import org.graalvm.polyglot.Value;
 import org.restheart.configuration.Configuration;
 import org.restheart.exchange.Request;
 import org.restheart.exchange.Response;
@@ -71,38 +69,25 @@ public class AbstractJSInterceptor<R extends Request<?>, S extends Response<?>>
      *
      */
     public void handle(R request, S response) {
-        _handle().executeVoid(request, response);
+        withContext(pctx -> pctx.eval(this.handleSource).executeVoid(request, response));
     }
 
     @Override
     public boolean resolve(R request, S response) {
-        var ret = resolve().execute(request);
+        return computeWithContext(pctx -> {
+            var ret = pctx.eval(this.resolveSource).execute(request);
 
-        if (ret.isBoolean()) {
-            return ret.asBoolean();
-        } else {
-            LOGGER.error("resolve() of interceptor did not returned a boolean", name);
-            return false;
-        }
+            if (ret.isBoolean()) {
+                return ret.asBoolean();
+            } else {
+                LOGGER.error("resolve() of interceptor did not returned a boolean", name);
+                return false;
+            }
+        });
     }
 
-    // each working thread is associates with one resolve
-    // because js Context does not allow multithreaded access
-    protected Map<String, Value> resolves = Maps.newHashMap();
-
-    /**
-     *
-     * @return the resolve Value associated with this thread. If not existing, it instanitates it.
-     */
-    private Value resolve() {
-        var workingThreadName = Thread.currentThread().getName();
-
-        if (this.resolves.containsKey(workingThreadName)) {
-            return this.resolves.get(workingThreadName);
-        } else {
-            var resolve = ctx().eval(this.resolveSource);
-            this.resolves.put(workingThreadName, resolve);
-            return resolve;
-        }
+    @Override
+    protected Source[] prewarmSources() {
+        return new Source[] { this.handleSource, this.resolveSource };
     }
 }
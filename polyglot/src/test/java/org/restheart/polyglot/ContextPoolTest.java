@@ -0,0 +1,124 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-polyglot
+ * %%
+ * Copyright (C) 2020 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.polyglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.graalvm.polyglot.Context;
+import org.junit.Test;
+
+/**
+ * Contexts cannot be created without GraalVM, the factories return null
+ * and the pool is tested on the checkout/checkin of the PooledContexts
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class ContextPoolTest {
+    private static Context nullContext() {
+        return null;
+    }
+
+    @Test
+    public void testContextIsReused() {
+        var created = new AtomicInteger();
+        var pool = new ContextPool("test", 2, () -> { created.incrementAndGet(); return nullContext(); });
+
+        var pctx = pool.checkout();
+        pool.checkin(pctx);
+
+        assertSame(pctx, pool.checkout());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void testFactoryFailureReleasesSlot() {
+        var failures = new AtomicInteger(2);
+        var pool = new ContextPool("test", 1, 100, () -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("cannot create context");
+            }
+
+            return nullContext();
+        });
+
+        assertThrows(IllegalStateException.class, pool::checkout);
+        assertThrows(IllegalStateException.class, pool::checkout);
+
+        // the failed creations did not consume the only slot of the pool
+        assertNotNull(pool.checkout());
+    }
+
+    @Test
+    public void testWaitTimeout() {
+        var pool = new ContextPool("test", 1, 100, ContextPoolTest::nullContext);
+
+        pool.checkout();
+
+        var start = System.nanoTime();
+        var ise = assertThrows(IllegalStateException.class, pool::checkout);
+
+        assertTrue(ise.getMessage().startsWith("timeout"));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testWaitingRequestIsReleasedByCheckin() throws Exception {
+        var pool = new ContextPool("test", 1, 10_000, ContextPoolTest::nullContext);
+
+        var pctx = pool.checkout();
+        var waiting = CompletableFuture.supplyAsync(pool::checkout);
+
+        Thread.sleep(50);
+        pool.checkin(pctx);
+
+        assertSame(pctx, waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCloseFailsWaitingRequests() throws Exception {
+        var pool = new ContextPool("test", 1, 10_000, ContextPoolTest::nullContext);
+
+        pool.checkout();
+
+        var waiting1 = CompletableFuture.supplyAsync(pool::checkout);
+        var waiting2 = CompletableFuture.supplyAsync(pool::checkout);
+
+        Thread.sleep(50);
+        pool.close();
+
+        for (var waiting: new CompletableFuture<?>[] { waiting1, waiting2 }) {
+            var ee = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+            assertTrue(ee.getCause() instanceof IllegalStateException);
+            assertEquals("context pool is closed", ee.getCause().getMessage());
+        }
+
+        assertThrows(IllegalStateException.class, pool::checkout);
+    }
+}
@@ -56,6 +56,7 @@ import org.restheart.security.utils.MongoUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.restheart.mongodb.ChangeStreamWatcher;
 import static org.restheart.mongodb.ConnectionChecker.connected;
 
 /**
@@ -153,6 +154,15 @@ public class MongoRealmAuthenticator implements Authenticator {
                     this.cacheSize,
                     this.cacheExpirePolicy,
                     this.cacheTTL, key -> findAccount(accountIdTrasformer(key)));
+
+            // the cache keys are the ids before accountIdTrasformer() is applied,
+            // so any change to the users collection invalidates the whole cache
+            if (argOrDefault(config, "cache-invalidation", false)) {
+                ChangeStreamWatcher.start("users",
+                    () -> this.mclient.getDatabase(this.usersDb).getCollection(this.usersCollection, BsonDocument.class).watch(),
+                    event -> this.USERS_CACHE.invalidateAll(),
+                    () -> this.USERS_CACHE.invalidateAll());
+            }
         }
 
         try {
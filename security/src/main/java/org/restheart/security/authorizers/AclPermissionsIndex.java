@@ -0,0 +1,160 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.authorizers;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
+import org.restheart.exchange.Request;
+
+/**
+ * Indexes the permissions of a role by the request line constraints of their
+ * predicates, so that only the permissions whose method and static path can
+ * match are evaluated.
+ *
+ * Paths are indexed with a trie of path segments; the candidates for a request
+ * are the permissions found walking the trie along the request path, in
+ * priority order.
+ *
+ * The candidates are memoized per method and path. Since the predicates that
+ * only depend on the request line resolve in the same way for all the
+ * requests with the same method and path, they are evaluated when the
+ * candidates are computed: the ones that don't resolve are excluded and the
+ * candidates are truncated after the first one that does.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+final class AclPermissionsIndex {
+    private static final int MEMO_SIZE = 10_000;
+
+    private final LinkedHashSet<MongoAclPermission> permissions;
+    private final MongoAclPermission[] ordered;
+    private final RequestLineConstraints[] constraints;
+    private final boolean[] requestLineOnly;
+    private final Node root = new Node();
+    private final Cache<String, List<MongoAclPermission>> memo = CacheFactory.createLocalCache(MEMO_SIZE, Cache.EXPIRE_POLICY.NEVER, -1);
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final BitSet permissions = new BitSet();
+    }
+
+    /**
+     *
+     * @param permissions the permissions of the role in priority order, after the permission transformers are applied
+     */
+    AclPermissionsIndex(LinkedHashSet<MongoAclPermission> permissions) {
+        this.permissions = permissions;
+        this.ordered = permissions.toArray(MongoAclPermission[]::new);
+        this.constraints = new RequestLineConstraints[ordered.length];
+        this.requestLineOnly = new boolean[ordered.length];
+
+        for (var idx = 0; idx < ordered.length; idx++) {
+            var permission = ordered[idx];
+            var _constraints = RequestLineConstraints.of(permission.getRequestPredicate());
+
+            this.constraints[idx] = _constraints;
+            // a permission transformer adds conditions that can depend on the whole request
+            this.requestLineOnly[idx] = _constraints.requestLineOnly && !permission.isTransformed();
+
+            if (_constraints.paths == null) {
+                root.permissions.set(idx);
+            } else {
+                for (var path: _constraints.paths) {
+                    var node = root;
+
+                    for (var segment: path) {
+                        node = node.children.computeIfAbsent(segment, s -> new Node());
+                    }
+
+                    node.permissions.set(idx);
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the indexed permissions
+     */
+    LinkedHashSet<MongoAclPermission> permissions() {
+        return permissions;
+    }
+
+    /**
+     * The predicates are resolved against the relative path of the exchange,
+     * that must be set before invoking this method.
+     *
+     * @param request
+     * @return the permissions to evaluate for the request, in priority order
+     */
+    List<MongoAclPermission> candidates(Request<?> request) {
+        var exchange = request.getExchange();
+        var method = exchange.getRequestMethod() == null ? null : exchange.getRequestMethod().toString();
+        var path = exchange.getRelativePath();
+        var key = method + " " + path;
+
+        var memoized = memo.get(key);
+
+        if (memoized != null && memoized.isPresent()) {
+            return memoized.get();
+        }
+
+        var bits = (BitSet) root.permissions.clone();
+        var node = root;
+
+        for (var segment: RequestLineConstraints.segments(path)) {
+            node = node.children.get(segment);
+
+            if (node == null) {
+                break;
+            }
+
+            bits.or(node.permissions);
+        }
+
+        var ret = new ArrayList<MongoAclPermission>();
+
+        for (var idx = bits.nextSetBit(0); idx >= 0; idx = bits.nextSetBit(idx + 1)) {
+            if (!constraints[idx].matchesMethod(method)) {
+                continue;
+            }
+
+            if (!requestLineOnly[idx]) {
+                ret.add(ordered[idx]);
+            } else if (ordered[idx].allow(request)) {
+                // the permissions after this one are never evaluated
+                ret.add(ordered[idx]);
+                break;
+            }
+        }
+
+        var candidates = List.copyOf(ret);
+        memo.put(key, candidates);
+        return candidates;
+    }
+}
@@ -20,7 +20,6 @@
  */
 package org.restheart.security.authorizers;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import static com.google.common.collect.Sets.newHashSet;
 import com.mongodb.client.MongoClient;
@@ -29,8 +28,8 @@ import static io.undertow.predicate.Predicate.PREDICATE_CONTEXT;
 import io.undertow.security.idm.Account;
 import io.undertow.server.HttpServerExchange;
 import java.security.Principal;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +54,7 @@ import static org.restheart.security.MongoPermissions.ALLOW_ALL_MONGO_PERMISSION
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.restheart.mongodb.ChangeStreamWatcher;
 import static org.restheart.mongodb.ConnectionChecker.connected;
 
 /**
@@ -78,9 +78,12 @@ public class MongoAclAuthorizer implements Authorizer {
     private boolean cacheEnabled = false;
     private Integer cacheSize = 1_000; // 1000 entries
     private Integer cacheTTL = 60 * 1_000; // 1 minute
+    private Integer cacheRefresh = null;
     private Cache.EXPIRE_POLICY cacheExpirePolicy = Cache.EXPIRE_POLICY.AFTER_WRITE;
 
-    private LoadingCache<String, LinkedHashSet<MongoAclPermission>> acl = null;
+    private LoadingCache<String, AclPermissionsIndex> acl = null;
+
+    private MongoAclPermission rootPermission = null;
 
     @Inject("mclient")
     private MongoClient mclient;
@@ -97,12 +100,21 @@ public class MongoAclAuthorizer implements Authorizer {
         this.aclCollection = arg(config, "acl-collection");
         this.rootRole = arg(config, "root-role");
 
+        if (this.rootRole != null) {
+            // for root role a mongo permissions that allows everything
+            Set<String> roles = Sets.newHashSet();
+            roles.add(this.rootRole);
+            this.rootPermission = new MongoAclPermission(new BsonObjectId(), "path-prefix('/')", roles, Integer.MAX_VALUE, new BsonDocument("mongo", ALLOW_ALL_MONGO_PERMISSIONS.asBson()));
+        }
+
         if (config != null && config.containsKey("cache-enabled")) {
             this.cacheEnabled = arg(config, "cache-enabled");
 
             if (this.cacheEnabled) {
                 this.cacheSize = arg(config, "cache-size");
                 this.cacheTTL = arg(config, "cache-ttl");
+                // by default, entries are reloaded in background when half of their ttl has elapsed
+                this.cacheRefresh = argOrDefault(config, "cache-refresh", this.cacheTTL / 2);
 
                 String _cacheExpirePolicy = arg(config, "cache-expire-policy");
 
@@ -119,11 +131,22 @@ public class MongoAclAuthorizer implements Authorizer {
                 }
 
                 this.acl = CacheFactory.createLocalLoadingCache(
+                    "acl",
                     this.cacheSize,
                     this.cacheExpirePolicy,
-                    this.cacheTTL, (String role) -> {
-                        return this.findRolePermissions(role);
+                    this.cacheTTL,
+                    this.cacheRefresh, (String role) -> {
+                        var permissions = this.findRolePermissions(role);
+                        return permissions == null ? null : new AclPermissionsIndex(permissions);
                     });
+
+                // invalidate the cache when any node modifies the acl (requires a replica set)
+                if (argOrDefault(config, "cache-invalidation", false)) {
+                    ChangeStreamWatcher.start("acl",
+                        () -> this.mclient.getDatabase(this.aclDb).getCollection(this.aclCollection, BsonDocument.class).watch(),
+                        event -> this.acl.invalidateAll(),
+                        () -> this.acl.invalidateAll());
+                }
             }
         }
 
@@ -161,9 +184,7 @@ public class MongoAclAuthorizer implements Authorizer {
                 .getAuthenticatedAccount().getPrincipal().getName());
 
             // for root role add a mongo permissions that allows everything
-            Set<String> roles = Sets.newHashSet();
-            roles.add(this.rootRole);
-            exchange.putAttachment(MATCHING_ACL_PERMISSION, new MongoAclPermission(new BsonObjectId(), "path-prefix('/')", roles, Integer.MAX_VALUE, new BsonDocument("mongo", ALLOW_ALL_MONGO_PERMISSIONS.asBson())));
+            exchange.putAttachment(MATCHING_ACL_PERMISSION, this.rootPermission);
             return true;
         }
 
@@ -178,58 +199,37 @@ public class MongoAclAuthorizer implements Authorizer {
         // see https://issues.jboss.org/browse/UNDERTOW-1317
         exchange.setRelativePath(exchange.getRequestPath());
 
-        final ArrayList<MongoAclPermission> permissions = new ArrayList<>();
+        // the applicable permission is the first one that
+        // resolves the exchange, evaluating the roles in order
+        var debug = LOGGER.isDebugEnabled();
 
-        // debug roles and predicates evaluation order
-        if (LOGGER.isDebugEnabled()) {
-            roles(exchange).forEachOrdered(role
-                    -> {
-                ArrayList<MongoAclPermission> matched = Lists.newArrayListWithCapacity(1);
+        for (var role: roles(exchange).toList()) {
+            var candidates = candidates(role, request);
 
-                rolePermissions(role)
-                    .stream().anyMatch(permission -> {
-                        var resolved = permission.allow(request);
-
-                        String marker;
-
-                        // to highlight the effective permission
-                        if (resolved && matched.isEmpty()) {
-                            matched.add(permission);
-                            marker = "<--";
-                        } else {
-                            marker = "";
-                        }
+            if (candidates == null) {
+                continue;
+            }
 
-                        LOGGER.debug("role {}, permission id {}, resolve {} {}",
-                            role,
-                            permission.getId(),
-                            resolved,
-                            marker);
+            for (var permission: candidates) {
+                var resolved = permission.allow(request);
 
-                        return false;
-                    });
-            });
-        }
+                if (debug) {
+                    // to highlight the effective permission
+                    LOGGER.debug("role {}, permission id {}, resolve {} {}",
+                        role,
+                        permission.getId(),
+                        resolved,
+                        resolved ? "<--" : "");
+                }
 
-        // the applicable permission is the ones that
-        // resolves the exchange
-        roles(exchange).forEachOrdered(role -> rolePermissions(role)
-            .stream()
-            .anyMatch(r -> {
-                if (r.allow(request)) {
-                    permissions.add(r);
+                if (resolved) {
+                    exchange.putAttachment(MATCHING_ACL_PERMISSION, permission);
                     return true;
-                } else {
-                    return false;
                 }
-            }));
-
-        if (permissions.isEmpty()) {
-            return false;
-        } else {
-            exchange.putAttachment(MATCHING_ACL_PERMISSION, permissions.get(0));
-            return true;
+            }
         }
+
+        return false;
     }
 
     @Override
@@ -242,24 +242,20 @@ public class MongoAclAuthorizer implements Authorizer {
 
         var exchange = request.getExchange();
 
-        var ps = rolePermissions($UNAUTHENTICATED);
+        // this fixes undertow bug 377
+        // https://issues.jboss.org/browse/UNDERTOW-377
+        if (exchange.getAttachment(PREDICATE_CONTEXT) == null) {
+            exchange.putAttachment(PREDICATE_CONTEXT, new TreeMap<>());
+        }
 
-        if (ps != null) {
-            // this fixes undertow bug 377
-            // https://issues.jboss.org/browse/UNDERTOW-377
-            if (exchange.getAttachment(PREDICATE_CONTEXT) == null) {
-                exchange.putAttachment(PREDICATE_CONTEXT, new TreeMap<>());
-            }
+        // Predicate.resolve() uses getRelativePath() that is the path relative to
+        // the last PathHandler we want to check against the full request path
+        // see https://issues.jboss.org/browse/UNDERTOW-1317
+        exchange.setRelativePath(request.getPath());
 
-            // Predicate.resolve() uses getRelativePath() that is the path relative to
-            // the last PathHandler we want to check against the full request path
-            // see https://issues.jboss.org/browse/UNDERTOW-1317
-            exchange.setRelativePath(request.getPath());
+        var ps = candidates($UNAUTHENTICATED, request);
 
-            return !ps.stream().anyMatch(r -> r.allow(request));
-        } else {
-            return true;
-        }
+        return ps == null || !ps.stream().anyMatch(r -> r.allow(request));
     }
 
     private Stream<String> roles(HttpServerExchange exchange) {
@@ -284,7 +280,29 @@ public class MongoAclAuthorizer implements Authorizer {
             var _rolePermissions = this.acl.getLoading(role);
 
             if (_rolePermissions != null && _rolePermissions.isPresent()) {
-                return _rolePermissions.get();
+                return _rolePermissions.get().permissions();
+            } else {
+                return null;
+            }
+        } else {
+            return findRolePermissions(role);
+        }
+    }
+
+    /**
+     * With the cache enabled, the permissions are indexed and only the ones
+     * whose method and path constraints can match the request are returned.
+     *
+     * @param role
+     * @param request
+     * @return the permissions of the role to evaluate for the request, in priority order
+     */
+    private Collection<MongoAclPermission> candidates(String role, Request<?> request) {
+        if (this.cacheEnabled) {
+            var index = this.acl.getLoading(role);
+
+            if (index != null && index.isPresent()) {
+                return index.get().candidates(request);
             } else {
                 return null;
             }
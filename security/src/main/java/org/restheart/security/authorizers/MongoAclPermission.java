@@ -21,13 +21,15 @@
 package org.restheart.security.authorizers;
 
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import org.bson.BsonDocument;
 import org.bson.BsonValue;
 import org.restheart.configuration.ConfigurationException;
-import org.restheart.security.AclVarsInterpolator;
+import org.restheart.exchange.Request;
+import org.restheart.security.AclPredicate;
 import org.restheart.security.BaseAclPermission;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,10 +48,14 @@ public class MongoAclPermission extends BaseAclPermission {
     private static final Logger LOGGER = LoggerFactory.getLogger(MongoAclPermission.class);
 
     private final BsonValue _id;
+    private final String requestPredicate;
+    private final Predicate<Request<?>> compiledPredicate;
 
     MongoAclPermission(BsonValue _id, String requestPredicate, Set<String> roles, int priority, BsonDocument raw) throws ConfigurationException {
-        super(req -> AclVarsInterpolator.interpolatePredicate(req, requestPredicate, MongoAclPermission.class.getClassLoader()).resolve(req.getExchange()), roles, priority, raw);
+        super(AclPredicate.compile(requestPredicate, MongoAclPermission.class.getClassLoader())::resolve, roles, priority, raw);
         this._id = _id;
+        this.requestPredicate = requestPredicate;
+        this.compiledPredicate = gePredicate();
     }
 
     /**
@@ -106,4 +112,20 @@ public class MongoAclPermission extends BaseAclPermission {
     public BsonValue getId() {
         return _id;
     }
+
+    /**
+     *
+     * @return the requestPredicate
+     */
+    public String getRequestPredicate() {
+        return requestPredicate;
+    }
+
+    /**
+     *
+     * @return true if a permission transformer has modified the predicate
+     */
+    boolean isTransformed() {
+        return gePredicate() != compiledPredicate;
+    }
 }
@@ -0,0 +1,417 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.authorizers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The constraints on the request line (method and path) that a permission
+ * predicate requires, extracted from its AST.
+ *
+ * The analysis is conservative: the predicates other than method(), path(),
+ * path-prefix() and path-template() don't constrain the request line, and
+ * whatever cannot be analyzed makes the predicate match any request line.
+ * Hence a predicate that resolves for a request always satisfies its
+ * constraints, while the opposite is not true.
+ *
+ * Operators precedence is the same of Undertow's PredicateParser: not, and, or.
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+final class RequestLineConstraints {
+    static final RequestLineConstraints ANY = new RequestLineConstraints(null, null, false);
+
+    /**
+     * the upper case methods, null for any method
+     */
+    final Set<String> methods;
+
+    /**
+     * the segments of the path prefixes, null for any path
+     */
+    final List<List<String>> paths;
+
+    /**
+     * true if the predicate only depends on the request method and path
+     */
+    final boolean requestLineOnly;
+
+    private RequestLineConstraints(Set<String> methods, List<List<String>> paths, boolean requestLineOnly) {
+        this.methods = methods;
+        this.paths = paths;
+        this.requestLineOnly = requestLineOnly;
+    }
+
+    /**
+     *
+     * @param predicate the permission predicate
+     * @return the constraints on the request line
+     */
+    static RequestLineConstraints of(String predicate) {
+        if (predicate == null) {
+            return ANY;
+        }
+
+        try {
+            var parser = new Parser(tokenize(predicate));
+            var ret = parser.or();
+            return parser.atEnd() ? ret : ANY;
+        } catch(IllegalArgumentException iae) {
+            return ANY;
+        }
+    }
+
+    /**
+     *
+     * @param method
+     * @return true if the method satisfies the constraint
+     */
+    boolean matchesMethod(String method) {
+        return methods == null || (method != null && methods.contains(method.toUpperCase(Locale.ROOT)));
+    }
+
+    /**
+     *
+     * @param path
+     * @return the not empty segments of the path
+     */
+    static List<String> segments(String path) {
+        var ret = new ArrayList<String>();
+
+        if (path != null) {
+            for (var segment: path.split("/")) {
+                if (!segment.isEmpty()) {
+                    ret.add(segment);
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private static RequestLineConstraints and(RequestLineConstraints a, RequestLineConstraints b) {
+        Set<String> methods;
+
+        if (a.methods == null) {
+            methods = b.methods;
+        } else if (b.methods == null) {
+            methods = a.methods;
+        } else {
+            methods = new HashSet<>(a.methods);
+            methods.retainAll(b.methods);
+        }
+
+        // both must be satisfied, so either constraint is sound: keep the most specific one
+        List<List<String>> paths;
+
+        if (a.paths == null) {
+            paths = b.paths;
+        } else if (b.paths == null) {
+            paths = a.paths;
+        } else {
+            paths = minDepth(a.paths) >= minDepth(b.paths) ? a.paths : b.paths;
+        }
+
+        return new RequestLineConstraints(methods, paths, a.requestLineOnly && b.requestLineOnly);
+    }
+
+    private static RequestLineConstraints or(RequestLineConstraints a, RequestLineConstraints b) {
+        Set<String> methods = null;
+
+        if (a.methods != null && b.methods != null) {
+            methods = new HashSet<>(a.methods);
+            methods.addAll(b.methods);
+        }
+
+        List<List<String>> paths = null;
+
+        if (a.paths != null && b.paths != null) {
+            paths = new ArrayList<>(a.paths);
+            paths.addAll(b.paths);
+        }
+
+        return new RequestLineConstraints(methods, paths, a.requestLineOnly && b.requestLineOnly);
+    }
+
+    private static int minDepth(List<List<String>> paths) {
+        return paths.stream().mapToInt(List::size).min().orElse(0);
+    }
+
+    private static final String DELIMITERS = "()[]{},=";
+
+    private static List<String> tokenize(String predicate) {
+        var tokens = new ArrayList<String>();
+        var length = predicate.length();
+        var i = 0;
+
+        while (i < length) {
+            var c = predicate.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (DELIMITERS.indexOf(c) >= 0) {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '"' || c == '\'') {
+                var end = i + 1;
+                while (end < length && predicate.charAt(end) != c) {
+                    end += predicate.charAt(end) == '\\' ? 2 : 1;
+                }
+
+                if (end >= length) {
+                    throw new IllegalArgumentException("unterminated string");
+                }
+
+                // quoted tokens keep the opening quote to tell them from operators
+                tokens.add(predicate.substring(i, end));
+                i = end + 1;
+            } else {
+                var end = i;
+                while (end < length
+                    && !Character.isWhitespace(predicate.charAt(end))
+                    && DELIMITERS.indexOf(predicate.charAt(end)) < 0
+                    && predicate.charAt(end) != '"'
+                    && predicate.charAt(end) != '\'') {
+                    end++;
+                }
+
+                tokens.add(predicate.substring(i, end));
+                i = end;
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * recursive descent parser: or := and ('or' and)*, and := unary ('and' unary)*,
+     * unary := 'not' unary | '(' or ')' | predicate
+     */
+    private static class Parser {
+        private final List<String> tokens;
+        private int pos = 0;
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean atEnd() {
+            return pos == tokens.size();
+        }
+
+        private String peek() {
+            return pos < tokens.size() ? tokens.get(pos) : null;
+        }
+
+        private String next() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("unexpected end of predicate");
+            }
+
+            return tokens.get(pos++);
+        }
+
+        private void expect(String token) {
+            if (!token.equals(next())) {
+                throw new IllegalArgumentException("expected " + token);
+            }
+        }
+
+        RequestLineConstraints or() {
+            var ret = and();
+
+            while ("or".equals(peek())) {
+                next();
+                ret = RequestLineConstraints.or(ret, and());
+            }
+
+            return ret;
+        }
+
+        private RequestLineConstraints and() {
+            var ret = unary();
+
+            while ("and".equals(peek())) {
+                next();
+                ret = RequestLineConstraints.and(ret, unary());
+            }
+
+            return ret;
+        }
+
+        private RequestLineConstraints unary() {
+            var token = next();
+
+            if ("and".equals(token) || "or".equals(token)) {
+                throw new IllegalArgumentException("unexpected operator " + token);
+            } else if ("not".equals(token)) {
+                var negated = unary();
+                return new RequestLineConstraints(null, null, negated.requestLineOnly);
+            } else if ("(".equals(token)) {
+                var ret = or();
+                expect(")");
+                return ret;
+            } else if (DELIMITERS.contains(token) || token.startsWith("\"") || token.startsWith("'")) {
+                throw new IllegalArgumentException("unexpected token " + token);
+            } else if ("(".equals(peek()) || "[".equals(peek())) {
+                var close = "(".equals(next()) ? ")" : "]";
+                return predicate(token, arguments(close));
+            } else {
+                // predicate without arguments, e.g. secure
+                return ANY;
+            }
+        }
+
+        /**
+         * @return the arguments, null if they cannot be analyzed
+         */
+        private List<String[]> arguments(String close) {
+            var args = new ArrayList<String[]>();
+            var analyzable = true;
+            var depth = 0;
+
+            // args are name=value or value, with value being a token or an array { v1, v2 }
+            while (true) {
+                var token = next();
+
+                if (token.equals(close) && depth == 0) {
+                    return analyzable ? args : null;
+                } else if (!analyzable) {
+                    // skip until the closing parenthesis
+                    if (token.equals("(") || token.equals("[")) {
+                        depth++;
+                    } else if (token.equals(")") || token.equals("]")) {
+                        depth--;
+                    }
+                } else if (token.equals(",")) {
+                    continue;
+                } else {
+                    String name = null;
+                    var value = token;
+
+                    if ("=".equals(peek())) {
+                        next();
+                        name = token;
+                        value = next();
+                    }
+
+                    if ("{".equals(value)) {
+                        var values = new ArrayList<String>();
+                        values.add(name);
+
+                        for (var v = next(); !"}".equals(v); v = next()) {
+                            if (!",".equals(v)) {
+                                values.add(v);
+                            }
+                        }
+
+                        args.add(values.toArray(String[]::new));
+                    } else if (DELIMITERS.contains(value)) {
+                        analyzable = false;
+                        if (value.equals("(") || value.equals("[")) {
+                            depth++;
+                        }
+                    } else {
+                        args.add(new String[] { name, value });
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * @param name the predicate name
+     * @param args each arg is [ name, value1, value2, ... ]
+     * @return the constraints of the predicate
+     */
+    private static RequestLineConstraints predicate(String name, List<String[]> args) {
+        if (args == null || args.size() != 1) {
+            return ANY;
+        }
+
+        var arg = args.get(0);
+
+        // the only parameter allowed is the default one, e.g. path-template(match=...) matches another attribute
+        if (arg[0] != null && !arg[0].equals("value") && !arg[0].equals("path")) {
+            return ANY;
+        }
+
+        var values = Arrays.stream(arg, 1, arg.length).map(RequestLineConstraints::literal).toList();
+
+        if (values.isEmpty() || values.contains(null)) {
+            return ANY;
+        }
+
+        switch (name) {
+            case "method": {
+                var methods = new HashSet<String>();
+                values.forEach(v -> methods.add(v.toUpperCase(Locale.ROOT)));
+                return new RequestLineConstraints(methods, null, true);
+            }
+            case "path":
+            case "path-prefix":
+                return new RequestLineConstraints(null, values.stream().map(RequestLineConstraints::segments).toList(), true);
+            case "path-template":
+                return new RequestLineConstraints(null, values.stream().map(RequestLineConstraints::templatePrefix).toList(), true);
+            default:
+                return ANY;
+        }
+    }
+
+    /**
+     * @return the value of a literal token, null if it is an exchange
+     * attribute or a variable such as %u, ${tenant} or @user.tenant
+     */
+    private static String literal(String token) {
+        var value = token.startsWith("\"") || token.startsWith("'") ? token.substring(1) : token;
+        return value.contains("$") || value.contains("%") || value.contains("@") || value.contains("\\") ? null : value;
+    }
+
+    /**
+     * @return the segments of the static part of the template; a segment
+     * partially defined by a parameter is not included
+     */
+    private static List<String> templatePrefix(String template) {
+        var end = template.length();
+
+        for (var i = 0; i < template.length(); i++) {
+            if (template.charAt(i) == '{' || template.charAt(i) == '*') {
+                end = i;
+                break;
+            }
+        }
+
+        if (end == template.length()) {
+            return segments(template);
+        }
+
+        var staticPart = template.substring(0, end);
+        var lastSlash = staticPart.lastIndexOf('/');
+
+        return segments(lastSlash < 0 ? "" : staticPart.substring(0, lastSlash));
+    }
+}
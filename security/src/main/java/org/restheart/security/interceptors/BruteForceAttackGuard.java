@@ -28,10 +28,12 @@ import org.restheart.plugins.InterceptPoint;
 import org.restheart.plugins.OnInit;
 import org.restheart.plugins.RegisterPlugin;
 import org.restheart.plugins.WildcardInterceptor;
+import static org.restheart.utils.MetricsUtils.DEFAULT_FAILED_AUTH_MAX_TRACKED_KEYS;
 import static org.restheart.utils.MetricsUtils.collectFailedAuthBy;
 import static org.restheart.utils.MetricsUtils.xffValueRIndex;
 import static org.restheart.utils.MetricsUtils.xffValue;
-import static org.restheart.utils.MetricsUtils.failedAuthHistogramName;
+import static org.restheart.utils.MetricsUtils.failedAuthCount;
+import static org.restheart.utils.MetricsUtils.failedAuthMaxTrackedKeys;
 import org.restheart.utils.LogUtils;
 import org.restheart.utils.MetricsUtils.FAILED_AUTH_KEY;
 
@@ -40,12 +42,7 @@ import io.undertow.server.HttpServerExchange;
 import io.undertow.util.HttpString;
 
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
-import com.codahale.metrics.Histogram;
-import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.SharedMetricRegistries;
-import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
 import com.google.common.net.HttpHeaders;
 
 import org.slf4j.Logger;
@@ -62,7 +59,6 @@ import org.slf4j.LoggerFactory;
 public class BruteForceAttackGuard implements WildcardInterceptor {
     private static final Logger LOGGER = LoggerFactory.getLogger(BruteForceAttackGuard.class);
 
-    private static final MetricRegistry AUTH_METRIC_REGISTRY = SharedMetricRegistries.getOrCreate("AUTH");
     private static int xForwardedForValueFromLast = 0;
 
     private int maxFailedAttempts = 5;
@@ -101,15 +97,30 @@ public class BruteForceAttackGuard implements WildcardInterceptor {
             this.maxFailedAttempts = 5;
         }
 
-        LOGGER.info("Requests will be blocked when got more than {} failed attempts in last 10 seconds", maxFailedAttempts);
+        long maxTrackedKeys;
+
+        try {
+            maxTrackedKeys = ((Number) arg(config, "max-tracked-keys")).longValue();
+        } catch(ConfigurationException ce) {
+            maxTrackedKeys = DEFAULT_FAILED_AUTH_MAX_TRACKED_KEYS;
+        }
+
+        if (maxTrackedKeys < 1) {
+            LOGGER.warn("max-tracked-keys must be positive, set to {}", DEFAULT_FAILED_AUTH_MAX_TRACKED_KEYS);
+            maxTrackedKeys = DEFAULT_FAILED_AUTH_MAX_TRACKED_KEYS;
+        }
+
+        failedAuthMaxTrackedKeys(maxTrackedKeys);
+
+        LOGGER.info("Requests will be blocked when got more than {} failed attempts in last 10 seconds, tracking up to {} sources", maxFailedAttempts, maxTrackedKeys);
     }
 
     @Override
     public void handle(ServiceRequest<?> request, ServiceResponse<?> response) throws Exception {
         // if failed attempts in last 10 seconds >= maxFailedAttempts, deny access
-        var max = authHisto(request).getSnapshot().getMax();
-        if (max > this.maxFailedAttempts) {
-            logWarning(request.getExchange(), max);
+        var failed = failedAuthCount(request.getExchange());
+        if (failed > this.maxFailedAttempts) {
+            logWarning(request.getExchange(), failed);
             // this blocks the request authentication
             // with status code 429 TOO_MANY_REQUESTS
             request.blockForTooManyRequests();
@@ -121,12 +132,12 @@ public class BruteForceAttackGuard implements WildcardInterceptor {
         return !request.isOptions();
     }
 
-    private void logWarning(HttpServerExchange exchange, double mean) {
+    private void logWarning(HttpServerExchange exchange, long failed) {
         var xff = ExchangeAttributes.requestHeader(HttpString.tryFromString(HttpHeaders.X_FORWARDED_FOR)).readAttribute(exchange);
         LogUtils.boxedWarn(LOGGER,
             "A brute force attack might be in progress...",
             "",
-            "Got too many of failed auth attempts in last 10 seconds from:",
+            "Got " + failed + " failed auth attempts in last 10 seconds from:",
             "",
             "remote ip: " + ExchangeAttributes.remoteIp().readAttribute(exchange),
             "X-Forwarded-For header: " + xff,
@@ -136,8 +147,4 @@ public class BruteForceAttackGuard implements WildcardInterceptor {
             "request method: " + ExchangeAttributes.requestMethod().readAttribute(exchange),
             "request url: " + ExchangeAttributes.requestURL().readAttribute(exchange));
     }
-
-    private Histogram authHisto(ServiceRequest<?> request) {
-        return AUTH_METRIC_REGISTRY.histogram(failedAuthHistogramName(request.getExchange()), () -> new Histogram(new SlidingTimeWindowArrayReservoir(10, TimeUnit.SECONDS)));
-    }
 }
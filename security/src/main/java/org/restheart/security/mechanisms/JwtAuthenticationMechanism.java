@@ -28,6 +28,10 @@ import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.Verification;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.net.HttpHeaders;
 import io.undertow.security.api.AuthenticationMechanism;
 import io.undertow.security.api.SecurityContext;
@@ -37,17 +41,23 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPublicKey;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import org.apache.commons.codec.binary.StringUtils;
+import org.restheart.cache.Cache;
+import org.restheart.cache.CacheFactory;
 import org.restheart.configuration.ConfigurationException;
 import org.restheart.exchange.Request;
 import org.restheart.security.JwtAccount;
@@ -70,8 +80,15 @@ import org.slf4j.LoggerFactory;
 public class JwtAuthenticationMechanism implements AuthMechanism, ConsumingPlugin<DecodedJWT> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtAuthenticationMechanism.class);
+    private static final MetricRegistry AUTH_METRIC_REGISTRY = SharedMetricRegistries.getOrCreate("AUTH");
 
     public static final String JWT_AUTH_HEADER_PREFIX = "Bearer ";
+
+    /**
+     * the default max number of verified tokens kept in cache, 0 disables caching
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1_000;
+
     private JWTVerifier jwtVerifier;
     private Consumer<DecodedJWT> extraJwtVerifier = null;
 
@@ -84,6 +101,28 @@ public class JwtAuthenticationMechanism implements AuthMechanism, ConsumingPlugi
     private String issuer;
     private String audience;
 
+    /**
+     * verified tokens keyed by the SHA-256 digest of the token
+     */
+    private Cache<String, VerifiedJwt> cache = null;
+    private Counter cacheHits;
+    private Counter cacheMisses;
+
+    /**
+     * a verified token with the data extracted from it
+     *
+     * @param jwt the verified token, passed to the extra verifier on each request
+     * @param subject the username
+     * @param roles the roles of the account
+     * @param payload the decoded payload
+     * @param expiresAt the expiration time in milliseconds of the token
+     */
+    private record VerifiedJwt(DecodedJWT jwt, String subject, Set<String> roles, String payload, long expiresAt) {
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
     @Inject("config")
     private Map<String, Object> config;
 
@@ -129,6 +168,22 @@ public class JwtAuthenticationMechanism implements AuthMechanism, ConsumingPlugi
         }
 
         this.jwtVerifier = v.build();
+
+        int cacheSize = argOrDefault(config, "cacheSize", DEFAULT_CACHE_SIZE);
+
+        if (cacheSize > 0) {
+            // expired tokens are removed on lookup, the others are evicted when the size is exceeded
+            this.cache = CacheFactory.createLocalCache(cacheSize, Cache.EXPIRE_POLICY.NEVER, 0);
+            this.cacheHits = AUTH_METRIC_REGISTRY.counter(MetricRegistry.name(JwtAuthenticationMechanism.class, "cache", "hits"));
+            this.cacheMisses = AUTH_METRIC_REGISTRY.counter(MetricRegistry.name(JwtAuthenticationMechanism.class, "cache", "misses"));
+            AUTH_METRIC_REGISTRY.gauge(MetricRegistry.name(JwtAuthenticationMechanism.class, "cache", "hit-rate"), () -> new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    return Ratio.of(cacheHits.getCount(), cacheHits.getCount() + cacheMisses.getCount());
+                }
+            });
+            LOGGER.debug("Verified JWT cache enabled, size {}", cacheSize);
+        }
     }
 
     @Override
@@ -143,56 +198,72 @@ public class JwtAuthenticationMechanism implements AuthMechanism, ConsumingPlugi
                             Base64.getUrlDecoder().decode(token));
                 }
 
-                DecodedJWT verifiedJwt = jwtVerifier.verify(token);
+                var cacheKey = cache == null ? null : digest(token);
+                var verified = cacheKey == null ? null : cached(cacheKey);
 
-                String subject = verifiedJwt.getClaim(usernameClaim).asString();
+                if (verified == null) {
+                    DecodedJWT verifiedJwt = jwtVerifier.verify(token);
 
-                if (subject == null) {
-                    LOGGER.debug("username not specified with claim {}", usernameClaim);
-                    sc.authenticationFailed("JwtAuthenticationManager", "username not specified");
-                    return AuthenticationMechanismOutcome.NOT_AUTHENTICATED;
-                }
+                    String subject = verifiedJwt.getClaim(usernameClaim).asString();
 
-                Set<String> actualRoles = new LinkedHashSet<>();
+                    if (subject == null) {
+                        LOGGER.debug("username not specified with claim {}", usernameClaim);
+                        sc.authenticationFailed("JwtAuthenticationManager", "username not specified");
+                        return AuthenticationMechanismOutcome.NOT_AUTHENTICATED;
+                    }
 
-                if (rolesClaim != null) {
-                    Claim _roles = verifiedJwt.getClaim(rolesClaim);
+                    Set<String> actualRoles = new LinkedHashSet<>();
 
-                    if (_roles != null && !_roles.isNull()) {
-                        try {
-                            String[] __roles = _roles.asArray(String.class);
+                    if (rolesClaim != null) {
+                        Claim _roles = verifiedJwt.getClaim(rolesClaim);
 
-                            if (__roles != null) {
-                                for (String role : __roles) {
-                                    actualRoles.add(role);
+                        if (_roles != null && !_roles.isNull()) {
+                            try {
+                                String[] __roles = _roles.asArray(String.class);
+
+                                if (__roles != null) {
+                                    for (String role : __roles) {
+                                        actualRoles.add(role);
+                                    }
+                                } else {
+                                    LOGGER.debug("roles is not an array: {}",
+                                            _roles.asString());
+                                    return AuthenticationMechanismOutcome.NOT_AUTHENTICATED;
                                 }
-                            } else {
-                                LOGGER.debug("roles is not an array: {}",
-                                        _roles.asString());
-                                return AuthenticationMechanismOutcome.NOT_AUTHENTICATED;
+                            } catch (JWTDecodeException ex) {
+                                LOGGER.warn("Jwt cannot get roles from claim {}, "
+                                        + "extepected an array of strings: {}",
+                                        rolesClaim,
+                                        _roles.toString());
                             }
-                        } catch (JWTDecodeException ex) {
-                            LOGGER.warn("Jwt cannot get roles from claim {}, "
-                                    + "extepected an array of strings: {}",
-                                    rolesClaim,
-                                    _roles.toString());
                         }
+                    } else if (this.fixedRoles != null) {
+                        actualRoles.addAll(this.fixedRoles);
+                    }
+
+                    var jwtPayload = new String(Base64.getUrlDecoder()
+                            .decode(verifiedJwt.getPayload()),
+                            Charset.forName("UTF-8"));
+
+                    var expiresAt = verifiedJwt.getExpiresAt();
+
+                    verified = new VerifiedJwt(verifiedJwt, subject, Collections.unmodifiableSet(actualRoles), jwtPayload, expiresAt == null ? Long.MAX_VALUE : expiresAt.getTime());
+
+                    // only tokens with an expiration time are cached
+                    if (cacheKey != null && expiresAt != null) {
+                        cache.put(cacheKey, verified);
                     }
-                } else if (this.fixedRoles != null) {
-                    actualRoles.addAll(this.fixedRoles);
                 }
 
                 if (this.extraJwtVerifier != null) {
-                    this.extraJwtVerifier.accept(verifiedJwt);
+                    this.extraJwtVerifier.accept(verified.jwt());
                 }
 
-                var jwtPayload = new String(Base64.getUrlDecoder()
-                        .decode(verifiedJwt.getPayload()),
-                        Charset.forName("UTF-8"));
+                var jwtPayload = verified.payload();
 
                 JwtAccount account = new JwtAccount(
-                        subject,
-                        actualRoles,
+                        verified.subject(),
+                        new LinkedHashSet<>(verified.roles()),
                         jwtPayload
                 );
 
@@ -227,6 +298,39 @@ public class JwtAuthenticationMechanism implements AuthMechanism, ConsumingPlugi
         this.extraJwtVerifier = extraJwtVerifier;
     }
 
+    /**
+     *
+     * @param cacheKey
+     * @return the cached verified token or null if not cached or expired
+     */
+    private VerifiedJwt cached(String cacheKey) {
+        var _cached = cache.get(cacheKey);
+
+        if (_cached != null && _cached.isPresent()) {
+            var cached = _cached.get();
+
+            if (!cached.isExpired()) {
+                cacheHits.inc();
+                return cached;
+            } else {
+                cache.invalidate(cacheKey);
+            }
+        }
+
+        cacheMisses.inc();
+        return null;
+    }
+
+    private static String digest(String token) {
+        try {
+            var md = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch(NoSuchAlgorithmException nsae) {
+            // SHA-256 is required by the Java platform specification
+            throw new IllegalStateException(nsae);
+        }
+    }
+
     private String getToken(HttpServerExchange hse) {
         HeaderValues _authHeader = hse.getRequestHeaders().get(HttpHeaders.AUTHORIZATION);
 
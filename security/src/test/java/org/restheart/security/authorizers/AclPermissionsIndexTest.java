@@ -0,0 +1,93 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.authorizers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.junit.Test;
+import org.restheart.exchange.Request;
+import org.restheart.exchange.UninitializedRequest;
+
+import io.undertow.predicate.Predicate;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class AclPermissionsIndexTest {
+    private static MongoAclPermission permission(int id, String predicate) {
+        return new MongoAclPermission(new BsonInt32(id), predicate, Set.of("user"), 100 - id, new BsonDocument());
+    }
+
+    private static Request<?> request(String method, String path) {
+        var exchange = new HttpServerExchange();
+        exchange.setRequestMethod(HttpString.tryFromString(method));
+        exchange.setRequestPath(path);
+        exchange.setRelativePath(path);
+        exchange.putAttachment(Predicate.PREDICATE_CONTEXT, new TreeMap<>());
+        return UninitializedRequest.of(exchange);
+    }
+
+    private static List<Integer> ids(List<MongoAclPermission> permissions) {
+        return permissions.stream().map(p -> p.getId().asInt32().getValue()).toList();
+    }
+
+    @Test
+    public void testCandidates() {
+        var permissions = new LinkedHashSet<MongoAclPermission>();
+        permissions.add(permission(0, "method(GET) and path-prefix('/a')"));
+        permissions.add(permission(1, "path-template('/b/{id}') and qparams-contain(foo)"));
+        permissions.add(permission(2, "method(POST) and path-prefix('/b')"));
+        permissions.add(permission(3, "qparams-size(0)"));
+        permissions.add(permission(4, "path-prefix('/b')"));
+
+        var index = new AclPermissionsIndex(permissions);
+
+        // 0 resolves and depends only on the request line: evaluation stops there
+        assertEquals(List.of(0), ids(index.candidates(request("GET", "/a/x"))));
+        // 0 doesn't resolve, 1, 2 and 4 are on another path
+        assertEquals(List.of(3), ids(index.candidates(request("GET", "/ab"))));
+        // 2 is for another method
+        assertEquals(List.of(1, 3, 4), ids(index.candidates(request("GET", "/b/x"))));
+        assertEquals(List.of(1, 2), ids(index.candidates(request("POST", "/b/x"))));
+    }
+
+    @Test
+    public void testMemo() {
+        var permissions = new LinkedHashSet<MongoAclPermission>();
+        permissions.add(permission(0, "path-template('/b/{id}') and qparams-contain(foo)"));
+        permissions.add(permission(1, "path-prefix('/b')"));
+
+        var index = new AclPermissionsIndex(permissions);
+
+        assertSame(index.candidates(request("GET", "/b/x")), index.candidates(request("GET", "/b/x")));
+    }
+}
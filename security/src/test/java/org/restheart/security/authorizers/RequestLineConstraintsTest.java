@@ -0,0 +1,98 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.authorizers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class RequestLineConstraintsTest {
+    @Test
+    public void testMethodAndPathPrefix() {
+        var c = RequestLineConstraints.of("method(GET) and path-prefix('/db/coll')");
+
+        assertEquals(Set.of("GET"), c.methods);
+        assertEquals(List.of(List.of("db", "coll")), c.paths);
+        assertTrue(c.requestLineOnly);
+        assertTrue(c.matchesMethod("get"));
+        assertFalse(c.matchesMethod("POST"));
+    }
+
+    @Test
+    public void testPathTemplate() {
+        assertEquals(List.of(List.of("db")), RequestLineConstraints.of("path-template('/db/{coll}/*')").paths);
+        assertEquals(List.of(List.of("db")), RequestLineConstraints.of("path-template('/db/co{coll}')").paths);
+        assertEquals(List.of(List.of()), RequestLineConstraints.of("path-template('/{tenant}/coll')").paths);
+        assertEquals(List.of(List.of("db", "coll")), RequestLineConstraints.of("path(path=\"/db/coll/\")").paths);
+    }
+
+    @Test
+    public void testOr() {
+        var c = RequestLineConstraints.of("(method(GET) and path-prefix('/a')) or (method({POST, PUT}) and path-prefix('/b/c'))");
+
+        assertEquals(Set.of("GET", "POST", "PUT"), c.methods);
+        assertEquals(List.of(List.of("a"), List.of("b", "c")), c.paths);
+        assertTrue(c.requestLineOnly);
+
+        // and binds tighter than or
+        var c2 = RequestLineConstraints.of("method(GET) and path-prefix('/a') or path-prefix('/b')");
+
+        assertNull(c2.methods);
+        assertEquals(List.of(List.of("a"), List.of("b")), c2.paths);
+    }
+
+    @Test
+    public void testDynamicPredicates() {
+        var c = RequestLineConstraints.of("path-template('/{tenant}/coll') and equals(@user.tenant, ${tenant}) and method(GET)");
+
+        assertEquals(Set.of("GET"), c.methods);
+        assertEquals(List.of(List.of()), c.paths);
+        assertFalse(c.requestLineOnly);
+
+        var c2 = RequestLineConstraints.of("path-prefix('/a') or qparams-contain(foo, bar)");
+
+        assertNull(c2.paths);
+        assertFalse(c2.requestLineOnly);
+
+        var c3 = RequestLineConstraints.of("not method(GET)");
+
+        assertNull(c3.methods);
+        assertTrue(c3.requestLineOnly);
+    }
+
+    @Test
+    public void testNotAnalyzable() {
+        assertEquals(RequestLineConstraints.ANY, RequestLineConstraints.of("path-prefix(%{i,X-Path})"));
+        assertEquals(RequestLineConstraints.ANY, RequestLineConstraints.of("path-template(value='/a/{x}', match=%{i,X-Path})"));
+        assertEquals(RequestLineConstraints.ANY, RequestLineConstraints.of("path-prefix('/a' and"));
+        assertNull(RequestLineConstraints.of("path-prefix(@user.path)").paths);
+    }
+}
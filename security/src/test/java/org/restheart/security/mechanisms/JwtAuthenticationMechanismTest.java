@@ -0,0 +1,142 @@
+/*-
+ * ========================LICENSE_START=================================
+ * restheart-security
+ * %%
+ * Copyright (C) 2018 - 2022 SoftInstigate
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * =========================LICENSE_END==================================
+ */
+package org.restheart.security.mechanisms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restheart.exchange.PipelineInfo;
+import org.restheart.exchange.Request;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.google.common.net.HttpHeaders;
+
+import io.undertow.security.api.AuthenticationMechanism.AuthenticationMechanismOutcome;
+import io.undertow.security.api.SecurityContext;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+
+/**
+ * Tests the cache of verified tokens of JwtAuthenticationMechanism
+ *
+ * @author Andrea Di Cesare {@literal <andrea@softinstigate.com>}
+ */
+public class JwtAuthenticationMechanismTest {
+    private static final String KEY = "secret";
+
+    private final SecurityContext sc = (SecurityContext) Proxy.newProxyInstance(
+        SecurityContext.class.getClassLoader(),
+        new Class<?>[] { SecurityContext.class },
+        (proxy, method, args) -> null);
+
+    private JwtAuthenticationMechanism mechanism;
+
+    @Before
+    public void setUp() throws Exception {
+        var config = new HashMap<String, Object>();
+        config.put("base64Encoded", false);
+        config.put("algorithm", "HS256");
+        config.put("key", KEY);
+        config.put("usernameClaim", "sub");
+        config.put("rolesClaim", "roles");
+        config.put("fixedRoles", null);
+        config.put("issuer", null);
+        config.put("audience", null);
+        config.put("cacheSize", 10);
+
+        this.mechanism = new JwtAuthenticationMechanism();
+        inject(this.mechanism, config);
+        this.mechanism.init();
+    }
+
+    @Test
+    public void testCachedTokenIsRejectedAfterExpiration() throws Exception {
+        // exp has seconds granularity, the token expires in 1 or 2 seconds
+        var token = token(Algorithm.HMAC256(KEY), new Date(System.currentTimeMillis() + 2000));
+
+        var hits = cacheHits();
+        assertEquals(AuthenticationMechanismOutcome.AUTHENTICATED, authenticate(token));
+        assertEquals(AuthenticationMechanismOutcome.AUTHENTICATED, authenticate(token));
+        // the second request is served from the cache
+        assertEquals(hits + 1, cacheHits());
+
+        // the verifier truncates the current time to seconds, so it rejects the token one second after exp
+        Thread.sleep(JWT.decode(token).getExpiresAt().getTime() - System.currentTimeMillis() + 1100);
+
+        assertEquals(AuthenticationMechanismOutcome.NOT_AUTHENTICATED, authenticate(token));
+        assertEquals(hits + 1, cacheHits());
+    }
+
+    @Test
+    public void testTokenWithDifferentSignatureIsNotServedFromCache() throws Exception {
+        var exp = new Date(System.currentTimeMillis() + 60_000);
+        var token = token(Algorithm.HMAC256(KEY), exp);
+        var forged = token(Algorithm.HMAC256("another-secret"), exp);
+
+        // same header and claims, different signature
+        assertEquals(token.substring(0, token.lastIndexOf('.')), forged.substring(0, forged.lastIndexOf('.')));
+        assertNotEquals(token, forged);
+
+        assertEquals(AuthenticationMechanismOutcome.AUTHENTICATED, authenticate(token));
+
+        var hits = cacheHits();
+        assertEquals(AuthenticationMechanismOutcome.NOT_AUTHENTICATED, authenticate(forged));
+        assertEquals(hits, cacheHits());
+
+        assertEquals(AuthenticationMechanismOutcome.AUTHENTICATED, authenticate(token));
+        assertEquals(hits + 1, cacheHits());
+    }
+
+    private AuthenticationMechanismOutcome authenticate(String token) {
+        var exchange = new HttpServerExchange();
+        Request.setPipelineInfo(exchange, new PipelineInfo(PipelineInfo.PIPELINE_TYPE.PROXY, "/", "test"));
+        exchange.getRequestHeaders().put(HttpString.tryFromString(HttpHeaders.AUTHORIZATION), JwtAuthenticationMechanism.JWT_AUTH_HEADER_PREFIX + token);
+        return this.mechanism.authenticate(exchange, sc);
+    }
+
+    private static String token(Algorithm algorithm, Date exp) {
+        return JWT.create()
+            .withSubject("user")
+            .withArrayClaim("roles", new String[] { "user" })
+            .withExpiresAt(exp)
+            .sign(algorithm);
+    }
+
+    private static long cacheHits() {
+        return SharedMetricRegistries.getOrCreate("AUTH").counter(MetricRegistry.name(JwtAuthenticationMechanism.class, "cache", "hits")).getCount();
+    }
+
+    private static void inject(JwtAuthenticationMechanism mechanism, Map<String, Object> config) throws ReflectiveOperationException {
+        var field = JwtAuthenticationMechanism.class.getDeclaredField("config");
+        field.setAccessible(true);
+        field.set(mechanism, config);
+    }
+}